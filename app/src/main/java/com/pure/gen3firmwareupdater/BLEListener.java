@@ -8,6 +8,8 @@ import java.util.List;
  */
 public interface BLEListener {
     void onScanStarted();
+    /** A scooter was seen for the first time during the current scan. */
+    default void onDeviceFound(ScanResult device) {}
     void onScanCompleted(List<ScanResult> devices);
     void onScanFailed(String error);
 
@@ -12,27 +12,44 @@ import android.bluetooth.BluetoothManager;
 import android.bluetooth.BluetoothProfile;
 import android.bluetooth.le.BluetoothLeScanner;
 import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
 import android.bluetooth.le.ScanResult;
 import android.bluetooth.le.ScanSettings;
 import android.content.Context;
 import android.content.pm.PackageManager;
+import android.os.Build;
 import android.os.Handler;
-import android.os.Looper;
+import android.os.ParcelUuid;
 import android.util.Log;
 import androidx.core.app.ActivityCompat;
 
+import com.pure.gen3firmwareupdater.services.FrameAssembler;
+
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Simplified BLE connection manager for firmware upload only.
- * Stripped from Gen3Telemetry's BLEConnectionManager — no auto-connect,
- * no telemetry requests, no AT command service.
+ * Stripped from Gen3Telemetry's BLEConnectionManager — no telemetry requests,
+ * no AT command service. Connects to a scan result or straight to a saved MAC
+ * ({@link #connectToAddress}), with autoConnect only when the caller asks for a
+ * background reattach.
+ *
+ * GATT and scan callbacks and all BLEListener callbacks run on the BLE I/O thread
+ * ({@link BleIoThread}), never on the main thread. GATT calls (connect, reads, writes,
+ * MTU, disconnect, close) and scan start/stop are issued on that thread too, whichever
+ * thread asks for them, so connection and scan state is confined to it.
  */
-public class BLEManager {
+public class BLEManager implements ScooterTransport {
 
     private static final String TAG = "BLEManager";
 
@@ -50,6 +67,10 @@ public class BLEManager {
     private static final String SOFTWARE_REV_UUID     = "00002A28-0000-1000-8000-00805F9B34FB";
     private static final String MANUFACTURER_UUID     = "00002A29-0000-1000-8000-00805F9B34FB";
 
+    // Scooter advertisement name prefix
+    private static final String DEVICE_NAME_PREFIX = "ZYD";
+    private static final long SCAN_DURATION_MS = 3000;
+
     // Notification descriptor UUID
     private static final String CLIENT_CHARACTERISTIC_CONFIG_UUID = "00002902-0000-1000-8000-00805f9b34fb";
 
@@ -63,6 +84,20 @@ public class BLEManager {
     private Context context;
     private BLEListener listener;
     private FirmwareNotificationHandler firmwareNotificationHandler;
+    // While a firmware upload runs, every notification is cut into frames here, so D0-D3
+    // replies reach the handler whole and CRC-checked however the phone split or merged
+    // them. BLE I/O thread only.
+    private final FrameAssembler firmwareFrames = new FrameAssembler(new FrameAssembler.FrameSink() {
+        @Override
+        public void onFrame(byte[] buf, int offset, int length) {
+            routeFirmwareFrame(Arrays.copyOfRange(buf, offset, offset + length));
+        }
+
+        @Override
+        public void onCorruptFrame(int packetType) {
+            Log.w(TAG, "Dropped frame 0x" + String.format("%02X", packetType) + " with bad CRC");
+        }
+    });
 
     private BluetoothAdapter bluetoothAdapter;
     private BluetoothLeScanner bleScanner;
@@ -71,31 +106,69 @@ public class BLEManager {
     private BluetoothGattCharacteristic notifyCharacteristic;
 
     private boolean isConnected = false;
-    private boolean isScanning = false;
+    private volatile boolean isScanning = false;
     private String deviceSerialNumber = "";
     private String deviceModelNumber = "";
     private String deviceHardwareRevision = "";
     private String deviceFirmwareRevision = "";
     private String deviceSoftwareRevision = "";
     private String deviceManufacturer = "";
-    private List<ScanResult> discoveredDevices = new ArrayList<>();
-
-    // Queue for reading multiple Device Info characteristics sequentially
-    private List<String> deviceInfoReadQueue = new ArrayList<>();
-
-    // Synchronization for BLE write completion (used by writeRawBytesAndWait)
-    private volatile CountDownLatch writeLatch;
+    // Per-MAC Device Information + service layout, so reconnects skip the 180A reads
+    private final GattMetadataCache metadataCache;
+    private String discoveredLayout;
+    // Scan results keyed by MAC address, in discovery order. Written on the BLE I/O
+    // thread; getDiscoveredDevices() copies it under its lock
+    private final Map<String, ScanResult> discoveredDevices = new LinkedHashMap<>();
+
+    // Serialized GATT operations: each write/read/descriptor write/MTU request starts
+    // only when the previous one's callback has arrived (or its timeout fired)
+    private static final long WRITE_TIMEOUT_MS = 2000;
+    private static final long READ_TIMEOUT_MS = 2000;
+    private static final long DESCRIPTOR_TIMEOUT_MS = 2000;
+    private static final long MTU_TIMEOUT_MS = 3000;
+    private static final long DISCOVER_TIMEOUT_MS = 10000;
+    // enqueueWrite: use the control characteristic's own write type
+    private static final int WRITE_TYPE_CURRENT = -1;
+    // BLE state, callbacks and timeouts are confined to the BLE I/O thread
+    private final Handler ioHandler = BleIoThread.getHandler();
+    private final GattOperationQueue gattQueue = new GattOperationQueue(ioHandler);
 
     // Negotiated MTU (default 23; usable payload = MTU - 3)
     private int negotiatedMtu = 23;
 
+    // Link profile claims by owner; the most demanding one is applied (see LinkProfile)
+    private final Map<String, LinkProfile> linkProfileClaims = new HashMap<>();
+    private LinkProfile appliedLinkProfile;
+    // As reported by the stack: connection interval in 1.25 ms units, PHYs (-1 = unknown)
+    private volatile int connectionInterval = -1;
+    private volatile int connectionLatency = -1;
+    private volatile int txPhy = -1;
+    private volatile int rxPhy = -1;
+
+    // Binary traffic capture (null when not capturing)
+    private static final String CAPTURE_DIR = "captures";
+    private static final int MAX_CAPTURE_FILES = 5;
+    private volatile TrafficCapture trafficCapture;
+
+    // Scan state (BLE I/O thread only; ScanCallback results are posted there)
+    private final Runnable scanTimeout = () -> finishScan(true);
+
+    // connectGatt has been called but the link is not up yet
+    private volatile boolean connectPending = false;
+    private final Runnable connectTimeout = this::onConnectTimeout;
+    private ScanStopCondition scanStopCondition;
+    private boolean scanFiltered;
+
+    /** Ends a scan early when a wanted device is seen (e.g. the saved or target scooter). */
     @FunctionalInterface
-    public interface FirmwareNotificationHandler {
-        void onFirmwareResponse(byte[] data);
+    public interface ScanStopCondition {
+        boolean isTarget(ScanResult result);
     }
 
+    @Override
     public void setFirmwareNotificationHandler(FirmwareNotificationHandler handler) {
         this.firmwareNotificationHandler = handler;
+        BleIoThread.run(firmwareFrames::reset);
         Log.d(TAG, "Firmware notification handler " + (handler != null ? "SET" : "CLEARED"));
     }
 
@@ -110,6 +183,7 @@ public class BLEManager {
     public BLEManager(Context context, BLEListener listener) {
         this.context = context.getApplicationContext();
         this.listener = listener;
+        this.metadataCache = new GattMetadataCache(this.context);
         initializeBluetooth();
     }
 
@@ -138,70 +212,196 @@ public class BLEManager {
     // ==================================================================================
 
     public void startScanning() {
+        startScanning(null, null, null);
+    }
+
+    /**
+     * Scan for scooters. Matching is done by the controller with ScanFilters: the main
+     * service UUID (FFF0) plus, when given, the exact name / MAC of a known scooter.
+     * Each new device is reported through onDeviceFound as soon as it is seen; the scan
+     * ends after {@link #SCAN_DURATION_MS}, or immediately once {@code stopCondition}
+     * matches a result.
+     *
+     * @param knownAddress  MAC of a scooter we expect (may be null)
+     * @param knownName     advertised name of a scooter we expect (may be null)
+     * @param stopCondition stop early when this matches (may be null)
+     */
+    public void startScanning(String knownAddress, String knownName, ScanStopCondition stopCondition) {
+        if (!BleIoThread.isCurrentThread()) {
+            ioHandler.post(() -> startScanning(knownAddress, knownName, stopCondition));
+            return;
+        }
         if (bleScanner == null) {
             listener.onScanFailed("Bluetooth not available");
             return;
         }
+        if (isScanning) {
+            try { bleScanner.stopScan(scanCallback); } catch (Exception ignored) {}
+            ioHandler.removeCallbacks(scanTimeout);
+        }
 
-        discoveredDevices.clear();
-        isScanning = true;
         listener.onScanStarted();
-        Log.d(TAG, "Starting BLE scan for ZYD devices...");
+        beginScan(knownAddress, knownName, stopCondition, true);
+    }
+
+    /** @param filtered use hardware filters; false for the unfiltered name-matched pass */
+    private void beginScan(String knownAddress, String knownName, ScanStopCondition stopCondition,
+                           boolean filtered) {
+        synchronized (discoveredDevices) {
+            discoveredDevices.clear();
+        }
+        scanStopCondition = stopCondition;
+        isScanning = true;
 
         ScanSettings settings = new ScanSettings.Builder()
                 .setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY)
                 .build();
 
-        bleScanner.startScan(null, settings, scanCallback);
+        List<ScanFilter> filters = filtered ? buildScanFilters(knownAddress, knownName) : null;
+        scanFiltered = filters != null;
+        Log.d(TAG, "Starting BLE scan for ZYD devices (" + (scanFiltered
+                ? filters.size() + " hardware filters" : "unfiltered") + ")...");
+        bleScanner.startScan(filters, settings, scanCallback);
+        ioHandler.postDelayed(scanTimeout, SCAN_DURATION_MS);
+    }
 
-        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-            if (bleScanner != null && isScanning) {
-                bleScanner.stopScan(scanCallback);
-                isScanning = false;
-                Log.d(TAG, "Scan completed - found " + discoveredDevices.size() + " ZYD devices");
-                listener.onScanCompleted(discoveredDevices);
-            }
-        }, 3000);
+    /** Stop an active scan now and report what was found so far. */
+    public void stopScanning() {
+        if (!BleIoThread.isCurrentThread()) {
+            ioHandler.post(this::stopScanning);
+            return;
+        }
+        if (isScanning) finishScan(false);
     }
 
+    private List<ScanFilter> buildScanFilters(String knownAddress, String knownName) {
+        List<ScanFilter> filters = new ArrayList<>(3);
+        filters.add(new ScanFilter.Builder()
+                .setServiceUuid(ParcelUuid.fromString(MAIN_SERVICE_UUID))
+                .build());
+        // Filters are OR-ed: a known scooter also matches by name or address
+        if (knownName != null && !knownName.isEmpty()) {
+            filters.add(new ScanFilter.Builder().setDeviceName(knownName).build());
+        }
+        if (knownAddress != null && BluetoothAdapter.checkBluetoothAddress(knownAddress)) {
+            filters.add(new ScanFilter.Builder().setDeviceAddress(knownAddress).build());
+        }
+        return filters;
+    }
+
+    /**
+     * BLE I/O thread only.
+     *
+     * @param timedOut the scan window ran out (as opposed to an explicit or early stop)
+     */
+    private void finishScan(boolean timedOut) {
+        ioHandler.removeCallbacks(scanTimeout);
+        if (bleScanner != null && isScanning) {
+            try { bleScanner.stopScan(scanCallback); } catch (Exception ignored) {}
+        }
+        isScanning = false;
+        ScanStopCondition stopCondition = scanStopCondition;
+        scanStopCondition = null;
+
+        if (timedOut && discoveredDevices.isEmpty() && scanFiltered) {
+            // The scooter may not advertise FFF0; fall back to one name-matched pass.
+            // The next scan starts filtered again.
+            Log.w(TAG, "Filtered scan found nothing - retrying without hardware filters");
+            beginScan(null, null, stopCondition, false);
+            return;
+        }
+
+        List<ScanResult> found = getDiscoveredDevices();
+        Log.d(TAG, "Scan completed - found " + found.size() + " ZYD devices");
+        listener.onScanCompleted(found);
+    }
+
+    // Delivered on the main thread; everything is handed to the BLE I/O thread
     private ScanCallback scanCallback = new ScanCallback() {
         @Override
         public void onScanResult(int callbackType, ScanResult result) {
-            BluetoothDevice device = result.getDevice();
-            String deviceName = device.getName();
-            int rssi = result.getRssi();
-
-            if (deviceName != null && deviceName.startsWith("ZYD")) {
-                boolean found = false;
-                for (int i = 0; i < discoveredDevices.size(); i++) {
-                    if (discoveredDevices.get(i).getDevice().getAddress().equals(device.getAddress())) {
-                        if (rssi > discoveredDevices.get(i).getRssi()) {
-                            discoveredDevices.set(i, result);
-                        }
-                        found = true;
-                        break;
-                    }
-                }
-                if (!found) {
-                    discoveredDevices.add(result);
-                    Log.d(TAG, "Found ZYD device: " + deviceName + " RSSI: " + rssi);
-                }
-            }
+            BleIoThread.run(() -> handleScanResult(result));
         }
 
         @Override
         public void onScanFailed(int errorCode) {
-            Log.e(TAG, "BLE scan failed: " + errorCode);
-            isScanning = false;
-            listener.onScanFailed("Scan failed: " + errorCode);
+            BleIoThread.run(() -> handleScanFailed(errorCode));
         }
     };
 
+    /** BLE I/O thread only. */
+    private void handleScanResult(ScanResult result) {
+        if (!isScanning) return;
+        BluetoothDevice device = result.getDevice();
+        String deviceName = device.getName();
+
+        // Hardware filters already matched; unfiltered scans still check the name
+        if (!scanFiltered && (deviceName == null || !deviceName.startsWith(DEVICE_NAME_PREFIX))) {
+            return;
+        }
+
+        String address = device.getAddress();
+        boolean isNew;
+        synchronized (discoveredDevices) {
+            ScanResult previous = discoveredDevices.get(address);
+            isNew = previous == null;
+            if (isNew || result.getRssi() > previous.getRssi()) {
+                discoveredDevices.put(address, result);
+            }
+        }
+        if (isNew) {
+            Log.d(TAG, "Found ZYD device: " + deviceName + " RSSI: " + result.getRssi());
+            listener.onDeviceFound(result);
+        }
+
+        ScanStopCondition stop = scanStopCondition;
+        if (stop != null && stop.isTarget(result)) {
+            Log.d(TAG, "Target device " + address + " seen - stopping scan early");
+            finishScan(false);
+        }
+    }
+
+    /** BLE I/O thread only. */
+    private void handleScanFailed(int errorCode) {
+        Log.e(TAG, "BLE scan failed: " + errorCode);
+        ioHandler.removeCallbacks(scanTimeout);
+        isScanning = false;
+        scanStopCondition = null;
+        listener.onScanFailed("Scan failed: " + errorCode);
+    }
+
     // ==================================================================================
     // CONNECTION
     // ==================================================================================
 
     public void connectToDevice(BluetoothDevice device) {
+        connectToDevice(device, false, 0);
+    }
+
+    /**
+     * Connect straight to a known MAC address without scanning first.
+     *
+     * @return false if the address is not a valid MAC (nothing was attempted)
+     */
+    public boolean connectToAddress(String address, boolean autoConnect, long timeoutMs) {
+        if (bluetoothAdapter == null || address == null
+                || !BluetoothAdapter.checkBluetoothAddress(address)) {
+            return false;
+        }
+        connectToDevice(bluetoothAdapter.getRemoteDevice(address), autoConnect, timeoutMs);
+        return true;
+    }
+
+    /**
+     * @param autoConnect false for a fast direct connect; true to let the stack attach
+     *                    whenever the device comes back into range (slower, no time limit)
+     * @param timeoutMs   report onConnectionFailed if the link is not up in time (0 = none)
+     */
+    public void connectToDevice(BluetoothDevice device, boolean autoConnect, long timeoutMs) {
+        if (!BleIoThread.isCurrentThread()) {
+            ioHandler.post(() -> connectToDevice(device, autoConnect, timeoutMs));
+            return;
+        }
         if (device == null) {
             listener.onConnectionFailed("Device is null");
             return;
@@ -219,91 +419,136 @@ public class BLEManager {
             return;
         }
 
-        bluetoothGatt = device.connectGatt(context, false, gattCallback);
+        cancelPendingConnect();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            // Have the stack deliver GATT callbacks straight onto the BLE I/O thread
+            bluetoothGatt = device.connectGatt(context, autoConnect, gattCallback,
+                    BluetoothDevice.TRANSPORT_LE, BluetoothDevice.PHY_LE_1M_MASK, ioHandler);
+        } else {
+            bluetoothGatt = device.connectGatt(context, autoConnect, gattCallback);
+        }
         if (bluetoothGatt == null) {
             listener.onConnectionFailed("Failed to create GATT connection");
+            return;
+        }
+        connectPending = true;
+        if (timeoutMs > 0) ioHandler.postDelayed(connectTimeout, timeoutMs);
+    }
+
+    /** Abandon a connect attempt whose link is not up yet (no callbacks are reported). */
+    private void cancelPendingConnect() {
+        ioHandler.removeCallbacks(connectTimeout);
+        if (connectPending || (bluetoothGatt != null && !isConnected)) {
+            connectPending = false;
+            forceDisconnectCleanup();
         }
     }
 
+    private void onConnectTimeout() {
+        if (!connectPending) return;
+        Log.w(TAG, "Connection attempt timed out");
+        connectPending = false;
+        forceDisconnectCleanup();
+        listener.onConnectionFailed("Connection timed out");
+    }
+
+    /**
+     * GATT callbacks. Each one hops onto the BLE I/O thread - on API 26+ the stack already
+     * delivers them there (see connectToDevice), below that they arrive on a binder thread
+     * and are posted. Characteristic values are captured before the hop because the
+     * characteristic object is overwritten by the next notification.
+     */
     private BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
         @Override
         public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
-            if (newState == BluetoothProfile.STATE_CONNECTED) {
-                isConnected = true;
-                listener.onConnectionStatusChanged("Connected - Requesting MTU...");
-                Log.d(TAG, "Connected to GATT server, requesting MTU 512");
-                // Request large MTU so firmware D2 packets (136 bytes) fit in a single write.
-                // onMtuChanged will trigger service discovery.
-                boolean mtuRequested = bluetoothGatt.requestMtu(512);
-                if (!mtuRequested) {
-                    Log.w(TAG, "MTU request failed, proceeding with default MTU");
-                    bluetoothGatt.discoverServices();
+            BleIoThread.run(() -> {
+                if (newState == BluetoothProfile.STATE_CONNECTED) {
+                    connectPending = false;
+                    ioHandler.removeCallbacks(connectTimeout);
+                    isConnected = true;
+                    listener.onConnectionStatusChanged("Connected - Requesting MTU...");
+                    Log.d(TAG, "Connected to GATT server, requesting MTU 512");
+                    // Request large MTU so firmware D2 packets (136 bytes) fit in a single write.
+                    // Service discovery is queued behind it and runs whatever the MTU result.
+                    gattQueue.clear();
+                    enqueueMtuRequest(512);
+                    enqueueServiceDiscovery();
+                    applyLinkProfile();
+
+                } else if (newState == BluetoothProfile.STATE_DISCONNECTED && connectPending) {
+                    // The link never came up (e.g. status 133 when the scooter is out of range)
+                    Log.w(TAG, "Connection attempt failed (status=" + status + ")");
+                    connectPending = false;
+                    ioHandler.removeCallbacks(connectTimeout);
+                    forceDisconnectCleanup();
+                    listener.onConnectionFailed("Connection failed (status=" + status + ")");
+
+                } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+                    Log.d(TAG, "Disconnected from GATT server");
+                    boolean wasExpected = !isConnected;
+                    forceDisconnectCleanup();
+                    listener.onDeviceDisconnected(wasExpected);
                 }
-
-            } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
-                Log.d(TAG, "Disconnected from GATT server");
-                boolean wasExpected = !isConnected;
-                forceDisconnectCleanup();
-                listener.onDeviceDisconnected(wasExpected);
-            }
+            });
         }
 
         @Override
         public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                negotiatedMtu = mtu;
-                Log.d(TAG, "MTU negotiated: " + mtu + " (usable payload: " + (mtu - 3) + " bytes)");
-            } else {
-                Log.w(TAG, "MTU negotiation failed (status=" + status + "), using default");
-            }
-            // Proceed with service discovery regardless of MTU result
-            listener.onConnectionStatusChanged("Connected - Discovering services...");
-            bluetoothGatt.discoverServices();
+            BleIoThread.run(() -> {
+                if (status == BluetoothGatt.GATT_SUCCESS) {
+                    negotiatedMtu = mtu;
+                    Log.d(TAG, "MTU negotiated: " + mtu + " (usable payload: " + (mtu - 3) + " bytes)");
+                } else {
+                    Log.w(TAG, "MTU negotiation failed (status=" + status + "), using default");
+                }
+                gattQueue.complete(GattOperationQueue.KIND_MTU, status == BluetoothGatt.GATT_SUCCESS);
+            });
+        }
+
+        @Override
+        public void onPhyUpdate(BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+            BleIoThread.run(() -> {
+                if (status == BluetoothGatt.GATT_SUCCESS) {
+                    BLEManager.this.txPhy = txPhy;
+                    BLEManager.this.rxPhy = rxPhy;
+                    Log.d(TAG, "PHY updated: " + getLinkDiagnostics());
+                } else {
+                    Log.w(TAG, "PHY update failed (status=" + status + ")");
+                }
+            });
+        }
+
+        // Hidden in the SDK but called by the stack on every connection parameter update
+        // (API 26+). Not annotated with @Override so it compiles against the public SDK.
+        public void onConnectionUpdated(BluetoothGatt gatt, int interval, int latency,
+                                        int timeout, int status) {
+            BleIoThread.run(() -> {
+                if (status == BluetoothGatt.GATT_SUCCESS) {
+                    connectionInterval = interval;
+                    connectionLatency = latency;
+                    Log.d(TAG, "Connection updated: " + getLinkDiagnostics());
+                }
+            });
         }
 
         @Override
         public void onServicesDiscovered(BluetoothGatt gatt, int status) {
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                Log.d(TAG, "Services discovered");
-                setupCharacteristics();
-            } else {
-                listener.onConnectionFailed("Service discovery failed: " + status);
-            }
+            BleIoThread.run(() -> {
+                gattQueue.complete(GattOperationQueue.KIND_DISCOVER_SERVICES, status == BluetoothGatt.GATT_SUCCESS);
+                if (status == BluetoothGatt.GATT_SUCCESS) {
+                    Log.d(TAG, "Services discovered");
+                    setupCharacteristics();
+                } else {
+                    listener.onConnectionFailed("Service discovery failed: " + status);
+                }
+            });
         }
 
         @Override
         public void onCharacteristicChanged(BluetoothGatt gatt,
                                             BluetoothGattCharacteristic characteristic) {
             byte[] rawData = characteristic.getValue();
-            if (rawData != null && rawData.length > 0) {
-                Log.d(TAG, "Raw BLE data: " + bytesToHex(rawData));
-
-                int header = rawData[0] & 0xFF;
-
-                // Auto-detect protocol header: some devices use 0xAB instead of 0xF0.
-                if (header == 0xAB && protocolHeader != 0xAB) {
-                    Log.d(TAG, "Detected 0xAB protocol header — switching to 0xAB mode");
-                    protocolHeader = 0xAB;
-                }
-
-                byte[] data = rawData;
-
-                // Check for firmware responses first — match protocol header + D0-D3 command
-                if (firmwareNotificationHandler != null && data.length >= 2) {
-                    boolean isFirmwareResponse = (header == 0xF0 || header == 0xAB) &&
-                            (data[1] == (byte) 0xD0 || data[1] == (byte) 0xD1 ||
-                             data[1] == (byte) 0xD2 || data[1] == (byte) 0xD3);
-
-                    if (isFirmwareResponse) {
-                        Log.d(TAG, "Firmware response detected: " + bytesToHex(data));
-                        firmwareNotificationHandler.onFirmwareResponse(data);
-                        return;
-                    }
-                }
-
-                // Forward decrypted data to listener
-                listener.onDataReceived(data);
-            }
+            BleIoThread.run(() -> handleNotification(rawData));
         }
 
         @Override
@@ -311,59 +556,105 @@ public class BLEManager {
                                          BluetoothGattCharacteristic characteristic, int status) {
             if (characteristic == null) {
                 Log.w(TAG, "onCharacteristicRead: characteristic is null, skipping");
-                readNextDeviceInfoCharacteristic();
+                BleIoThread.run(() -> gattQueue.complete(GattOperationQueue.KIND_READ, false));
                 return;
             }
-
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                byte[] data = characteristic.getValue();
-                String uuid = characteristic.getUuid().toString().toUpperCase();
-                String value = (data != null) ? new String(data).trim() : "";
-                Log.d(TAG, "CharRead " + uuid.substring(4, 8) + " = '" + value + "'");
-
-                if (uuid.contains("2A25")) {
-                    deviceSerialNumber = value;
-                } else if (uuid.contains("2A24")) {
-                    deviceModelNumber = value;
-                } else if (uuid.contains("2A27")) {
-                    deviceHardwareRevision = value;
-                } else if (uuid.contains("2A26")) {
-                    deviceFirmwareRevision = value;
-                } else if (uuid.contains("2A28")) {
-                    deviceSoftwareRevision = value;
-                } else if (uuid.contains("2A29")) {
-                    deviceManufacturer = value;
-                }
-            } else {
-                String uuid = characteristic.getUuid().toString().toUpperCase();
-                Log.w(TAG, "CharRead failed " + uuid.substring(4, 8) + " status=" + status);
-            }
-
-            // Continue reading the next characteristic in the queue
-            readNextDeviceInfoCharacteristic();
+            byte[] data = characteristic.getValue();
+            BleIoThread.run(() -> handleCharacteristicRead(characteristic, data, status));
         }
 
         @Override
         public void onCharacteristicWrite(BluetoothGatt gatt,
                                           BluetoothGattCharacteristic characteristic, int status) {
-            // Signal any waiting write latch (used by writeRawBytesAndWait)
-            if (writeLatch != null) {
-                writeLatch.countDown();
-            }
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                listener.onCommandSent(true, "Command sent");
-            } else {
-                listener.onCommandSent(false, "Write failed: " + status);
-            }
+            BleIoThread.run(() -> {
+                // Release the queue (also wakes a writeRawBytesAndWait caller)
+                gattQueue.complete(GattOperationQueue.KIND_WRITE, status == BluetoothGatt.GATT_SUCCESS);
+                if (status == BluetoothGatt.GATT_SUCCESS) {
+                    listener.onCommandSent(true, "Command sent");
+                } else {
+                    listener.onCommandSent(false, "Write failed: " + status);
+                }
+            });
         }
 
         @Override
         public void onDescriptorWrite(BluetoothGatt gatt,
                                       BluetoothGattDescriptor descriptor, int status) {
-            continueSetupAfterNotifications();
+            BleIoThread.run(() -> {
+                gattQueue.complete(GattOperationQueue.KIND_DESCRIPTOR_WRITE, status == BluetoothGatt.GATT_SUCCESS);
+            });
         }
     };
 
+    /** Inbound notification on FFF2. Runs on the BLE I/O thread. */
+    private void handleNotification(byte[] rawData) {
+        if (rawData != null && rawData.length > 0) {
+            // Hex-dumping every notification is costly mid-upload; only when debug logging is on
+            if (Log.isLoggable(TAG, Log.DEBUG)) Log.d(TAG, "Raw BLE data: " + bytesToHex(rawData));
+            TrafficCapture capture = trafficCapture;
+            if (capture != null) capture.recordRx(protocolHeader, rawData);
+
+            int header = rawData[0] & 0xFF;
+
+            // Auto-detect protocol header: some devices use 0xAB instead of 0xF0.
+            if (header == 0xAB && protocolHeader != 0xAB) {
+                Log.d(TAG, "Detected 0xAB protocol header — switching to 0xAB mode");
+                protocolHeader = 0xAB;
+            }
+
+            // During a firmware upload, cut frames out first so D0-D3 replies can be routed
+            if (firmwareNotificationHandler != null) {
+                firmwareFrames.feed(rawData);
+                return;
+            }
+
+            // Forward decrypted data to listener
+            listener.onDataReceived(rawData);
+        }
+    }
+
+    /** Whole frame cut from the notifications during a firmware upload. BLE I/O thread. */
+    private void routeFirmwareFrame(byte[] frame) {
+        int cmd = frame[1] & 0xFF;
+        FirmwareNotificationHandler handler = firmwareNotificationHandler;
+        if (handler != null && cmd >= CommandEncoder.CMD_REQUEST_UPGRADE
+                && cmd <= CommandEncoder.CMD_COMPLETE_UPLOAD) {
+            handler.onFirmwareResponse(frame);
+            return;
+        }
+        listener.onDataReceived(frame);
+    }
+
+    /** Device Information read result. Runs on the BLE I/O thread. */
+    private void handleCharacteristicRead(BluetoothGattCharacteristic characteristic,
+                                          byte[] data, int status) {
+        if (status == BluetoothGatt.GATT_SUCCESS) {
+            String uuid = characteristic.getUuid().toString().toUpperCase();
+            String value = (data != null) ? new String(data).trim() : "";
+            Log.d(TAG, "CharRead " + uuid.substring(4, 8) + " = '" + value + "'");
+
+            if (uuid.contains("2A25")) {
+                deviceSerialNumber = value;
+            } else if (uuid.contains("2A24")) {
+                deviceModelNumber = value;
+            } else if (uuid.contains("2A27")) {
+                deviceHardwareRevision = value;
+            } else if (uuid.contains("2A26")) {
+                deviceFirmwareRevision = value;
+            } else if (uuid.contains("2A28")) {
+                deviceSoftwareRevision = value;
+            } else if (uuid.contains("2A29")) {
+                deviceManufacturer = value;
+            }
+        } else {
+            String uuid = characteristic.getUuid().toString().toUpperCase();
+            Log.w(TAG, "CharRead failed " + uuid.substring(4, 8) + " status=" + status);
+        }
+
+        // Release the queue so the next read (or the completion step) runs
+        gattQueue.complete(GattOperationQueue.KIND_READ, status == BluetoothGatt.GATT_SUCCESS);
+    }
+
     // ==================================================================================
     // CHARACTERISTIC SETUP
     // ==================================================================================
@@ -393,14 +684,12 @@ public class BLEManager {
                         BluetoothGattDescriptor descriptor = notifyCharacteristic.getDescriptor(
                                 UUID.fromString(CLIENT_CHARACTERISTIC_CONFIG_UUID));
                         if (descriptor != null) {
-                            descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
-                            bluetoothGatt.writeDescriptor(descriptor);
-                        } else {
-                            continueSetupAfterNotifications();
+                            enqueueDescriptorWrite(descriptor,
+                                    BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
                         }
-                    } else {
-                        continueSetupAfterNotifications();
                     }
+                    // Queued behind the CCCD write, so reads start the moment it completes
+                    readDeviceInformation();
                 } else {
                     listener.onConnectionFailed("Required characteristics not found");
                 }
@@ -412,10 +701,6 @@ public class BLEManager {
         }
     }
 
-    private void continueSetupAfterNotifications() {
-        new Handler(Looper.getMainLooper()).postDelayed(this::readDeviceInformation, 500);
-    }
-
     private void readDeviceInformation() {
         try {
             BluetoothGattService deviceInfoService =
@@ -423,30 +708,32 @@ public class BLEManager {
 
             if (deviceInfoService == null) {
                 Log.w(TAG, "Device Information Service (180A) not found");
-                completeConnectionSetupWithoutSerial();
+                enqueueLocal("completeSetupWithoutSerial", this::completeConnectionSetupWithoutSerial);
                 return;
             }
 
-            // Build a queue of all characteristics to read
-            deviceInfoReadQueue.clear();
-            String[] uuids = { SERIAL_NUMBER_UUID, MODEL_NUMBER_UUID, HARDWARE_REV_UUID,
-                               FIRMWARE_REV_UUID, SOFTWARE_REV_UUID, MANUFACTURER_UUID };
-            for (String uuid : uuids) {
-                BluetoothGattCharacteristic c =
-                        deviceInfoService.getCharacteristic(UUID.fromString(uuid));
-                if (c != null) {
-                    deviceInfoReadQueue.add(uuid);
-                }
+            // Known scooter with an unchanged GATT table: report the cached values at once
+            discoveredLayout = GattMetadataCache.describeLayout(bluetoothGatt.getServices());
+            GattMetadataCache.Entry cached = metadataCache.get(getConnectedAddress());
+            if (cached != null && discoveredLayout.equals(cached.serviceLayout)) {
+                applyDeviceInformation(cached);
+                Log.d(TAG, "Using cached Device Info (saved " + cached.savedAt + ")");
+                enqueueLocal("deviceInfoCached", this::onDeviceInformationRead);
+                return;
             }
 
-            if (deviceInfoReadQueue.isEmpty()) {
+            int count = enqueueDeviceInformationReads(deviceInfoService);
+            if (count == 0) {
                 Log.w(TAG, "No Device Info characteristics found");
-                completeConnectionSetupWithoutSerial();
+                enqueueLocal("completeSetupWithoutSerial", this::completeConnectionSetupWithoutSerial);
                 return;
             }
 
-            Log.d(TAG, "Reading " + deviceInfoReadQueue.size() + " Device Info characteristics");
-            readNextDeviceInfoCharacteristic();
+            Log.d(TAG, "Reading " + count + " Device Info characteristics");
+            enqueueLocal("deviceInfoComplete", () -> {
+                saveDeviceInformation(null);
+                onDeviceInformationRead();
+            });
 
         } catch (Exception e) {
             Log.e(TAG, "Error reading device info: " + e.getMessage());
@@ -454,50 +741,112 @@ public class BLEManager {
         }
     }
 
-    private void readNextDeviceInfoCharacteristic() {
-        if (deviceInfoReadQueue.isEmpty()) {
-            // All done — report results
-            Log.d(TAG, "Device Info complete: SN='" + deviceSerialNumber
-                    + "' model='" + deviceModelNumber
-                    + "' hwRev='" + deviceHardwareRevision
-                    + "' fwRev='" + deviceFirmwareRevision
-                    + "' swRev='" + deviceSoftwareRevision
-                    + "' mfr='" + deviceManufacturer + "'");
+    /** Queue a read for every 180A characteristic present. Returns how many were queued. */
+    private int enqueueDeviceInformationReads(BluetoothGattService deviceInfoService) {
+        String[] uuids = { SERIAL_NUMBER_UUID, MODEL_NUMBER_UUID, HARDWARE_REV_UUID,
+                           FIRMWARE_REV_UUID, SOFTWARE_REV_UUID, MANUFACTURER_UUID };
+        int count = 0;
+        for (String uuid : uuids) {
+            BluetoothGattCharacteristic c =
+                    deviceInfoService.getCharacteristic(UUID.fromString(uuid));
+            if (c != null) {
+                enqueueRead(c);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void onDeviceInformationRead() {
+        // All done — report results
+        Log.d(TAG, "Device Info complete: SN='" + deviceSerialNumber
+                + "' model='" + deviceModelNumber
+                + "' hwRev='" + deviceHardwareRevision
+                + "' fwRev='" + deviceFirmwareRevision
+                + "' swRev='" + deviceSoftwareRevision
+                + "' mfr='" + deviceManufacturer + "'");
+
+        // Notify listener of all device info
+        listener.onDeviceInfoRead(deviceHardwareRevision, deviceFirmwareRevision,
+                deviceModelNumber, deviceManufacturer);
+
+        if (deviceSerialNumber != null && !deviceSerialNumber.isEmpty()) {
+            listener.onSerialNumberRead(deviceSerialNumber);
+            completeConnectionSetup();
+        } else {
+            completeConnectionSetupWithoutSerial();
+        }
+    }
+
+    /**
+     * Tie the cached Device Information to the firmware the scooter reports in B0.
+     * The first report after a fresh read is recorded; a different one later means
+     * the scooter was updated, so the 180A values are re-read in the background and
+     * re-reported through {@link BLEListener#onDeviceInfoRead}.
+     *
+     * @param fingerprint the B0 software versions (controller/meter/BMS) as one string
+     */
+    public void onFirmwareVersionReported(String fingerprint) {
+        if (fingerprint == null) return;
+        BleIoThread.run(() -> {
+            if (!isConnected || bluetoothGatt == null) return;
+            GattMetadataCache.Entry cached = metadataCache.get(getConnectedAddress());
+            if (cached == null || fingerprint.equals(cached.firmwareFingerprint)) return;
+            if (cached.firmwareFingerprint == null) {
+                cached.firmwareFingerprint = fingerprint;
+                metadataCache.put(getConnectedAddress(), cached);
+                return;
+            }
+            Log.i(TAG, "Firmware changed (" + cached.firmwareFingerprint + " -> " + fingerprint
+                    + "), refreshing Device Info");
+            refreshDeviceInformation(fingerprint);
+        });
+    }
 
-            // Notify listener of all device info
+    /** Re-read 180A behind whatever is queued and replace the cache entry. */
+    private void refreshDeviceInformation(String fingerprint) {
+        BluetoothGattService deviceInfoService =
+                bluetoothGatt.getService(UUID.fromString(DEVICE_INFO_SERVICE_UUID));
+        if (deviceInfoService == null || enqueueDeviceInformationReads(deviceInfoService) == 0) {
+            metadataCache.remove(getConnectedAddress());
+            return;
+        }
+        String previousSerial = deviceSerialNumber;
+        enqueueLocal("deviceInfoRefreshed", () -> {
+            saveDeviceInformation(fingerprint);
             listener.onDeviceInfoRead(deviceHardwareRevision, deviceFirmwareRevision,
                     deviceModelNumber, deviceManufacturer);
-
-            if (deviceSerialNumber != null && !deviceSerialNumber.isEmpty()) {
+            if (deviceSerialNumber != null && !deviceSerialNumber.equals(previousSerial)) {
                 listener.onSerialNumberRead(deviceSerialNumber);
-                completeConnectionSetup();
-            } else {
-                completeConnectionSetupWithoutSerial();
             }
-            return;
-        }
+        });
+    }
 
-        String uuid = deviceInfoReadQueue.remove(0);
-        try {
-            BluetoothGattService svc =
-                    bluetoothGatt.getService(UUID.fromString(DEVICE_INFO_SERVICE_UUID));
-            BluetoothGattCharacteristic c =
-                    svc.getCharacteristic(UUID.fromString(uuid));
+    private void applyDeviceInformation(GattMetadataCache.Entry entry) {
+        deviceSerialNumber = entry.serialNumber;
+        deviceModelNumber = entry.modelNumber;
+        deviceHardwareRevision = entry.hardwareRevision;
+        deviceFirmwareRevision = entry.firmwareRevision;
+        deviceSoftwareRevision = entry.softwareRevision;
+        deviceManufacturer = entry.manufacturer;
+    }
 
-            if (c != null) {
-                boolean success = bluetoothGatt.readCharacteristic(c);
-                Log.d(TAG, "readCharacteristic(" + uuid.substring(4, 8) + ") = " + success);
-                if (!success) {
-                    // Skip this one, try next
-                    readNextDeviceInfoCharacteristic();
-                }
-            } else {
-                readNextDeviceInfoCharacteristic();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error reading " + uuid + ": " + e.getMessage());
-            readNextDeviceInfoCharacteristic();
-        }
+    private void saveDeviceInformation(String fingerprint) {
+        GattMetadataCache.Entry entry = new GattMetadataCache.Entry();
+        entry.serialNumber = deviceSerialNumber;
+        entry.modelNumber = deviceModelNumber;
+        entry.hardwareRevision = deviceHardwareRevision;
+        entry.firmwareRevision = deviceFirmwareRevision;
+        entry.softwareRevision = deviceSoftwareRevision;
+        entry.manufacturer = deviceManufacturer;
+        entry.serviceLayout = discoveredLayout;
+        entry.firmwareFingerprint = fingerprint;
+        metadataCache.put(getConnectedAddress(), entry);
+    }
+
+    private String getConnectedAddress() {
+        return bluetoothGatt != null && bluetoothGatt.getDevice() != null
+                ? bluetoothGatt.getDevice().getAddress() : null;
     }
 
     private void completeConnectionSetupWithoutSerial() {
@@ -527,9 +876,11 @@ public class BLEManager {
 
     /** Request running data (0xA0 packet) to wake up the protocol. */
     public boolean requestRunningData() {
-        byte[] packet = createCommand(0xA0);
+        byte[] packet = createCommand(CommandEncoder.CMD_RUNNING_DATA);
         boolean success = sendCommand(packet);
-        Log.d(TAG, "Sent running data request: " + bytesToHex(packet) + " success=" + success);
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Sent running data request: " + bytesToHex(packet) + " success=" + success);
+        }
         return success;
     }
 
@@ -537,29 +888,25 @@ public class BLEManager {
     public boolean requestVersionInfo() {
         byte[] packet = createCommand(PACKET_VERSION_INFO);
         boolean success = sendCommand(packet);
-        Log.d(TAG, "Sent version info request: " + bytesToHex(packet) + " success=" + success);
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Sent version info request: " + bytesToHex(packet) + " success=" + success);
+        }
         return success;
     }
 
     /** Request BMS data (0xA1 packet) from the scooter. */
     public boolean requestBMSData() {
-        byte[] packet = createCommand(0xA1);
+        byte[] packet = createCommand(CommandEncoder.CMD_BMS_DATA);
         boolean success = sendCommand(packet);
-        Log.d(TAG, "Sent BMS data request: " + bytesToHex(packet) + " success=" + success);
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Sent BMS data request: " + bytesToHex(packet) + " success=" + success);
+        }
         return success;
     }
 
-    /** Create a 5-byte command packet with header, type, length and CRC16. */
+    /** 5-byte command packet with header, type, length and CRC16 (pre-encoded, shared). */
     private byte[] createCommand(int packetType) {
-        byte[] packet = new byte[5];
-        packet[0] = (byte) protocolHeader;
-        packet[1] = (byte) packetType;
-        packet[2] = (byte) 0x05;
-
-        int crc = calculateCRC16(packet, 3);
-        packet[3] = (byte) (crc & 0xFF);
-        packet[4] = (byte) ((crc >> 8) & 0xFF);
-        return packet;
+        return CommandEncoder.request(protocolHeader, packetType);
     }
 
     /** Set the protocol header byte (0xF0 standard, 0xAB for some devices). */
@@ -568,18 +915,20 @@ public class BLEManager {
         Log.d(TAG, "Protocol header set to 0x" + String.format("%02X", header));
     }
 
+    @Override
     public int getProtocolHeader() { return protocolHeader; }
 
-    /** Send raw command bytes to the control characteristic. */
+    /**
+     * Queue raw command bytes for the control characteristic.
+     * Returns true once queued; the write is issued when every earlier GATT operation
+     * has completed, and onCommandSent reports the outcome.
+     */
+    @Override
     public boolean sendCommand(byte[] command) {
         if (bluetoothGatt != null && controlCharacteristic != null && isConnected) {
-            Log.d(TAG, "sendCommand: " + bytesToHex(command));
-            controlCharacteristic.setValue(command);
-            boolean success = bluetoothGatt.writeCharacteristic(controlCharacteristic);
-            if (!success) {
-                Log.e(TAG, "Failed to write characteristic");
-            }
-            return success;
+            if (Log.isLoggable(TAG, Log.DEBUG)) Log.d(TAG, "sendCommand: " + bytesToHex(command));
+            enqueueWrite(command, WRITE_TIMEOUT_MS, null);
+            return true;
         } else {
             Log.e(TAG, "Cannot send command - not ready");
             return false;
@@ -592,54 +941,78 @@ public class BLEManager {
      */
     public boolean writeRawBytes(byte[] data) {
         if (bluetoothGatt != null && controlCharacteristic != null && isConnected) {
-            controlCharacteristic.setValue(data);
-            boolean success = bluetoothGatt.writeCharacteristic(controlCharacteristic);
-            if (!success) {
-                Log.e(TAG, "Failed to write raw bytes");
-            }
-            return success;
+            enqueueWrite(data, WRITE_TIMEOUT_MS, null);
+            return true;
         } else {
             Log.e(TAG, "Cannot write raw bytes - not ready");
             return false;
         }
     }
 
+    /** FFF1 advertises PROPERTY_WRITE_NO_RESPONSE. False until the services are discovered. */
+    @Override
+    public boolean supportsWriteWithoutResponse() {
+        BluetoothGattCharacteristic c = controlCharacteristic;
+        return c != null
+                && (c.getProperties() & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE) != 0;
+    }
+
+    /**
+     * Queue a write without response (WRITE_TYPE_NO_RESPONSE) to the control
+     * characteristic. The characteristic's own write type is left as it was.
+     */
+    @Override
+    public boolean writeWithoutResponse(byte[] data) {
+        if (bluetoothGatt != null && controlCharacteristic != null && isConnected) {
+            enqueueWrite(data, WRITE_TIMEOUT_MS, BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE, null);
+            return true;
+        } else {
+            Log.e(TAG, "Cannot write without response - not ready");
+            return false;
+        }
+    }
+
     /**
      * Write raw bytes and BLOCK until the onCharacteristicWrite callback fires (or timeout).
-     * This is essential for multi-write chunking: Android BLE requires each write to
-     * complete before the next one is issued, otherwise writes are silently dropped.
+     * The write goes through the GATT operation queue like every other write, so it
+     * waits for any operation already in flight. Must not be called on the main thread
+     * or the BLE I/O thread.
      *
      * @param data      bytes to write
      * @param timeoutMs max time to wait for write callback
      * @return true if write succeeded and callback received within timeout
      */
+    @Override
     public boolean writeRawBytesAndWait(byte[] data, long timeoutMs) {
         if (bluetoothGatt == null || controlCharacteristic == null || !isConnected) {
             Log.e(TAG, "Cannot write raw bytes - not ready");
             return false;
         }
-
-        writeLatch = new CountDownLatch(1);
-        controlCharacteristic.setValue(data);
-        boolean success = bluetoothGatt.writeCharacteristic(controlCharacteristic);
-        if (!success) {
-            Log.e(TAG, "Failed to write raw bytes (writeCharacteristic returned false)");
-            writeLatch = null;
+        if (BleIoThread.isCurrentThread()) {
+            // The write callback is delivered on this thread, so waiting here would deadlock
+            Log.e(TAG, "writeRawBytesAndWait called on the BLE I/O thread");
             return false;
         }
 
+        CountDownLatch latch = new CountDownLatch(1);
+        boolean[] result = new boolean[1];
+        enqueueWrite(data, timeoutMs, success -> {
+            result[0] = success;
+            latch.countDown();
+        });
+
         try {
-            boolean completed = writeLatch.await(timeoutMs, TimeUnit.MILLISECONDS);
+            // The queue times the operation out itself; the extra margin only covers
+            // time spent waiting behind earlier operations
+            boolean completed = latch.await(timeoutMs + WRITE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
             if (!completed) {
                 Log.e(TAG, "writeRawBytesAndWait: timeout after " + timeoutMs + "ms");
                 return false;
             }
-            return true;
+            return result[0];
         } catch (InterruptedException e) {
             Log.e(TAG, "writeRawBytesAndWait: interrupted");
             return false;
-        } finally {
-            writeLatch = null;
         }
     }
 
@@ -655,16 +1028,295 @@ public class BLEManager {
         }
     }
 
+    // ==================================================================================
+    // GATT OPERATION QUEUE
+    // ==================================================================================
+
+    /** Receives the outcome of a queued write. */
+    @FunctionalInterface
+    interface WriteCallback {
+        void onWriteComplete(boolean success);
+    }
+
+    /**
+     * Queue a write to the control characteristic. The value is set on the characteristic
+     * only when the write starts, so queued writes never overwrite each other. Every frame
+     * is copied because callers may reuse pooled buffers once we return, and setValue
+     * keeps the array it is given.
+     */
+    private void enqueueWrite(byte[] data, long timeoutMs, WriteCallback callback) {
+        enqueueWrite(data, timeoutMs, WRITE_TYPE_CURRENT, callback);
+    }
+
+    /**
+     * As above with an explicit write type for this one write. The stack reads the
+     * write type when writeCharacteristic() is called, so it is restored right after.
+     */
+    private void enqueueWrite(byte[] data, long timeoutMs, int writeType, WriteCallback callback) {
+        byte[] value = data.clone();
+        gattQueue.enqueue(new GattOperationQueue.Operation("write", GattOperationQueue.KIND_WRITE, timeoutMs) {
+            @Override
+            protected int execute() {
+                BluetoothGatt gatt = bluetoothGatt;
+                BluetoothGattCharacteristic c = controlCharacteristic;
+                if (gatt == null || c == null) return GattOperationQueue.FAILED;
+                c.setValue(value);
+                int previousType = c.getWriteType();
+                if (writeType != WRITE_TYPE_CURRENT) c.setWriteType(writeType);
+                boolean started = gatt.writeCharacteristic(c);
+                c.setWriteType(previousType);
+                if (!started) {
+                    Log.e(TAG, "Failed to write characteristic");
+                    return GattOperationQueue.FAILED;
+                }
+                captureTx(value);
+                return GattOperationQueue.STARTED;
+            }
+
+            @Override
+            protected void onComplete(boolean success) {
+                if (callback != null) callback.onWriteComplete(success);
+            }
+        });
+    }
+
+    private void enqueueRead(BluetoothGattCharacteristic characteristic) {
+        String shortUuid = characteristic.getUuid().toString().toUpperCase().substring(4, 8);
+        gattQueue.enqueue(new GattOperationQueue.Operation("read " + shortUuid,
+                GattOperationQueue.KIND_READ, READ_TIMEOUT_MS) {
+            @Override
+            protected int execute() {
+                BluetoothGatt gatt = bluetoothGatt;
+                if (gatt == null) return GattOperationQueue.FAILED;
+                boolean success = gatt.readCharacteristic(characteristic);
+                Log.d(TAG, "readCharacteristic(" + shortUuid + ") = " + success);
+                return success ? GattOperationQueue.STARTED : GattOperationQueue.FAILED;
+            }
+        });
+    }
+
+    private void enqueueDescriptorWrite(BluetoothGattDescriptor descriptor, byte[] value) {
+        gattQueue.enqueue(new GattOperationQueue.Operation("writeDescriptor",
+                GattOperationQueue.KIND_DESCRIPTOR_WRITE, DESCRIPTOR_TIMEOUT_MS) {
+            @Override
+            protected int execute() {
+                BluetoothGatt gatt = bluetoothGatt;
+                if (gatt == null) return GattOperationQueue.FAILED;
+                descriptor.setValue(value);
+                return gatt.writeDescriptor(descriptor)
+                        ? GattOperationQueue.STARTED : GattOperationQueue.FAILED;
+            }
+        });
+    }
+
+    private void enqueueMtuRequest(int mtu) {
+        gattQueue.enqueue(new GattOperationQueue.Operation("requestMtu " + mtu,
+                GattOperationQueue.KIND_MTU, MTU_TIMEOUT_MS) {
+            @Override
+            protected int execute() {
+                BluetoothGatt gatt = bluetoothGatt;
+                if (gatt == null) return GattOperationQueue.FAILED;
+                if (!gatt.requestMtu(mtu)) {
+                    Log.w(TAG, "MTU request failed, proceeding with default MTU");
+                    return GattOperationQueue.FAILED;
+                }
+                return GattOperationQueue.STARTED;
+            }
+        });
+    }
+
+    // ==================================================================================
+    // LINK PROFILES
+    // ==================================================================================
+
+    /**
+     * Ask for at least {@code profile} on this link until {@link #releaseLinkProfile}
+     * is called with the same owner. Claims survive reconnects and are applied as soon
+     * as a link is up.
+     */
+    public void requestLinkProfile(String owner, LinkProfile profile) {
+        synchronized (linkProfileClaims) {
+            if (linkProfileClaims.put(owner, profile) == profile) return;
+        }
+        BleIoThread.run(this::applyLinkProfile);
+    }
+
+    public void releaseLinkProfile(String owner) {
+        synchronized (linkProfileClaims) {
+            if (linkProfileClaims.remove(owner) == null) return;
+        }
+        BleIoThread.run(this::applyLinkProfile);
+    }
+
+    /** The most demanding claimed profile, or IDLE when there are no claims. */
+    public LinkProfile getLinkProfile() {
+        LinkProfile effective = LinkProfile.IDLE;
+        synchronized (linkProfileClaims) {
+            for (LinkProfile p : linkProfileClaims.values()) {
+                if (p.ordinal() > effective.ordinal()) effective = p;
+            }
+        }
+        return effective;
+    }
+
+    /** Profile in effect plus the link parameters the stack reported, for logs and support. */
+    public String getLinkDiagnostics() {
+        int interval = connectionInterval;
+        return "profile=" + (appliedLinkProfile != null ? appliedLinkProfile.label : "none")
+                + " interval=" + (interval >= 0 ? (interval * 1.25f) + "ms" : "?")
+                + " latency=" + (connectionLatency >= 0 ? connectionLatency : "?")
+                + " phy=" + phyName(txPhy) + "/" + phyName(rxPhy)
+                + " mtu=" + negotiatedMtu;
+    }
+
+    private static String phyName(int phy) {
+        switch (phy) {
+            case BluetoothDevice.PHY_LE_1M: return "1M";
+            case BluetoothDevice.PHY_LE_2M: return "2M";
+            case -1: return "?";
+            default: return "coded";
+        }
+    }
+
+    /** Queue the settings for the effective profile behind the current GATT traffic. */
+    private void applyLinkProfile() {
+        if (!isConnected || bluetoothGatt == null) return;
+        LinkProfile profile = getLinkProfile();
+        if (profile == appliedLinkProfile) return;
+        appliedLinkProfile = profile;
+        enqueueLocal("linkProfile " + profile.label, () -> {
+            BluetoothGatt gatt = bluetoothGatt;
+            if (gatt == null) return;
+            boolean priorityOk = gatt.requestConnectionPriority(profile.connectionPriority);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                gatt.setPreferredPhy(profile.phyMask, profile.phyMask,
+                        BluetoothDevice.PHY_OPTION_NO_PREFERRED);
+            }
+            Log.i(TAG, "Link profile " + profile.label + " (priority "
+                    + (priorityOk ? "set" : "rejected") + "), " + getLinkDiagnostics());
+            // Checked here, after any MTU exchange queued ahead of this step has finished
+            if (negotiatedMtu < profile.mtu) {
+                enqueueMtuRequest(profile.mtu);
+            }
+        });
+    }
+
+    private void enqueueServiceDiscovery() {
+        gattQueue.enqueue(new GattOperationQueue.Operation("discoverServices",
+                GattOperationQueue.KIND_DISCOVER_SERVICES, DISCOVER_TIMEOUT_MS) {
+            @Override
+            protected int execute() {
+                BluetoothGatt gatt = bluetoothGatt;
+                if (gatt == null) return GattOperationQueue.FAILED;
+                listener.onConnectionStatusChanged("Connected - Discovering services...");
+                if (!gatt.discoverServices()) {
+                    listener.onConnectionFailed("Service discovery could not be started");
+                    return GattOperationQueue.FAILED;
+                }
+                return GattOperationQueue.STARTED;
+            }
+        });
+    }
+
+    /** Queue a step that runs once every operation ahead of it has completed. */
+    private void enqueueLocal(String name, Runnable step) {
+        gattQueue.enqueue(new GattOperationQueue.Operation(name,
+                GattOperationQueue.KIND_LOCAL, READ_TIMEOUT_MS) {
+            @Override
+            protected int execute() {
+                step.run();
+                return GattOperationQueue.DONE;
+            }
+        });
+    }
+
+    public GattOperationQueue getGattQueue() { return gattQueue; }
+
+    /** Handler for the BLE I/O thread that delivers this manager's callbacks. */
+    public Handler getIoHandler() { return ioHandler; }
+
+    // ==================================================================================
+    // TRAFFIC CAPTURE
+    // ==================================================================================
+
+    /**
+     * Start recording all notifications and writes to a new binary capture file in
+     * the app's files dir ("captures/"). Only the newest few captures are kept.
+     * Replace any capture already running.
+     *
+     * @return the capture file, or null if it could not be created
+     */
+    public File startCapture() {
+        stopCapture();
+        File dir = new File(context.getFilesDir(), CAPTURE_DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.e(TAG, "Cannot create capture dir " + dir);
+            return null;
+        }
+        pruneCaptures(dir, MAX_CAPTURE_FILES - 1);
+        File file = new File(dir, "capture-" + System.currentTimeMillis() + TrafficCapture.FILE_EXTENSION);
+        try {
+            trafficCapture = TrafficCapture.open(file);
+            Log.d(TAG, "Traffic capture started: " + file);
+            return file;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to start traffic capture", e);
+            return null;
+        }
+    }
+
+    /** Stop recording and finalize the capture file. @return the file, or null if not capturing */
+    public File stopCapture() {
+        TrafficCapture capture = trafficCapture;
+        if (capture == null) return null;
+        trafficCapture = null;
+        try {
+            capture.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to close traffic capture", e);
+        }
+        Log.d(TAG, "Traffic capture stopped: " + capture.getFile() + " ("
+                + capture.getRecordCount() + " records, " + capture.getSizeBytes() + " bytes)");
+        return capture.getFile();
+    }
+
+    public TrafficCapture getTrafficCapture() { return trafficCapture; }
+
+    private void captureTx(byte[] data) {
+        TrafficCapture capture = trafficCapture;
+        if (capture != null) capture.recordTx(protocolHeader, data);
+    }
+
+    /** Delete the oldest captures so that at most {@code keep} remain. */
+    private static void pruneCaptures(File dir, int keep) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(TrafficCapture.FILE_EXTENSION));
+        if (files == null || files.length <= keep) return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (int i = 0; i < files.length - keep; i++) {
+            if (!files[i].delete()) Log.w(TAG, "Could not delete old capture " + files[i]);
+        }
+    }
+
     // ==================================================================================
     // DISCONNECT
     // ==================================================================================
 
     public void disconnect() {
+        if (!BleIoThread.isCurrentThread()) {
+            ioHandler.post(this::disconnect);
+            return;
+        }
         listener.onConnectionStatusChanged("Disconnecting...");
+        if (connectPending) {
+            // Nothing to tear down on the scooter side; just abandon the attempt
+            cancelPendingConnect();
+            listener.onDeviceDisconnected(true);
+            return;
+        }
         if (bluetoothGatt != null) {
             try {
                 bluetoothGatt.disconnect();
-                new Handler(Looper.getMainLooper()).postDelayed(() -> {
+                ioHandler.postDelayed(() -> {
                     if (isConnected) {
                         forceDisconnectCleanup();
                         listener.onDeviceDisconnected(true);
@@ -680,8 +1332,16 @@ public class BLEManager {
         }
     }
 
+    // BLE I/O thread only
     private void forceDisconnectCleanup() {
         isConnected = false;
+        gattQueue.clear();
+        appliedLinkProfile = null;
+        negotiatedMtu = 23;
+        connectionInterval = -1;
+        connectionLatency = -1;
+        txPhy = -1;
+        rxPhy = -1;
         deviceSerialNumber = "";
         deviceModelNumber = "";
         deviceHardwareRevision = "";
@@ -697,11 +1357,17 @@ public class BLEManager {
     }
 
     public void cleanup() {
+        if (!BleIoThread.isCurrentThread()) {
+            ioHandler.post(this::cleanup);
+            return;
+        }
         if (isScanning && bleScanner != null) {
             try { bleScanner.stopScan(scanCallback); } catch (Exception ignored) {}
             isScanning = false;
         }
+        ioHandler.removeCallbacks(scanTimeout);
         disconnect();
+        stopCapture();
     }
 
     // ==================================================================================
@@ -716,11 +1382,15 @@ public class BLEManager {
         return ProtocolUtils.bytesToHex(bytes);
     }
 
+    @Override
     public boolean isConnected() { return isConnected; }
+    /** True while a connectGatt attempt (including a background autoConnect) is outstanding. */
+    public boolean isConnectPending() { return connectPending; }
     public boolean isScanning() { return isScanning; }
     /** Returns the negotiated MTU. Usable ATT payload = MTU - 3. */
     public int getNegotiatedMtu() { return negotiatedMtu; }
     /** Returns the max bytes that can be sent in a single BLE write (MTU - 3). */
+    @Override
     public int getMaxWriteSize() { return negotiatedMtu - 3; }
     public String getDeviceSerialNumber() { return deviceSerialNumber != null ? deviceSerialNumber : ""; }
     public String getDeviceModelNumber() { return deviceModelNumber != null ? deviceModelNumber : ""; }
@@ -731,5 +1401,9 @@ public class BLEManager {
     public boolean isBluetoothAvailable() { return bluetoothAdapter != null && bluetoothAdapter.isEnabled(); }
     public BluetoothGatt getBluetoothGatt() { return bluetoothGatt; }
     public BluetoothGattCharacteristic getControlCharacteristic() { return controlCharacteristic; }
-    public List<ScanResult> getDiscoveredDevices() { return new ArrayList<>(discoveredDevices); }
+    public List<ScanResult> getDiscoveredDevices() {
+        synchronized (discoveredDevices) {
+            return new ArrayList<>(discoveredDevices.values());
+        }
+    }
 }
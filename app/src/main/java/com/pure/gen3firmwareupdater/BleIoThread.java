@@ -0,0 +1,53 @@
+package com.pure.gen3firmwareupdater;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+/**
+ * Process-wide BLE I/O thread.
+ *
+ * Owns everything on the BLE data path: GATT callbacks, the GATT operation queue
+ * and its timeouts, frame reassembly, packet parsing, request correlation and
+ * feeding the ride recorder. The UI thread only receives coalesced results
+ * (see {@link CoalescingUiUpdater}), so a slow frame in the dashboard never
+ * delays BLE handling and a burst of notifications never stalls the UI.
+ *
+ * Started lazily and never quit; it idles on its Looper while disconnected.
+ */
+public final class BleIoThread {
+
+    private static HandlerThread thread;
+    private static Handler handler;
+
+    private BleIoThread() {}
+
+    /** Handler bound to the BLE I/O thread (started on first use). */
+    public static synchronized Handler getHandler() {
+        if (handler == null) {
+            thread = new HandlerThread("BLE-IO", Process.THREAD_PRIORITY_FOREGROUND);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        return handler;
+    }
+
+    /** True if the caller is running on the BLE I/O thread. */
+    public static boolean isCurrentThread() {
+        Handler h;
+        synchronized (BleIoThread.class) {
+            h = handler;
+        }
+        return h != null && h.getLooper() == Looper.myLooper();
+    }
+
+    /** Run {@code task} on the BLE I/O thread: inline if already there, otherwise posted. */
+    public static void run(Runnable task) {
+        if (isCurrentThread()) {
+            task.run();
+        } else {
+            getHandler().post(task);
+        }
+    }
+}
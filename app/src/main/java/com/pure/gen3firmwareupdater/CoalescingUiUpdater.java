@@ -0,0 +1,58 @@
+package com.pure.gen3firmwareupdater;
+
+import android.os.Handler;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands the latest value from a background thread to the UI thread, dropping
+ * intermediate values the UI had no chance to draw.
+ *
+ * {@link #publish} may be called at any rate; at most one render is pending on
+ * the UI handler at a time and it always renders the newest value. Used by the
+ * dashboard so A0/A1 bursts on the BLE thread turn into one view update per frame
+ * instead of one runOnUiThread per packet.
+ */
+public class CoalescingUiUpdater<T> {
+
+    /** Applies a value to the views. Always called on the UI handler's thread. */
+    public interface Renderer<T> {
+        void render(T value);
+    }
+
+    private final Handler uiHandler;
+    private final Renderer<T> renderer;
+    private final AtomicReference<T> latest = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            scheduled.set(false);
+            T value = latest.getAndSet(null);
+            if (value != null) renderer.render(value);
+        }
+    };
+
+    public CoalescingUiUpdater(Handler uiHandler, Renderer<T> renderer) {
+        this.uiHandler = uiHandler;
+        this.renderer = renderer;
+    }
+
+    /** Replace the pending value and schedule a render if none is pending. */
+    public void publish(T value) {
+        if (value == null) return;
+        latest.set(value);
+        if (scheduled.compareAndSet(false, true)) {
+            uiHandler.post(drain);
+        }
+    }
+
+    /** Drop any pending value (e.g. when the view is being torn down). */
+    public void cancel() {
+        latest.set(null);
+        uiHandler.removeCallbacks(drain);
+        scheduled.set(false);
+    }
+}
@@ -29,6 +29,7 @@ import com.pure.gen3firmwareupdater.services.PermissionHelper;
 import com.pure.gen3firmwareupdater.services.ScooterConnectionService;
 import com.pure.gen3firmwareupdater.services.ServiceFactory;
 import com.pure.gen3firmwareupdater.services.SessionManager;
+import com.pure.gen3firmwareupdater.services.UploadCheckpointStore;
 
 import io.intercom.android.sdk.Intercom;
 
@@ -217,10 +218,11 @@ public class FirmwareUpdaterActivity extends AppCompatActivity
         session = ServiceFactory.getSessionManager();
         supabase = ServiceFactory.getSupabaseClient();
         bleManager = new BLEManager(this, null);
-        connectionService = new ScooterConnectionService(bleManager, handler);
+        connectionService = new ScooterConnectionService(bleManager);
         connectionService.setListener(this);
         bleManager.setListener(connectionService);
-        updateOrchestrator = new FirmwareUpdateOrchestrator(supabase, bleManager);
+        updateOrchestrator = new FirmwareUpdateOrchestrator(supabase, bleManager,
+                new UploadCheckpointStore(this));
         updateOrchestrator.setListener(this);
     }
 
@@ -420,7 +422,12 @@ public class FirmwareUpdaterActivity extends AppCompatActivity
         btnChooseFirmware.setVisibility(View.GONE);
 
         setState(State.SCANNING);
-        connectionService.startScan();
+        if (targetScooterSerial != null && !targetScooterSerial.isEmpty()) {
+            // The scooter advertises its serial as its name: stop as soon as it is seen
+            connectionService.startScan(null, targetScooterSerial);
+        } else {
+            connectionService.startScan();
+        }
     }
 
     /**
@@ -488,7 +495,6 @@ public class FirmwareUpdaterActivity extends AppCompatActivity
     }
 
     private void showDevicePicker(List<ScanResult> devices) {
-        if (isFinishing() || isDestroyed()) return;
         String[] names = new String[devices.size()];
         for (int i = 0; i < devices.size(); i++) {
             BluetoothDevice d = devices.get(i).getDevice();
@@ -496,13 +502,17 @@ public class FirmwareUpdaterActivity extends AppCompatActivity
             names[i] = name + " (RSSI: " + devices.get(i).getRssi() + ")";
         }
 
-        new AlertDialog.Builder(this)
-                .setTitle("Select Scooter")
-                .setItems(names, (dialog, which) -> {
-                    connectToScooter(devices.get(which).getDevice());
-                })
-                .setNegativeButton("Cancel", (dialog, which) -> setState(State.SCANNING))
-                .show();
+        // Scan callbacks arrive on the BLE I/O thread
+        runOnUiThread(() -> {
+            if (isFinishing() || isDestroyed()) return;
+            new AlertDialog.Builder(this)
+                    .setTitle("Select Scooter")
+                    .setItems(names, (dialog, which) -> {
+                        connectToScooter(devices.get(which).getDevice());
+                    })
+                    .setNegativeButton("Cancel", (dialog, which) -> setState(State.SCANNING))
+                    .show();
+        });
     }
 
     private void connectToScooter(BluetoothDevice device) {
@@ -529,6 +539,11 @@ public class FirmwareUpdaterActivity extends AppCompatActivity
         Log.d(TAG, "Connected: " + deviceName + " serial: " + serialNumber);
         connectedDeviceName = deviceName;
         connectedSerial = serialNumber;
+        // Binary capture of this session for offline replay (see TrafficReplay).
+        // Debug builds only: it writes every frame to storage for the whole session.
+        if (BuildConfig.DEBUG) {
+            bleManager.startCapture();
+        }
         runOnUiThread(() -> {
             tvScooterName.setText("Device: " + deviceName);
             tvSerialNumber.setText("ZYD: " + connectedDeviceName + "  (SN: " + serialNumber + ")");
@@ -574,6 +589,7 @@ public class FirmwareUpdaterActivity extends AppCompatActivity
     @Override
     public void onDisconnected(boolean wasExpected) {
         Log.d(TAG, "Disconnected (expected=" + wasExpected + ")");
+        bleManager.stopCapture();
         if (currentState == State.UPLOADING) {
             showError("Connection lost during firmware upload! The scooter may need recovery.");
         } else if (currentState != State.SUCCESS && currentState != State.ERROR
@@ -697,6 +713,25 @@ public class FirmwareUpdaterActivity extends AppCompatActivity
         });
     }
 
+    @Override
+    public void onResumeAvailable(int packetsDone, int totalPackets) {
+        runOnUiThread(() -> {
+            if (isFinishing() || isDestroyed()) return;
+            tvUploadProgress.setText("Previous upload interrupted at " + packetsDone
+                    + " / " + totalPackets + " packets");
+            new AlertDialog.Builder(FirmwareUpdaterActivity.this)
+                    .setTitle("Resume Firmware Upload?")
+                    .setMessage("The last upload of this firmware to this scooter stopped at "
+                            + (packetsDone * 100 / totalPackets) + "%.\n\n"
+                            + "Continue from there, or start over? If the scooter has been "
+                            + "switched off since, the upload starts over automatically.")
+                    .setCancelable(false)
+                    .setPositiveButton("Continue", (dialog, which) -> updateOrchestrator.resumeUpload())
+                    .setNegativeButton("Start Over", (dialog, which) -> updateOrchestrator.startFreshUpload())
+                    .show();
+        });
+    }
+
     @Override
     public void onUploadStarted() {
         Log.d(TAG, "Upload started");
@@ -868,7 +903,7 @@ public class FirmwareUpdaterActivity extends AppCompatActivity
             sb.append("Meter SW: ").append(scooterVersion.meterSwVersion).append("\n");
             sb.append("BMS HW: ").append(scooterVersion.bmsHwVersion).append("\n");
             sb.append("BMS SW: ").append(scooterVersion.bmsSwVersion).append("\n");
-            sb.append("\nRaw B0 hex:\n").append(scooterVersion.rawHex).append("\n");
+            sb.append("\nRaw B0 hex:\n").append(scooterVersion.getRawHex()).append("\n");
         } else {
             sb.append("(not received yet)\n");
         }
@@ -892,7 +927,7 @@ public class FirmwareUpdaterActivity extends AppCompatActivity
             sb.append("Enabled Panels: ").append(scooterConfig.getEnabledPanels()).append("\n");
             sb.append("Speed Unit: ").append(scooterConfig.getSpeedUnit()).append("\n");
 
-            sb.append("\nRaw 0x01 hex:\n").append(scooterConfig.rawHex).append("\n");
+            sb.append("\nRaw 0x01 hex:\n").append(scooterConfig.getRawHex()).append("\n");
         } else {
             sb.append("(not received yet)\n");
         }
@@ -901,6 +936,11 @@ public class FirmwareUpdaterActivity extends AppCompatActivity
         // Section 5: Protocol Info
         sb.append("═══ PROTOCOL INFO ═══\n");
         sb.append("Header byte: 0x").append(String.format("%02X", bleManager.getProtocolHeader())).append("\n");
+        TrafficCapture capture = bleManager.getTrafficCapture();
+        if (capture != null) {
+            sb.append("Capture: ").append(capture.getFile().getName())
+                    .append(" (").append(capture.getRecordCount()).append(" records)\n");
+        }
         sb.append("\n");
 
         // Section 6: All received packets
@@ -8,6 +8,8 @@ public class FirmwareVersion {
     public String version_label;
     public String file_path;
     public long file_size_bytes;
+    /** Hex SHA-256 of the binary; null for versions published before it was recorded. */
+    public String sha256;
     public String target_hw_version;
     public String min_sw_version;
     public String release_notes;
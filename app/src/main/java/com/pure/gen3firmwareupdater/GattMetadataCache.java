@@ -0,0 +1,109 @@
+package com.pure.gen3firmwareupdater;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattService;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Persistent per-MAC cache of what BLEManager learns while setting up a link:
+ * the Device Information (180A) strings and the discovered service layout.
+ *
+ * On reconnect, if the freshly discovered layout matches the cached one, the
+ * cached 180A values are reported at once instead of reading six characteristics
+ * one round trip at a time. The entry is tied to the firmware the scooter reported
+ * in B0; when B0 reports something different, the values are re-read in the
+ * background and the entry is replaced.
+ *
+ * Stored as one JSON string per MAC in SharedPreferences, like PinCacheManager.
+ */
+public class GattMetadataCache {
+
+    private static final String TAG = "GattMetadataCache";
+    private static final String PREFS_NAME = "GattMetadataCache";
+
+    /** Cached metadata for one scooter. */
+    public static class Entry {
+        public String serialNumber = "";
+        public String modelNumber = "";
+        public String hardwareRevision = "";
+        public String firmwareRevision = "";
+        public String softwareRevision = "";
+        public String manufacturer = "";
+        /** Service/characteristic UUIDs as returned by {@link #describeLayout}. */
+        public String serviceLayout;
+        /** B0 firmware versions seen with these values; null until the first B0. */
+        public String firmwareFingerprint;
+        public long savedAt;
+    }
+
+    private final SharedPreferences prefs;
+    private final Gson gson = new Gson();
+
+    public GattMetadataCache(Context context) {
+        this.prefs = context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /** Cached entry for this MAC, or null if there is none (or it is unreadable). */
+    public Entry get(String address) {
+        if (address == null) return null;
+        String json = prefs.getString(key(address), null);
+        if (json == null) return null;
+        try {
+            return gson.fromJson(json, Entry.class);
+        } catch (Exception e) {
+            Log.w(TAG, "Dropping unreadable cache entry for " + address + ": " + e.getMessage());
+            remove(address);
+            return null;
+        }
+    }
+
+    public void put(String address, Entry entry) {
+        if (address == null || entry == null) return;
+        entry.savedAt = System.currentTimeMillis();
+        prefs.edit().putString(key(address), gson.toJson(entry)).apply();
+        Log.d(TAG, "Cached GATT metadata for " + address);
+    }
+
+    public void remove(String address) {
+        if (address == null) return;
+        prefs.edit().remove(key(address)).apply();
+    }
+
+    public void clear() {
+        prefs.edit().clear().apply();
+    }
+
+    /**
+     * Canonical description of a discovered GATT table: sorted service UUIDs, each
+     * followed by its sorted characteristic UUIDs. Two connections to the same
+     * scooter with the same firmware produce the same string.
+     */
+    public static String describeLayout(List<BluetoothGattService> services) {
+        if (services == null) return "";
+        List<String> entries = new ArrayList<>(services.size());
+        for (BluetoothGattService service : services) {
+            List<String> chars = new ArrayList<>();
+            for (BluetoothGattCharacteristic c : service.getCharacteristics()) {
+                chars.add(c.getUuid().toString());
+            }
+            Collections.sort(chars);
+            entries.add(service.getUuid() + "=" + TextUtils.join(",", chars));
+        }
+        Collections.sort(entries);
+        return TextUtils.join(";", entries);
+    }
+
+    private static String key(String address) {
+        return "gatt_" + address.toUpperCase();
+    }
+}
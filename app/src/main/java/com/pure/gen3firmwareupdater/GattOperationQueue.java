@@ -0,0 +1,233 @@
+package com.pure.gen3firmwareupdater;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+
+/**
+ * Serializes GATT operations for one connection.
+ *
+ * Android allows a single outstanding GATT operation per connection; a second
+ * writeCharacteristic/readCharacteristic/writeDescriptor/requestMtu issued before
+ * the previous one's callback simply fails. Instead of spacing requests out with
+ * fixed delays, every operation goes through this queue and the next one starts
+ * as soon as the previous one's completion callback arrives (or its timeout fires).
+ *
+ * Callbacks carry no operation id, so after a timeout the queue owes the stack that
+ * operation's callback: nothing else starts until it arrives (and is dropped) or
+ * {@link #LATE_CALLBACK_GRACE_MS} passes. A late callback therefore never releases
+ * the operation after it.
+ *
+ * Thread-safe: operations may be enqueued from any thread, but they are always
+ * executed on the handler's thread (the BLE I/O thread), so GATT calls never run on
+ * the caller's thread. BLEManager calls {@link #complete(int, boolean)} from its GATT
+ * callbacks on that thread.
+ */
+public class GattOperationQueue {
+
+    private static final String TAG = "GattOperationQueue";
+
+    // Operation kinds - a completion callback only releases an operation of its own kind
+    public static final int KIND_WRITE = 1;
+    public static final int KIND_READ = 2;
+    public static final int KIND_DESCRIPTOR_WRITE = 3;
+    public static final int KIND_MTU = 4;
+    public static final int KIND_DISCOVER_SERVICES = 5;
+    /** Runs inline and completes immediately (e.g. "all reads done" barriers). */
+    public static final int KIND_LOCAL = 6;
+
+    /** Result of {@link Operation#execute()}. */
+    public static final int STARTED = 0;   // wait for the GATT callback
+    public static final int DONE = 1;      // finished synchronously
+    public static final int FAILED = 2;    // could not be started
+
+    // How long to wait for a timed-out operation's callback before moving on
+    static final long LATE_CALLBACK_GRACE_MS = 1000;
+
+    /**
+     * One queued GATT operation. {@link #execute()} issues the call;
+     * {@link #onComplete(boolean)} runs once it is released.
+     */
+    public abstract static class Operation {
+        final String name;
+        final int kind;
+        final long timeoutMs;
+
+        protected Operation(String name, int kind, long timeoutMs) {
+            this.name = name;
+            this.kind = kind;
+            this.timeoutMs = timeoutMs;
+        }
+
+        /** Issue the GATT call. @return STARTED, DONE or FAILED */
+        protected abstract int execute();
+
+        /** Called once when the operation completes, fails, times out or is cancelled. */
+        protected void onComplete(boolean success) {}
+
+        @Override
+        public String toString() { return name; }
+    }
+
+    private final Handler handler;
+    private final ArrayDeque<Operation> pending = new ArrayDeque<>();
+    private Operation current;
+    private Runnable currentTimeout;
+    private final Runnable runNextTask = this::runNext;
+    // Kind of the timed-out operation whose callback is still owed, 0 if none
+    private int owedKind;
+    private final Runnable owedExpired = this::onOwedCallbackExpired;
+
+    // Counters for diagnostics
+    private long completed;
+    private long failed;
+    private long timedOut;
+
+    public GattOperationQueue(Handler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Queue an operation. If the queue is idle it starts right away when called on the
+     * handler's thread, otherwise as soon as that thread picks it up.
+     */
+    public void enqueue(Operation op) {
+        synchronized (this) {
+            pending.add(op);
+        }
+        if (Looper.myLooper() == handler.getLooper()) {
+            runNext();
+        } else {
+            handler.post(runNextTask);
+        }
+    }
+
+    /** True if an operation is in flight or waiting. */
+    public synchronized boolean isBusy() {
+        return current != null || !pending.isEmpty();
+    }
+
+    public synchronized int size() {
+        return pending.size() + (current != null ? 1 : 0);
+    }
+
+    /**
+     * Release the in-flight operation. Call from the matching BluetoothGattCallback
+     * method. The late callback of an operation that timed out is dropped, and a
+     * callback for a different kind is ignored.
+     */
+    public void complete(int kind, boolean success) {
+        Operation op;
+        synchronized (this) {
+            if (current == null && owedKind == kind) {
+                owedKind = 0;
+                handler.removeCallbacks(owedExpired);
+                op = null;
+            } else {
+                op = current;
+                if (op == null || op.kind != kind) return;
+                release();
+                if (success) completed++; else failed++;
+            }
+        }
+        if (op != null) {
+            op.onComplete(success);
+        } else {
+            Log.d(TAG, "Dropped the late callback of a timed-out operation");
+        }
+        runNext();
+    }
+
+    /** Drop every pending operation (on disconnect). Each is completed as failed. */
+    public void clear() {
+        Operation[] dropped;
+        synchronized (this) {
+            int n = pending.size() + (current != null ? 1 : 0);
+            dropped = new Operation[n];
+            int i = 0;
+            if (current != null) {
+                dropped[i++] = current;
+                release();
+            }
+            owedKind = 0;
+            handler.removeCallbacks(owedExpired);
+            while (!pending.isEmpty()) dropped[i++] = pending.poll();
+        }
+        for (Operation op : dropped) op.onComplete(false);
+        if (dropped.length > 0) Log.d(TAG, "Cleared " + dropped.length + " GATT operation(s)");
+    }
+
+    private void runNext() {
+        while (true) {
+            Operation op;
+            synchronized (this) {
+                if (current != null || owedKind != 0 || pending.isEmpty()) return;
+                op = pending.poll();
+                current = op;
+                currentTimeout = () -> onTimeout(op);
+                handler.postDelayed(currentTimeout, op.timeoutMs);
+            }
+
+            int result;
+            try {
+                result = op.execute();
+            } catch (RuntimeException e) {
+                Log.e(TAG, op + " threw: " + e.getMessage());
+                result = FAILED;
+            }
+            if (result == STARTED) return;
+
+            if (result == FAILED) Log.w(TAG, op + " could not be started");
+            boolean released;
+            synchronized (this) {
+                released = current == op;
+                if (released) {
+                    release();
+                    if (result == DONE) completed++; else failed++;
+                }
+            }
+            if (released) op.onComplete(result == DONE);
+        }
+    }
+
+    private void onTimeout(Operation op) {
+        synchronized (this) {
+            if (current != op) return;
+            release();
+            timedOut++;
+            if (op.kind != KIND_LOCAL) {
+                owedKind = op.kind;
+                handler.postDelayed(owedExpired, LATE_CALLBACK_GRACE_MS);
+            }
+        }
+        Log.w(TAG, op + " timed out after " + op.timeoutMs + "ms");
+        op.onComplete(false);
+        runNext();
+    }
+
+    private void onOwedCallbackExpired() {
+        synchronized (this) {
+            if (owedKind == 0) return;
+            owedKind = 0;
+        }
+        runNext();
+    }
+
+    // Caller holds the lock
+    private void release() {
+        if (currentTimeout != null) handler.removeCallbacks(currentTimeout);
+        currentTimeout = null;
+        current = null;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "GattOperationQueue{pending=" + pending.size()
+                + ", current=" + current
+                + ", completed=" + completed
+                + ", failed=" + failed
+                + ", timedOut=" + timedOut + '}';
+    }
+}
@@ -27,6 +27,11 @@ public class Gen3FirmwareUpdaterApp extends Application {
         super.onCreate();
         instance = this;
 
+        // Route protocol-library logging (plain JVM module) to Logcat
+        ProtocolLog.setSink((priority, tag, message, error) ->
+                Log.println(priority, tag, error == null ? message
+                        : message + '\n' + Log.getStackTraceString(error)));
+
         // Initialize ServiceFactory (shared singletons)
         ServiceFactory.init(this);
 
@@ -0,0 +1,44 @@
+package com.pure.gen3firmwareupdater;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+
+/**
+ * Named BLE link settings for the three things the app does over one connection.
+ *
+ * Components claim a profile through {@link BLEManager#requestLinkProfile} while
+ * they need it and release it when done; the link runs with the most demanding
+ * claimed profile (declaration order), or {@link #IDLE} when nobody claims one.
+ *
+ * Android has no public API for LE Data Length Extension; current stacks enable
+ * it on their own once the MTU is raised, so the MTU is the only size knob here.
+ */
+public enum LinkProfile {
+
+    /** Connected but nobody is looking: long connection interval, 1M PHY for range. */
+    IDLE("idle", BluetoothGatt.CONNECTION_PRIORITY_LOW_POWER,
+            BluetoothDevice.PHY_LE_1M_MASK, 23),
+
+    /** Dashboard on screen or a ride being recorded: default interval, 1M PHY. */
+    INTERACTIVE("interactive", BluetoothGatt.CONNECTION_PRIORITY_BALANCED,
+            BluetoothDevice.PHY_LE_1M_MASK, 247),
+
+    /** Firmware flashing: shortest interval, 2M PHY where both sides support it, large MTU. */
+    BULK_TRANSFER("bulk", BluetoothGatt.CONNECTION_PRIORITY_HIGH,
+            BluetoothDevice.PHY_LE_2M_MASK, 512);
+
+    public final String label;
+    /** BluetoothGatt.CONNECTION_PRIORITY_* */
+    public final int connectionPriority;
+    /** BluetoothDevice.PHY_LE_*_MASK, used for both TX and RX (API 26+). */
+    public final int phyMask;
+    /** Smallest MTU this profile wants; requested again if the link negotiated less. */
+    public final int mtu;
+
+    LinkProfile(String label, int connectionPriority, int phyMask, int mtu) {
+        this.label = label;
+        this.connectionPriority = connectionPriority;
+        this.phyMask = phyMask;
+        this.mtu = mtu;
+    }
+}
@@ -102,7 +102,7 @@ public class ScanScooterActivity extends AppCompatActivity implements ScooterCon
 
     private void initManagers() {
         ServiceFactory.init(this);
-        connectionService = ServiceFactory.getConnectionService(this, handler);
+        connectionService = ServiceFactory.getConnectionService(this);
         connectionService.setListener(this);
         supabase = ServiceFactory.getSupabaseClient();
     }
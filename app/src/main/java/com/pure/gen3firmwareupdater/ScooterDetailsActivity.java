@@ -138,7 +138,7 @@ public class ScooterDetailsActivity extends AppCompatActivity
 
     private void setupBleConnection() {
         // Get the shared connection service (same singleton from ScanScooterActivity)
-        connectionService = ServiceFactory.getConnectionService(this, handler);
+        connectionService = ServiceFactory.getConnectionService(this);
         connectionService.setListener(this);
 
         // Show disconnect button if BLE is currently connected
@@ -110,6 +110,10 @@ public class SupabaseClient {
         firmware.downloadFirmwareBinary(filePath, wrapCallback(callback));
     }
 
+    public void downloadFirmwareBinary(FirmwareVersion firmwareVersion, Callback<byte[]> callback) {
+        firmware.downloadFirmwareBinary(firmwareVersion, wrapCallback(callback));
+    }
+
     public void createUploadRecord(String scooterId, String firmwareVersionId,
                                     String distributorId, String oldHwVersion,
                                     String oldSwVersion, String newVersion,
@@ -123,6 +127,11 @@ public class SupabaseClient {
         firmware.updateUploadRecord(recordId, status, errorMessage, wrapCallback(callback));
     }
 
+    public void markUploadResumed(String recordId, int fromPacket, String previousRecordId,
+                                  Callback<Void> callback) {
+        firmware.markUploadResumed(recordId, fromPacket, previousRecordId, wrapCallback(callback));
+    }
+
     public void getScooterUpdateHistory(String scooterSerial, String distributorId,
                                         int limit, int offset,
                                         Callback<List<TelemetryRecord>> callback) {
@@ -177,6 +186,18 @@ public class SupabaseClient {
                 recordType, wrapCallback(callback));
     }
 
+    public void createTelemetryRecord(String scooterSerial, String distributorId,
+                                       String hwVersion, String swVersion,
+                                       RunningDataInfo runningData, BMSDataInfo bmsData,
+                                       String embeddedSerial, String scanType,
+                                       VersionInfo versionInfo, String model,
+                                       String recordType, JsonObject connectMetrics,
+                                       Callback<String> callback) {
+        telemetry.createTelemetryRecord(scooterSerial, distributorId, hwVersion, swVersion,
+                runningData, bmsData, embeddedSerial, scanType, versionInfo, model,
+                recordType, connectMetrics, wrapCallback(callback));
+    }
+
     public void getScooterTelemetry(String scooterSerial, int limit, int offset,
                                      Callback<List<TelemetryRecord>> callback) {
         telemetry.getScooterTelemetry(scooterSerial, limit, offset, wrapCallback(callback));
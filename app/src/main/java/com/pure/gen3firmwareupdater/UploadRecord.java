@@ -15,4 +15,7 @@ public class UploadRecord {
     public String error_message;
     public String started_at;
     public String completed_at;
+    /** Set when this attempt continued an interrupted one at this D2 packet. */
+    public Integer resumed_from_packet;
+    public String resumed_from_upload_id;
 }
@@ -27,6 +27,8 @@ import android.widget.ProgressBar;
 import android.widget.Toast;
 
 import com.google.gson.JsonObject;
+import com.pure.gen3firmwareupdater.services.ConnectMetrics;
+import com.pure.gen3firmwareupdater.services.ControlStateWriter;
 import com.pure.gen3firmwareupdater.services.DeviceTokenManager;
 import com.pure.gen3firmwareupdater.services.PermissionHelper;
 import com.pure.gen3firmwareupdater.services.RideRecordingManager;
@@ -59,8 +61,6 @@ public class UserDashboardActivity extends AppCompatActivity
     private static final int PERMISSION_REQUEST_CODE = 300;
     private static final int NOTIFICATION_PERMISSION_REQUEST_CODE = 301;
     private static final int REQUEST_CODE_TERMS = 1002;
-    private static final long TELEMETRY_POLL_INTERVAL_MS = 2000;
-    private static final long RECORDING_POLL_INTERVAL_MS = 1000;
     private static final int DEFAULT_RECORDING_DURATION_SECONDS = 300; // 5 minutes
     private static final long FAULT_DEDUP_INTERVAL_MS = 30_000; // 30 seconds
 
@@ -75,10 +75,6 @@ public class UserDashboardActivity extends AppCompatActivity
 
     // State
     private State currentState = State.DISCONNECTED;
-    private int lastControlFlags = 0;
-    private int lastCruiseSpeed = 0;
-    private int lastMaxSpeed = 25;
-    private final AtomicBoolean pollingActive = new AtomicBoolean(false);
     private final AtomicBoolean updatingToggles = new AtomicBoolean(false); // Prevents toggle listener feedback loop
     private boolean autoConnectAttempted = false; // Only attempt auto-connect once per scan
     private boolean devicePickerShown = false; // Prevent duplicate device picker dialogs
@@ -110,9 +106,6 @@ public class UserDashboardActivity extends AppCompatActivity
     private long lastFaultReportTimeMs = 0;
     private boolean faultCaptureEnabled = true;
 
-    // Recording poll interval (switches between 2s and 1s during recording)
-    private long currentPollInterval = TELEMETRY_POLL_INTERVAL_MS;
-
     // UI - Header
     private View statusDot;
     private TextView tvConnectionStatus;
@@ -157,30 +150,11 @@ public class UserDashboardActivity extends AppCompatActivity
     private int diagnosticRecordingCount = 0;
     private int diagnosticMaxRecordings = 1;
 
-    // Telemetry polling runnable
-    private final Runnable telemetryPoller = new Runnable() {
-        @Override
-        public void run() {
-            if (connectionService != null && connectionService.isConnected()) {
-                BLEManager ble = connectionService.getBLEManager();
-                if (ble != null) {
-                    ble.requestRunningData();
-                    // Stagger BMS request to avoid BLE write collision
-                    handler.postDelayed(() -> {
-                        if (connectionService != null && connectionService.isConnected()) {
-                            BLEManager ble2 = connectionService.getBLEManager();
-                            if (ble2 != null) {
-                                ble2.requestBMSData();
-                            }
-                        }
-                    }, 300);
-                }
-            }
-            if (pollingActive.get()) {
-                handler.postDelayed(this, currentPollInterval);
-            }
-        }
-    };
+    // Telemetry arrives on the BLE I/O thread; the views get at most one pending update each
+    private final CoalescingUiUpdater<RunningDataInfo> runningDataUi =
+            new CoalescingUiUpdater<>(handler, this::renderRunningData);
+    private final CoalescingUiUpdater<BMSDataInfo> bmsDataUi =
+            new CoalescingUiUpdater<>(handler, data -> batteryGauge.setBatteryPercent(data.batteryPercent));
 
     // ==================================================================================
     // LIFECYCLE
@@ -222,7 +196,7 @@ public class UserDashboardActivity extends AppCompatActivity
         // If there's already an active BLE connection (e.g., from a previous session),
         // attach to it
         if (ServiceFactory.isConnectionServiceActive()) {
-            connectionService = ServiceFactory.getConnectionService(this, handler);
+            connectionService = ServiceFactory.getConnectionService(this);
             connectionService.setListener(this);
             setState(State.CONNECTED);
             startTelemetryPolling();
@@ -365,10 +339,15 @@ public class UserDashboardActivity extends AppCompatActivity
             Intercom.client().setLauncherVisibility(Intercom.Visibility.VISIBLE);
         }
 
+        // Dashboard on screen: interactive link settings until onPause
+        if (connectionService != null) {
+            connectionService.getBLEManager().requestLinkProfile(TAG, LinkProfile.INTERACTIVE);
+        }
+
         // Re-attach as BLE listener when returning from ScooterDetailsActivity
         if (connectionService != null && connectionService.isConnected()) {
             connectionService.setListener(this);
-            if (!pollingActive.get()) {
+            if (!connectionService.isTelemetryPolling()) {
                 startTelemetryPolling();
             }
         } else if (connectionService != null && !connectionService.isConnected()) {
@@ -380,6 +359,10 @@ public class UserDashboardActivity extends AppCompatActivity
     @Override
     protected void onPause() {
         super.onPause();
+        // Drop back to the idle link profile unless something else (e.g. ride recording) holds one
+        if (connectionService != null) {
+            connectionService.getBLEManager().releaseLinkProfile(TAG);
+        }
         // Hide Intercom launcher when leaving dashboard
         if (Gen3FirmwareUpdaterApp.isIntercomInitialized()) {
             Intercom.client().setLauncherVisibility(Intercom.Visibility.GONE);
@@ -393,6 +376,8 @@ public class UserDashboardActivity extends AppCompatActivity
         if (connectionService != null) {
             connectionService.setListener(null);
         }
+        runningDataUi.cancel();
+        bmsDataUi.cancel();
         handler.removeCallbacksAndMessages(null);
     }
 
@@ -513,9 +498,21 @@ public class UserDashboardActivity extends AppCompatActivity
         devicePickerShown = false; // Reset so picker can show for this new scan
         autoConnectAttempted = false;
 
-        connectionService = ServiceFactory.getConnectionService(this, handler);
+        connectionService = ServiceFactory.getConnectionService(this);
         connectionService.setListener(this);
-        connectionService.startScan();
+        connectionService.getBLEManager().requestLinkProfile(TAG, LinkProfile.INTERACTIVE);
+        connectionService.setAutoReattach(userSettings.isAutoConnectEnabled());
+        if (userSettings.isAutoConnectEnabled() && userSettings.getLastConnectedMac() != null) {
+            // Saved scooter: connect straight to its MAC; the service falls back to a
+            // targeted scan if it is not reachable
+            tvConnectingStatus.setText("Connecting to "
+                    + (userSettings.getLastConnectedName() != null
+                            ? userSettings.getLastConnectedName() : "scooter") + "...");
+            connectionService.connectToLastScooter(userSettings.getLastConnectedMac(),
+                    userSettings.getLastConnectedName());
+        } else {
+            connectionService.startScan();
+        }
     }
 
     @Override
@@ -726,16 +723,14 @@ public class UserDashboardActivity extends AppCompatActivity
     // TELEMETRY POLLING
     // ==================================================================================
 
+    // The service adapts the A0/A1 rate to ride state (moving, charging, recording, faults)
+
     private void startTelemetryPolling() {
-        if (pollingActive.getAndSet(true)) return;
-        handler.post(telemetryPoller);
-        Log.d(TAG, "Telemetry polling started");
+        if (connectionService != null) connectionService.startTelemetryPolling();
     }
 
     private void stopTelemetryPolling() {
-        pollingActive.set(false);
-        handler.removeCallbacks(telemetryPoller);
-        Log.d(TAG, "Telemetry polling stopped");
+        if (connectionService != null) connectionService.stopTelemetryPolling();
     }
 
     // ==================================================================================
@@ -792,17 +787,11 @@ public class UserDashboardActivity extends AppCompatActivity
     // ==================================================================================
 
     private void toggleHeadlight(boolean on) {
-        int newFlags = on
-                ? (lastControlFlags | 0x0010)
-                : (lastControlFlags & ~0x0010);
-        sendControlCommand(newFlags);
+        sendControlFlag(ControlStateWriter.FLAG_HEADLIGHT, on);
     }
 
     private void toggleCruise(boolean on) {
-        int newFlags = on
-                ? (lastControlFlags | 0x0020)
-                : (lastControlFlags & ~0x0020);
-        sendControlCommand(newFlags);
+        sendControlFlag(ControlStateWriter.FLAG_CRUISE, on);
     }
 
     private void toggleLock(boolean on) {
@@ -895,10 +884,7 @@ public class UserDashboardActivity extends AppCompatActivity
      * Actually send the BLE lock/unlock command and update the toggle.
      */
     private void sendLockCommand(boolean on) {
-        int newFlags = on
-                ? (lastControlFlags | 0x0100)
-                : (lastControlFlags & ~0x0100);
-        sendControlCommand(newFlags);
+        sendControlFlag(ControlStateWriter.FLAG_LOCK, on);
         // Update the toggle to reflect the new state
         runOnUiThread(() -> {
             updatingToggles.set(true);
@@ -907,38 +893,17 @@ public class UserDashboardActivity extends AppCompatActivity
         });
     }
 
-    private void sendControlCommand(int controlFlags) {
-        if (connectionService == null || !connectionService.isConnected()) {
+    /**
+     * Queue a control flag change. The connection service merges quick taps into one
+     * C0 write and confirms it against A0; the toggles show the pending state until then.
+     */
+    private void sendControlFlag(int flag, boolean on) {
+        if (connectionService == null || !connectionService.setControlFlag(flag, on)) {
             Log.w(TAG, "Cannot send control command - not connected");
             Toast.makeText(this, "Not connected to scooter", Toast.LENGTH_SHORT).show();
             return;
         }
-
-        BLEManager ble = connectionService.getBLEManager();
-        if (ble == null) {
-            Log.w(TAG, "BLE manager not ready");
-            Toast.makeText(this, "Connection not ready — try again", Toast.LENGTH_SHORT).show();
-            return;
-        }
-
-        byte[] packet = new byte[15];
-        packet[0] = (byte) ble.getProtocolHeader();
-        packet[1] = (byte) 0xC0;
-        packet[2] = (byte) 0x0F; // length = 15
-
-        packet[3] = (byte) ((controlFlags >> 8) & 0xFF); // controlState high
-        packet[4] = (byte) (controlFlags & 0xFF);         // controlState low
-        packet[5] = (byte) lastCruiseSpeed;
-        packet[6] = (byte) lastMaxSpeed;
-        // bytes 7-12 reserved (0x00 by default)
-
-        int crc = ProtocolUtils.calculateCRC16(packet, 13);
-        packet[13] = (byte) (crc & 0xFF);
-        packet[14] = (byte) ((crc >> 8) & 0xFF);
-
-        ble.sendCommand(packet);
-        lastControlFlags = controlFlags; // Optimistic update
-        Log.d(TAG, "Sent control command: flags=0x" + String.format("%04X", controlFlags));
+        Log.d(TAG, "Control flag 0x" + String.format("%04X", flag) + " -> " + on);
     }
 
     // ==================================================================================
@@ -1068,11 +1033,13 @@ public class UserDashboardActivity extends AppCompatActivity
         savedBMSData = storedBMSData;
         savedEmbeddedSerial = embeddedSerial;
 
+        ConnectMetrics metrics = connectionService != null ? connectionService.getConnectMetrics() : null;
+
         SupabaseClient supabase = ServiceFactory.getSupabaseClient();
         supabase.createTelemetryRecord(connectedDeviceName, distributorId,
                 version.controllerHwVersion, version.controllerSwVersion,
                 storedRunningData, storedBMSData, embeddedSerial, "user_dashboard",
-                version, null, "start",
+                version, null, "start", metrics != null ? metrics.toJson() : null,
                 new SupabaseClient.Callback<String>() {
                     @Override
                     public void onSuccess(String recordId) {
@@ -1092,31 +1059,31 @@ public class UserDashboardActivity extends AppCompatActivity
         storedRunningData = data;
         savedRunningData = data; // Keep snapshot current for stop telemetry
 
-        lastControlFlags = data.controlFlags;
-        lastCruiseSpeed = data.cruiseSpeed;
-        lastMaxSpeed = data.maxSpeed;
-
         // Feed data to ride recorder
         ServiceFactory.getRideRecordingManager().onRunningDataReceived(data);
 
         // Always-on fault capture
         checkForFault(data);
 
-        runOnUiThread(() -> {
-            speedGauge.setSpeed(data.currentSpeed);
-            if (data.maxSpeed > 0) {
-                speedGauge.setMaxSpeed(data.maxSpeed);
-            }
-            tvOdometer.setText(data.totalDistance + " km");
-            tvRange.setText(data.remainingRange + " km");
+        runningDataUi.publish(data);
+    }
 
-            // Update toggles without triggering listeners
-            updatingToggles.set(true);
-            switchHeadlight.setChecked(data.headlightsOn);
-            switchCruise.setChecked(data.cruiseEnabled);
-            switchLock.setChecked(data.deviceLocked);
-            updatingToggles.set(false);
-        });
+    private void renderRunningData(RunningDataInfo data) {
+        speedGauge.setSpeed(data.currentSpeed);
+        if (data.maxSpeed > 0) {
+            speedGauge.setMaxSpeed(data.maxSpeed);
+        }
+        tvOdometer.setText(data.totalDistance + " km");
+        tvRange.setText(data.remainingRange + " km");
+
+        // Update toggles without triggering listeners; unconfirmed changes stay as tapped
+        int flags = connectionService != null
+                ? connectionService.getDisplayedControlFlags(data.controlFlags) : data.controlFlags;
+        updatingToggles.set(true);
+        switchHeadlight.setChecked((flags & ControlStateWriter.FLAG_HEADLIGHT) != 0);
+        switchCruise.setChecked((flags & ControlStateWriter.FLAG_CRUISE) != 0);
+        switchLock.setChecked((flags & ControlStateWriter.FLAG_LOCK) != 0);
+        updatingToggles.set(false);
     }
 
     @Override
@@ -1128,7 +1095,19 @@ public class UserDashboardActivity extends AppCompatActivity
         // Feed BMS data to ride recorder
         ServiceFactory.getRideRecordingManager().onBmsDataReceived(data);
 
-        runOnUiThread(() -> batteryGauge.setBatteryPercent(data.batteryPercent));
+        bmsDataUi.publish(data);
+    }
+
+    @Override
+    public void onTripDataReceived(TripDataInfo data) {
+        // Feed A2 trip counters to ride recorder's trip summary
+        ServiceFactory.getRideRecordingManager().onTripDataReceived(data);
+    }
+
+    @Override
+    public void onTelemetryUnchanged(int packetType) {
+        // Repeated A0/A1 was not decoded; the views already show it
+        ServiceFactory.getRideRecordingManager().onTelemetryUnchanged(packetType);
     }
 
     @Override
@@ -1188,6 +1167,15 @@ public class UserDashboardActivity extends AppCompatActivity
         Log.d(TAG, "Command sent: success=" + success + " msg=" + message);
     }
 
+    @Override
+    public void onControlRejected(int mask, int actualFlags) {
+        Log.w(TAG, "Control change 0x" + String.format("%04X", mask) + " not confirmed by scooter");
+        runOnUiThread(() -> Toast.makeText(this, "Scooter did not confirm the change",
+                Toast.LENGTH_SHORT).show());
+        // Snap the toggles back to what the scooter reports
+        if (storedRunningData != null) runningDataUi.publish(storedRunningData);
+    }
+
     // ==================================================================================
     // STOP TELEMETRY & OFFLINE QUEUE
     // ==================================================================================
@@ -1504,9 +1492,8 @@ public class UserDashboardActivity extends AppCompatActivity
         recorder.startRecording(triggerType, durationSeconds, serial, scooterDbId,
                 diagnosticConfigJson);
 
-        // Switch to fast polling (1Hz)
-        currentPollInterval = RECORDING_POLL_INTERVAL_MS;
-        restartTelemetryPolling();
+        // Denser polling while the ride is recorded
+        if (connectionService != null) connectionService.setRecordingActive(true);
 
         // Update UI
         runOnUiThread(() -> {
@@ -1531,9 +1518,7 @@ public class UserDashboardActivity extends AppCompatActivity
         RideRecordingManager recorder = ServiceFactory.getRideRecordingManager();
         recorder.stopRecording();
 
-        // Revert to normal polling (2Hz)
-        currentPollInterval = TELEMETRY_POLL_INTERVAL_MS;
-        restartTelemetryPolling();
+        if (connectionService != null) connectionService.setRecordingActive(false);
 
         // Update UI
         runOnUiThread(() -> {
@@ -1542,13 +1527,6 @@ public class UserDashboardActivity extends AppCompatActivity
         });
     }
 
-    private void restartTelemetryPolling() {
-        if (pollingActive.get()) {
-            handler.removeCallbacks(telemetryPoller);
-            handler.post(telemetryPoller);
-        }
-    }
-
     private final RideRecordingManager.RecordingListener recordingListener =
             new RideRecordingManager.RecordingListener() {
                 @Override
@@ -1609,9 +1587,7 @@ public class UserDashboardActivity extends AppCompatActivity
                         }
                     });
 
-                    // Revert to normal polling
-                    currentPollInterval = TELEMETRY_POLL_INTERVAL_MS;
-                    restartTelemetryPolling();
+                    if (connectionService != null) connectionService.setRecordingActive(false);
 
                     // Auto-upload if online
                     ServiceFactory.getRideRecordingManager().uploadPendingSessions();
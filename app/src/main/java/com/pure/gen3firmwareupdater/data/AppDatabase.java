@@ -5,16 +5,29 @@ import android.content.Context;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 /**
  * Room database for ride telemetry recording.
  * Singleton with double-checked locking.
+ *
+ * Version history:
+ * 1 - ride_sessions + ride_samples
+ * 2 - ride_sessions.trip_summary_json
  */
-@Database(entities = {RideSessionEntity.class, RideSampleEntity.class}, version = 1)
+@Database(entities = {RideSessionEntity.class, RideSampleEntity.class}, version = 2)
 public abstract class AppDatabase extends RoomDatabase {
 
     private static volatile AppDatabase instance;
 
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE ride_sessions ADD COLUMN trip_summary_json TEXT");
+        }
+    };
+
     public abstract RideDao rideDao();
 
     public static AppDatabase getInstance(Context context) {
@@ -25,7 +38,7 @@ public abstract class AppDatabase extends RoomDatabase {
                             context.getApplicationContext(),
                             AppDatabase.class,
                             "gen3_ride_telemetry.db"
-                    ).build();
+                    ).addMigrations(MIGRATION_1_2).build();
                 }
             }
         }
@@ -46,4 +46,7 @@ public class RideSessionEntity {
 
     @ColumnInfo(name = "diagnostic_config_json")
     public String diagnosticConfigJson;
+
+    @ColumnInfo(name = "trip_summary_json")
+    public String tripSummaryJson; // TripAggregator summary, set when recording stops (v2)
 }
@@ -0,0 +1,66 @@
+package com.pure.gen3firmwareupdater.services;
+
+import android.os.Build;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Timing of one connection, from the moment the app starts looking for the scooter
+ * to the first telemetry frame. Uploaded with the "start" telemetry record so connect
+ * latency can be compared across connection paths and phone models.
+ *
+ * All durations are milliseconds measured with SystemClock.elapsedRealtime();
+ * -1 means the step has not happened (yet).
+ */
+public class ConnectMetrics {
+
+    /** connectGatt straight to the saved MAC, no scan. */
+    public static final String PATH_DIRECT = "direct";
+    /** Scan, then connect to a result. */
+    public static final String PATH_SCAN = "scan";
+    /** Background autoConnect after an unexpected link loss. */
+    public static final String PATH_REATTACH = "reattach";
+
+    public String path;
+    /** A direct connect failed and the scan path was used instead. */
+    public boolean fellBackToScan;
+    /** Start until connectGatt was called (scan time; 0 for direct connects). */
+    public long scanMs = -1;
+    /** connectGatt until services, notifications and device info were ready. */
+    public long linkMs = -1;
+    /** Start until the connection was ready. */
+    public long connectMs = -1;
+    /** Start until the first A0 running data frame. */
+    public long firstTelemetryMs = -1;
+
+    public final String phoneModel = Build.MANUFACTURER + " " + Build.MODEL;
+    public final int sdkInt = Build.VERSION.SDK_INT;
+
+    public ConnectMetrics(String path) {
+        this.path = path;
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("path", path);
+        json.addProperty("fell_back_to_scan", fellBackToScan);
+        if (scanMs >= 0) json.addProperty("scan_ms", scanMs);
+        if (linkMs >= 0) json.addProperty("link_ms", linkMs);
+        if (connectMs >= 0) json.addProperty("connect_ms", connectMs);
+        if (firstTelemetryMs >= 0) json.addProperty("first_telemetry_ms", firstTelemetryMs);
+        json.addProperty("phone_model", phoneModel);
+        json.addProperty("sdk_int", sdkInt);
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectMetrics{path=" + path
+                + (fellBackToScan ? " (fallback)" : "")
+                + ", scan=" + scanMs + "ms"
+                + ", link=" + linkMs + "ms"
+                + ", connect=" + connectMs + "ms"
+                + ", firstTelemetry=" + firstTelemetryMs + "ms"
+                + ", phone=" + phoneModel + " API " + sdkInt + '}';
+    }
+}
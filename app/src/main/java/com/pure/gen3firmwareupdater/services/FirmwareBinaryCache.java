@@ -0,0 +1,266 @@
+package com.pure.gen3firmwareupdater.services;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * On-disk cache of downloaded firmware images, so a workshop flashing the same
+ * version onto many scooters downloads it once and can flash offline.
+ *
+ * Images are content-addressed: each is stored once in app storage as
+ * {@code <sha256>.bin}, and an entry per firmware version id points at its hash
+ * along with the storage path and the ETag / Last-Modified needed to revalidate it.
+ * Every read re-hashes the file and drops it if it no longer matches. When the images
+ * exceed the size budget, the least recently used entries are evicted.
+ *
+ * Entries are stored as one JSON string per version id in SharedPreferences, like
+ * GattMetadataCache. Thread-safe.
+ */
+public class FirmwareBinaryCache {
+
+    private static final String TAG = "FirmwareBinaryCache";
+    private static final String PREFS_NAME = "FirmwareBinaryCache";
+    private static final String DIR_NAME = "firmware-cache";
+    private static final String BLOB_SUFFIX = ".bin";
+
+    // Room for ~30 images at the 512 KB maximum
+    private static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    /** Cached image for one firmware version. */
+    public static class Entry {
+        /** Lower-case hex SHA-256 of the image; also its file name. */
+        public String sha256;
+        /** Storage path the image was downloaded from. */
+        public String filePath;
+        public String etag;
+        public String lastModified;
+        public long size;
+        /** When the server last confirmed (or served) this image. */
+        public long validatedAt;
+        public long lastUsedAt;
+    }
+
+    private final SharedPreferences prefs;
+    private final Gson gson = new Gson();
+    private final File dir;
+    private final long maxBytes;
+
+    public FirmwareBinaryCache(Context context) {
+        this(context, DEFAULT_MAX_BYTES);
+    }
+
+    public FirmwareBinaryCache(Context context, long maxBytes) {
+        Context app = context.getApplicationContext();
+        this.prefs = app.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.dir = new File(app.getFilesDir(), DIR_NAME);
+        this.maxBytes = maxBytes;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "Cannot create " + dir);
+        }
+    }
+
+    /** Entry for this firmware version, or null if there is none (or it is unreadable). */
+    public synchronized Entry get(String versionId) {
+        if (versionId == null) return null;
+        String json = prefs.getString(key(versionId), null);
+        if (json == null) return null;
+        try {
+            return gson.fromJson(json, Entry.class);
+        } catch (Exception e) {
+            Log.w(TAG, "Dropping unreadable entry for " + versionId + ": " + e.getMessage());
+            prefs.edit().remove(key(versionId)).apply();
+            return null;
+        }
+    }
+
+    /**
+     * The cached image for {@code entry}, after checking its SHA-256. Returns null, and
+     * drops the entry, if the file is missing or no longer matches.
+     */
+    public synchronized byte[] read(String versionId, Entry entry) {
+        File blob = blobFile(entry.sha256);
+        byte[] data;
+        try {
+            data = readFile(blob);
+        } catch (IOException e) {
+            Log.w(TAG, "Cached image for " + versionId + " unreadable: " + e.getMessage());
+            remove(versionId);
+            return null;
+        }
+        if (!entry.sha256.equals(sha256(data))) {
+            Log.w(TAG, "Cached image for " + versionId + " is corrupt, dropping it");
+            if (!blob.delete()) Log.w(TAG, "Cannot delete " + blob);
+            remove(versionId);
+            return null;
+        }
+        entry.lastUsedAt = System.currentTimeMillis();
+        save(versionId, entry);
+        return data;
+    }
+
+    /** The server confirmed {@code entry} is still current (HTTP 304). */
+    public synchronized void markValidated(String versionId, Entry entry) {
+        entry.validatedAt = System.currentTimeMillis();
+        save(versionId, entry);
+    }
+
+    /** Store a freshly downloaded image for this firmware version, evicting old ones if needed. */
+    public synchronized void put(String versionId, String filePath, byte[] data,
+                                 String etag, String lastModified) {
+        if (versionId == null || data == null) return;
+        Entry entry = new Entry();
+        entry.sha256 = sha256(data);
+        entry.filePath = filePath;
+        entry.etag = etag;
+        entry.lastModified = lastModified;
+        entry.size = data.length;
+        entry.validatedAt = System.currentTimeMillis();
+        entry.lastUsedAt = entry.validatedAt;
+
+        File blob = blobFile(entry.sha256);
+        if (blob.length() != data.length) {
+            // Write then rename, so a crash never leaves a truncated image under its hash
+            File tmp = new File(dir, entry.sha256 + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                out.write(data);
+                out.getFD().sync();
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot cache image for " + versionId + ": " + e.getMessage());
+                if (!tmp.delete()) Log.w(TAG, "Cannot delete " + tmp);
+                return;
+            }
+            if (!tmp.renameTo(blob)) {
+                Log.w(TAG, "Cannot move cached image into place: " + blob);
+                if (!tmp.delete()) Log.w(TAG, "Cannot delete " + tmp);
+                return;
+            }
+        }
+        save(versionId, entry);
+        Log.d(TAG, "Cached firmware " + versionId + " (" + data.length + " bytes, sha256 "
+                + entry.sha256.substring(0, 12) + ")");
+        evict();
+    }
+
+    public synchronized void remove(String versionId) {
+        if (versionId == null) return;
+        prefs.edit().remove(key(versionId)).apply();
+    }
+
+    public synchronized void clear() {
+        prefs.edit().clear().apply();
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File f : files) {
+            if (!f.delete()) Log.w(TAG, "Cannot delete " + f);
+        }
+    }
+
+    /** Lower-case hex SHA-256 of {@code data}. */
+    public static String sha256(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    // ==================================================================================
+    // INTERNALS
+    // ==================================================================================
+
+    /**
+     * Drop least recently used entries until the images they share fit the budget,
+     * then delete image files no entry points at.
+     */
+    private void evict() {
+        List<String> ids = new ArrayList<>();
+        List<Entry> entries = new ArrayList<>();
+        for (Map.Entry<String, ?> e : prefs.getAll().entrySet()) {
+            if (!(e.getValue() instanceof String)) continue;
+            try {
+                Entry entry = gson.fromJson((String) e.getValue(), Entry.class);
+                if (entry == null || entry.sha256 == null) continue;
+                ids.add(e.getKey());
+                entries.add(entry);
+            } catch (Exception ignored) {
+                // Unreadable entries are dropped by get()
+            }
+        }
+
+        while (true) {
+            Set<String> live = new HashSet<>();
+            long total = 0;
+            int oldest = -1;
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                if (live.add(entry.sha256)) total += entry.size;
+                if (oldest < 0 || entry.lastUsedAt < entries.get(oldest).lastUsedAt) oldest = i;
+            }
+            // Always keep the most recent entry, even if it alone exceeds the budget
+            if (total <= maxBytes || entries.size() <= 1) {
+                deleteUnreferenced(live);
+                return;
+            }
+            Log.d(TAG, "Evicting " + ids.get(oldest) + " (" + entries.get(oldest).size + " bytes)");
+            prefs.edit().remove(ids.remove(oldest)).apply();
+            entries.remove(oldest);
+        }
+    }
+
+    private void deleteUnreferenced(Set<String> live) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File f : files) {
+            String name = f.getName();
+            if (name.endsWith(BLOB_SUFFIX)
+                    && live.contains(name.substring(0, name.length() - BLOB_SUFFIX.length()))) {
+                continue;
+            }
+            if (!f.delete()) Log.w(TAG, "Cannot delete " + f);
+        }
+    }
+
+    private void save(String versionId, Entry entry) {
+        prefs.edit().putString(key(versionId), gson.toJson(entry)).apply();
+    }
+
+    private File blobFile(String sha256) {
+        return new File(dir, sha256 + BLOB_SUFFIX);
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        long length = file.length();
+        if (length <= 0 || length > Integer.MAX_VALUE) throw new IOException("bad length " + length);
+        byte[] data = new byte[(int) length];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int off = 0;
+            while (off < data.length) {
+                int n = in.read(data, off, data.length - off);
+                if (n < 0) throw new IOException("short read");
+                off += n;
+            }
+        }
+        return data;
+    }
+
+    private static String key(String versionId) {
+        return "fw_" + versionId;
+    }
+}
@@ -25,11 +25,20 @@ import java.util.List;
  * interface is the portable contract for driving UI updates.
  * A React Native/Flutter bridge implements FirmwareUpdateListener to forward
  * events to the cross-platform layer.
+ *
+ * Interrupted uploads: while D2 runs, the number of packets the bootloader has
+ * acknowledged is checkpointed per scooter together with the image's SHA-256. When
+ * the same image is installed on that scooter again, the listener is offered
+ * {@link FirmwareUpdateListener#onResumeAvailable}; the UI answers with
+ * {@link #resumeUpload()} or {@link #startFreshUpload()}.
  */
 public class FirmwareUpdateOrchestrator implements FirmwareUploader.FirmwareUploadListener {
 
     private static final String TAG = "FWOrchestrator";
 
+    // Persist the checkpoint every this many acknowledged packets (and on failure)
+    private static final int CHECKPOINT_INTERVAL_PACKETS = 32;
+
     /**
      * Listener interface for UI updates during the firmware update flow.
      * Activities implement this to drive their state machine.
@@ -47,6 +56,13 @@ public class FirmwareUpdateOrchestrator implements FirmwareUploader.FirmwareUplo
         /** Firmware binary downloaded successfully. */
         void onFirmwareDownloaded(int byteCount);
 
+        /**
+         * An earlier upload of this image to this scooter was interrupted after
+         * {@code packetsDone} of {@code totalPackets} packets. Answer with
+         * {@link #resumeUpload()} or {@link #startFreshUpload()}.
+         */
+        void onResumeAvailable(int packetsDone, int totalPackets);
+
         /** Firmware upload has started (BLE transfer beginning). */
         void onUploadStarted();
 
@@ -72,6 +88,7 @@ public class FirmwareUpdateOrchestrator implements FirmwareUploader.FirmwareUplo
     // Dependencies
     private final SupabaseClient supabase;
     private final BLEManager bleManager;
+    private final UploadCheckpointStore checkpointStore;
 
     // Listener
     private FirmwareUpdateListener listener;
@@ -82,6 +99,11 @@ public class FirmwareUpdateOrchestrator implements FirmwareUploader.FirmwareUplo
     private FirmwareVersion targetFirmware;
     private byte[] firmwareData;
     private String currentUploadRecordId;
+    private String firmwareSha256;
+    private UploadCheckpointStore.Checkpoint pendingCheckpoint;
+    private int packetsAcknowledged;
+    private int totalPackets;
+    private int lastSavedPackets;
 
     // Context from connection phase (set by Activity before starting orchestrator)
     private DistributorInfo distributor;
@@ -93,8 +115,17 @@ public class FirmwareUpdateOrchestrator implements FirmwareUploader.FirmwareUplo
     private String deviceHardwareRevision;
 
     public FirmwareUpdateOrchestrator(SupabaseClient supabase, BLEManager bleManager) {
+        this(supabase, bleManager, null);
+    }
+
+    /**
+     * @param checkpointStore where upload checkpoints are kept; null disables resuming
+     */
+    public FirmwareUpdateOrchestrator(SupabaseClient supabase, BLEManager bleManager,
+                                      UploadCheckpointStore checkpointStore) {
         this.supabase = supabase;
         this.bleManager = bleManager;
+        this.checkpointStore = checkpointStore;
     }
 
     public void setListener(FirmwareUpdateListener listener) {
@@ -245,13 +276,23 @@ public class FirmwareUpdateOrchestrator implements FirmwareUploader.FirmwareUplo
 
         if (listener != null) listener.onFirmwareDownloadStarted(targetFirmware.version_label);
 
-        supabase.downloadFirmwareBinary(targetFirmware.file_path, new SupabaseClient.Callback<byte[]>() {
+        supabase.downloadFirmwareBinary(targetFirmware, new SupabaseClient.Callback<byte[]>() {
             @Override
             public void onSuccess(byte[] data) {
                 firmwareData = data;
+                firmwareSha256 = FirmwareBinaryCache.sha256(data);
                 Log.d(TAG, "Firmware downloaded: " + data.length + " bytes");
                 if (listener != null) listener.onFirmwareDownloaded(data.length);
-                startFirmwareUpload();
+
+                UploadCheckpointStore.Checkpoint checkpoint = findCheckpoint();
+                if (checkpoint != null && listener != null) {
+                    Log.d(TAG, "Interrupted upload found at packet " + checkpoint.packetsAcknowledged
+                            + "/" + checkpoint.totalPackets);
+                    pendingCheckpoint = checkpoint;
+                    listener.onResumeAvailable(checkpoint.packetsAcknowledged, checkpoint.totalPackets);
+                    return;
+                }
+                startFirmwareUpload(null);
             }
 
             @Override
@@ -261,11 +302,43 @@ public class FirmwareUpdateOrchestrator implements FirmwareUploader.FirmwareUplo
         });
     }
 
+    /**
+     * Continue the interrupted upload offered by {@link FirmwareUpdateListener#onResumeAvailable}.
+     * Falls back to a full upload if the scooter has left update mode.
+     */
+    public void resumeUpload() {
+        UploadCheckpointStore.Checkpoint checkpoint = pendingCheckpoint;
+        pendingCheckpoint = null;
+        startFirmwareUpload(checkpoint);
+    }
+
+    /** Decline the offered resume and upload the whole image (erasing the flash). */
+    public void startFreshUpload() {
+        pendingCheckpoint = null;
+        startFirmwareUpload(null);
+    }
+
+    /** Checkpoint for the connected scooter taken with this exact image, or null. */
+    private UploadCheckpointStore.Checkpoint findCheckpoint() {
+        if (checkpointStore == null) return null;
+        UploadCheckpointStore.Checkpoint checkpoint = checkpointStore.get(connectedDeviceName);
+        if (checkpoint == null) return null;
+        if (!firmwareSha256.equals(checkpoint.firmwareSha256)
+                || !targetFirmware.id.equals(checkpoint.firmwareVersionId)
+                || checkpoint.packetsAcknowledged <= 0) {
+            Log.d(TAG, "Checkpoint for " + connectedDeviceName + " is for a different image, ignoring");
+            return null;
+        }
+        return checkpoint;
+    }
+
     /**
      * Start the BLE firmware upload after download.
      * Creates an upload record in the database, then starts the FirmwareUploader.
+     *
+     * @param resumeFrom checkpoint to continue from, or null for a full upload
      */
-    private void startFirmwareUpload() {
+    private void startFirmwareUpload(UploadCheckpointStore.Checkpoint resumeFrom) {
         // Create upload record in database
         String hwForRecord = (deviceHardwareRevision != null && !deviceHardwareRevision.isEmpty())
                 ? deviceHardwareRevision : scooterVersion.controllerHwVersion;
@@ -282,7 +355,7 @@ public class FirmwareUpdateOrchestrator implements FirmwareUploader.FirmwareUplo
                     @Override
                     public void onSuccess(String recordId) {
                         currentUploadRecordId = recordId;
-                        beginBLEUpload();
+                        beginBLEUpload(resumeFrom);
                     }
 
                     @Override
@@ -290,14 +363,25 @@ public class FirmwareUpdateOrchestrator implements FirmwareUploader.FirmwareUplo
                         Log.w(TAG, "Failed to create upload record: " + error);
                         // Proceed anyway — upload is more important than logging
                         currentUploadRecordId = null;
-                        beginBLEUpload();
+                        beginBLEUpload(resumeFrom);
                     }
                 });
     }
 
-    private void beginBLEUpload() {
+    private void beginBLEUpload(UploadCheckpointStore.Checkpoint resumeFrom) {
         firmwareUploader = new FirmwareUploader(bleManager, this);
-        firmwareUploader.startUpload(firmwareData);
+        if (resumeFrom != null) {
+            // Kept until the bootloader accepts the resume, so a failed attempt
+            // leaves the original checkpoint (and its record link) in place
+            pendingCheckpoint = resumeFrom;
+            packetsAcknowledged = resumeFrom.packetsAcknowledged;
+            lastSavedPackets = resumeFrom.packetsAcknowledged;
+            firmwareUploader.resumeUpload(firmwareData, resumeFrom.packetsAcknowledged);
+        } else {
+            packetsAcknowledged = 0;
+            lastSavedPackets = 0;
+            firmwareUploader.startUpload(firmwareData);
+        }
     }
 
     /**
@@ -324,9 +408,48 @@ public class FirmwareUpdateOrchestrator implements FirmwareUploader.FirmwareUplo
         if (listener != null) listener.onUploadProgress(current, total, percentage);
     }
 
+    @Override
+    public void onUploadCheckpoint(int packetsAcknowledged, int totalPackets) {
+        this.packetsAcknowledged = packetsAcknowledged;
+        this.totalPackets = totalPackets;
+        if (packetsAcknowledged == 0) {
+            // Flash erased (new upload, or the bootloader refused to resume)
+            pendingCheckpoint = null;
+            lastSavedPackets = 0;
+            if (checkpointStore != null) checkpointStore.remove(connectedDeviceName);
+            return;
+        }
+        if (packetsAcknowledged - lastSavedPackets >= CHECKPOINT_INTERVAL_PACKETS) {
+            saveCheckpoint();
+        }
+    }
+
+    @Override
+    public void onUploadResumed(int fromPacket) {
+        String previousRecordId = pendingCheckpoint != null ? pendingCheckpoint.uploadRecordId : null;
+        pendingCheckpoint = null;
+        Log.d(TAG, "Upload resumed at packet " + fromPacket);
+        if (currentUploadRecordId != null) {
+            supabase.markUploadResumed(currentUploadRecordId, fromPacket, previousRecordId,
+                    new SupabaseClient.Callback<Void>() {
+                        @Override
+                        public void onSuccess(Void result) {
+                            Log.d(TAG, "Upload record marked as resumed");
+                        }
+
+                        @Override
+                        public void onError(String error) {
+                            Log.w(TAG, "Failed to mark upload record as resumed: " + error);
+                        }
+                    });
+        }
+    }
+
     @Override
     public void onUploadCompleted() {
         Log.d(TAG, "Upload completed");
+        if (checkpointStore != null) checkpointStore.remove(connectedDeviceName);
+        pendingCheckpoint = null;
 
         // Update database record
         if (currentUploadRecordId != null) {
@@ -355,6 +478,9 @@ public class FirmwareUpdateOrchestrator implements FirmwareUploader.FirmwareUplo
     @Override
     public void onUploadFailed(String error) {
         Log.e(TAG, "Upload failed: " + error);
+        // A resume that was never accepted leaves its checkpoint untouched
+        if (pendingCheckpoint == null && packetsAcknowledged > lastSavedPackets) saveCheckpoint();
+        pendingCheckpoint = null;
 
         // Update database record
         if (currentUploadRecordId != null) {
@@ -380,6 +506,18 @@ public class FirmwareUpdateOrchestrator implements FirmwareUploader.FirmwareUplo
         if (listener != null) listener.onUploadLog(message, level);
     }
 
+    private void saveCheckpoint() {
+        if (checkpointStore == null || packetsAcknowledged <= 0) return;
+        UploadCheckpointStore.Checkpoint checkpoint = new UploadCheckpointStore.Checkpoint();
+        checkpoint.firmwareVersionId = targetFirmware.id;
+        checkpoint.firmwareSha256 = firmwareSha256;
+        checkpoint.packetsAcknowledged = packetsAcknowledged;
+        checkpoint.totalPackets = totalPackets;
+        checkpoint.uploadRecordId = currentUploadRecordId;
+        checkpointStore.put(connectedDeviceName, checkpoint);
+        lastSavedPackets = packetsAcknowledged;
+    }
+
     // ==================================================================================
     // UTILITIES
     // ==================================================================================
@@ -409,5 +547,10 @@ public class FirmwareUpdateOrchestrator implements FirmwareUploader.FirmwareUplo
         firmwareData = null;
         currentUploadRecordId = null;
         firmwareUploader = null;
+        firmwareSha256 = null;
+        pendingCheckpoint = null;
+        packetsAcknowledged = 0;
+        totalPackets = 0;
+        lastSavedPackets = 0;
     }
 }
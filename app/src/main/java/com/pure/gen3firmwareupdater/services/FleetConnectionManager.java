@@ -0,0 +1,365 @@
+package com.pure.gen3firmwareupdater.services;
+
+import android.bluetooth.le.ScanResult;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.pure.gen3firmwareupdater.BMSDataInfo;
+import com.pure.gen3firmwareupdater.BleIoThread;
+import com.pure.gen3firmwareupdater.ConfigInfo;
+import com.pure.gen3firmwareupdater.RunningDataInfo;
+import com.pure.gen3firmwareupdater.VersionInfo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds several scooter links at once for workshop use, e.g. reading telemetry and
+ * versions from a rack of scooters instead of connecting to them one by one.
+ *
+ * Each link is its own {@link ScooterConnectionService} + BLEManager, so it has its
+ * own PacketRouter, frame assembler, GATT queue and request correlator. What they
+ * share is the radio, and this class is what shares it:
+ * <ul>
+ *   <li>Connects are serialized - the Android stack handles one pending connectGatt
+ *       at a time reliably - and the next one starts when the previous link is up
+ *       or has failed.</li>
+ *   <li>Polling is round-robin: one link at a time gets a slot, queries A0 (and A1
+ *       every few rounds) and the next link's slot starts when that answer arrives
+ *       or times out. A slow or out-of-range scooter costs its own timeout, not
+ *       everyone's bandwidth, and total request rate stays flat as links are added.</li>
+ * </ul>
+ *
+ * Independent of the single shared connection used by the dashboard. All state
+ * lives on the BLE I/O thread; {@link FleetListener} callbacks arrive there too.
+ * Connection callbacks from the scan fallback come from the main thread (scans run
+ * there) and are moved onto the I/O thread before they touch any state.
+ */
+public class FleetConnectionManager {
+
+    private static final String TAG = "FleetConnection";
+
+    /** Android controllers manage about 7 LE links; leave room for the phone's own devices. */
+    public static final int MAX_LINKS = 6;
+
+    private static final long SLOT_TIMEOUT_MS = 1500;
+    private static final long SLOT_GAP_MS = 20;
+    private static final long MIN_ROUND_MS = 1000;
+    private static final int BMS_EVERY_ROUNDS = 5;
+
+    public static final String STATE_QUEUED = "queued";
+    public static final String STATE_CONNECTING = "connecting";
+    public static final String STATE_CONNECTED = "connected";
+    public static final String STATE_FAILED = "failed";
+    public static final String STATE_DISCONNECTED = "disconnected";
+
+    /** Fleet events, keyed by MAC. Called on the BLE I/O thread. */
+    public interface FleetListener {
+        void onLinkStateChanged(String address, String state, String detail);
+        void onRunningData(String address, RunningDataInfo data);
+        void onBMSData(String address, BMSDataInfo data);
+        void onVersion(String address, VersionInfo version);
+    }
+
+    /** One scooter in the fleet. */
+    public final class Link implements ScooterConnectionService.ConnectionListener {
+        public final String address;
+        public final String name;
+        final ScooterConnectionService service;
+        volatile String state = STATE_QUEUED;
+        volatile String serialNumber;
+        volatile VersionInfo version;
+        volatile RunningDataInfo runningData;
+        volatile BMSDataInfo bmsData;
+        int missedSlots;
+
+        Link(String address, String name, ScooterConnectionService service) {
+            this.address = address;
+            this.name = name;
+            this.service = service;
+        }
+
+        public String getState() { return state; }
+        public String getSerialNumber() { return serialNumber; }
+        public VersionInfo getVersion() { return version; }
+        public RunningDataInfo getRunningData() { return runningData; }
+        public BMSDataInfo getBMSData() { return bmsData; }
+
+        @Override public void onScanStarted() {}
+
+        /** The direct connect fell back to a scan: connect to this scooter if it was seen. */
+        @Override
+        public void onDevicesFound(List<ScanResult> devices) {
+            onIoThread(() -> {
+                if (connecting != this) return;
+                for (ScanResult result : devices) {
+                    if (address.equalsIgnoreCase(result.getDevice().getAddress())) {
+                        Log.d(TAG, address + " found by scan, connecting");
+                        service.connectToDevice(result.getDevice());
+                        return;
+                    }
+                }
+                failConnect("not found by scan");
+            });
+        }
+
+        @Override public void onScanFailed(String error) { onIoThread(() -> failConnect(error)); }
+
+        @Override
+        public void onConnecting(String deviceName) {
+            onIoThread(() -> setState(this, STATE_CONNECTING, null));
+        }
+
+        @Override
+        public void onConnected(String deviceName, String serial) {
+            onIoThread(() -> {
+                serialNumber = serial;
+                missedSlots = 0;
+                setState(this, STATE_CONNECTED, serial);
+                onConnectFinished(this);
+            });
+        }
+
+        @Override public void onDeviceInfoRead(String hw, String fw, String model, String mfr) {}
+
+        @Override
+        public void onVersionReceived(VersionInfo v) {
+            version = v;
+            if (listener != null) listener.onVersion(address, v);
+        }
+
+        @Override
+        public void onRunningDataReceived(RunningDataInfo data) {
+            runningData = data;
+            if (listener != null) listener.onRunningData(address, data);
+        }
+
+        @Override
+        public void onBMSDataReceived(BMSDataInfo data) {
+            bmsData = data;
+            if (listener != null) listener.onBMSData(address, data);
+        }
+
+        @Override public void onConfigReceived(ConfigInfo config) {}
+        @Override public void onStatusChanged(String status) {}
+
+        @Override
+        public void onDisconnected(boolean wasExpected) {
+            onIoThread(() -> {
+                setState(this, STATE_DISCONNECTED, wasExpected ? null : "link lost");
+                onConnectFinished(this);
+            });
+        }
+
+        @Override
+        public void onConnectionFailed(String error) {
+            onIoThread(() -> failConnect(error));
+        }
+
+        private void failConnect(String error) {
+            setState(this, STATE_FAILED, error);
+            onConnectFinished(this);
+        }
+
+        @Override public void onVersionRequestTimeout() {}
+        @Override public void onRawDataReceived(byte[] data) {}
+        @Override public void onCommandSent(boolean success, String message) {}
+    }
+
+    private final Context context;
+    private final Handler handler = BleIoThread.getHandler();
+    private final Map<String, Link> links = new LinkedHashMap<>();
+    private final ArrayDeque<Link> connectQueue = new ArrayDeque<>();
+    private Link connecting;
+    private volatile FleetListener listener;
+
+    // Round-robin polling
+    private boolean polling;
+    private int slotIndex;
+    private int round;
+    private long roundStartedAt;
+    private final Runnable nextSlot = this::runNextSlot;
+
+    public FleetConnectionManager(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public void setListener(FleetListener listener) {
+        this.listener = listener;
+    }
+
+    // ==================================================================================
+    // LINKS
+    // ==================================================================================
+
+    /**
+     * Add a scooter to the fleet and queue its connection.
+     *
+     * @return false if the fleet is full or the scooter is already in it
+     */
+    public boolean add(String address, String name) {
+        synchronized (links) {
+            if (links.containsKey(address) || links.size() >= MAX_LINKS) return false;
+            ScooterConnectionService service = ServiceFactory.createConnectionService(context);
+            Link link = new Link(address, name, service);
+            service.setListener(link);
+            links.put(address, link);
+            handler.post(() -> {
+                connectQueue.add(link);
+                connectNext();
+            });
+        }
+        Log.d(TAG, "Added " + address + " (" + name + ")");
+        return true;
+    }
+
+    /** Disconnect a scooter and drop it from the fleet. */
+    public void remove(String address) {
+        Link link;
+        synchronized (links) {
+            link = links.remove(address);
+        }
+        if (link == null) return;
+        handler.post(() -> {
+            connectQueue.remove(link);
+            link.service.setListener(null);
+            link.service.cleanup();
+            if (connecting == link) {
+                connecting = null;
+                connectNext();
+            }
+        });
+    }
+
+    public void removeAll() {
+        for (Link link : getLinks()) remove(link.address);
+    }
+
+    /** Queue a reconnect for a link that failed or dropped. */
+    public void reconnect(String address) {
+        Link link = getLink(address);
+        if (link == null) return;
+        handler.post(() -> {
+            if (link.state.equals(STATE_CONNECTED) || connectQueue.contains(link)) return;
+            setState(link, STATE_QUEUED, null);
+            connectQueue.add(link);
+            connectNext();
+        });
+    }
+
+    public Link getLink(String address) {
+        synchronized (links) {
+            return links.get(address);
+        }
+    }
+
+    public List<Link> getLinks() {
+        synchronized (links) {
+            return new ArrayList<>(links.values());
+        }
+    }
+
+    public int getConnectedCount() {
+        int count = 0;
+        for (Link link : getLinks()) {
+            if (link.state.equals(STATE_CONNECTED)) count++;
+        }
+        return count;
+    }
+
+    private void connectNext() {
+        if (connecting != null || connectQueue.isEmpty()) return;
+        connecting = connectQueue.poll();
+        Log.d(TAG, "Connecting " + connecting.address + " (" + connectQueue.size() + " waiting)");
+        connecting.service.connectToLastScooter(connecting.address, connecting.name);
+    }
+
+    private void onConnectFinished(Link link) {
+        if (connecting != link) return;
+        connecting = null;
+        connectNext();
+    }
+
+    /** Run {@code r} now if on the BLE I/O thread, otherwise post it there. */
+    private void onIoThread(Runnable r) {
+        if (Looper.myLooper() == handler.getLooper()) {
+            r.run();
+        } else {
+            handler.post(r);
+        }
+    }
+
+    private void setState(Link link, String state, String detail) {
+        link.state = state;
+        Log.d(TAG, link.address + " -> " + state + (detail != null ? " (" + detail + ")" : ""));
+        if (listener != null) listener.onLinkStateChanged(link.address, state, detail);
+    }
+
+    // ==================================================================================
+    // ROUND-ROBIN POLLING
+    // ==================================================================================
+
+    /** Start sharing the radio between connected links, one query slot at a time. */
+    public void startPolling() {
+        handler.post(() -> {
+            if (polling) return;
+            polling = true;
+            slotIndex = 0;
+            round = 0;
+            roundStartedAt = System.currentTimeMillis();
+            handler.post(nextSlot);
+        });
+    }
+
+    public void stopPolling() {
+        handler.post(() -> {
+            polling = false;
+            handler.removeCallbacks(nextSlot);
+        });
+    }
+
+    private void runNextSlot() {
+        if (!polling) return;
+        List<Link> connected = new ArrayList<>();
+        for (Link link : getLinks()) {
+            if (link.state.equals(STATE_CONNECTED)) connected.add(link);
+        }
+        if (connected.isEmpty()) {
+            handler.postDelayed(nextSlot, MIN_ROUND_MS);
+            return;
+        }
+
+        if (slotIndex >= connected.size()) {
+            // Round finished: wait out the rest of the minimum round time
+            slotIndex = 0;
+            round++;
+            long elapsed = System.currentTimeMillis() - roundStartedAt;
+            long wait = Math.max(SLOT_GAP_MS, MIN_ROUND_MS - elapsed);
+            roundStartedAt = System.currentTimeMillis() + wait;
+            handler.postDelayed(nextSlot, wait);
+            return;
+        }
+
+        Link link = connected.get(slotIndex++);
+        if (round % BMS_EVERY_ROUNDS == 0) {
+            link.service.queryBMSData(SLOT_TIMEOUT_MS);
+        }
+        link.service.queryRunningData(SLOT_TIMEOUT_MS).whenComplete((data, error) -> {
+            if (error != null) {
+                link.missedSlots++;
+                Log.w(TAG, link.address + " missed slot (" + link.missedSlots + "): "
+                        + error.getMessage());
+            } else {
+                link.missedSlots = 0;
+            }
+            // Next link's slot starts once this one has answered or timed out
+            handler.removeCallbacks(nextSlot);
+            handler.postDelayed(nextSlot, SLOT_GAP_MS);
+        });
+    }
+}
@@ -7,8 +7,11 @@ import android.util.Log;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.pure.gen3firmwareupdater.BLEManager;
 import com.pure.gen3firmwareupdater.BMSDataInfo;
+import com.pure.gen3firmwareupdater.LinkProfile;
 import com.pure.gen3firmwareupdater.RunningDataInfo;
+import com.pure.gen3firmwareupdater.TripDataInfo;
 import com.pure.gen3firmwareupdater.data.AppDatabase;
 import com.pure.gen3firmwareupdater.data.RideDao;
 import com.pure.gen3firmwareupdater.data.RideSampleEntity;
@@ -26,6 +29,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 /**
  * Manages ride recording sessions: start/stop, sample collection, upload.
  * Receives A0/A1 data from dashboard callbacks and stores samples in Room.
+ * A {@link TripAggregator} runs alongside and produces one compact trip summary
+ * per session, stored with the session and uploaded as "trip_summary".
  * Singleton registered in ServiceFactory.
  */
 public class RideRecordingManager {
@@ -48,6 +53,9 @@ public class RideRecordingManager {
     private volatile RunningDataInfo latestA0;
     private volatile BMSDataInfo latestA1;
 
+    // Incremental trip statistics for the current session (guarded by itself)
+    private final TripAggregator tripAggregator = new TripAggregator();
+
     // Timer tick runnable
     private RecordingListener listener;
     private final Runnable tickRunnable = new Runnable() {
@@ -128,6 +136,9 @@ public class RideRecordingManager {
 
         sampleCounter = 0;
         recordingStartMillis = System.currentTimeMillis();
+        synchronized (tripAggregator) {
+            tripAggregator.reset(recordingStartMillis);
+        }
 
         RideSessionEntity session = new RideSessionEntity();
         session.id = UUID.randomUUID().toString();
@@ -148,6 +159,10 @@ public class RideRecordingManager {
 
         mainHandler.post(tickRunnable);
 
+        // Keep the link responsive while recording, even with the dashboard in the background
+        BLEManager ble = ServiceFactory.getSharedBleManager();
+        if (ble != null) ble.requestLinkProfile(TAG, LinkProfile.INTERACTIVE);
+
         if (listener != null) {
             mainHandler.post(() -> listener.onRecordingStarted(session.id));
         }
@@ -164,6 +179,9 @@ public class RideRecordingManager {
 
         mainHandler.removeCallbacks(tickRunnable);
 
+        BLEManager ble = ServiceFactory.getSharedBleManager();
+        if (ble != null) ble.releaseLinkProfile(TAG);
+
         final RideSessionEntity session = currentSession;
         currentSession = null;
         final int totalSamples = sampleCounter;
@@ -172,6 +190,9 @@ public class RideRecordingManager {
             session.endedAt = System.currentTimeMillis();
             session.sampleCount = totalSamples;
             session.status = "completed";
+            TripAggregator.TripSummary summary = getTripSummary();
+            session.tripSummaryJson = tripSummaryToJson(summary).toString();
+            Log.d(TAG, "Trip summary: " + summary);
 
             dbExecutor.execute(() -> {
                 dao.updateSession(session);
@@ -199,11 +220,16 @@ public class RideRecordingManager {
 
         if (!isRecording.get() || currentSession == null || data == null) return;
 
+        long now = System.currentTimeMillis();
+        synchronized (tripAggregator) {
+            tripAggregator.onRunningData(data, now);
+        }
+
         // Capture a sample on each A0 callback (A0 drives the sample rate)
         final RideSampleEntity sample = new RideSampleEntity();
         sample.sessionId = currentSession.id;
         sample.sampleIndex = sampleCounter++;
-        sample.recordedAt = System.currentTimeMillis();
+        sample.recordedAt = now;
 
         // A0 fields
         sample.speedKmh = data.currentSpeed;
@@ -235,6 +261,80 @@ public class RideRecordingManager {
      */
     public void onBmsDataReceived(BMSDataInfo data) {
         latestA1 = data;
+
+        if (!isRecording.get() || data == null) return;
+        synchronized (tripAggregator) {
+            tripAggregator.onBMSData(data, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Heartbeat for a suppressed A0/A1 repeat. No sample is written (nothing changed),
+     * but the trip summary keeps integrating so steady cruising isn't lost as a gap.
+     */
+    public void onTelemetryUnchanged(int packetType) {
+        if (!isRecording.get()) return;
+        long now = System.currentTimeMillis();
+        synchronized (tripAggregator) {
+            if (packetType == PacketType.RUNNING_DATA.getCommand()) {
+                tripAggregator.onRunningData(latestA0, now);
+            } else if (packetType == PacketType.BMS_DATA.getCommand()) {
+                tripAggregator.onBMSData(latestA1, now);
+            }
+        }
+    }
+
+    /**
+     * Feed A2 (trip data) into the recorder. Only the trip summary uses it.
+     */
+    public void onTripDataReceived(TripDataInfo data) {
+        if (!isRecording.get() || data == null) return;
+        synchronized (tripAggregator) {
+            tripAggregator.onTripData(data);
+        }
+    }
+
+    /**
+     * Trip statistics for the current (or most recently stopped) session.
+     */
+    public TripAggregator.TripSummary getTripSummary() {
+        synchronized (tripAggregator) {
+            return tripAggregator.snapshot();
+        }
+    }
+
+    private static JsonObject tripSummaryToJson(TripAggregator.TripSummary t) {
+        JsonObject json = new JsonObject();
+        json.addProperty("duration_seconds", t.durationSeconds);
+        json.addProperty("moving_seconds", t.movingSeconds);
+        json.addProperty("distance_km", Math.round(t.distanceKm * 100) / 100.0);
+        if (t.odometerStartKm >= 0) {
+            json.addProperty("odometer_start_km", t.odometerStartKm);
+            json.addProperty("odometer_end_km", t.odometerEndKm);
+        }
+        json.addProperty("max_speed_kmh", t.maxSpeedKmh);
+        json.addProperty("avg_moving_speed_kmh", Math.round(t.avgMovingSpeedKmh * 10) / 10.0);
+        json.addProperty("energy_used_wh", Math.round(t.energyUsedWh * 10) / 10.0);
+        json.addProperty("energy_regen_wh", Math.round(t.energyRegenWh * 10) / 10.0);
+        if (t.batteryStartPercent >= 0) {
+            json.addProperty("battery_start_percent", t.batteryStartPercent);
+            json.addProperty("battery_end_percent", t.batteryEndPercent);
+        }
+        json.addProperty("max_motor_temp", t.maxMotorTemp);
+        json.addProperty("max_controller_temp", t.maxControllerTemp);
+        json.addProperty("max_battery_temp", t.maxBatteryTemp);
+        json.addProperty("fault_code_mask", t.faultCodeMask);
+        json.addProperty("running_samples", t.runningSamples);
+        json.addProperty("bms_samples", t.bmsSamples);
+        if (t.hasDeviceTripData) {
+            JsonObject device = new JsonObject();
+            device.addProperty("trip_distance_km", t.deviceTripDistanceKm);
+            device.addProperty("ride_time_seconds", t.deviceRideTimeSeconds);
+            device.addProperty("max_speed_kmh", t.deviceMaxSpeedKmh);
+            device.addProperty("energy_wh", t.deviceEnergyWh);
+            json.add("device", device);
+        }
+        return json;
     }
 
     // ==================================================================================
@@ -294,6 +394,10 @@ public class RideRecordingManager {
             body.add("diagnostic_config",
                     com.google.gson.JsonParser.parseString(session.diagnosticConfigJson));
         }
+        if (session.tripSummaryJson != null) {
+            body.add("trip_summary",
+                    com.google.gson.JsonParser.parseString(session.tripSummaryJson));
+        }
 
         // Build samples array
         JsonArray samplesArray = new JsonArray();
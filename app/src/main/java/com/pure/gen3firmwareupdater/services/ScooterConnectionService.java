@@ -3,22 +3,25 @@ package com.pure.gen3firmwareupdater.services;
 import android.bluetooth.BluetoothDevice;
 import android.bluetooth.le.ScanResult;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.pure.gen3firmwareupdater.BLEListener;
 import com.pure.gen3firmwareupdater.BLEManager;
 import com.pure.gen3firmwareupdater.BMSDataInfo;
+import com.pure.gen3firmwareupdater.CommandEncoder;
 import com.pure.gen3firmwareupdater.ConfigInfo;
 import com.pure.gen3firmwareupdater.RunningDataInfo;
+import com.pure.gen3firmwareupdater.TripDataInfo;
 import com.pure.gen3firmwareupdater.VersionInfo;
-import com.pure.gen3firmwareupdater.VersionRequestHelper;
 
 import java.util.List;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Orchestrates the BLE scan -> connect -> identify -> collect telemetry flow.
  *
- * Wraps BLEManager, PacketRouter, and VersionRequestHelper into a single
+ * Wraps BLEManager, PacketRouter, and RequestCorrelator into a single
  * cohesive service. Activities implement ConnectionListener for UI callbacks
  * instead of implementing BLEListener directly.
  *
@@ -33,15 +36,26 @@ public class ScooterConnectionService implements BLEListener, PacketRouter.Packe
 
     private static final String TAG = "ScooterConnection";
 
+    // Version handshake: A0/B0/A1 pipelined, retried while B0 goes unanswered
+    private static final int MAX_VERSION_ATTEMPTS = 3;
+    private static final long VERSION_TIMEOUT_MS = 3000;
+
+    // Direct connect to the saved scooter; scan instead if the link isn't up by then
+    private static final long DIRECT_CONNECT_TIMEOUT_MS = 4000;
+
     /**
      * Listener interface for activities to receive connection events.
      * Higher-level than BLEListener - translates raw BLE events into
-     * application-meaningful events.
+     * application-meaningful events. Called on the BLE I/O thread; post view
+     * updates to the UI thread.
      */
     public interface ConnectionListener {
         /** BLE scan has started. */
         void onScanStarted();
 
+        /** A scooter was seen for the first time during the current scan. */
+        default void onDeviceFound(ScanResult device) {}
+
         /** BLE scan completed with a list of discovered devices. */
         void onDevicesFound(List<ScanResult> devices);
 
@@ -70,6 +84,30 @@ public class ScooterConnectionService implements BLEListener, PacketRouter.Packe
         /** Config data collected (0x01 packet). */
         void onConfigReceived(ConfigInfo config);
 
+        /** Trip data collected (A2 packet, provisional layout). */
+        default void onTripDataReceived(TripDataInfo data) {}
+
+        /**
+         * A telemetry frame (A0/A1) arrived identical to the previous one and was
+         * not decoded. The last delivered data object is still current.
+         */
+        default void onTelemetryUnchanged(int packetType) {}
+
+        /**
+         * Connect latency for this connection, reported once the first A0 frame
+         * has arrived (see {@link ConnectMetrics}).
+         */
+        default void onConnectMetrics(ConnectMetrics metrics) {}
+
+        /** A C0 control change was confirmed by A0; {@code controlFlags} is the new state. */
+        default void onControlConfirmed(int controlFlags) {}
+
+        /**
+         * A C0 control change was not confirmed after retries and was rolled back.
+         * {@code actualFlags} is the state the scooter reports.
+         */
+        default void onControlRejected(int mask, int actualFlags) {}
+
         /** Connection status text update. */
         void onStatusChanged(String status);
 
@@ -92,13 +130,21 @@ public class ScooterConnectionService implements BLEListener, PacketRouter.Packe
     // Dependencies
     private final BLEManager bleManager;
     private final PacketRouter packetRouter;
+    private final FrameAssembler frameAssembler;
+    private final TelemetryChangeFilter changeFilter = new TelemetryChangeFilter();
+    private final RequestCorrelator requestCorrelator;
+    private final TelemetryPollScheduler pollScheduler;
+    private final ControlStateWriter controlWriter;
+    private final CommandEncoder controlEncoder = new CommandEncoder(); // Reused C0 buffer
+    private volatile boolean pollingRequested = false;
     private final Handler handler;
 
     // Listener
     private ConnectionListener listener;
 
     // State
-    private VersionRequestHelper versionRequestHelper;
+    private volatile ResponseFuture<VersionInfo> pendingVersionRequest;
+    private int versionAttempts = 0;
     private VersionInfo scooterVersion;
     private ConfigInfo scooterConfig;
     private RunningDataInfo scooterRunningData;
@@ -109,18 +155,107 @@ public class ScooterConnectionService implements BLEListener, PacketRouter.Packe
     private String deviceFirmwareRevision = "";
     private String deviceModelNumber = "";
     private String deviceManufacturer = "";
-    private boolean isConnected = false;
+    private volatile boolean isConnected = false;
+
+    // Fast reconnect: set while a direct connect to the saved scooter is in flight
+    private volatile String directConnectAddress;
+    private volatile String directConnectName;
+    // Background reattachment after an unexpected link loss
+    private volatile boolean autoReattach = false;
+    private volatile boolean userDisconnected = false;
+    private volatile String lastConnectedAddress;
+
+    // Connect latency measurement for the current attempt
+    private volatile ConnectMetrics connectMetrics;
+    private volatile long connectStartedAt;
+    private volatile long gattStartedAt;
 
     /**
      * Create a ScooterConnectionService.
      *
+     * Framing, parsing, request correlation and version retries all run on the
+     * BLE I/O thread, so ConnectionListener callbacks arrive there too.
+     *
      * @param bleManager the BLE manager (Activity must still create this as it needs Context)
-     * @param handler main thread handler for version request timing
      */
-    public ScooterConnectionService(BLEManager bleManager, Handler handler) {
+    public ScooterConnectionService(BLEManager bleManager) {
         this.bleManager = bleManager;
-        this.handler = handler;
+        this.handler = bleManager.getIoHandler();
         this.packetRouter = new PacketRouter(this);
+        this.frameAssembler = new FrameAssembler(new FrameAssembler.FrameSink() {
+            @Override
+            public void onFrame(byte[] buf, int offset, int length) {
+                int packetType = buf[offset + 1] & 0xFF;
+                // Never suppress a frame a pending query is waiting for, nor the A0 that
+                // answers a C0 write - unchanged flags are how a rejected write shows up
+                if (!changeFilter.shouldDeliver(buf, offset, length, System.currentTimeMillis())
+                        && !requestCorrelator.hasPending(packetType)
+                        && !(packetType == CommandEncoder.CMD_RUNNING_DATA
+                                && controlWriter.hasPendingChanges())) {
+                    packetRouter.getFrameStats().recordGood(packetType);
+                    if (packetType == CommandEncoder.CMD_RUNNING_DATA) {
+                        pollScheduler.onRunningDataUnchanged();
+                    }
+                    if (listener != null) listener.onTelemetryUnchanged(packetType);
+                    return;
+                }
+                packetRouter.routeVerifiedPacket(buf, offset, length);
+            }
+
+            @Override
+            public void onCorruptFrame(int packetType) {
+                packetRouter.getFrameStats().recordBadCrc(packetType);
+            }
+        });
+        RequestCorrelator.Scheduler ioScheduler = new RequestCorrelator.Scheduler() {
+            @Override
+            public void schedule(Runnable task, long delayMs) {
+                handler.postDelayed(task, delayMs);
+            }
+
+            @Override
+            public void cancel(Runnable task) {
+                handler.removeCallbacks(task);
+            }
+        };
+        this.requestCorrelator = new RequestCorrelator(packetRouter,
+                command -> bleManager.sendCommand(
+                        CommandEncoder.request(bleManager.getProtocolHeader(), command)),
+                ioScheduler);
+        this.pollScheduler = new TelemetryPollScheduler(new TelemetryPollScheduler.Poller() {
+            @Override
+            public void pollRunningData() {
+                bleManager.requestRunningData();
+            }
+
+            @Override
+            public void pollBMSData() {
+                bleManager.requestBMSData();
+            }
+        }, ioScheduler);
+        this.controlWriter = new ControlStateWriter(new ControlStateWriter.ControlSender() {
+            @Override
+            public boolean sendControl(int controlFlags, int cruiseSpeed, int maxSpeed) {
+                return bleManager.sendCommand(controlEncoder.encodeControl(
+                        bleManager.getProtocolHeader(), controlFlags, cruiseSpeed, maxSpeed));
+            }
+
+            @Override
+            public void requestRunningData() {
+                bleManager.requestRunningData();
+            }
+        }, ioScheduler);
+        this.controlWriter.setListener(new ControlStateWriter.Listener() {
+            @Override
+            public void onControlConfirmed(int controlFlags) {
+                if (listener != null) listener.onControlConfirmed(controlFlags);
+            }
+
+            @Override
+            public void onControlRejected(int mask, int actualFlags) {
+                if (listener != null) listener.onControlRejected(mask, actualFlags);
+            }
+        });
     }
 
     public void setListener(ConnectionListener listener) {
@@ -134,18 +269,88 @@ public class ScooterConnectionService implements BLEListener, PacketRouter.Packe
     /** Start scanning for BLE devices. */
     public void startScan() {
         resetConnectionState();
+        beginConnectMetrics(ConnectMetrics.PATH_SCAN);
         bleManager.startScanning();
     }
 
+    /**
+     * Scan for a scooter we expect to find. The known MAC / name are added to the
+     * hardware scan filters, and the scan ends as soon as either is seen instead of
+     * running for the full scan window.
+     *
+     * @param knownAddress MAC of the expected scooter (may be null)
+     * @param knownName    advertised name of the expected scooter (may be null)
+     */
+    public void startScan(String knownAddress, String knownName) {
+        resetConnectionState();
+        beginConnectMetrics(ConnectMetrics.PATH_SCAN);
+        scanFor(knownAddress, knownName);
+    }
+
+    private void scanFor(String knownAddress, String knownName) {
+        boolean hasAddress = knownAddress != null && !knownAddress.isEmpty();
+        boolean hasName = knownName != null && !knownName.isEmpty();
+        BLEManager.ScanStopCondition stop = hasAddress || hasName ? result ->
+                (hasAddress && knownAddress.equalsIgnoreCase(result.getDevice().getAddress()))
+                        || (hasName && knownName.equals(result.getDevice().getName()))
+                : null;
+        bleManager.startScanning(knownAddress, knownName, stop);
+    }
+
+    /** Stop an active scan now; onDevicesFound reports what was found so far. */
+    public void stopScan() {
+        bleManager.stopScanning();
+    }
+
     /** Connect to a specific BLE device. */
     public void connectToDevice(BluetoothDevice device) {
         connectedDeviceName = device.getName() != null ? device.getName() : "ZYD Device";
+        userDisconnected = false;
         if (listener != null) listener.onConnecting(connectedDeviceName);
+        markGattStart();
         bleManager.connectToDevice(device);
     }
 
+    /**
+     * Reconnect to the last scooter without scanning: connectGatt straight to its saved
+     * MAC. Falls back to a targeted scan (stopping as soon as the scooter is seen) if the
+     * address is invalid, the link fails to come up, or it is not up within a few
+     * seconds. Failures after the link is up (e.g. services missing) are reported
+     * without a scan and the link is closed.
+     *
+     * @param address saved MAC of the scooter
+     * @param name    saved advertised name (used for display and the fallback scan)
+     */
+    public void connectToLastScooter(String address, String name) {
+        resetConnectionState();
+        beginConnectMetrics(ConnectMetrics.PATH_DIRECT);
+        connectedDeviceName = name != null && !name.isEmpty() ? name : "ZYD Device";
+        directConnectAddress = address;
+        directConnectName = name;
+        if (listener != null) listener.onConnecting(connectedDeviceName);
+        Log.d(TAG, "Direct connect to saved scooter " + address);
+        markGattStart();
+        if (!bleManager.connectToAddress(address, false, DIRECT_CONNECT_TIMEOUT_MS)) {
+            fallBackToScan("invalid address");
+        }
+    }
+
+    /**
+     * When enabled, an unexpected link loss starts a background autoConnect to the same
+     * scooter, so the connection comes back by itself when it is in range again.
+     */
+    public void setAutoReattach(boolean enabled) {
+        autoReattach = enabled;
+    }
+
+    /** Latency of the current / most recent connection, or null before the first attempt. */
+    public ConnectMetrics getConnectMetrics() {
+        return connectMetrics;
+    }
+
     /** Disconnect from the current device. */
     public void disconnect() {
+        userDisconnected = true;
         if (bleManager != null) {
             bleManager.disconnect();
         }
@@ -156,11 +361,55 @@ public class ScooterConnectionService implements BLEListener, PacketRouter.Packe
         return bleManager.isBluetoothAvailable();
     }
 
+    /**
+     * Poll A0/A1 while connected, at a rate that follows the ride state
+     * (see {@link TelemetryPollScheduler}). Stops by itself on disconnect.
+     */
+    public void startTelemetryPolling() {
+        pollingRequested = true;
+        handler.post(() -> {
+            if (pollingRequested && isConnected) pollScheduler.start();
+        });
+    }
+
+    public void stopTelemetryPolling() {
+        pollingRequested = false;
+        handler.post(pollScheduler::stop);
+    }
+
+    public boolean isTelemetryPolling() {
+        return pollingRequested && isConnected;
+    }
+
+    /**
+     * Turn a C0 control flag (ControlStateWriter.FLAG_*) on or off. Changes made in
+     * quick succession are merged into one write and confirmed against A0; the outcome
+     * arrives through onControlConfirmed / onControlRejected.
+     *
+     * @return false if not connected
+     */
+    public boolean setControlFlag(int flag, boolean on) {
+        if (!isConnected) return false;
+        controlWriter.setFlag(flag, on);
+        return true;
+    }
+
+    /** Control flags to display: the reported state with unconfirmed changes applied. */
+    public int getDisplayedControlFlags(int reportedFlags) {
+        return controlWriter.overlay(reportedFlags);
+    }
+
+    /** Tell the poll scheduler a ride recording started or stopped (denser polling while moving). */
+    public void setRecordingActive(boolean recording) {
+        handler.post(() -> pollScheduler.setRecording(recording));
+    }
+
     /** Clean up BLE resources. Call from Activity onDestroy(). */
     public void cleanup() {
-        if (versionRequestHelper != null) {
-            versionRequestHelper.cancel();
-        }
+        userDisconnected = true;
+        stopTelemetryPolling();
+        cancelVersionRequest();
+        requestCorrelator.failAll("Connection service cleaned up");
         if (bleManager != null) {
             bleManager.cleanup();
         }
@@ -176,6 +425,53 @@ public class ScooterConnectionService implements BLEListener, PacketRouter.Packe
         return packetRouter;
     }
 
+    /**
+     * Query/response correlation for A0/A1/B0 (and any other registered packet type).
+     * Futures complete on the BLE callback thread; post to the main thread for UI work.
+     */
+    public RequestCorrelator getRequestCorrelator() {
+        return requestCorrelator;
+    }
+
+    /** Request A0 running data; completes with the next A0 frame. */
+    public ResponseFuture<RunningDataInfo> queryRunningData(long timeoutMs) {
+        return requestCorrelator.queryRunningData(timeoutMs);
+    }
+
+    /** Request A1 BMS data; completes with the next A1 frame. */
+    public ResponseFuture<BMSDataInfo> queryBMSData(long timeoutMs) {
+        return requestCorrelator.queryBMSData(timeoutMs);
+    }
+
+    /** Request B0 version info; completes with the next B0 frame. */
+    public ResponseFuture<VersionInfo> queryVersion(long timeoutMs) {
+        return requestCorrelator.queryVersion(timeoutMs);
+    }
+
+    /** Inbound frame counters (good / bad CRC / truncated per packet type). */
+    public FrameStats getFrameStats() {
+        return packetRouter.getFrameStats();
+    }
+
+    /** Notification reassembly counters (throughput, split/merged frames, discarded bytes). */
+    public FrameAssembler getFrameAssembler() {
+        return frameAssembler;
+    }
+
+    /**
+     * Suppression of repeated A0/A1 frames. Use {@link TelemetryChangeFilter#getLastChangedMask(int)}
+     * inside a data callback to see which bytes changed since the previous delivered frame.
+     */
+    public TelemetryChangeFilter getTelemetryChangeFilter() {
+        return changeFilter;
+    }
+
+    /** Enable or disable inbound CRC verification in both the reassembler and the router. */
+    public void setCrcCheckEnabled(boolean enabled) {
+        frameAssembler.setCrcCheckEnabled(enabled);
+        packetRouter.setCrcCheckEnabled(enabled);
+    }
+
     // ==================================================================================
     // STATE GETTERS
     // ==================================================================================
@@ -202,6 +498,11 @@ public class ScooterConnectionService implements BLEListener, PacketRouter.Packe
         if (listener != null) listener.onScanStarted();
     }
 
+    @Override
+    public void onDeviceFound(ScanResult device) {
+        if (listener != null) listener.onDeviceFound(device);
+    }
+
     @Override
     public void onScanCompleted(List<ScanResult> devices) {
         Log.d(TAG, "Scan completed, found " + devices.size() + " devices");
@@ -216,8 +517,20 @@ public class ScooterConnectionService implements BLEListener, PacketRouter.Packe
 
     @Override
     public void onDeviceConnected(String deviceName, String address, String serialNumber) {
+        directConnectAddress = null;
+        if (address != null && !address.isEmpty()) lastConnectedAddress = address;
+        ConnectMetrics metrics = connectMetrics;
+        if (metrics != null) {
+            long now = SystemClock.elapsedRealtime();
+            metrics.connectMs = now - connectStartedAt;
+            metrics.linkMs = now - gattStartedAt;
+            Log.d(TAG, "Connection ready: " + metrics);
+        }
         Log.d(TAG, "Connected: " + deviceName + " serial: " + serialNumber);
         isConnected = true;
+        packetRouter.getFrameStats().reset();
+        frameAssembler.reset();
+        changeFilter.reset();
         if (deviceName != null && !deviceName.isEmpty()) {
             connectedDeviceName = deviceName;
         }
@@ -230,9 +543,9 @@ public class ScooterConnectionService implements BLEListener, PacketRouter.Packe
         if (serialNumber != null && !serialNumber.isEmpty()) {
             connectedSerial = serialNumber;
         }
-        // Start version request shortly after serial number is read
-        // 500ms gives BLE stack time to settle after device info reads
-        handler.postDelayed(this::sendVersionRequest, 500);
+        // Device info reads have all completed by now, and the requests are queued
+        // behind anything still in flight, so no settling delay is needed
+        handler.post(this::sendVersionRequest);
     }
 
     @Override
@@ -251,15 +564,46 @@ public class ScooterConnectionService implements BLEListener, PacketRouter.Packe
     @Override
     public void onDeviceDisconnected(boolean wasExpected) {
         Log.d(TAG, "Disconnected (expected=" + wasExpected + ")");
+        Log.d(TAG, "Frame stats: " + packetRouter.getFrameStats() + " " + frameAssembler
+                + " suppressed=" + changeFilter.getSuppressedCount());
+        Log.d(TAG, "Link: " + bleManager.getLinkDiagnostics());
+        frameAssembler.reset();
+        changeFilter.reset();
         isConnected = false;
+        pollingRequested = false;
+        pollScheduler.stop();
+        controlWriter.reset();
+        cancelVersionRequest();
+        requestCorrelator.failAll("Disconnected");
         if (listener != null) listener.onDisconnected(wasExpected);
+
+        String address = lastConnectedAddress;
+        if (autoReattach && !userDisconnected && address != null) {
+            Log.d(TAG, "Link lost - reattaching to " + address + " in the background");
+            beginConnectMetrics(ConnectMetrics.PATH_REATTACH);
+            markGattStart();
+            bleManager.connectToAddress(address, true, 0);
+        }
     }
 
     @Override
     public void onConnectionFailed(String error) {
+        // Only a link that never came up (timeout, connect status error) is worth a scan;
+        // setup failures on an open link would leave the scan racing that GATT
+        boolean linkUp = bleManager.isConnected();
+        if (directConnectAddress != null && !linkUp) {
+            fallBackToScan(error);
+            return;
+        }
+        directConnectAddress = null;
+        directConnectName = null;
         Log.e(TAG, "Connection failed: " + error);
         isConnected = false;
         if (listener != null) listener.onConnectionFailed(error);
+        if (linkUp) {
+            userDisconnected = true;
+            bleManager.disconnect();
+        }
     }
 
     @Override
@@ -270,19 +614,14 @@ public class ScooterConnectionService implements BLEListener, PacketRouter.Packe
 
     @Override
     public void onDataReceived(byte[] data) {
-        if (data == null || data.length < 2) return;
+        if (data == null || data.length == 0) return;
 
         // Forward raw data to listener for debug logging
-        if (listener != null) listener.onRawDataReceived(data);
+        if (listener != null && data.length >= 2) listener.onRawDataReceived(data);
 
-        // Cancel version request retry on B0 packet
-        int packetType = data[1] & 0xFF;
-        if (packetType == 0xB0 && versionRequestHelper != null) {
-            versionRequestHelper.cancel();
-        }
-
-        // Dispatch to PacketRouter for parsing
-        packetRouter.routePacket(data);
+        // Notifications may split or merge frames: reassemble, then dispatch
+        // each complete frame to PacketRouter for parsing
+        frameAssembler.feed(data, 0, data.length);
     }
 
     @Override
@@ -298,6 +637,9 @@ public class ScooterConnectionService implements BLEListener, PacketRouter.Packe
     public void onVersionInfo(VersionInfo version) {
         Log.d(TAG, "Version info parsed: " + version);
         scooterVersion = version;
+        // A firmware change invalidates the cached Device Information for this scooter
+        bleManager.onFirmwareVersionReported(version.controllerSwVersion + "/"
+                + version.meterSwVersion + "/" + version.bmsSwVersion);
         if (listener != null) listener.onVersionReceived(version);
     }
 
@@ -312,10 +654,18 @@ public class ScooterConnectionService implements BLEListener, PacketRouter.Packe
     public void onRunningData(RunningDataInfo data) {
         Log.d(TAG, "Running data parsed");
         scooterRunningData = data;
+        ConnectMetrics metrics = connectMetrics;
+        if (metrics != null && metrics.firstTelemetryMs < 0 && isConnected) {
+            metrics.firstTelemetryMs = SystemClock.elapsedRealtime() - connectStartedAt;
+            Log.i(TAG, "First telemetry: " + metrics);
+            if (listener != null) listener.onConnectMetrics(metrics);
+        }
         // Cross-populate voltage/current/battery from BMS if already received
         if (scooterBMSData != null) {
             data.populateFromBMS(scooterBMSData);
         }
+        pollScheduler.onRunningData(data.isMoving, data.faultCode);
+        controlWriter.onRunningData(data.controlFlags, data.cruiseSpeed, data.maxSpeed);
         if (listener != null) listener.onRunningDataReceived(data);
     }
 
@@ -327,9 +677,16 @@ public class ScooterConnectionService implements BLEListener, PacketRouter.Packe
         if (scooterRunningData != null) {
             scooterRunningData.populateFromBMS(data);
         }
+        pollScheduler.onBMSData(data.isCharging);
         if (listener != null) listener.onBMSDataReceived(data);
     }
 
+    @Override
+    public void onTripData(TripDataInfo data) {
+        Log.d(TAG, "Trip data parsed: " + data);
+        if (listener != null) listener.onTripDataReceived(data);
+    }
+
     @Override
     public void onUnknownPacket(int packetType, byte[] data) {
         // Not forwarded - already logged in onRawDataReceived
@@ -341,14 +698,76 @@ public class ScooterConnectionService implements BLEListener, PacketRouter.Packe
 
     private void sendVersionRequest() {
         if (scooterVersion != null) return;
-        if (versionRequestHelper == null) {
-            versionRequestHelper = new VersionRequestHelper(bleManager, handler,
-                    () -> scooterVersion == null && isConnected);
-            versionRequestHelper.setListener(() -> {
-                if (listener != null) listener.onVersionRequestTimeout();
-            });
+        cancelVersionRequest();
+        versionAttempts = 0;
+        requestVersion();
+    }
+
+    /**
+     * One handshake attempt: A0 (wakes up the protocol), B0 and A1 are pipelined and
+     * the attempt is retried only if the B0 query itself times out.
+     */
+    private void requestVersion() {
+        versionAttempts++;
+        Log.d(TAG, "Sending version request (attempt " + versionAttempts + "/" + MAX_VERSION_ATTEMPTS + ")");
+        requestCorrelator.queryRunningData(VERSION_TIMEOUT_MS);
+        ResponseFuture<VersionInfo> request = requestCorrelator.queryVersion(VERSION_TIMEOUT_MS);
+        requestCorrelator.queryBMSData(VERSION_TIMEOUT_MS);
+        pendingVersionRequest = request;
+
+        // Successful responses are delivered through onVersionInfo(); only failures matter here
+        request.whenComplete((version, error) -> {
+            if (error instanceof TimeoutException) {
+                handler.post(() -> onVersionRequestTimedOut(request));
+            }
+        });
+    }
+
+    private void onVersionRequestTimedOut(ResponseFuture<VersionInfo> request) {
+        if (request != pendingVersionRequest || scooterVersion != null || !isConnected) return;
+        if (versionAttempts < MAX_VERSION_ATTEMPTS) {
+            Log.w(TAG, "No B0 version response after " + VERSION_TIMEOUT_MS + "ms, retrying...");
+            requestVersion();
+        } else {
+            Log.w(TAG, "Max version request attempts reached (" + MAX_VERSION_ATTEMPTS + ")");
+            pendingVersionRequest = null;
+            if (listener != null) listener.onVersionRequestTimeout();
         }
-        versionRequestHelper.start();
+    }
+
+    private void cancelVersionRequest() {
+        ResponseFuture<VersionInfo> request = pendingVersionRequest;
+        pendingVersionRequest = null;
+        if (request != null) request.cancel(false);
+    }
+
+    private void beginConnectMetrics(String path) {
+        userDisconnected = false;
+        connectStartedAt = SystemClock.elapsedRealtime();
+        gattStartedAt = connectStartedAt;
+        connectMetrics = new ConnectMetrics(path);
+    }
+
+    private void markGattStart() {
+        gattStartedAt = SystemClock.elapsedRealtime();
+        ConnectMetrics metrics = connectMetrics;
+        if (metrics != null) metrics.scanMs = gattStartedAt - connectStartedAt;
+    }
+
+    /** Direct connect didn't work: scan for the same scooter, keeping the original start time. */
+    private void fallBackToScan(String reason) {
+        String address = directConnectAddress;
+        String name = directConnectName;
+        directConnectAddress = null;
+        directConnectName = null;
+        Log.w(TAG, "Direct connect failed (" + reason + ") - falling back to scan");
+        ConnectMetrics metrics = connectMetrics;
+        if (metrics != null) {
+            metrics.path = ConnectMetrics.PATH_SCAN;
+            metrics.fellBackToScan = true;
+        }
+        if (listener != null) listener.onStatusChanged("Scanning for scooter...");
+        scanFor(address, name);
     }
 
     private void resetConnectionState() {
@@ -363,9 +782,8 @@ public class ScooterConnectionService implements BLEListener, PacketRouter.Packe
         deviceModelNumber = "";
         deviceManufacturer = "";
         isConnected = false;
-        if (versionRequestHelper != null) {
-            versionRequestHelper.cancel();
-            versionRequestHelper = null;
-        }
+        directConnectAddress = null;
+        directConnectName = null;
+        cancelVersionRequest();
     }
 }
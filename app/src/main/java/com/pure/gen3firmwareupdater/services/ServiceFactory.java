@@ -3,8 +3,6 @@ package com.pure.gen3firmwareupdater.services;
 import android.content.Context;
 import android.net.ConnectivityManager;
 import android.net.NetworkCapabilities;
-import android.os.Handler;
-import android.os.Looper;
 
 import com.pure.gen3firmwareupdater.BLEManager;
 import com.pure.gen3firmwareupdater.BuildConfig;
@@ -27,6 +25,7 @@ public class ServiceFactory {
 
     private static Context appContext;
     private static SupabaseClient supabaseClient;
+    private static FirmwareBinaryCache firmwareBinaryCache;
     private static SessionManager sessionManager;
     private static TermsManager termsManager;
     private static PinCacheManager pinCacheManager;
@@ -38,6 +37,9 @@ public class ServiceFactory {
     private static ScooterConnectionService sharedConnectionService;
     private static BLEManager sharedBleManager;
 
+    // Workshop: several simultaneous scooter links (independent of the shared one)
+    private static FleetConnectionManager fleetManager;
+
     /**
      * Initialize the factory with application context.
      * Safe to call multiple times (only initializes once).
@@ -53,6 +55,10 @@ public class ServiceFactory {
             supabaseClient = new SupabaseClient(
                     BuildConfig.SUPABASE_URL, BuildConfig.SUPABASE_ANON_KEY);
         }
+        if (firmwareBinaryCache == null) {
+            firmwareBinaryCache = new FirmwareBinaryCache(appContext);
+            supabaseClient.firmware.setBinaryCache(firmwareBinaryCache);
+        }
         if (termsManager == null) {
             termsManager = new TermsManager(appContext,
                     BuildConfig.SUPABASE_URL, BuildConfig.SUPABASE_ANON_KEY);
@@ -207,13 +213,12 @@ public class ServiceFactory {
      * Use setListener() on the returned service to receive callbacks in the current activity.
      *
      * @param context Android context for BLEManager (getApplicationContext() is used internally)
-     * @param handler Main thread handler for version request timing
      * @return shared ScooterConnectionService instance
      */
-    public static synchronized ScooterConnectionService getConnectionService(Context context, Handler handler) {
+    public static synchronized ScooterConnectionService getConnectionService(Context context) {
         if (sharedConnectionService == null) {
             sharedBleManager = new BLEManager(context, null);
-            sharedConnectionService = new ScooterConnectionService(sharedBleManager, handler);
+            sharedConnectionService = new ScooterConnectionService(sharedBleManager);
             sharedBleManager.setListener(sharedConnectionService);
         }
         return sharedConnectionService;
@@ -233,6 +238,13 @@ public class ServiceFactory {
         sharedBleManager = null;
     }
 
+    /**
+     * The BLEManager behind the shared connection service, or null if there is none.
+     */
+    public static synchronized BLEManager getSharedBleManager() {
+        return sharedBleManager;
+    }
+
     /**
      * Check if the shared connection service exists and has an active BLE connection.
      */
@@ -248,26 +260,50 @@ public class ServiceFactory {
      * NOT shared — each call creates a fresh instance.
      *
      * @param context Android context for BLEManager
-     * @param handler Main thread handler for version request timing
      * @return new ScooterConnectionService instance
      */
-    public static ScooterConnectionService createConnectionService(Context context, Handler handler) {
+    public static ScooterConnectionService createConnectionService(Context context) {
         BLEManager bleManager = new BLEManager(context, null);
-        ScooterConnectionService service = new ScooterConnectionService(bleManager, handler);
+        ScooterConnectionService service = new ScooterConnectionService(bleManager);
         bleManager.setListener(service);
         return service;
     }
 
+    // --- Workshop fleet (several scooters connected at once) ---
+
+    /**
+     * Get or create the fleet connection manager used to read a rack of scooters
+     * in parallel. Links it holds are separate from the shared connection service.
+     */
+    public static synchronized FleetConnectionManager getFleetManager(Context context) {
+        if (fleetManager == null) {
+            fleetManager = new FleetConnectionManager(context);
+        }
+        return fleetManager;
+    }
+
+    /** Disconnect every fleet link and destroy the fleet manager. */
+    public static synchronized void releaseFleetManager() {
+        if (fleetManager != null) {
+            fleetManager.setListener(null);
+            fleetManager.stopPolling();
+            fleetManager.removeAll();
+            fleetManager = null;
+        }
+    }
+
     /**
      * Shut down all shared services.
      * Call from Application.onTerminate() or last Activity.onDestroy().
      */
     public static synchronized void shutdown() {
         releaseConnectionService();
+        releaseFleetManager();
         if (supabaseClient != null) {
             supabaseClient.shutdown();
             supabaseClient = null;
         }
+        firmwareBinaryCache = null;
         sessionManager = null;
     }
 }
@@ -29,7 +29,11 @@ public class SupabaseFirmwareRepository extends SupabaseBaseRepository {
 
     private static final String TAG = "FirmwareRepo";
 
+    // A cached image without a published hash is served without asking the server for this long
+    private static final long REVALIDATE_AFTER_MS = 10 * 60 * 1000;
+
     private final SupabaseScooterRepository scooterRepo;
+    private volatile FirmwareBinaryCache binaryCache;
 
     public SupabaseFirmwareRepository(String supabaseUrl, String supabaseKey,
                                        OkHttpClient httpClient, Gson gson,
@@ -39,6 +43,11 @@ public class SupabaseFirmwareRepository extends SupabaseBaseRepository {
         this.scooterRepo = scooterRepo;
     }
 
+    /** Cache used by {@link #downloadFirmwareBinary(FirmwareVersion, Callback)}; null disables it. */
+    public void setBinaryCache(FirmwareBinaryCache binaryCache) {
+        this.binaryCache = binaryCache;
+    }
+
     /**
      * Get the latest active firmware version for a given hardware version.
      */
@@ -174,6 +183,98 @@ public class SupabaseFirmwareRepository extends SupabaseBaseRepository {
         });
     }
 
+    /**
+     * Download the binary for a firmware version through the on-disk cache.
+     *
+     * A cached image is used when its SHA-256 checks out and matches the version's
+     * published sha256. Images without a published hash are revalidated with
+     * If-None-Match / If-Modified-Since once they are older than
+     * {@link #REVALIDATE_AFTER_MS}. When the server cannot be reached, a verified
+     * cached image is used anyway, so repeat flashes work offline. A fresh download
+     * that does not match the published hash is rejected.
+     */
+    public void downloadFirmwareBinary(FirmwareVersion firmware, Callback<byte[]> callback) {
+        FirmwareBinaryCache cache = binaryCache;
+        if (cache == null || firmware.id == null) {
+            downloadFirmwareBinary(firmware.file_path, callback);
+            return;
+        }
+        executor.execute(() -> {
+            String expectedSha256 = firmware.sha256 != null ? firmware.sha256.toLowerCase() : null;
+
+            FirmwareBinaryCache.Entry cached = cache.get(firmware.id);
+            byte[] cachedData = null;
+            if (cached != null && firmware.file_path.equals(cached.filePath)
+                    && (expectedSha256 == null || expectedSha256.equals(cached.sha256))) {
+                cachedData = cache.read(firmware.id, cached);
+            }
+            if (cachedData != null && (expectedSha256 != null
+                    || System.currentTimeMillis() - cached.validatedAt < REVALIDATE_AFTER_MS)) {
+                Log.d(TAG, "Using cached firmware " + firmware.version_label + ": " + cachedData.length + " bytes");
+                postSuccess(callback, cachedData);
+                return;
+            }
+
+            try {
+                String url = supabaseUrl + "/storage/v1/object/public/firmware-binaries/" + firmware.file_path;
+                Log.d(TAG, "Downloading firmware from: " + url
+                        + (cachedData != null ? " (revalidating cached copy)" : ""));
+
+                Request.Builder builder = new Request.Builder().url(url);
+                if (cachedData != null) {
+                    if (cached.etag != null) builder.addHeader("If-None-Match", cached.etag);
+                    if (cached.lastModified != null) builder.addHeader("If-Modified-Since", cached.lastModified);
+                }
+
+                Response response = httpClient.newCall(builder.build()).execute();
+                if (response.code() == 304 && cachedData != null) {
+                    response.close();
+                    cache.markValidated(firmware.id, cached);
+                    Log.d(TAG, "Cached firmware " + firmware.version_label + " is current");
+                    postSuccess(callback, cachedData);
+                    return;
+                }
+                if (!response.isSuccessful()) {
+                    response.close();
+                    if (cachedData != null) {
+                        Log.w(TAG, "Revalidation failed (HTTP " + response.code() + "), using cached firmware");
+                        postSuccess(callback, cachedData);
+                        return;
+                    }
+                    postError(callback, "Download failed: HTTP " + response.code());
+                    return;
+                }
+
+                if (response.body() == null) {
+                    postError(callback, "Empty response from server");
+                    return;
+                }
+                byte[] data = response.body().bytes();
+                Log.d(TAG, "Downloaded firmware: " + data.length + " bytes");
+
+                String actualSha256 = FirmwareBinaryCache.sha256(data);
+                if (expectedSha256 != null && !expectedSha256.equals(actualSha256)) {
+                    Log.e(TAG, "Firmware checksum mismatch: expected " + expectedSha256 + ", got " + actualSha256);
+                    postError(callback, "Downloaded firmware failed its checksum - please retry");
+                    return;
+                }
+
+                cache.put(firmware.id, firmware.file_path, data,
+                        response.header("ETag"), response.header("Last-Modified"));
+                postSuccess(callback, data);
+
+            } catch (Exception e) {
+                if (cachedData != null) {
+                    Log.w(TAG, "Offline (" + e.getMessage() + "), using cached firmware");
+                    postSuccess(callback, cachedData);
+                    return;
+                }
+                Log.e(TAG, "downloadFirmwareBinary error: " + e.getMessage());
+                postError(callback, formatError(e));
+            }
+        });
+    }
+
     /**
      * Create a firmware upload record (status=started).
      */
@@ -262,6 +363,42 @@ public class SupabaseFirmwareRepository extends SupabaseBaseRepository {
         });
     }
 
+    /**
+     * Mark an upload record as continuing an interrupted attempt: D2 resumed at
+     * {@code fromPacket}; {@code previousRecordId} (may be null) is the interrupted row.
+     */
+    public void markUploadResumed(String recordId, int fromPacket, String previousRecordId,
+                                  Callback<Void> callback) {
+        executor.execute(() -> {
+            try {
+                JsonObject json = new JsonObject();
+                json.addProperty("resumed_from_packet", fromPacket);
+                if (previousRecordId != null) {
+                    json.addProperty("resumed_from_upload_id", previousRecordId);
+                }
+
+                String url = supabaseUrl + "/rest/v1/firmware_uploads?id=eq." + recordId;
+
+                Request request = new Request.Builder()
+                        .url(url)
+                        .addHeader("apikey", supabaseKey)
+                        .addHeader("Authorization", "Bearer " + supabaseKey)
+                        .addHeader("Content-Type", "application/json")
+                        .patch(RequestBody.create(json.toString(), JSON_MEDIA_TYPE))
+                        .build();
+
+                Response response = httpClient.newCall(request).execute();
+                Log.d(TAG, "markUploadResumed response: " + response.code());
+
+                postSuccess(callback, null);
+
+            } catch (Exception e) {
+                Log.e(TAG, "markUploadResumed error: " + e.getMessage());
+                postError(callback, formatError(e));
+            }
+        });
+    }
+
     /**
      * Get update history for a specific scooter (paginated).
      * Uses the scooterRepo to look up the scooter ID by serial.
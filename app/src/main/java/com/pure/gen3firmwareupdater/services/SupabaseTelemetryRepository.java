@@ -111,7 +111,7 @@ public class SupabaseTelemetryRepository extends SupabaseBaseRepository {
 
     /**
      * Create a telemetry record with record_type (start/stop/riding).
-     * Uses Edge Function for all writes (service_role), keeping user_id lookup server-side.
+     * Backward-compatible overload — delegates to the full version with connectMetrics=null.
      */
     public void createTelemetryRecord(String scooterSerial, String distributorId,
                                        String hwVersion, String swVersion,
@@ -120,6 +120,23 @@ public class SupabaseTelemetryRepository extends SupabaseBaseRepository {
                                        VersionInfo versionInfo, String model,
                                        String recordType,
                                        Callback<String> callback) {
+        createTelemetryRecord(scooterSerial, distributorId, hwVersion, swVersion,
+                runningData, bmsData, embeddedSerial, scanType, versionInfo, model,
+                recordType, null, callback);
+    }
+
+    /**
+     * Create a telemetry record with record_type (start/stop/riding) and optional
+     * connect latency (see ConnectMetrics#toJson), stored as connect_metrics.
+     * Uses Edge Function for all writes (service_role), keeping user_id lookup server-side.
+     */
+    public void createTelemetryRecord(String scooterSerial, String distributorId,
+                                       String hwVersion, String swVersion,
+                                       RunningDataInfo runningData, BMSDataInfo bmsData,
+                                       String embeddedSerial, String scanType,
+                                       VersionInfo versionInfo, String model,
+                                       String recordType, JsonObject connectMetrics,
+                                       Callback<String> callback) {
         executor.execute(() -> {
             try {
                 String scooterId = scooterRepo.getOrCreateScooterId(scooterSerial, distributorId, hwVersion, swVersion);
@@ -133,6 +150,7 @@ public class SupabaseTelemetryRepository extends SupabaseBaseRepository {
                 if (swVersion != null) body.addProperty("sw_version", swVersion);
                 if (scanType != null) body.addProperty("scan_type", scanType);
                 if (recordType != null) body.addProperty("record_type", recordType);
+                if (connectMetrics != null) body.add("connect_metrics", connectMetrics);
 
                 // Version info for scooter record update
                 if (versionInfo != null) {
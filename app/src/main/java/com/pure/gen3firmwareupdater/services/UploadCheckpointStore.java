@@ -0,0 +1,85 @@
+package com.pure.gen3firmwareupdater.services;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.google.gson.Gson;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent per-scooter checkpoint of an interrupted firmware upload: how many D2
+ * packets the bootloader acknowledged in order, for which firmware image.
+ *
+ * The image is identified by its SHA-256, so a checkpoint is only offered for the
+ * exact bytes it was taken with. Checkpoints expire after a day - by then the
+ * scooter has almost certainly been power cycled out of update mode.
+ *
+ * Stored as one JSON string per scooter serial in SharedPreferences, like
+ * GattMetadataCache.
+ */
+public class UploadCheckpointStore {
+
+    private static final String TAG = "UploadCheckpointStore";
+    private static final String PREFS_NAME = "UploadCheckpoints";
+
+    private static final long MAX_AGE_MS = TimeUnit.HOURS.toMillis(24);
+
+    /** Checkpoint of one interrupted upload. */
+    public static class Checkpoint {
+        public String firmwareVersionId;
+        /** Lower-case hex SHA-256 of the firmware image, see {@link FirmwareBinaryCache#sha256}. */
+        public String firmwareSha256;
+        public int packetsAcknowledged;
+        public int totalPackets;
+        /** firmware_uploads row of the attempt that was interrupted; may be null. */
+        public String uploadRecordId;
+        public long savedAt;
+    }
+
+    private final SharedPreferences prefs;
+    private final Gson gson = new Gson();
+
+    public UploadCheckpointStore(Context context) {
+        this.prefs = context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /** Checkpoint for this scooter, or null if there is none (or it is stale or unreadable). */
+    public Checkpoint get(String scooterSerial) {
+        if (scooterSerial == null) return null;
+        String json = prefs.getString(key(scooterSerial), null);
+        if (json == null) return null;
+        try {
+            Checkpoint checkpoint = gson.fromJson(json, Checkpoint.class);
+            if (System.currentTimeMillis() - checkpoint.savedAt > MAX_AGE_MS) {
+                Log.d(TAG, "Dropping stale checkpoint for " + scooterSerial);
+                remove(scooterSerial);
+                return null;
+            }
+            return checkpoint;
+        } catch (Exception e) {
+            Log.w(TAG, "Dropping unreadable checkpoint for " + scooterSerial + ": " + e.getMessage());
+            remove(scooterSerial);
+            return null;
+        }
+    }
+
+    public void put(String scooterSerial, Checkpoint checkpoint) {
+        if (scooterSerial == null || checkpoint == null) return;
+        checkpoint.savedAt = System.currentTimeMillis();
+        prefs.edit().putString(key(scooterSerial), gson.toJson(checkpoint)).apply();
+        Log.d(TAG, "Checkpoint for " + scooterSerial + ": " + checkpoint.packetsAcknowledged
+                + "/" + checkpoint.totalPackets + " packets");
+    }
+
+    public void remove(String scooterSerial) {
+        if (scooterSerial == null) return;
+        prefs.edit().remove(key(scooterSerial)).apply();
+    }
+
+    private static String key(String scooterSerial) {
+        return "checkpoint_" + scooterSerial.toUpperCase();
+    }
+}
@@ -0,0 +1,48 @@
+package com.pure.gen3firmwareupdater.benchmarks;
+
+import com.pure.gen3firmwareupdater.ProtocolUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CRC16 MODBUS over a 25-byte telemetry frame and a 136-byte D2 firmware packet.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CrcBenchmark {
+
+    private byte[] telemetry;
+    private byte[] uploadPacket;
+
+    @Setup
+    public void setup() {
+        telemetry = SampleFrames.runningData();
+        uploadPacket = new byte[136];
+        new Random(42).nextBytes(uploadPacket);
+    }
+
+    @Benchmark
+    public int crcTelemetryFrame() {
+        return ProtocolUtils.calculateCRC16(telemetry, telemetry.length - 2);
+    }
+
+    @Benchmark
+    public int crcUploadPacket() {
+        return ProtocolUtils.calculateCRC16(uploadPacket, uploadPacket.length - 2);
+    }
+
+    @Benchmark
+    public boolean verifyTelemetryFrame() {
+        return ProtocolUtils.verifyCRC16(telemetry, 0, telemetry.length);
+    }
+}
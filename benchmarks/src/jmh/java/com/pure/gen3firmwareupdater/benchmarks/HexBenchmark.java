@@ -0,0 +1,41 @@
+package com.pure.gen3firmwareupdater.benchmarks;
+
+import com.pure.gen3firmwareupdater.ProtocolUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hex formatting, which every packet log line pays for.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HexBenchmark {
+
+    private byte[] telemetry;
+    private byte[] version;
+
+    @Setup
+    public void setup() {
+        telemetry = SampleFrames.runningData();
+        version = SampleFrames.versionExtended();
+    }
+
+    @Benchmark
+    public String hexTelemetryFrame() {
+        return ProtocolUtils.bytesToHex(telemetry);
+    }
+
+    @Benchmark
+    public String hexVersionFrame() {
+        return ProtocolUtils.bytesToHex(version);
+    }
+}
@@ -0,0 +1,85 @@
+package com.pure.gen3firmwareupdater.benchmarks;
+
+import com.pure.gen3firmwareupdater.BMSDataFrame;
+import com.pure.gen3firmwareupdater.BMSDataInfo;
+import com.pure.gen3firmwareupdater.RunningDataFrame;
+import com.pure.gen3firmwareupdater.RunningDataInfo;
+import com.pure.gen3firmwareupdater.VersionInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packet decoding: the POJO parsers used by listeners versus the flyweight frames
+ * they are built from. Compare gc.alloc.rate.norm between the two.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParseBenchmark {
+
+    private byte[] runningData;
+    private byte[] bmsData;
+    private byte[] versionStandard;
+    private byte[] versionExtended;
+
+    private final RunningDataFrame runningFrame = new RunningDataFrame();
+    private final BMSDataFrame bmsFrame = new BMSDataFrame();
+
+    @Setup
+    public void setup() {
+        runningData = SampleFrames.runningData();
+        bmsData = SampleFrames.bmsData();
+        versionStandard = SampleFrames.versionStandard();
+        versionExtended = SampleFrames.versionExtended();
+    }
+
+    @Benchmark
+    public RunningDataInfo parseRunningData() {
+        return RunningDataInfo.parse(runningData);
+    }
+
+    @Benchmark
+    public BMSDataInfo parseBmsData() {
+        return BMSDataInfo.parse(bmsData);
+    }
+
+    @Benchmark
+    public VersionInfo parseVersionStandard() {
+        return VersionInfo.parseFromB0Packet(versionStandard);
+    }
+
+    @Benchmark
+    public VersionInfo parseVersionExtended() {
+        return VersionInfo.parseFromB0Packet(versionExtended);
+    }
+
+    @Benchmark
+    public void flyweightRunningData(Blackhole bh) {
+        RunningDataFrame f = runningFrame;
+        if (f.wrap(runningData)) {
+            bh.consume(f.getCurrentSpeed());
+            bh.consume(f.getTotalDistance());
+            bh.consume(f.getControlFlags());
+            bh.consume(f.getFaultCode());
+        }
+    }
+
+    @Benchmark
+    public void flyweightBmsData(Blackhole bh) {
+        BMSDataFrame f = bmsFrame;
+        if (f.wrap(bmsData)) {
+            bh.consume(f.getVoltageRaw());
+            bh.consume(f.getCurrentRaw());
+            bh.consume(f.getPercent());
+        }
+    }
+}
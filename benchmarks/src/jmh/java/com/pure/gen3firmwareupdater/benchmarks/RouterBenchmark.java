@@ -0,0 +1,90 @@
+package com.pure.gen3firmwareupdater.benchmarks;
+
+import com.pure.gen3firmwareupdater.BMSDataInfo;
+import com.pure.gen3firmwareupdater.ConfigInfo;
+import com.pure.gen3firmwareupdater.RunningDataFrame;
+import com.pure.gen3firmwareupdater.RunningDataInfo;
+import com.pure.gen3firmwareupdater.VersionInfo;
+import com.pure.gen3firmwareupdater.services.FrameAssembler;
+import com.pure.gen3firmwareupdater.services.PacketRouter;
+import com.pure.gen3firmwareupdater.services.PacketType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inbound path from raw notification bytes to listener callback.
+ *
+ * - routeLegacyListener: PacketListener that materializes POJOs (what the app does today)
+ * - routeTypedHandler:   flyweight-only subscriber, no POJO
+ * - assembleAndRoute:    a frame split across two notifications, through FrameAssembler
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RouterBenchmark {
+
+    private byte[] runningData;
+    private byte[] bmsData;
+    private byte[] firstHalf;
+    private byte[] secondHalf;
+
+    private PacketRouter legacyRouter;
+    private PacketRouter typedRouter;
+    private FrameAssembler assembler;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup(Blackhole bh) {
+        blackhole = bh;
+        runningData = SampleFrames.runningData();
+        bmsData = SampleFrames.bmsData();
+        firstHalf = new byte[12];
+        secondHalf = new byte[runningData.length - 12];
+        System.arraycopy(runningData, 0, firstHalf, 0, firstHalf.length);
+        System.arraycopy(runningData, 12, secondHalf, 0, secondHalf.length);
+
+        legacyRouter = new PacketRouter(new PacketRouter.PacketListener() {
+            @Override public void onVersionInfo(VersionInfo version) { blackhole.consume(version); }
+            @Override public void onConfigInfo(ConfigInfo config) { blackhole.consume(config); }
+            @Override public void onRunningData(RunningDataInfo data) { blackhole.consume(data); }
+            @Override public void onBMSData(BMSDataInfo data) { blackhole.consume(data); }
+            @Override public void onUnknownPacket(int packetType, byte[] data) { blackhole.consume(data); }
+        });
+
+        typedRouter = new PacketRouter(null);
+        typedRouter.subscribe(PacketType.RUNNING_DATA,
+                (RunningDataFrame f) -> blackhole.consume(f.getCurrentSpeed()));
+
+        assembler = new FrameAssembler(legacyRouter::routeVerifiedPacket);
+    }
+
+    @Benchmark
+    public void routeLegacyListener() {
+        legacyRouter.routePacket(runningData);
+    }
+
+    @Benchmark
+    public void routeLegacyListenerBms() {
+        legacyRouter.routePacket(bmsData);
+    }
+
+    @Benchmark
+    public void routeTypedHandler() {
+        typedRouter.routePacket(runningData);
+    }
+
+    @Benchmark
+    public void assembleAndRoute() {
+        assembler.feed(firstHalf);
+        assembler.feed(secondHalf);
+    }
+}
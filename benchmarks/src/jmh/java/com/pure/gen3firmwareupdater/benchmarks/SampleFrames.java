@@ -0,0 +1,70 @@
+package com.pure.gen3firmwareupdater.benchmarks;
+
+import com.pure.gen3firmwareupdater.ProtocolUtils;
+
+/**
+ * Realistic, CRC-valid frames shared by the benchmarks.
+ */
+final class SampleFrames {
+    private SampleFrames() {}
+
+    /** A0 running data, 25 bytes: riding at 18 km/h, headlight on, 1234 km odometer. */
+    static byte[] runningData() {
+        byte[] f = frame(0xA0, 25);
+        f[5] = 0x01; f[6] = 0x20;       // control flags
+        f[7] = 15;                      // cruise speed
+        f[8] = 18;                      // current speed
+        f[9] = 25;                      // max speed
+        f[10] = 7;                      // trip distance
+        f[11] = 0x04; f[12] = (byte) 0xD2; // total distance 1234
+        f[13] = 31;                     // remaining range
+        f[14] = 0x00; f[15] = (byte) 0xC8; // current limit
+        f[16] = 38; f[17] = 41;         // temperatures
+        return withCrc(f);
+    }
+
+    /** A1 BMS data, 25 bytes: 36.5 V, -4.2 A, 72 %. */
+    static byte[] bmsData() {
+        byte[] f = frame(0xA1, 25);
+        f[5] = (byte) 0xFF; f[6] = (byte) 0xD6;  // current -42 (0.1 A)
+        f[7] = 0x01; f[8] = 0x6D;                // voltage 365 (0.1 V)
+        f[9] = 72;                               // percent
+        f[10] = 0x00; f[11] = 0x2A;              // cycles
+        f[12] = 0x27; f[13] = 0x10;              // capacity
+        f[14] = 0x1C; f[15] = 0x20;              // remaining
+        f[16] = 29;                              // temperature
+        return withCrc(f);
+    }
+
+    /** B0 version info, 25-byte standard format. */
+    static byte[] versionStandard() {
+        byte[] f = frame(0xB0, 25);
+        f[3] = 0x00; f[4] = 0x03;
+        f[5] = 0x11; f[6] = 0x24; f[7] = 0x10; f[8] = 0x31; f[9] = 0x10; f[10] = 0x15;
+        return withCrc(f);
+    }
+
+    /** B0 version info, 32-byte format with embedded serial number. */
+    static byte[] versionExtended() {
+        byte[] f = frame(0xB0, 32);
+        byte[] serial = "ZYD2403001234567".getBytes();
+        System.arraycopy(serial, 0, f, 5, serial.length);
+        f[21] = 0x11; f[22] = 0x24; f[23] = 0x10; f[24] = 0x31; f[25] = 0x10; f[26] = 0x15;
+        return withCrc(f);
+    }
+
+    private static byte[] frame(int command, int length) {
+        byte[] f = new byte[length];
+        f[0] = (byte) 0xF0;
+        f[1] = (byte) command;
+        f[2] = (byte) length;
+        return f;
+    }
+
+    private static byte[] withCrc(byte[] f) {
+        int crc = ProtocolUtils.calculateCRC16(f, f.length - 2);
+        f[f.length - 2] = (byte) (crc & 0xFF);
+        f[f.length - 1] = (byte) ((crc >> 8) & 0xFF);
+        return f;
+    }
+}
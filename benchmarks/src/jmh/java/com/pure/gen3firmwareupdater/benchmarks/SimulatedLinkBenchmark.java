@@ -0,0 +1,121 @@
+package com.pure.gen3firmwareupdater.benchmarks;
+
+import com.pure.gen3firmwareupdater.CommandEncoder;
+import com.pure.gen3firmwareupdater.RunningDataFrame;
+import com.pure.gen3firmwareupdater.services.FirmwareTransfer;
+import com.pure.gen3firmwareupdater.services.FrameAssembler;
+import com.pure.gen3firmwareupdater.services.PacketRouter;
+import com.pure.gen3firmwareupdater.services.PacketType;
+import com.pure.gen3firmwareupdater.services.SimulatedScooter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end timings against {@link SimulatedScooter}, with real link latencies:
+ *
+ * - flashFirmware:     D0/D1/D2.../D3 for a 32 KB image, windowed or stop-and-wait;
+ *                      the flashed image is checked against the source so a
+ *                      fast-but-wrong transfer fails the run
+ * - flashFirmwareLossy: windowed transfer with 2% of writes and notifications lost
+ * - runningDataRoundTrip: A0 request -> notification -> FrameAssembler -> PacketRouter
+ *
+ * Wall-clock dominated by the simulated link, so results compare transfer strategies
+ * and link settings, not CPU cost. Narrow with -PjmhIncludes=SimulatedLink
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class SimulatedLinkBenchmark {
+
+    private static final int IMAGE_SIZE = 32 * 1024;
+
+    @Param({"23", "247"})
+    public int mtu;
+
+    @Param({"true", "false"})
+    public boolean windowed;
+
+    private SimulatedScooter scooter;
+    private byte[] image;
+    private final SynchronousQueue<Integer> speeds = new SynchronousQueue<>();
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        scooter = new SimulatedScooter(42);
+        scooter.setMtu(mtu);
+        scooter.setFragmentSize(mtu - 3);
+        scooter.setEraseTimeMs(200);
+        scooter.setSpeed(18);
+
+        PacketRouter router = new PacketRouter(null);
+        router.subscribe(PacketType.RUNNING_DATA,
+                (RunningDataFrame f) -> speeds.offer(f.getCurrentSpeed()));
+        FrameAssembler assembler = new FrameAssembler(router::routeVerifiedPacket);
+        scooter.setDataHandler(assembler::feed);
+
+        image = new byte[IMAGE_SIZE];
+        new Random(7).nextBytes(image);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        scooter.shutdown();
+    }
+
+    @Benchmark
+    public int flashFirmware() throws Exception {
+        return flash(windowed);
+    }
+
+    @Benchmark
+    public int flashFirmwareLossy() throws Exception {
+        scooter.setPacketLoss(0.02);
+        try {
+            return flash(true);
+        } finally {
+            scooter.setPacketLoss(0);
+        }
+    }
+
+    private int flash(boolean windowedMode) throws Exception {
+        FirmwareTransfer transfer = new FirmwareTransfer(scooter, null);
+        transfer.setWindowed(windowedMode);
+        transfer.run(image);
+        byte[] flashed = scooter.getFlashedImage();
+        if (!Arrays.equals(Arrays.copyOf(flashed, image.length), image)) {
+            throw new IllegalStateException("Flashed image differs: " + scooter);
+        }
+        return flashed.length;
+    }
+
+    @Benchmark
+    public int runningDataRoundTrip() throws Exception {
+        int answered = 0;
+        for (int i = 0; i < 50; i++) {
+            scooter.sendCommand(CommandEncoder.request(
+                    scooter.getProtocolHeader(), CommandEncoder.CMD_RUNNING_DATA));
+            if (speeds.poll(500, TimeUnit.MILLISECONDS) != null) answered++;
+        }
+        return answered;
+    }
+}
@@ -2,4 +2,5 @@
 plugins {
     id("com.android.application") version "8.9.1" apply false
     id("com.google.gms.google-services") version "4.4.4" apply false
+    id("me.champeau.jmh") version "0.7.2" apply false
 }
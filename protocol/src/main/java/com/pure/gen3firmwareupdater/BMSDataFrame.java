@@ -0,0 +1,62 @@
+package com.pure.gen3firmwareupdater;
+
+/**
+ * Zero-allocation view over a 0xA1 BMS data packet.
+ * Byte layout is documented on {@link BMSDataInfo}.
+ *
+ * Use {@link BMSDataInfo#fromFrame(BMSDataFrame)} to materialize a POJO.
+ */
+public class BMSDataFrame extends ProtocolFrame {
+
+    public static final int COMMAND = 0xA1;
+    static final int MIN_LENGTH = 15;
+
+    @Override
+    protected int command() { return COMMAND; }
+
+    @Override
+    protected int minLength() { return MIN_LENGTH; }
+
+    /** Battery status flags (bytes 3-4). */
+    public int getStatusFlags() { return u16(3); }
+
+    /** Charging flag (status bit 0). */
+    public boolean isCharging() { return (getStatusFlags() & 0x01) != 0; }
+
+    /** Battery current raw value in 0.1A units, signed (bytes 5-6). */
+    public int getCurrentRaw() { return s16(5); }
+
+    /** Battery current in Amps (negative = discharging). */
+    public double getCurrent() { return getCurrentRaw() / 10.0; }
+
+    /** Battery voltage raw value in 0.1V units (bytes 7-8). */
+    public int getVoltageRaw() { return u16(7); }
+
+    /** Battery pack voltage in Volts. */
+    public double getVoltage() { return getVoltageRaw() / 10.0; }
+
+    /** State of charge 0-100% (byte 9). */
+    public int getPercent() { return u8(9); }
+
+    /** Total charge cycles (bytes 10-11). */
+    public int getChargeCycles() { return u16(10); }
+
+    /** Full capacity in mAh (bytes 12-13). */
+    public int getCapacity() { return u16(12); }
+
+    /** Remaining capacity in mAh (bytes 14-15). */
+    public int getRemaining() { return u16(14); }
+
+    /** Battery temperature in °C (byte 16, signed). */
+    public int getTemperature() { return s8(16); }
+
+    @Override
+    public String toString() {
+        return "BMSDataFrame{" +
+                "voltage=" + getVoltage() + "V" +
+                ", current=" + getCurrent() + "A" +
+                ", SOC=" + getPercent() + "%" +
+                ", charging=" + isCharging() +
+                '}';
+    }
+}
@@ -1,7 +1,5 @@
 package com.pure.gen3firmwareupdater;
 
-import android.util.Log;
-
 /**
  * Represents Battery Management System (BMS) data from instruction 0xA1.
  * Contains battery voltage, current, charge state, capacity, and temperature.
@@ -73,102 +71,65 @@ public class BMSDataInfo {
 
     // Raw data
     public byte[] rawData;
-    public String rawHex;
 
     /**
      * Parse a 0xA1 BMS data packet from the scooter.
      * Byte layout matches the Python reference ble_protocol.py.
+     *
+     * Convenience wrapper over {@link BMSDataFrame} + {@link #fromFrame}; hot paths
+     * should read the frame directly and only materialize when the data must be kept.
      */
     public static BMSDataInfo parse(byte[] data) {
-        if (data == null || data.length < 15) {
-            Log.w(TAG, "A1 packet too short: " + (data == null ? "null" : data.length));
-            return null;
-        }
-
-        // Verify packet type
-        if ((data[0] != (byte) 0xAB && data[0] != (byte) 0xF0) || data[1] != (byte) 0xA1) {
-            Log.w(TAG, "Not a valid A1 packet: header=0x" + String.format("%02X", data[0])
-                    + " cmd=0x" + String.format("%02X", data[1]));
+        BMSDataFrame frame = new BMSDataFrame();
+        if (!frame.wrap(data)) {
+            ProtocolLog.w(TAG, "Not a valid A1 packet: " + (data == null ? "null" : data.length + " bytes"));
             return null;
         }
+        return fromFrame(frame);
+    }
 
+    /**
+     * Materialize a POJO from a wrapped A1 frame. Copies the packet bytes, so the
+     * result stays valid after the frame is re-wrapped.
+     */
+    public static BMSDataInfo fromFrame(BMSDataFrame frame) {
         BMSDataInfo info = new BMSDataInfo();
-        info.rawData = data.clone();
-        info.rawHex = bytesToHex(data);
-
-        try {
-            // Parse battery status flags (bytes 3-4, uint16_BE)
-            if (data.length > 4) {
-                info.batteryStatusFlags = ((data[3] & 0xFF) << 8) | (data[4] & 0xFF);
-                info.isCharging = (info.batteryStatusFlags & 0x01) != 0;  // Bit 0 = charging
-            }
-
-            // Parse battery current (bytes 5-6, int16_BE, 0.1A, signed)
-            // Per Python: if raw > 32767, subtract 65536 to get negative value
-            if (data.length > 6) {
-                int currentRaw = ((data[5] & 0xFF) << 8) | (data[6] & 0xFF);
-                if (currentRaw > 32767) {
-                    currentRaw -= 65536;
-                }
-                info.batteryCurrent = currentRaw / 10.0;
-                info.isDischarging = !info.isCharging && info.batteryCurrent < 0;
-            }
-
-            // Parse battery voltage (bytes 7-8, uint16_BE, 0.1V)
-            if (data.length > 8) {
-                int voltageRaw = ((data[7] & 0xFF) << 8) | (data[8] & 0xFF);
-                info.batteryVoltage = voltageRaw / 10.0;
-            }
-
-            // Parse battery percent (byte 9, uint8, 0-100%)
-            if (data.length > 9) {
-                info.batteryPercent = data[9] & 0xFF;
-                info.batterySOC = info.batteryPercent;  // Backward compat alias
-            }
-
-            // Parse charge cycles (bytes 10-11, uint16_BE)
-            if (data.length > 11) {
-                info.chargeCycles = ((data[10] & 0xFF) << 8) | (data[11] & 0xFF);
-            }
-
-            // Parse battery capacity (bytes 12-13, uint16_BE, mAh)
-            if (data.length > 13) {
-                info.batteryCapacity = ((data[12] & 0xFF) << 8) | (data[13] & 0xFF);
-                info.fullCapacity = info.batteryCapacity;  // Backward compat alias
-            }
-
-            // Parse battery remaining (bytes 14-15, uint16_BE, mAh)
-            if (data.length > 15) {
-                info.batteryRemaining = ((data[14] & 0xFF) << 8) | (data[15] & 0xFF);
-                info.remainingCapacity = info.batteryRemaining;  // Backward compat alias
-            }
-
-            // Parse battery temperature (byte 16, int8, °C)
-            if (data.length > 16) {
-                info.batteryTemperature = (byte) data[16]; // signed byte
-                // Set all compat temperature fields to the same value
-                info.avgTemperature = info.batteryTemperature;
-                info.maxTemperature = info.batteryTemperature;
-                info.minTemperature = info.batteryTemperature;
-            }
-
-            // Calculate battery health as percentage of design capacity remaining
-            if (info.batteryCapacity > 0 && info.batteryRemaining > 0) {
-                info.batteryHealth = Math.min(100,
-                        (int) ((info.batteryRemaining * 100.0) / info.batteryCapacity));
-            }
-
-            Log.d(TAG, "Parsed A1 packet: " + info);
-            return info;
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error parsing A1 packet: " + e.getMessage(), e);
-            return null;
+        info.rawData = frame.copyBytes();
+
+        info.batteryStatusFlags = frame.getStatusFlags();
+        info.isCharging = frame.isCharging();
+
+        info.batteryCurrent = frame.getCurrent();
+        info.isDischarging = !info.isCharging && info.batteryCurrent < 0;
+        info.batteryVoltage = frame.getVoltage();
+
+        info.batteryPercent = frame.getPercent();
+        info.batterySOC = info.batteryPercent;  // Backward compat alias
+
+        info.chargeCycles = frame.getChargeCycles();
+        info.batteryCapacity = frame.getCapacity();
+        info.fullCapacity = info.batteryCapacity;  // Backward compat alias
+        info.batteryRemaining = frame.getRemaining();
+        info.remainingCapacity = info.batteryRemaining;  // Backward compat alias
+
+        info.batteryTemperature = frame.getTemperature();
+        // Set all compat temperature fields to the same value
+        info.avgTemperature = info.batteryTemperature;
+        info.maxTemperature = info.batteryTemperature;
+        info.minTemperature = info.batteryTemperature;
+
+        // Calculate battery health as percentage of design capacity remaining
+        if (info.batteryCapacity > 0 && info.batteryRemaining > 0) {
+            info.batteryHealth = Math.min(100,
+                    (int) ((info.batteryRemaining * 100.0) / info.batteryCapacity));
         }
+
+        return info;
     }
 
-    private static String bytesToHex(byte[] bytes) {
-        return ProtocolUtils.bytesToHex(bytes);
+    /** Hex rendering of the raw packet, built on demand for debug displays. */
+    public String getRawHex() {
+        return rawData == null ? "" : ProtocolUtils.bytesToHex(rawData);
     }
 
     @Override
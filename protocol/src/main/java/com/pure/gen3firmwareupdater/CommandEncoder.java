@@ -0,0 +1,157 @@
+package com.pure.gen3firmwareupdater;
+
+/**
+ * Builds outbound command frames. Every frame the app sends is laid out here.
+ *
+ * Fixed request frames (A0/A1/B0 polls, D0/D1/D3 firmware commands) never change for
+ * a given protocol header, so they are encoded once per header (0xF0 and 0xAB) at
+ * class load and shared. Variable frames (C0 control, D2 firmware data) are encoded
+ * into buffers owned by a CommandEncoder instance and reused for every call.
+ *
+ * Buffer rules:
+ * - Frames returned by {@link #request(int, int)} are shared - never modify them.
+ * - Frames returned by the instance methods are overwritten by the next call on the
+ *   same instance. BluetoothGatt copies the value during writeCharacteristic(), so a
+ *   frame may be reused as soon as the write call returns.
+ * - Instances are not thread-safe: give each sender its own.
+ *
+ * Frame formats:
+ * - Request:  [header, cmd, 0x05, CRC_L, CRC_H]
+ * - Firmware: [header, cmd, CRC_L, CRC_H] (D0/D1/D3 have no length byte)
+ * - C0:       [header, 0xC0, 0x0F, stateH, stateL, cruise, maxSpeed, 0 x6, CRC_L, CRC_H]
+ * - D2:       [header, 0xD2, idxH, idxL, 0x00, 0x80, data x128, CRC_L, CRC_H]
+ */
+public final class CommandEncoder {
+
+    public static final int HEADER_STANDARD = 0xF0;
+    public static final int HEADER_ALTERNATE = 0xAB;
+
+    public static final int CMD_RUNNING_DATA = 0xA0;
+    public static final int CMD_BMS_DATA = 0xA1;
+    public static final int CMD_VERSION_INFO = 0xB0;
+    public static final int CMD_CONTROL = 0xC0;
+    public static final int CMD_REQUEST_UPGRADE = 0xD0;
+    public static final int CMD_ERASE_MEMORY = 0xD1;
+    public static final int CMD_UPLOAD_DATA = 0xD2;
+    public static final int CMD_COMPLETE_UPLOAD = 0xD3;
+
+    public static final int REQUEST_LENGTH = 5;
+    public static final int FIRMWARE_COMMAND_LENGTH = 4;
+    public static final int CONTROL_LENGTH = 15;
+    public static final int UPLOAD_CHUNK_SIZE = 128;
+    public static final int UPLOAD_DATA_LENGTH = UPLOAD_CHUNK_SIZE + 8;
+
+    private static final int[] REQUEST_COMMANDS = {
+            CMD_RUNNING_DATA, CMD_BMS_DATA, CMD_VERSION_INFO
+    };
+    private static final int[] FIRMWARE_COMMANDS = {
+            CMD_REQUEST_UPGRADE, CMD_ERASE_MEMORY, CMD_COMPLETE_UPLOAD
+    };
+
+    // [0] = 0xF0 frames, [1] = 0xAB frames, indexed by command byte
+    private static final byte[][][] FIXED = new byte[2][256][];
+
+    static {
+        int[] headers = {HEADER_STANDARD, HEADER_ALTERNATE};
+        for (int h = 0; h < 2; h++) {
+            for (int cmd : REQUEST_COMMANDS) {
+                FIXED[h][cmd] = buildFixed(headers[h], cmd);
+            }
+            for (int cmd : FIRMWARE_COMMANDS) {
+                FIXED[h][cmd] = buildFixed(headers[h], cmd);
+            }
+        }
+    }
+
+    private final byte[] controlFrame = new byte[CONTROL_LENGTH];
+    private final byte[] uploadFrame = new byte[UPLOAD_DATA_LENGTH];
+
+    /**
+     * Fixed command frame for this header: a 5-byte request (A0/A1/B0 and other
+     * length-byte commands) or a 4-byte firmware command (D0/D1/D3).
+     * Cached for 0xF0/0xAB; other headers are encoded on each call.
+     *
+     * @return the encoded frame - shared, do not modify
+     */
+    public static byte[] request(int header, int command) {
+        int cmd = command & 0xFF;
+        byte[][] table = tableFor(header);
+        if (table != null && table[cmd] != null) return table[cmd];
+        return buildFixed(header, cmd);
+    }
+
+    /**
+     * Encode a C0 control command (lights, cruise, lock, ...).
+     *
+     * @return this encoder's control buffer (15 bytes)
+     */
+    public byte[] encodeControl(int header, int controlFlags, int cruiseSpeed, int maxSpeed) {
+        byte[] frame = controlFrame;
+        frame[0] = (byte) header;
+        frame[1] = (byte) CMD_CONTROL;
+        frame[2] = (byte) CONTROL_LENGTH;
+        frame[3] = (byte) ((controlFlags >> 8) & 0xFF); // controlState high
+        frame[4] = (byte) (controlFlags & 0xFF);         // controlState low
+        frame[5] = (byte) cruiseSpeed;
+        frame[6] = (byte) maxSpeed;
+        for (int i = 7; i < 13; i++) frame[i] = 0;     // reserved
+        putCrc(frame, CONTROL_LENGTH);
+        return frame;
+    }
+
+    /**
+     * Encode a D2 firmware data packet. The chunk is {@code data[offset .. offset+length)},
+     * padded to 128 bytes with 0xFF.
+     *
+     * @return this encoder's upload buffer (136 bytes)
+     */
+    public byte[] encodeUploadData(int header, int packetIndex, byte[] data, int offset, int length) {
+        if (length < 0 || length > UPLOAD_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk length out of range: " + length);
+        }
+        byte[] frame = uploadFrame;
+        frame[0] = (byte) header;
+        frame[1] = (byte) CMD_UPLOAD_DATA;
+        frame[2] = (byte) ((packetIndex >> 8) & 0xFF);
+        frame[3] = (byte) (packetIndex & 0xFF);
+        frame[4] = 0x00;
+        frame[5] = (byte) UPLOAD_CHUNK_SIZE;
+        System.arraycopy(data, offset, frame, 6, length);
+        for (int i = 6 + length; i < 6 + UPLOAD_CHUNK_SIZE; i++) frame[i] = (byte) 0xFF;
+        putCrc(frame, UPLOAD_DATA_LENGTH);
+        return frame;
+    }
+
+    private static byte[][] tableFor(int header) {
+        switch (header) {
+            case HEADER_STANDARD: return FIXED[0];
+            case HEADER_ALTERNATE: return FIXED[1];
+            default: return null;
+        }
+    }
+
+    private static boolean isFirmwareCommand(int cmd) {
+        return cmd == CMD_REQUEST_UPGRADE || cmd == CMD_ERASE_MEMORY || cmd == CMD_COMPLETE_UPLOAD;
+    }
+
+    private static byte[] buildFixed(int header, int cmd) {
+        byte[] frame;
+        if (isFirmwareCommand(cmd)) {
+            frame = new byte[FIRMWARE_COMMAND_LENGTH];
+        } else {
+            frame = new byte[REQUEST_LENGTH];
+            frame[2] = (byte) REQUEST_LENGTH;
+        }
+        frame[0] = (byte) header;
+        frame[1] = (byte) cmd;
+        putCrc(frame, frame.length);
+        return frame;
+    }
+
+    /** Write the CRC16 of {@code frame[0 .. frameLength-2)} into the last two bytes (little-endian). */
+    private static void putCrc(byte[] frame, int frameLength) {
+        int crc = ProtocolUtils.calculateCRC16(frame, frameLength - 2);
+        frame[frameLength - 2] = (byte) (crc & 0xFF);
+        frame[frameLength - 1] = (byte) ((crc >> 8) & 0xFF);
+    }
+}
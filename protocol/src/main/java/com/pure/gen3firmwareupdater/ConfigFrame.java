@@ -0,0 +1,42 @@
+package com.pure.gen3firmwareupdater;
+
+/**
+ * Zero-allocation view over a 0x01 configuration/settings packet.
+ * Field meanings are documented on {@link ConfigInfo}.
+ *
+ * Use {@link ConfigInfo#fromFrame(ConfigFrame)} to materialize a POJO.
+ */
+public class ConfigFrame extends ProtocolFrame {
+
+    public static final int COMMAND = 0x01;
+    static final int MIN_LENGTH = 25;
+
+    @Override
+    protected int command() { return COMMAND; }
+
+    @Override
+    protected int minLength() { return MIN_LENGTH; }
+
+    public int getMinCruiseSpeed() { return u8(3); }
+    public int getMaxSpeedEco() { return u8(4); }
+    public int getMaxSpeedComfort() { return u8(5); }
+    public int getMaxSpeedSport() { return u8(6); }
+
+    /** Combined fault flag word (bytes 8-9). */
+    public int getFaultFlags() { return u16(8); }
+
+    /** Combined panel selection word (bytes 10-11). */
+    public int getPanelFlags() { return u16(10); }
+
+    /** Raw software version byte {@code n} (0-4) from bytes 18-22. */
+    public int getSoftwareVersionByte(int n) { return u8(18 + n); }
+
+    @Override
+    public String toString() {
+        return "ConfigFrame{" +
+                "maxSpeedSport=" + getMaxSpeedSport() +
+                ", faultFlags=0x" + String.format("%04X", getFaultFlags()) +
+                ", panelFlags=0x" + String.format("%04X", getPanelFlags()) +
+                '}';
+    }
+}
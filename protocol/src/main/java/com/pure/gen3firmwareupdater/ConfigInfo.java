@@ -37,36 +37,37 @@ public class ConfigInfo {
 
     // Raw data
     public byte[] rawData;
-    public String rawHex;
 
     /**
      * Parse a 0x01 configuration packet from the scooter.
      * Expected format: [0xAB/0xF0, 0x01, 0x19, ...data..., CRC_L, CRC_H]
+     *
+     * Convenience wrapper over {@link ConfigFrame} + {@link #fromFrame}.
      */
     public static ConfigInfo parse(byte[] data) {
-        if (data == null || data.length < 25) {
-            return null;
-        }
-
-        // Verify packet type
-        if ((data[0] != (byte) 0xAB && data[0] != (byte) 0xF0) || data[1] != 0x01) {
+        ConfigFrame frame = new ConfigFrame();
+        if (!frame.wrap(data)) {
             return null;
         }
+        return fromFrame(frame);
+    }
 
+    /**
+     * Materialize a POJO from a wrapped 0x01 frame. Copies the packet bytes, so the
+     * result stays valid after the frame is re-wrapped.
+     */
+    public static ConfigInfo fromFrame(ConfigFrame frame) {
         ConfigInfo info = new ConfigInfo();
-        info.rawData = data.clone();
-        info.rawHex = bytesToHex(data);
+        info.rawData = frame.copyBytes();
 
-        // Parse speed settings (bytes 3-6)
-        info.minCruiseSpeed = data[3] & 0xFF;
-        info.maxSpeedEco = data[4] & 0xFF;
-        info.maxSpeedComfort = data[5] & 0xFF;
-        info.maxSpeedSport = data[6] & 0xFF;
+        // Speed settings (bytes 3-6)
+        info.minCruiseSpeed = frame.getMinCruiseSpeed();
+        info.maxSpeedEco = frame.getMaxSpeedEco();
+        info.maxSpeedComfort = frame.getMaxSpeedComfort();
+        info.maxSpeedSport = frame.getMaxSpeedSport();
 
-        // Parse fault flags (bytes 8-9)
-        int faultHigh = data[8] & 0xFF;
-        int faultLow = data[9] & 0xFF;
-        info.faultFlags = (faultHigh << 8) | faultLow;
+        // Fault flags (bytes 8-9)
+        info.faultFlags = frame.getFaultFlags();
 
         info.faultWarningEnabled = (info.faultFlags & 0x0001) != 0;
         info.brakeFailure = (info.faultFlags & 0x0002) != 0;
@@ -78,10 +79,8 @@ public class ConfigInfo {
         info.brakeNotReset = (info.faultFlags & 0x0800) != 0;
         info.throttleNotReset = (info.faultFlags & 0x1000) != 0;
 
-        // Parse panel selections (bytes 10-11)
-        int panelHigh = data[10] & 0xFF;
-        int panelLow = data[11] & 0xFF;
-        info.panelFlags = (panelHigh << 8) | panelLow;
+        // Panel selections (bytes 10-11)
+        info.panelFlags = frame.getPanelFlags();
 
         info.snCodePanel = (info.panelFlags & 0x0001) != 0;
         info.mp3Panel = (info.panelFlags & 0x0002) != 0;
@@ -89,11 +88,12 @@ public class ConfigInfo {
         info.bmsPanel = (info.panelFlags & 0x0008) != 0;
         info.speedUnitMph = (info.panelFlags & 0x1000) != 0;
 
-        // Parse software version (bytes 18-22)
+        // Software version (bytes 18-22)
         // Format: e.g., [0x80, 0x25, 0x01, 0x00, 0x01] = "8025_01.00.01"
         info.softwareVersion = String.format("%02X%02X_%02X.%02X.%02X",
-                data[18] & 0xFF, data[19] & 0xFF, data[20] & 0xFF,
-                data[21] & 0xFF, data[22] & 0xFF);
+                frame.getSoftwareVersionByte(0), frame.getSoftwareVersionByte(1),
+                frame.getSoftwareVersionByte(2), frame.getSoftwareVersionByte(3),
+                frame.getSoftwareVersionByte(4));
 
         return info;
     }
@@ -144,8 +144,9 @@ public class ConfigInfo {
         return speedUnitMph ? "mph" : "km/h";
     }
 
-    private static String bytesToHex(byte[] bytes) {
-        return ProtocolUtils.bytesToHex(bytes);
+    /** Hex rendering of the raw packet, built on demand for debug displays. */
+    public String getRawHex() {
+        return rawData == null ? "" : ProtocolUtils.bytesToHex(rawData);
     }
 
     @Override
@@ -0,0 +1,109 @@
+package com.pure.gen3firmwareupdater;
+
+/**
+ * Base class for zero-allocation flyweight views over a raw BLE protocol frame.
+ *
+ * A frame does not copy or parse anything up front: {@link #wrap(byte[], int, int)}
+ * points it at a region of an existing byte array and each getter reads its field
+ * on demand. Instances are meant to be reused for every packet of the same type,
+ * so a wrapped frame is only valid until the next wrap() or until the caller
+ * reuses the underlying array. Materialize a POJO (e.g. RunningDataInfo.fromFrame)
+ * if the data needs to outlive the callback.
+ *
+ * Frame format: [header(0xF0/0xAB), command, length, ...data..., CRC_L, CRC_H]
+ *
+ * Fields that lie beyond the wrapped length read as 0, matching the length
+ * guards in the original POJO parsers.
+ */
+public abstract class ProtocolFrame {
+
+    protected byte[] buf;
+    protected int offset;
+    protected int length;
+
+    /** Command byte this frame type decodes (e.g. 0xA0). */
+    protected abstract int command();
+
+    /** Minimum number of bytes required for the frame to be considered valid. */
+    protected abstract int minLength();
+
+    /**
+     * Point this frame at {@code data[offset .. offset+length)}.
+     *
+     * @return true if the region holds a frame of this type (header, command and
+     *         minimum length all check out); false leaves the frame unwrapped
+     */
+    public boolean wrap(byte[] data, int offset, int length) {
+        if (data == null || length < minLength() || offset < 0 || offset + length > data.length) {
+            clear();
+            return false;
+        }
+        int header = data[offset] & 0xFF;
+        if ((header != 0xF0 && header != 0xAB) || (data[offset + 1] & 0xFF) != command()) {
+            clear();
+            return false;
+        }
+        this.buf = data;
+        this.offset = offset;
+        this.length = length;
+        return true;
+    }
+
+    /** Wrap a whole array. */
+    public boolean wrap(byte[] data) {
+        return data != null && wrap(data, 0, data.length);
+    }
+
+    /** Drop the reference to the wrapped array. */
+    public void clear() {
+        buf = null;
+        offset = 0;
+        length = 0;
+    }
+
+    public boolean isWrapped() { return buf != null; }
+
+    /** Command byte this frame type decodes; used as its dispatch key. */
+    public final int getCommand() { return command(); }
+
+    public int getLength() { return length; }
+    public int getHeader() { return u8(0); }
+    public int getLengthField() { return u8(2); }
+
+    /** Copy the wrapped bytes into a new array. Allocates — use for materialization only. */
+    public byte[] copyBytes() {
+        byte[] copy = new byte[length];
+        System.arraycopy(buf, offset, copy, 0, length);
+        return copy;
+    }
+
+    /** Render the wrapped bytes as hex. Allocates — only call for debug output. */
+    public String toHexString() {
+        return ProtocolUtils.bytesToHex(buf, offset, length);
+    }
+
+    // ==================================================================================
+    // FIELD READERS
+    // ==================================================================================
+
+    /** Unsigned byte at frame index, or 0 if beyond the wrapped length. */
+    protected final int u8(int index) {
+        return index < length ? buf[offset + index] & 0xFF : 0;
+    }
+
+    /** Signed byte at frame index, or 0 if beyond the wrapped length. */
+    protected final int s8(int index) {
+        return index < length ? buf[offset + index] : 0;
+    }
+
+    /** Unsigned big-endian 16-bit value at frame index, or 0 if not fully present. */
+    protected final int u16(int index) {
+        if (index + 1 >= length) return 0;
+        return ((buf[offset + index] & 0xFF) << 8) | (buf[offset + index + 1] & 0xFF);
+    }
+
+    /** Signed big-endian 16-bit value at frame index, or 0 if not fully present. */
+    protected final int s16(int index) {
+        return (short) u16(index);
+    }
+}
@@ -0,0 +1,58 @@
+package com.pure.gen3firmwareupdater;
+
+/**
+ * Logging facade for the protocol library.
+ *
+ * The protocol module has no Android dependency, so it cannot call android.util.Log.
+ * The app installs a sink at startup that forwards to Logcat; on a plain JVM (tests,
+ * benchmarks, replay tools) nothing is installed and logging is a no-op.
+ *
+ * Priorities use the android.util.Log values so a sink can pass them straight through.
+ */
+public final class ProtocolLog {
+    private ProtocolLog() {}
+
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    /** Receives every log call. {@code error} may be null. */
+    public interface Sink {
+        void log(int priority, String tag, String message, Throwable error);
+    }
+
+    private static volatile Sink sink;
+    private static volatile int minPriority = DEBUG;
+
+    /** Install (or with null, remove) the log sink. */
+    public static void setSink(Sink newSink) {
+        sink = newSink;
+    }
+
+    /** Drop messages below this priority before they reach the sink. */
+    public static void setMinPriority(int priority) {
+        minPriority = priority;
+    }
+
+    /**
+     * True if a message at this priority would be delivered. Guard expensive
+     * message building on hot paths with it.
+     */
+    public static boolean isLoggable(int priority) {
+        return sink != null && priority >= minPriority;
+    }
+
+    public static void d(String tag, String message) { log(DEBUG, tag, message, null); }
+    public static void i(String tag, String message) { log(INFO, tag, message, null); }
+    public static void w(String tag, String message) { log(WARN, tag, message, null); }
+    public static void e(String tag, String message) { log(ERROR, tag, message, null); }
+    public static void e(String tag, String message, Throwable error) { log(ERROR, tag, message, error); }
+
+    private static void log(int priority, String tag, String message, Throwable error) {
+        Sink s = sink;
+        if (s != null && priority >= minPriority) {
+            s.log(priority, tag, message, error);
+        }
+    }
+}
@@ -55,9 +55,17 @@ public final class ProtocolUtils {
      * Calculate CRC16 MODBUS checksum.
      */
     public static int calculateCRC16(byte[] data, int length) {
+        return calculateCRC16(data, 0, length);
+    }
+
+    /**
+     * Calculate CRC16 MODBUS checksum over {@code data[offset .. offset+length)}.
+     * Allocation-free, so it is safe to call for every inbound frame.
+     */
+    public static int calculateCRC16(byte[] data, int offset, int length) {
         int crcHigh = 0xFF;
         int crcLow = 0xFF;
-        for (int i = 0; i < length; i++) {
+        for (int i = offset, end = offset + length; i < end; i++) {
             int index = (crcLow ^ (data[i] & 0xFF)) & 0xFF;
             crcLow = (crcHigh ^ CRCH[index]) & 0xFF;
             crcHigh = CRCL[index];
@@ -65,14 +73,28 @@ public final class ProtocolUtils {
         return ((crcHigh & 0xFF) << 8) | (crcLow & 0xFF);
     }
 
+    /**
+     * Check the trailing CRC of the frame at {@code data[offset .. offset+frameLength)}.
+     * The CRC covers every byte before it and is stored little-endian (CRC_L, CRC_H).
+     */
+    public static boolean verifyCRC16(byte[] data, int offset, int frameLength) {
+        if (data == null || frameLength < 3 || offset < 0 || offset + frameLength > data.length) {
+            return false;
+        }
+        int crc = calculateCRC16(data, offset, frameLength - 2);
+        int crcLow = data[offset + frameLength - 2] & 0xFF;
+        int crcHigh = data[offset + frameLength - 1] & 0xFF;
+        return crcLow == (crc & 0xFF) && crcHigh == ((crc >> 8) & 0xFF);
+    }
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
     /**
      * Convert byte array to hex string for debugging (e.g., "F0 B0 05 A3 C1").
      */
     public static String bytesToHex(byte[] bytes) {
         if (bytes == null) return "null";
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) sb.append(String.format("%02X ", b));
-        return sb.toString().trim();
+        return bytesToHex(bytes, 0, bytes.length);
     }
 
     /**
@@ -80,10 +102,24 @@ public final class ProtocolUtils {
      */
     public static String bytesToHex(byte[] bytes, int length) {
         if (bytes == null) return "null";
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < Math.min(length, bytes.length); i++) {
-            sb.append(String.format("%02X ", bytes[i]));
+        return bytesToHex(bytes, 0, Math.min(length, bytes.length));
+    }
+
+    /**
+     * Convert {@code bytes[offset .. offset+length)} to a space-separated hex string.
+     * Used by the flyweight frames so debug rendering never needs a copy of the packet.
+     */
+    public static String bytesToHex(byte[] bytes, int offset, int length) {
+        if (bytes == null) return "null";
+        if (length <= 0) return "";
+        char[] out = new char[length * 3 - 1];
+        for (int i = 0; i < length; i++) {
+            int v = bytes[offset + i] & 0xFF;
+            int p = i * 3;
+            out[p] = HEX_DIGITS[v >>> 4];
+            out[p + 1] = HEX_DIGITS[v & 0x0F];
+            if (i < length - 1) out[p + 2] = ' ';
         }
-        return sb.toString().trim();
+        return new String(out);
     }
 }
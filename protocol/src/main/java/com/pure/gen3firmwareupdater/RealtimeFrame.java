@@ -0,0 +1,66 @@
+package com.pure.gen3firmwareupdater;
+
+/**
+ * Zero-allocation view over a 0x00 real-time data packet, which Hobbywing-family
+ * meters (0xAB header) report on a schedule.
+ *
+ * Packet structure: 25 bytes total
+ * Format: [header(0xAB), 0x00, length(0x19), ...data..., CRC_L, CRC_H]
+ *
+ * Byte layout (Hobbywing Scooter BLE Protocol B-01.0.01, section 2.1):
+ * [0]     Header (0xAB)
+ * [1]     Packet type (0x00)
+ * [2]     Length (0x19 = 25)
+ * [3]     Motor direction (1 = forward, 0 = reverse)
+ * [4]     Gear (0 = energy saving, 1 = normal, 2 = sport)
+ * [5]     Battery percent (0-100%)
+ * [6-7]   Motor 1 speed (uint16_BE, doc example 0x2710 = 10000)
+ * [8-9]   Motor 2 speed (uint16_BE)
+ * [10-11] Voltage (uint16_BE, 0.1V)
+ * [12-22] Not documented in the available copy of the spec
+ * [23-24] CRC16 (MODBUS)
+ *
+ * Only the documented fields are exposed; the speed scaling depends on the
+ * unit setting, so speeds are returned raw.
+ */
+public class RealtimeFrame extends ProtocolFrame {
+
+    public static final int COMMAND = 0x00;
+    static final int MIN_LENGTH = 12;
+
+    @Override
+    protected int command() { return COMMAND; }
+
+    @Override
+    protected int minLength() { return MIN_LENGTH; }
+
+    public boolean isForward() { return u8(3) == 1; }
+
+    /** Gear 0-2 (0 = energy saving, 1 = normal, 2 = sport). */
+    public int getGear() { return u8(4); }
+
+    /** Battery percent 0-100 (byte 5). */
+    public int getBatteryPercent() { return u8(5); }
+
+    /** Motor 1 speed, raw (bytes 6-7). */
+    public int getMotor1SpeedRaw() { return u16(6); }
+
+    /** Motor 2 speed, raw (bytes 8-9). */
+    public int getMotor2SpeedRaw() { return u16(8); }
+
+    /** Voltage raw value in 0.1V units (bytes 10-11). */
+    public int getVoltageRaw() { return u16(10); }
+
+    /** Voltage in Volts. */
+    public double getVoltage() { return getVoltageRaw() / 10.0; }
+
+    @Override
+    public String toString() {
+        return "RealtimeFrame{" +
+                "gear=" + getGear() +
+                ", battery=" + getBatteryPercent() + "%" +
+                ", motor1=" + getMotor1SpeedRaw() +
+                ", voltage=" + getVoltage() + "V" +
+                '}';
+    }
+}
@@ -0,0 +1,84 @@
+package com.pure.gen3firmwareupdater;
+
+/**
+ * Zero-allocation view over a 0xA0 running data packet.
+ * Byte layout is documented on {@link RunningDataInfo}.
+ *
+ * Use {@link RunningDataInfo#fromFrame(RunningDataFrame)} to materialize a POJO.
+ */
+public class RunningDataFrame extends ProtocolFrame {
+
+    public static final int COMMAND = 0xA0;
+    static final int MIN_LENGTH = 18;
+
+    @Override
+    protected int command() { return COMMAND; }
+
+    @Override
+    protected int minLength() { return MIN_LENGTH; }
+
+    /** Fault code bitmap (bytes 3-4, bit N = fault EN). */
+    public int getFaultCode() { return u16(3); }
+
+    /** Raw control function flags (bytes 5-6). */
+    public int getControlFlags() { return u16(5); }
+
+    /** Gear level 1-4 (control flag bits 0-1, plus 1 for display). */
+    public int getGearLevel() { return (getControlFlags() & 0x03) + 1; }
+
+    public boolean isHeadlightsOn() { return (getControlFlags() & 0x10) != 0; }
+    public boolean isCruiseEnabled() { return (getControlFlags() & 0x20) != 0; }
+    public boolean isDeviceLocked() { return (getControlFlags() & 0x100) != 0; }
+    public boolean isUnitMiles() { return (getControlFlags() & 0x200) != 0; }
+    public boolean isZeroStart() { return (getControlFlags() & 0x400) != 0; }
+
+    /** Cruise speed in km/h (byte 7). */
+    public int getCruiseSpeed() { return u8(7); }
+
+    /** Current speed in km/h (byte 8). */
+    public int getCurrentSpeed() { return u8(8); }
+
+    /** Max speed setting in km/h (byte 9). */
+    public int getMaxSpeed() { return u8(9); }
+
+    /** Trip distance in km (byte 10). */
+    public int getTripDistance() { return u8(10); }
+
+    /** Total odometer in km (bytes 11-12). */
+    public int getTotalDistance() { return u16(11); }
+
+    /** Estimated remaining range in km (byte 13). */
+    public int getRemainingRange() { return u8(13); }
+
+    /** Current limit raw value in 0.1A units (bytes 14-15). */
+    public int getCurrentLimitRaw() { return u16(14); }
+
+    /** Current limit in Amps. */
+    public double getCurrentLimit() { return getCurrentLimitRaw() / 10.0; }
+
+    /** Motor temperature in °C (byte 16, signed). */
+    public int getMotorTemp() { return s8(16); }
+
+    /** Controller temperature in °C (byte 17, signed). */
+    public int getControllerTemp() { return s8(17); }
+
+    /** Motor RPM (bytes 18-19). */
+    public int getMotorRPM() { return u16(18); }
+
+    public boolean isMoving() { return getCurrentSpeed() > 0; }
+
+    /** Number of bits set in the fault bitmap that have a known name. */
+    public int getActiveFaultCount() {
+        return RunningDataInfo.countKnownFaults(getFaultCode());
+    }
+
+    @Override
+    public String toString() {
+        return "RunningDataFrame{" +
+                "speed=" + getCurrentSpeed() + " km/h" +
+                ", totalDist=" + getTotalDistance() + " km" +
+                ", gear=" + getGearLevel() +
+                ", faults=0x" + String.format("%04X", getFaultCode()) +
+                '}';
+    }
+}
@@ -1,7 +1,5 @@
 package com.pure.gen3firmwareupdater;
 
-import android.util.Log;
-
 /**
  * Represents real-time running data from instruction 0xA0.
  * Contains telemetry like speed, distances, temperatures, fault codes, and control state.
@@ -90,7 +88,6 @@ public class RunningDataInfo {
 
     // Raw data
     public byte[] rawData;
-    public String rawHex;
 
     // Fault code names (bit position → fault name)
     private static final String[] FAULT_NAMES = {
@@ -110,122 +107,83 @@ public class RunningDataInfo {
             "E13: Battery Fault"
     };
 
+    private static final String[] NO_FAULTS = new String[0];
+
     /**
      * Parse a 0xA0 running data packet from the scooter.
      * Byte layout matches the Python reference ble_protocol.py.
+     *
+     * Convenience wrapper over {@link RunningDataFrame} + {@link #fromFrame}; hot paths
+     * should read the frame directly and only materialize when the data must be kept.
      */
     public static RunningDataInfo parse(byte[] data) {
-        if (data == null || data.length < 18) {
-            Log.w(TAG, "A0 packet too short: " + (data == null ? "null" : data.length));
-            return null;
-        }
-
-        // Verify packet type
-        if ((data[0] != (byte) 0xAB && data[0] != (byte) 0xF0) || data[1] != (byte) 0xA0) {
-            Log.w(TAG, "Not a valid A0 packet: header=0x" + String.format("%02X", data[0])
-                    + " cmd=0x" + String.format("%02X", data[1]));
+        RunningDataFrame frame = new RunningDataFrame();
+        if (!frame.wrap(data)) {
+            ProtocolLog.w(TAG, "Not a valid A0 packet: " + (data == null ? "null" : data.length + " bytes"));
             return null;
         }
+        return fromFrame(frame);
+    }
 
+    /**
+     * Materialize a POJO from a wrapped A0 frame. Copies the packet bytes, so the
+     * result stays valid after the frame is re-wrapped.
+     */
+    public static RunningDataInfo fromFrame(RunningDataFrame frame) {
         RunningDataInfo info = new RunningDataInfo();
-        info.rawData = data.clone();
-        info.rawHex = bytesToHex(data);
-
-        try {
-            // Parse fault code (bytes 3-4, uint16_BE, bitmap)
-            if (data.length > 4) {
-                info.faultCode = ((data[3] & 0xFF) << 8) | (data[4] & 0xFF);
-                info.activeFaults = decodeFaultCodes(info.faultCode);
-            }
-
-            // Parse control function flags (bytes 5-6, uint16_BE)
-            if (data.length > 6) {
-                info.controlFlags = ((data[5] & 0xFF) << 8) | (data[6] & 0xFF);
-                info.gearLevel = (info.controlFlags & 0x03) + 1;          // Bits 0-1, add 1 for display
-                info.headlightsOn = (info.controlFlags & 0x10) != 0;      // Bit 4
-                info.cruiseEnabled = (info.controlFlags & 0x20) != 0;     // Bit 5
-                info.deviceLocked = (info.controlFlags & 0x100) != 0;     // Bit 8
-                info.unitIsMiles = (info.controlFlags & 0x200) != 0;      // Bit 9
-                info.zeroStart = (info.controlFlags & 0x400) != 0;        // Bit 10
-                info.lightsOn = info.headlightsOn; // Backward compat alias
-            }
-
-            // Parse cruise speed (byte 7, uint8, 1 km/h)
-            if (data.length > 7) {
-                info.cruiseSpeed = data[7] & 0xFF;
-            }
-
-            // Parse current speed (byte 8, uint8, 1 km/h)
-            if (data.length > 8) {
-                info.currentSpeed = data[8] & 0xFF;
-                info.speed = info.currentSpeed;                           // Backward compat
-                info.isMoving = info.currentSpeed > 0;                    // Derive from speed
-            }
-
-            // Parse max speed (byte 9, uint8, 1 km/h)
-            if (data.length > 9) {
-                info.maxSpeed = data[9] & 0xFF;
-            }
-
-            // Parse trip distance (byte 10, uint8, 1 km)
-            if (data.length > 10) {
-                info.tripDistance = data[10] & 0xFF;
-            }
-
-            // Parse total distance (bytes 11-12, uint16_BE, 1 km)
-            if (data.length > 12) {
-                info.totalDistance = ((data[11] & 0xFF) << 8) | (data[12] & 0xFF);
-                info.odometer = info.totalDistance;                        // Backward compat
-            }
-
-            // Parse remaining range (byte 13, uint8, 1 km)
-            if (data.length > 13) {
-                info.remainingRange = data[13] & 0xFF;
-            }
-
-            // Parse current limit (bytes 14-15, uint16_BE, 0.1A)
-            if (data.length > 15) {
-                int currentLimitRaw = ((data[14] & 0xFF) << 8) | (data[15] & 0xFF);
-                info.currentLimit = currentLimitRaw / 10.0;
-            }
-
-            // Parse motor temperature (byte 16, int8, °C)
-            if (data.length > 16) {
-                info.motorTemp = (byte) data[16]; // signed byte for negative temps
-            }
-
-            // Parse controller temperature (byte 17, int8, °C)
-            if (data.length > 17) {
-                info.controllerTemp = (byte) data[17]; // signed byte
-            }
-
-            // Parse motor RPM (bytes 18-19, uint16_BE)
-            if (data.length > 19) {
-                info.motorRPM = ((data[18] & 0xFF) << 8) | (data[19] & 0xFF);
-            }
-
-            Log.d(TAG, "Parsed A0 packet: " + info);
-            return info;
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error parsing A0 packet: " + e.getMessage(), e);
-            return null;
-        }
+        info.rawData = frame.copyBytes();
+
+        info.faultCode = frame.getFaultCode();
+        info.activeFaults = decodeFaultCodes(info.faultCode);
+
+        info.controlFlags = frame.getControlFlags();
+        info.gearLevel = frame.getGearLevel();
+        info.headlightsOn = frame.isHeadlightsOn();
+        info.cruiseEnabled = frame.isCruiseEnabled();
+        info.deviceLocked = frame.isDeviceLocked();
+        info.unitIsMiles = frame.isUnitMiles();
+        info.zeroStart = frame.isZeroStart();
+        info.lightsOn = info.headlightsOn; // Backward compat alias
+
+        info.cruiseSpeed = frame.getCruiseSpeed();
+        info.currentSpeed = frame.getCurrentSpeed();
+        info.speed = info.currentSpeed;                           // Backward compat
+        info.isMoving = frame.isMoving();
+        info.maxSpeed = frame.getMaxSpeed();
+
+        info.tripDistance = frame.getTripDistance();
+        info.totalDistance = frame.getTotalDistance();
+        info.odometer = info.totalDistance;                        // Backward compat
+        info.remainingRange = frame.getRemainingRange();
+
+        info.currentLimit = frame.getCurrentLimit();
+        info.motorTemp = frame.getMotorTemp();
+        info.controllerTemp = frame.getControllerTemp();
+        info.motorRPM = frame.getMotorRPM();
+
+        return info;
     }
 
     /**
      * Decode fault code bitmap into human-readable fault names.
      */
     private static String[] decodeFaultCodes(int faultCode) {
-        if (faultCode == 0) return new String[0];
+        int count = countKnownFaults(faultCode);
+        if (count == 0) return NO_FAULTS;
 
-        java.util.List<String> faults = new java.util.ArrayList<>();
+        String[] faults = new String[count];
+        int n = 0;
         for (int i = 0; i < FAULT_NAMES.length; i++) {
             if ((faultCode & (1 << i)) != 0) {
-                faults.add(FAULT_NAMES[i]);
+                faults[n++] = FAULT_NAMES[i];
             }
         }
-        return faults.toArray(new String[0]);
+        return faults;
+    }
+
+    /** Number of set bits in {@code faultCode} that map to a known fault name. */
+    static int countKnownFaults(int faultCode) {
+        return Integer.bitCount(faultCode & ((1 << FAULT_NAMES.length) - 1));
     }
 
     /**
@@ -243,8 +201,9 @@ public class RunningDataInfo {
         }
     }
 
-    private static String bytesToHex(byte[] bytes) {
-        return ProtocolUtils.bytesToHex(bytes);
+    /** Hex rendering of the raw packet, built on demand for debug displays. */
+    public String getRawHex() {
+        return rawData == null ? "" : ProtocolUtils.bytesToHex(rawData);
     }
 
     @Override
@@ -0,0 +1,64 @@
+package com.pure.gen3firmwareupdater;
+
+/**
+ * The byte-level link to one scooter, as seen by code that talks the protocol.
+ *
+ * On Android this is BLEManager over BluetoothGatt (writes to FFF1, notifications
+ * from FFF2). On a plain JVM it is {@link com.pure.gen3firmwareupdater.services.SimulatedScooter},
+ * so the firmware transfer and the request paths can be exercised without hardware.
+ *
+ * While a {@link FirmwareNotificationHandler} is set, notifications are cut into
+ * frames with a {@link com.pure.gen3firmwareupdater.services.FrameAssembler}: replies
+ * to a firmware command (D0-D3) go to the handler, everything else to the
+ * implementation's normal receive path.
+ */
+public interface ScooterTransport {
+
+    /**
+     * Receives D0-D3 replies, one whole CRC-checked frame per call, however the link
+     * split or merged the notifications that carried them.
+     */
+    @FunctionalInterface
+    interface FirmwareNotificationHandler {
+        void onFirmwareResponse(byte[] data);
+    }
+
+    boolean isConnected();
+
+    /** Header byte the scooter speaks (0xF0, or 0xAB on some devices). */
+    int getProtocolHeader();
+
+    /** Largest single write the link accepts (MTU - 3). */
+    int getMaxWriteSize();
+
+    /**
+     * Queue an acknowledged write. Returns true once queued; writes go out in order.
+     */
+    boolean sendCommand(byte[] command);
+
+    /**
+     * Whether the control characteristic accepts writes without response. If it does
+     * not, {@link #writeWithoutResponse} may appear to succeed while the scooter never
+     * receives anything.
+     */
+    boolean supportsWriteWithoutResponse();
+
+    /**
+     * Queue a write without response (ATT Write Command). Returns true once queued;
+     * writes go out in order with the acknowledged ones, several per connection
+     * event, but nothing confirms the scooter received them. At most
+     * {@link #getMaxWriteSize()} bytes.
+     */
+    boolean writeWithoutResponse(byte[] data);
+
+    /**
+     * Acknowledged write that blocks until the write has completed or timed out.
+     * Must not be called on the thread that delivers notifications.
+     *
+     * @return true if the write was acknowledged within the timeout
+     */
+    boolean writeRawBytesAndWait(byte[] data, long timeoutMs);
+
+    /** Route firmware responses to {@code handler}; null restores normal routing. */
+    void setFirmwareNotificationHandler(FirmwareNotificationHandler handler);
+}
@@ -0,0 +1,161 @@
+package com.pure.gen3firmwareupdater;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Binary capture of BLE traffic, appended to a memory-mapped file.
+ *
+ * BLEManager records every notification it receives and every write it makes.
+ * Appending costs a bounds check and a memcpy into the mapping - no string
+ * formatting, no syscall per record - so capture can stay on during a ride or
+ * a firmware flash. Pages are flushed by the kernel, so a capture survives an
+ * app crash up to the last record written.
+ *
+ * File format (little-endian):
+ * <pre>
+ * File header (16 bytes):
+ *   [0-3]   magic "G3CP"
+ *   [4-5]   format version (1)
+ *   [6-7]   reserved
+ *   [8-15]  capture start, epoch millis
+ *
+ * Record (8-byte header + payload):
+ *   [0-3]   time since capture start, millis (uint32)
+ *   [4]     direction: 1 = RX (notification), 2 = TX (write)
+ *   [5]     protocol header in use (0xF0 / 0xAB)
+ *   [6-7]   payload length (uint16)
+ *   [8..]   raw bytes exactly as seen on the characteristic
+ * </pre>
+ * The mapping is zero-filled past the last record, so a reader stops at the first
+ * record with direction 0. {@link #close()} truncates the file to its real length.
+ *
+ * Thread-safe: notifications and writes arrive on different threads.
+ */
+public class TrafficCapture {
+
+    public static final int MAGIC = 0x50433347; // "G3CP" read little-endian
+    public static final int VERSION = 1;
+    public static final int FILE_HEADER_SIZE = 16;
+    public static final int RECORD_HEADER_SIZE = 8;
+
+    public static final int DIRECTION_END = 0;
+    public static final int DIRECTION_RX = 1;
+    public static final int DIRECTION_TX = 2;
+
+    public static final String FILE_EXTENSION = ".g3cap";
+
+    // The file is mapped (and grown) in windows of this size
+    private static final int SEGMENT_SIZE = 1 << 20;
+    private static final int MAX_PAYLOAD = 0xFFFF;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final long startMillis;
+
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private long position;
+    private long recordCount;
+    private boolean closed;
+
+    private TrafficCapture(File file, RandomAccessFile raf, long startMillis) throws IOException {
+        this.file = file;
+        this.raf = raf;
+        this.channel = raf.getChannel();
+        this.startMillis = startMillis;
+        mapSegment(0);
+        segment.putInt(MAGIC);
+        segment.putShort((short) VERSION);
+        segment.putShort((short) 0);
+        segment.putLong(startMillis);
+        position = FILE_HEADER_SIZE;
+    }
+
+    /** Create (or overwrite) a capture file. */
+    public static TrafficCapture open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            return new TrafficCapture(file, raf, System.currentTimeMillis());
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /** Record a notification received from the scooter. */
+    public void recordRx(int protocolHeader, byte[] data) {
+        if (data != null) record(DIRECTION_RX, protocolHeader, data, 0, data.length);
+    }
+
+    /** Record bytes written to the scooter. */
+    public void recordTx(int protocolHeader, byte[] data) {
+        if (data != null) record(DIRECTION_TX, protocolHeader, data, 0, data.length);
+    }
+
+    /**
+     * Append one record. Records larger than 64 KB are truncated (BLE payloads are
+     * at most 512 bytes). I/O errors close the capture rather than disturb the BLE
+     * path - check {@link #isClosed()}.
+     */
+    public synchronized void record(int direction, int protocolHeader, byte[] data, int offset, int length) {
+        if (closed) return;
+        int n = Math.min(length, MAX_PAYLOAD);
+        int size = RECORD_HEADER_SIZE + n;
+        try {
+            if (position + size > segmentStart + SEGMENT_SIZE) {
+                mapSegment(position);
+            }
+        } catch (IOException e) {
+            closeQuietly();
+            return;
+        }
+        long elapsed = System.currentTimeMillis() - startMillis;
+        segment.position((int) (position - segmentStart));
+        segment.putInt((int) Math.min(Math.max(elapsed, 0), 0xFFFFFFFFL));
+        segment.put((byte) direction);
+        segment.put((byte) protocolHeader);
+        segment.putShort((short) n);
+        segment.put(data, offset, n);
+        position += size;
+        recordCount++;
+    }
+
+    private void mapSegment(long start) throws IOException {
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, start, SEGMENT_SIZE);
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segmentStart = start;
+    }
+
+    /** Flush, trim the file to the recorded length and release it. */
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        segment.force();
+        segment = null;
+        try {
+            channel.truncate(position);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    public File getFile() { return file; }
+    public long getStartMillis() { return startMillis; }
+    public synchronized long getRecordCount() { return recordCount; }
+    public synchronized long getSizeBytes() { return position; }
+    public synchronized boolean isClosed() { return closed; }
+}
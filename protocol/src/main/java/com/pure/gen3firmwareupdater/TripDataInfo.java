@@ -0,0 +1,57 @@
+package com.pure.gen3firmwareupdater;
+
+/**
+ * Trip statistics reported by the scooter in instruction 0xA2.
+ * The byte layout is provisional - see {@link TripFrame}.
+ */
+public class TripDataInfo {
+
+    public double tripDistance;             // Trip distance in km (0.1 km resolution)
+    public int rideTimeSeconds;             // Trip ride time in seconds
+    public int maxSpeed;                    // Trip max speed in km/h
+    public int averageSpeed;                // Trip average speed in km/h
+    public int energyWh;                    // Trip energy consumed in Wh
+
+    // Raw data
+    public byte[] rawData;
+
+    /**
+     * Parse a 0xA2 trip data packet. Convenience wrapper over {@link TripFrame} + {@link #fromFrame}.
+     */
+    public static TripDataInfo parse(byte[] data) {
+        TripFrame frame = new TripFrame();
+        if (!frame.wrap(data)) return null;
+        return fromFrame(frame);
+    }
+
+    /**
+     * Materialize a POJO from a wrapped A2 frame. Copies the packet bytes, so the
+     * result stays valid after the frame is re-wrapped.
+     */
+    public static TripDataInfo fromFrame(TripFrame frame) {
+        TripDataInfo info = new TripDataInfo();
+        info.rawData = frame.copyBytes();
+        info.tripDistance = frame.getTripDistance();
+        info.rideTimeSeconds = frame.getRideTimeSeconds();
+        info.maxSpeed = frame.getMaxSpeed();
+        info.averageSpeed = frame.getAverageSpeed();
+        info.energyWh = frame.getEnergyWh();
+        return info;
+    }
+
+    /** Hex rendering of the raw packet, built on demand for debug displays. */
+    public String getRawHex() {
+        return rawData == null ? "" : ProtocolUtils.bytesToHex(rawData);
+    }
+
+    @Override
+    public String toString() {
+        return "TripDataInfo{" +
+                "distance=" + tripDistance + " km" +
+                ", time=" + rideTimeSeconds + "s" +
+                ", maxSpeed=" + maxSpeed + " km/h" +
+                ", avgSpeed=" + averageSpeed + " km/h" +
+                ", energy=" + energyWh + " Wh" +
+                '}';
+    }
+}
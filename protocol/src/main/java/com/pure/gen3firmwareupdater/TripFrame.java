@@ -0,0 +1,64 @@
+package com.pure.gen3firmwareupdater;
+
+/**
+ * Zero-allocation view over a 0xA2 trip data packet.
+ *
+ * PROVISIONAL LAYOUT: neither vendor protocol document we have describes 0xA2,
+ * so this follows the A0/A1 conventions (25-byte frame, big-endian fields) and
+ * must be confirmed against a real capture before the values are trusted.
+ * Consumers treat A2 values as optional and fall back to A0/A1 data.
+ *
+ * Packet structure: 25 bytes total
+ * Format: [header(0xF0), 0xA2, length(0x19), ...data..., CRC_L, CRC_H]
+ *
+ * Byte layout (provisional):
+ * [0]     Header (0xF0)
+ * [1]     Packet type (0xA2)
+ * [2]     Length (0x19 = 25)
+ * [3-4]   Trip distance (uint16_BE, 0.1 km)
+ * [5-6]   Trip ride time (uint16_BE, seconds)
+ * [7]     Trip max speed (uint8, 1 km/h)
+ * [8]     Trip average speed (uint8, 1 km/h)
+ * [9-10]  Trip energy consumed (uint16_BE, 1 Wh)
+ * [11-22] Reserved
+ * [23-24] CRC16 (MODBUS)
+ */
+public class TripFrame extends ProtocolFrame {
+
+    public static final int COMMAND = 0xA2;
+    static final int MIN_LENGTH = 11;
+
+    @Override
+    protected int command() { return COMMAND; }
+
+    @Override
+    protected int minLength() { return MIN_LENGTH; }
+
+    /** Trip distance raw value in 0.1 km units (bytes 3-4). */
+    public int getTripDistanceRaw() { return u16(3); }
+
+    /** Trip distance in km. */
+    public double getTripDistance() { return getTripDistanceRaw() / 10.0; }
+
+    /** Trip ride time in seconds (bytes 5-6). */
+    public int getRideTimeSeconds() { return u16(5); }
+
+    /** Trip max speed in km/h (byte 7). */
+    public int getMaxSpeed() { return u8(7); }
+
+    /** Trip average speed in km/h (byte 8). */
+    public int getAverageSpeed() { return u8(8); }
+
+    /** Trip energy consumed in Wh (bytes 9-10). */
+    public int getEnergyWh() { return u16(9); }
+
+    @Override
+    public String toString() {
+        return "TripFrame{" +
+                "distance=" + getTripDistance() + " km" +
+                ", time=" + getRideTimeSeconds() + "s" +
+                ", maxSpeed=" + getMaxSpeed() + " km/h" +
+                ", energy=" + getEnergyWh() + " Wh" +
+                '}';
+    }
+}
@@ -0,0 +1,66 @@
+package com.pure.gen3firmwareupdater;
+
+/**
+ * Zero-allocation view over a 0xB0 version info packet.
+ * Both the 25-byte standard format and the 32-byte format with an embedded
+ * serial number are supported; the layouts are documented on {@link VersionInfo}.
+ *
+ * Version bytes use nibble format (high = major, low = minor). The raw bytes are
+ * exposed so callers can compare versions without building strings.
+ *
+ * Use {@link VersionInfo#fromFrame(VersionFrame)} to materialize a POJO.
+ */
+public class VersionFrame extends ProtocolFrame {
+
+    public static final int COMMAND = 0xB0;
+    static final int MIN_LENGTH = 11;
+
+    @Override
+    protected int command() { return COMMAND; }
+
+    @Override
+    protected int minLength() { return MIN_LENGTH; }
+
+    /** True for the 32-byte format that carries a 13-char serial at bytes 5-17. */
+    public boolean isExtendedFormat() {
+        return length >= 27 && getLengthField() >= 0x20;
+    }
+
+    /** Offset of the first version byte (meter HW) for the wrapped format. */
+    private int versionBase() {
+        return isExtendedFormat() ? 21 : 5;
+    }
+
+    public int getModel() { return u16(3); }
+
+    public int getMeterHwByte() { return u8(versionBase()); }
+    public int getMeterSwByte() { return u8(versionBase() + 1); }
+    public int getControllerHwByte() { return u8(versionBase() + 2); }
+    public int getControllerSwByte() { return u8(versionBase() + 3); }
+    public int getBmsHwByte() { return u8(versionBase() + 4); }
+    public int getBmsSwByte() { return u8(versionBase() + 5); }
+
+    /**
+     * Embedded serial number (32-byte format only), or "" for the standard format.
+     * Allocates a String — call only when the serial is actually needed.
+     */
+    public String getEmbeddedSerial() {
+        if (!isExtendedFormat()) return "";
+        return new String(buf, offset + 5, 13).trim();
+    }
+
+    /** Format a nibble-encoded version byte as "V{major}.{minor}". */
+    public static String formatVersion(int versionByte) {
+        return "V" + ((versionByte >> 4) & 0x0F) + "." + (versionByte & 0x0F);
+    }
+
+    @Override
+    public String toString() {
+        return "VersionFrame{" +
+                "model=" + getModel() +
+                ", controller HW:" + formatVersion(getControllerHwByte()) +
+                " SW:" + formatVersion(getControllerSwByte()) +
+                ", extended=" + isExtendedFormat() +
+                '}';
+    }
+}
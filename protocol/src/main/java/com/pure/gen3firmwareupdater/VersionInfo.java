@@ -0,0 +1,85 @@
+package com.pure.gen3firmwareupdater;
+
+/**
+ * Parsed version data from the 0xB0 BLE packet.
+ *
+ * Two known B0 response formats:
+ *
+ * FORMAT A — 25 bytes (standard protocol doc):
+ *   [0]=header, [1]=cmd(0xB0), [2]=length(0x19),
+ *   [3-4]=model, [5]=meter HW, [6]=meter SW,
+ *   [7]=controller HW, [8]=controller SW,
+ *   [9]=BMS HW, [10]=BMS SW, [11-22]=reserved, [23-24]=CRC
+ *
+ * FORMAT B — 32 bytes (seen on some devices, includes embedded SN):
+ *   [0]=header, [1]=cmd(0xB0), [2]=length(0x20),
+ *   [3-4]=model, [5-17]=13-char serial number (ASCII),
+ *   [18-19]=reserved?, [20]=??,
+ *   [21]=meter HW, [22]=meter SW,
+ *   [23]=controller HW, [24]=controller SW,
+ *   [25]=BMS HW, [26]=BMS SW, [27-29]=reserved, [30-31]=CRC
+ *
+ * Each version byte uses nibble format: high nibble = major, low nibble = minor.
+ */
+public class VersionInfo {
+    private static final String TAG = "VersionInfo";
+
+    public String controllerHwVersion;
+    public String controllerSwVersion;
+    public String meterHwVersion;
+    public String meterSwVersion;
+    public String bmsHwVersion;
+    public String bmsSwVersion;
+    public int model;
+    public String embeddedSerialNumber;  // Only present in 32-byte format
+    public byte[] rawData;               // Raw B0 packet for debugging
+    public int packetLength;             // Total packet length
+
+    /**
+     * Parse a B0 packet. Convenience wrapper over {@link VersionFrame} + {@link #fromFrame}.
+     */
+    public static VersionInfo parseFromB0Packet(byte[] data) {
+        VersionFrame frame = new VersionFrame();
+        if (!frame.wrap(data)) return null;
+        return fromFrame(frame);
+    }
+
+    /**
+     * Materialize a POJO from a wrapped B0 frame. Copies the packet bytes, so the
+     * result stays valid after the frame is re-wrapped.
+     */
+    public static VersionInfo fromFrame(VersionFrame frame) {
+        VersionInfo info = new VersionInfo();
+        info.packetLength = frame.getLength();
+        info.rawData = frame.copyBytes();
+        info.model = frame.getModel();
+        info.embeddedSerialNumber = frame.getEmbeddedSerial();
+
+        info.meterHwVersion = VersionFrame.formatVersion(frame.getMeterHwByte());
+        info.meterSwVersion = VersionFrame.formatVersion(frame.getMeterSwByte());
+        info.controllerHwVersion = VersionFrame.formatVersion(frame.getControllerHwByte());
+        info.controllerSwVersion = VersionFrame.formatVersion(frame.getControllerSwByte());
+        info.bmsHwVersion = VersionFrame.formatVersion(frame.getBmsHwByte());
+        info.bmsSwVersion = VersionFrame.formatVersion(frame.getBmsSwByte());
+
+        if (ProtocolLog.isLoggable(ProtocolLog.DEBUG)) {
+            ProtocolLog.d(TAG, "Parsed B0 (" + (frame.isExtendedFormat() ? "32-byte with SN" : "25-byte standard")
+                    + "): " + info);
+        }
+        return info;
+    }
+
+    /** Hex rendering of the raw B0 packet, built on demand for debug displays. */
+    public String getRawHex() {
+        return rawData == null ? "" : ProtocolUtils.bytesToHex(rawData);
+    }
+
+    @Override
+    public String toString() {
+        return "Controller HW:" + controllerHwVersion + " SW:" + controllerSwVersion
+                + " Meter HW:" + meterHwVersion + " SW:" + meterSwVersion
+                + " BMS HW:" + bmsHwVersion + " SW:" + bmsSwVersion
+                + (embeddedSerialNumber != null && !embeddedSerialNumber.isEmpty()
+                    ? " SN:" + embeddedSerialNumber : "");
+    }
+}
@@ -0,0 +1,223 @@
+package com.pure.gen3firmwareupdater.services;
+
+import com.pure.gen3firmwareupdater.ProtocolLog;
+
+/**
+ * Owns the C0 control state (headlight, cruise, lock, ...) for one link.
+ *
+ * Toggle changes are recorded as pending bits instead of being written one frame
+ * per tap. Pending changes are merged into a single C0 write, sent after a short
+ * coalescing window, and only one write is outstanding at a time. A write is
+ * confirmed when an A0 frame shows the written bits; the writer asks for that A0
+ * right after the write. If no confirmation arrives in time the write is retried,
+ * and after {@link #MAX_ATTEMPTS} attempts the change is rolled back to what the
+ * scooter actually reports.
+ *
+ * {@link #overlay(int)} gives the flags a UI should show: the scooter's last
+ * reported flags with still-pending changes on top, so a toggle neither flickers
+ * back while its write is in flight nor stays on if the scooter ignored it.
+ *
+ * Thread-safe. Timeouts run on the {@link RequestCorrelator.Scheduler}'s thread.
+ */
+public class ControlStateWriter {
+
+    private static final String TAG = "ControlStateWriter";
+
+    public static final int FLAG_HEADLIGHT = 0x0010;
+    public static final int FLAG_CRUISE = 0x0020;
+    public static final int FLAG_LOCK = 0x0100;
+
+    static final long COALESCE_WINDOW_MS = 60;
+    static final long CONFIRM_TIMEOUT_MS = 1500;
+    static final int MAX_ATTEMPTS = 3;
+
+    /** Writes frames for the writer. */
+    public interface ControlSender {
+        /** Write one C0 frame. Returns false if it could not be queued. */
+        boolean sendControl(int controlFlags, int cruiseSpeed, int maxSpeed);
+        /** Ask for an A0 frame to confirm the write. */
+        void requestRunningData();
+    }
+
+    /** Outcome of control changes. Called on the thread that confirmed or timed out. */
+    public interface Listener {
+        void onControlConfirmed(int controlFlags);
+        /** The scooter did not take {@code mask}; {@code actualFlags} is what it reports. */
+        void onControlRejected(int mask, int actualFlags);
+    }
+
+    private final ControlSender sender;
+    private final RequestCorrelator.Scheduler scheduler;
+    private volatile Listener listener;
+
+    // Last state reported by A0; nothing is written before the first one
+    private boolean haveState;
+    private int actualFlags;
+    private int cruiseSpeed;
+    private int maxSpeed;
+
+    // Requested changes not yet confirmed: bits in mask take their value from pendingValue
+    private int pendingMask;
+    private int pendingValue;
+
+    // Outstanding write (inFlightMask == 0 when idle)
+    private int inFlightMask;
+    private int inFlightValue;
+    private int attempts;
+
+    private boolean flushScheduled;
+    private final Runnable flush = this::flush;
+    private final Runnable confirmTimeout = this::onConfirmTimeout;
+
+    // Counters for diagnostics
+    private int writes;
+    private int merged;
+
+    public ControlStateWriter(ControlSender sender, RequestCorrelator.Scheduler scheduler) {
+        this.sender = sender;
+        this.scheduler = scheduler;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Request one flag bit on or off. Merged with other changes into the next C0 write. */
+    public synchronized void setFlag(int flag, boolean on) {
+        if ((pendingMask & flag) != 0 || inFlightMask != 0) merged++;
+        pendingMask |= flag;
+        pendingValue = on ? (pendingValue | flag) : (pendingValue & ~flag);
+        scheduleFlush();
+    }
+
+    /** Latest A0 control state. Confirms an outstanding write if it shows the written bits. */
+    public void onRunningData(int controlFlags, int cruise, int max) {
+        int confirmedFlags = -1;
+        synchronized (this) {
+            haveState = true;
+            actualFlags = controlFlags;
+            cruiseSpeed = cruise;
+            maxSpeed = max;
+
+            // Changes the scooter already shows need no write
+            int satisfied = pendingMask & ~inFlightMask & ~(controlFlags ^ pendingValue);
+            pendingMask &= ~satisfied;
+
+            if (inFlightMask != 0 && (controlFlags & inFlightMask) == (inFlightValue & inFlightMask)) {
+                scheduler.cancel(confirmTimeout);
+                // Keep pending bits that were changed again after this write went out
+                int stillWanted = pendingMask & inFlightMask & (pendingValue ^ inFlightValue);
+                pendingMask = (pendingMask & ~inFlightMask) | stillWanted;
+                ProtocolLog.d(TAG, "C0 confirmed: flags=0x" + hex(controlFlags)
+                        + " after " + attempts + " attempt(s)");
+                inFlightMask = 0;
+                attempts = 0;
+                confirmedFlags = controlFlags;
+            }
+            if (pendingMask != 0 && inFlightMask == 0) scheduleFlush();
+        }
+        Listener l = listener;
+        if (confirmedFlags >= 0 && l != null) l.onControlConfirmed(confirmedFlags);
+    }
+
+    /** Flags for display: last reported state with unconfirmed changes applied. */
+    public synchronized int overlay(int reportedFlags) {
+        int mask = pendingMask | inFlightMask;
+        int value = (pendingValue & pendingMask) | (inFlightValue & inFlightMask & ~pendingMask);
+        return (reportedFlags & ~mask) | (value & mask);
+    }
+
+    public synchronized boolean hasPendingChanges() {
+        return pendingMask != 0 || inFlightMask != 0;
+    }
+
+    /** Drop everything (e.g. on disconnect). */
+    public synchronized void reset() {
+        scheduler.cancel(flush);
+        scheduler.cancel(confirmTimeout);
+        flushScheduled = false;
+        haveState = false;
+        pendingMask = 0;
+        inFlightMask = 0;
+        attempts = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ControlStateWriter{writes=" + writes + ", merged=" + merged
+                + ", pending=0x" + hex(pendingMask) + ", inFlight=0x" + hex(inFlightMask) + '}';
+    }
+
+    // ==================================================================================
+    // INTERNALS
+    // ==================================================================================
+
+    // Caller holds the lock
+    private void scheduleFlush() {
+        if (flushScheduled || inFlightMask != 0) return;
+        flushScheduled = true;
+        scheduler.schedule(flush, COALESCE_WINDOW_MS);
+    }
+
+    private void flush() {
+        synchronized (this) {
+            flushScheduled = false;
+            if (inFlightMask != 0 || pendingMask == 0) return;
+            if (!haveState) {
+                // No A0 yet: cruise/max speed unknown. Written once the first A0 arrives.
+                sender.requestRunningData();
+                return;
+            }
+            // Toggled back and forth within the window: nothing to write
+            if ((pendingMask & (actualFlags ^ pendingValue)) == 0) {
+                pendingMask = 0;
+                return;
+            }
+            inFlightMask = pendingMask;
+            inFlightValue = pendingValue;
+            attempts = 0;
+            write();
+        }
+    }
+
+    // Caller holds the lock
+    private void write() {
+        int flags = (actualFlags & ~inFlightMask) | (inFlightValue & inFlightMask);
+        attempts++;
+        writes++;
+        ProtocolLog.d(TAG, "C0 write flags=0x" + hex(flags) + " (changed 0x" + hex(inFlightMask)
+                + ", attempt " + attempts + ")");
+        if (sender.sendControl(flags, cruiseSpeed, maxSpeed)) {
+            sender.requestRunningData();
+        }
+        scheduler.schedule(confirmTimeout, CONFIRM_TIMEOUT_MS);
+    }
+
+    private void onConfirmTimeout() {
+        int rejectedMask;
+        int reported;
+        synchronized (this) {
+            if (inFlightMask == 0) return;
+            if (attempts < MAX_ATTEMPTS) {
+                ProtocolLog.w(TAG, "C0 not confirmed, retrying");
+                write();
+                return;
+            }
+            rejectedMask = inFlightMask;
+            reported = actualFlags;
+            ProtocolLog.w(TAG, "C0 not confirmed after " + attempts + " attempts, rolling back 0x"
+                    + hex(rejectedMask));
+            // Roll back: the scooter's reported state wins for these bits
+            pendingMask &= ~inFlightMask;
+            inFlightMask = 0;
+            attempts = 0;
+            if (pendingMask != 0) scheduleFlush();
+        }
+        Listener l = listener;
+        if (l != null) l.onControlRejected(rejectedMask, reported);
+    }
+
+    private static String hex(int value) {
+        return String.format("%04X", value & 0xFFFF);
+    }
+}
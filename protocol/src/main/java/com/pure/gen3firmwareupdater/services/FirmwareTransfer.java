@@ -0,0 +1,540 @@
+package com.pure.gen3firmwareupdater.services;
+
+import com.pure.gen3firmwareupdater.CommandEncoder;
+import com.pure.gen3firmwareupdater.ProtocolUtils;
+import com.pure.gen3firmwareupdater.ScooterTransport;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The D0 -> D1 -> D2 ... -> D3 bootloader exchange over a {@link ScooterTransport}.
+ *
+ * Protocol: D0 (request) -> D1 (erase) -> D2 (128-byte chunks) -> D3 (complete)
+ * - Firmware commands use the transport's protocol header (0xF0 or 0xAB)
+ * - No extra delays between D1 and D2, or before D3
+ *
+ * D2 modes:
+ * - Windowed (default): up to {@link #WINDOW_MAX} D2 packets in flight as writes
+ *   without response. Each D2 response carries its packet index in bytes 2-3 and a
+ *   status in byte 4; packets are retransmitted individually when they time out or
+ *   when a later packet is rejected while they are still unacknowledged. The window
+ *   grows by one per window's worth of acknowledgements and halves on loss. The
+ *   first packet goes out alone, so a bootloader that rejects it is found before a
+ *   whole window is queued. Transports that do not support writes without response
+ *   use stop-and-wait from the start.
+ * - Stop-and-wait: each D2 packet goes out as acknowledged writes and the next
+ *   packet goes out once the previous one's D2 response has arrived. A packet is
+ *   one write when the negotiated MTU fits all 136 bytes; on smaller MTUs it is
+ *   split into 128-byte writes 10 ms apart, as the original implementation did.
+ *
+ * Resuming: {@link Listener#onCheckpoint} reports how many packets the scooter has
+ * acknowledged in order. After a dropped link, {@link #resume(byte[], int)} sends D0
+ * without D1 and re-sends the last acknowledged packet; only if the bootloader
+ * acknowledges it by index does the upload continue from the checkpoint.
+ *
+ * {@link #run(byte[])} and {@link #resume(byte[], int)} block the calling thread until
+ * D3 has been sent. They must not run on the thread that delivers the transport's
+ * notifications. Timeouts and pacing delays go through a {@link Clock}; tests set a
+ * {@link SimulatedClock} so they take no real time.
+ */
+public class FirmwareTransfer {
+
+    private static final byte CMD_REQUEST_UPGRADE = (byte) CommandEncoder.CMD_REQUEST_UPGRADE;
+    private static final byte CMD_ERASE_MEMORY = (byte) CommandEncoder.CMD_ERASE_MEMORY;
+    private static final byte CMD_UPLOAD_DATA = (byte) CommandEncoder.CMD_UPLOAD_DATA;
+
+    private static final int FIRMWARE_CHUNK_SIZE = CommandEncoder.UPLOAD_CHUNK_SIZE;
+
+    // Timeouts (matching working implementation)
+    private static final long D0_TIMEOUT_MS = 10000;
+    private static final long D1_TIMEOUT_MS = 15000;
+    private static final long D2_INITIAL_TIMEOUT_MS = 5000;
+    private static final long D2_PACKET_TIMEOUT_MS = 3000;
+    private static final long WRITE_TIMEOUT_MS = 1000;
+    // Write size for D2 packets that do not fit the MTU in one write
+    private static final int MULTI_WRITE_CHUNK_SIZE = 128;
+
+    // Windowed D2
+    static final int WINDOW_INITIAL = 8;
+    static final int WINDOW_MAX = 32;
+    private static final long RTO_MIN_MS = 150;
+    private static final int MAX_RETRANSMITS = 5;
+    private static final int D2_RESPONSE_LENGTH = 7;
+
+    /** Progress and log lines. Called on the thread running the transfer. */
+    public interface Listener {
+        void onProgress(int current, int total, int percentage);
+        /** {@code level} is one of "info", "success", "warning", "error". */
+        void onLog(String message, String level);
+        /**
+         * Packets 0 .. {@code packetsAcknowledged - 1} have all been acknowledged.
+         * 0 right after D1: the flash is erased and earlier checkpoints no longer hold.
+         */
+        default void onCheckpoint(int packetsAcknowledged) {}
+        /** {@link #resume} was accepted; D2 continues at {@code fromPacket}. */
+        default void onResumed(int fromPacket) {}
+    }
+
+    /** Time source for timeouts and pacing delays, and the way to wait for responses. */
+    public interface Clock {
+        long currentTimeMillis();
+        void sleep(long ms) throws InterruptedException;
+        /** The head of {@code queue}, waiting up to {@code timeoutMs} for one; null on timeout. */
+        <T> T poll(BlockingQueue<T> queue, long timeoutMs) throws InterruptedException;
+    }
+
+    private static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() { return System.currentTimeMillis(); }
+
+        @Override
+        public void sleep(long ms) throws InterruptedException { Thread.sleep(ms); }
+
+        @Override
+        public <T> T poll(BlockingQueue<T> queue, long timeoutMs) throws InterruptedException {
+            return queue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+    };
+
+    private static final byte[] CANCELLED = new byte[0];
+
+    private final ScooterTransport transport;
+    private final Listener listener;
+    private final CommandEncoder encoder = new CommandEncoder();
+    private final LinkedBlockingQueue<byte[]> responses = new LinkedBlockingQueue<>();
+    private volatile boolean cancelled;
+
+    private volatile boolean windowed = true;
+    private volatile Clock clock = SYSTEM_CLOCK;
+
+    public FirmwareTransfer(ScooterTransport transport, Listener listener) {
+        this.transport = transport;
+        this.listener = listener;
+    }
+
+    /** Stream D2 packets with a sliding window (default) or strictly one at a time. */
+    public void setWindowed(boolean windowed) {
+        this.windowed = windowed;
+    }
+
+    /** Use {@code clock} instead of the system clock, e.g. a {@link SimulatedClock}. */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /** Abort a transfer in progress; {@link #run} throws "Upload cancelled". */
+    public void cancel() {
+        cancelled = true;
+        responses.offer(CANCELLED);
+    }
+
+    /**
+     * Run the whole exchange for {@code image}.
+     *
+     * @throws Exception with a readable message when any step fails or times out
+     */
+    public void run(byte[] image) throws Exception {
+        cancelled = false;
+        responses.clear();
+        transport.setFirmwareNotificationHandler(responses::offer);
+        try {
+            // Step 1: D0 - Request upgrade
+            log("Requesting upgrade permission...", "info");
+            sendD0();
+
+            // Step 2: D1 - Erase flash
+            log("Erasing flash memory...", "info");
+            sendD1();
+            checkpoint(0);
+
+            // Step 3: D2 - Upload data
+            uploadFirmwareData(image, 0);
+
+            // Step 4: D3 - Complete
+            log("Sending completion command...", "info");
+            sendD3();
+        } finally {
+            transport.setFirmwareNotificationHandler(null);
+        }
+    }
+
+    /**
+     * Continue an interrupted upload of {@code image}: D0, then D2 from
+     * {@code fromPacket} (no D1 erase), then D3.
+     *
+     * @param fromPacket packets acknowledged before the interruption, as last reported
+     *                   to {@link Listener#onCheckpoint}
+     * @return false if the bootloader could not confirm it still holds the interrupted
+     *         session (no indexed D2 acknowledgement of the last checkpointed packet).
+     *         By then D0 and that one D2 probe have been written, but nothing was
+     *         erased and no new packet was; the caller should {@link #run} from the start
+     * @throws Exception with a readable message when any step fails or times out
+     */
+    public boolean resume(byte[] image, int fromPacket) throws Exception {
+        int totalPackets = (image.length + FIRMWARE_CHUNK_SIZE - 1) / FIRMWARE_CHUNK_SIZE;
+        if (fromPacket <= 0 || fromPacket > totalPackets) return false;
+
+        cancelled = false;
+        responses.clear();
+        transport.setFirmwareNotificationHandler(responses::offer);
+        try {
+            log("Requesting upgrade permission to resume at packet " + fromPacket + "/"
+                    + totalPackets + "...", "info");
+            sendD0();
+
+            if (!probeResume(image, fromPacket - 1)) return false;
+            log("Bootloader kept packets 0-" + (fromPacket - 1) + ", resuming upload", "success");
+            if (listener != null) listener.onResumed(fromPacket);
+            progress(fromPacket, totalPackets);
+
+            uploadFirmwareData(image, fromPacket);
+
+            log("Sending completion command...", "info");
+            sendD3();
+            return true;
+        } finally {
+            transport.setFirmwareNotificationHandler(null);
+        }
+    }
+
+    // ==================================================================================
+    // FIRMWARE COMMANDS
+    // ==================================================================================
+
+    private void uploadFirmwareData(byte[] image, int firstPacket) throws Exception {
+        if (windowed && !transport.supportsWriteWithoutResponse()) {
+            log("Control characteristic does not accept writes without response - "
+                    + "using stop-and-wait mode", "warning");
+            uploadFirmwareDataMultiWrite(image, firstPacket);
+        } else if (windowed) {
+            log("Uploading firmware data (windowed mode)...", "info");
+            uploadFirmwareDataWindowed(image, firstPacket);
+        } else {
+            log("Uploading firmware data (stop-and-wait mode)...", "info");
+            uploadFirmwareDataMultiWrite(image, firstPacket);
+        }
+    }
+
+    private void sendD0() throws Exception {
+        byte[] cmd = CommandEncoder.request(transport.getProtocolHeader(), CommandEncoder.CMD_REQUEST_UPGRADE);
+
+        log("Sending D0 upgrade request: " + ProtocolUtils.bytesToHex(cmd), "info");
+
+        byte[] response = sendCommandAndWait(cmd, D0_TIMEOUT_MS);
+        if (response.length < 3 || response[1] != CMD_REQUEST_UPGRADE || response[2] != 0x00) {
+            throw new Exception("D0 upgrade permission denied: " + ProtocolUtils.bytesToHex(response));
+        }
+        log("D0 upgrade permission granted", "success");
+    }
+
+    private void sendD1() throws Exception {
+        byte[] cmd = CommandEncoder.request(transport.getProtocolHeader(), CommandEncoder.CMD_ERASE_MEMORY);
+
+        log("Sending D1 flash erase: " + ProtocolUtils.bytesToHex(cmd), "info");
+
+        byte[] response = sendCommandAndWait(cmd, D1_TIMEOUT_MS);
+        if (response.length < 3 || response[1] != CMD_ERASE_MEMORY || response[2] != 0x00) {
+            throw new Exception("D1 flash erase failed: " + ProtocolUtils.bytesToHex(response));
+        }
+        log("D1 flash erase completed", "success");
+    }
+
+    /**
+     * Re-send the last acknowledged packet. A bootloader that still holds the session
+     * acknowledges it again with its index and status 0; one that restarted rejects it
+     * (flash not erased) or stays silent. Anything else counts as not resumable.
+     */
+    private boolean probeResume(byte[] image, int packetIndex) throws Exception {
+        int dataStart = packetIndex * FIRMWARE_CHUNK_SIZE;
+        byte[] packet = encoder.encodeUploadData(transport.getProtocolHeader(),
+                packetIndex, image, dataStart, Math.min(FIRMWARE_CHUNK_SIZE, image.length - dataStart));
+        int writeSize = transport.getMaxWriteSize() >= CommandEncoder.UPLOAD_DATA_LENGTH
+                ? CommandEncoder.UPLOAD_DATA_LENGTH : MULTI_WRITE_CHUNK_SIZE;
+
+        byte[] response;
+        try {
+            response = sendCommandMultiWrite(packet, writeSize, D2_INITIAL_TIMEOUT_MS);
+        } catch (Exception e) {
+            if (cancelled) throw e;
+            log("No answer to resume probe (" + e.getMessage() + ") - bootloader lost the session", "warning");
+            return false;
+        }
+        if (response.length < 2 || response[1] != CMD_UPLOAD_DATA) {
+            log("Unexpected answer to resume probe: " + ProtocolUtils.bytesToHex(response), "warning");
+            return false;
+        }
+        // Skipping the erase is only safe on proof the session survived: a reply without
+        // a packet index cannot give that, so it fails closed
+        if (response.length < D2_RESPONSE_LENGTH) {
+            log("Resume probe reply carries no packet index - cannot confirm the session: "
+                    + ProtocolUtils.bytesToHex(response), "warning");
+            return false;
+        }
+        int index = ((response[2] & 0xFF) << 8) | (response[3] & 0xFF);
+        if (index != packetIndex || response[4] != 0x00) {
+            log("Bootloader rejected resume at packet " + packetIndex + ": "
+                    + ProtocolUtils.bytesToHex(response), "warning");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Upload firmware one acknowledged D2 packet at a time: a single write per packet
+     * when the MTU allows, otherwise 128-byte writes (the Gen3Telemetry multi-write
+     * method, kept for phones that negotiate a small MTU).
+     */
+    private void uploadFirmwareDataMultiWrite(byte[] image, int firstPacket) throws Exception {
+        int totalPackets = (image.length + FIRMWARE_CHUNK_SIZE - 1) / FIRMWARE_CHUNK_SIZE;
+        int maxWriteSize = transport.getMaxWriteSize();
+        int writeSize;
+        if (maxWriteSize >= CommandEncoder.UPLOAD_DATA_LENGTH) {
+            writeSize = CommandEncoder.UPLOAD_DATA_LENGTH;
+            log("Uploading " + (totalPackets - firstPacket) + " packets (single write per packet, max write "
+                    + maxWriteSize + " bytes)...", "info");
+        } else {
+            writeSize = MULTI_WRITE_CHUNK_SIZE;
+            log("Uploading " + (totalPackets - firstPacket) + " packets (multi-write, " + writeSize
+                    + " bytes per write; max write " + maxWriteSize + " bytes is below "
+                    + CommandEncoder.UPLOAD_DATA_LENGTH + ")...", "info");
+        }
+
+        for (int packetIndex = firstPacket; packetIndex < totalPackets; packetIndex++) {
+            if (cancelled) throw new Exception("Upload cancelled");
+
+            int dataStart = packetIndex * FIRMWARE_CHUNK_SIZE;
+            int packetDataSize = Math.min(FIRMWARE_CHUNK_SIZE, image.length - dataStart);
+
+            // Build D2 packet (136 bytes, last chunk padded with 0xFF) in the reused buffer
+            byte[] packet = encoder.encodeUploadData(transport.getProtocolHeader(),
+                    packetIndex, image, dataStart, packetDataSize);
+
+            if (packetIndex == 0) {
+                log("First D2 packet: " + ProtocolUtils.bytesToHex(packet, 6) + " ... (" + packet.length + " bytes)", "info");
+            }
+
+            long timeout = packetIndex < 5 ? D2_INITIAL_TIMEOUT_MS : D2_PACKET_TIMEOUT_MS;
+            byte[] response = sendCommandMultiWrite(packet, writeSize, timeout);
+
+            if (response.length < 2 || response[1] != CMD_UPLOAD_DATA) {
+                throw new Exception("Invalid D2 response for packet " + packetIndex + ": " + ProtocolUtils.bytesToHex(response));
+            }
+
+            progress(packetIndex + 1, totalPackets);
+            checkpoint(packetIndex + 1);
+
+            clock.sleep(10);
+        }
+
+        log("All firmware data uploaded", "success");
+    }
+
+    /**
+     * Upload firmware with up to {@link #WINDOW_MAX} D2 packets in flight, sent as
+     * writes without response and acknowledged by index.
+     */
+    private void uploadFirmwareDataWindowed(byte[] image, int firstPacket) throws Exception {
+        int totalPackets = (image.length + FIRMWARE_CHUNK_SIZE - 1) / FIRMWARE_CHUNK_SIZE;
+        int writesPerPacket = (CommandEncoder.UPLOAD_DATA_LENGTH + transport.getMaxWriteSize() - 1)
+                / transport.getMaxWriteSize();
+        log("Uploading " + (totalPackets - firstPacket) + " packets (windowed, up to " + WINDOW_MAX
+                + " in flight, " + writesPerPacket + " write(s) without response per packet)...", "info");
+
+        long[] sentAt = new long[totalPackets];
+        int[] retransmits = new int[totalPackets];
+        boolean[] resent = new boolean[totalPackets];
+        boolean[] acked = new boolean[totalPackets];
+        int base = firstPacket;     // lowest unacknowledged packet
+        int next = firstPacket;     // next packet never sent
+        int window = 1;             // probe with the first packet alone
+        int ackedSinceGrowth = 0;
+        int recoverUntil = 0;       // one window cut per flight of packets
+        long srttMs = 0;
+        int retransmitted = 0;
+        int rejected = 0;
+        int smallestWindow = WINDOW_MAX;
+
+        while (base < totalPackets) {
+            if (cancelled) throw new Exception("Upload cancelled");
+
+            while (next < totalPackets && next < base + window) {
+                sendPacketWithoutResponse(image, next);
+                sentAt[next] = clock.currentTimeMillis();
+                next++;
+            }
+
+            long rto = srttMs == 0 ? D2_INITIAL_TIMEOUT_MS
+                    : Math.min(D2_PACKET_TIMEOUT_MS, Math.max(RTO_MIN_MS, srttMs * 3));
+            long waitMs = sentAt[base] + rto - clock.currentTimeMillis();
+            byte[] response = clock.poll(responses, Math.max(0, waitMs));
+            if (response == CANCELLED || cancelled) throw new Exception("Upload cancelled");
+
+            boolean loss = false;
+            if (response == null) {
+                // Oldest packet timed out
+                retransmit(image, base, true, retransmits, resent, sentAt);
+                retransmitted++;
+                loss = true;
+            } else if (response.length < D2_RESPONSE_LENGTH || response[1] != CMD_UPLOAD_DATA) {
+                log("Ignoring unexpected response during D2: " + ProtocolUtils.bytesToHex(response), "warning");
+                continue;
+            } else {
+                int index = ((response[2] & 0xFF) << 8) | (response[3] & 0xFF);
+                if (index < base || index >= next || acked[index]) continue; // stale or duplicate
+                if (response[4] == 0x00) {
+                    acked[index] = true;
+                    if (!resent[index]) {
+                        long sample = clock.currentTimeMillis() - sentAt[index];
+                        srttMs = srttMs == 0 ? sample : (7 * srttMs + sample) / 8;
+                    }
+                    if (base == firstPacket && window == 1) window = WINDOW_INITIAL;
+                    if (++ackedSinceGrowth >= window) {
+                        ackedSinceGrowth = 0;
+                        if (window < WINDOW_MAX) window++;
+                    }
+                    int oldBase = base;
+                    while (base < next && acked[base]) base++;
+                    if (base != oldBase) {
+                        progress(base, totalPackets);
+                        checkpoint(base);
+                    }
+                } else {
+                    // Rejected; anything still unacknowledged that went out before it was lost
+                    rejected++;
+                    for (int i = base; i <= index; i++) {
+                        if (!acked[i] && sentAt[i] <= sentAt[index]) {
+                            // Only the oldest one's failure is its own; the rest follow from it
+                            retransmit(image, i, i == base, retransmits, resent, sentAt);
+                            retransmitted++;
+                        }
+                    }
+                    loss = true;
+                }
+            }
+
+            if (loss && base >= recoverUntil) {
+                window = Math.max(1, window / 2);
+                smallestWindow = Math.min(smallestWindow, window);
+                ackedSinceGrowth = 0;
+                recoverUntil = next;
+            }
+        }
+
+        log("All firmware data uploaded (" + retransmitted + " retransmitted, " + rejected
+                + " rejected, final window " + window
+                + (retransmitted > 0 ? ", smallest " + smallestWindow : "") + ")", "success");
+    }
+
+    private void retransmit(byte[] image, int packetIndex, boolean counted,
+                            int[] retransmits, boolean[] resent, long[] sentAt) throws Exception {
+        if (counted && ++retransmits[packetIndex] > MAX_RETRANSMITS) {
+            throw new Exception("D2 packet " + packetIndex + " not acknowledged after "
+                    + MAX_RETRANSMITS + " retransmissions");
+        }
+        sendPacketWithoutResponse(image, packetIndex);
+        resent[packetIndex] = true;
+        sentAt[packetIndex] = clock.currentTimeMillis();
+    }
+
+    /** Encode one D2 packet and queue it as writes without response, split to the MTU. */
+    private void sendPacketWithoutResponse(byte[] image, int packetIndex) throws Exception {
+        int dataStart = packetIndex * FIRMWARE_CHUNK_SIZE;
+        int packetDataSize = Math.min(FIRMWARE_CHUNK_SIZE, image.length - dataStart);
+        byte[] packet = encoder.encodeUploadData(transport.getProtocolHeader(),
+                packetIndex, image, dataStart, packetDataSize);
+        if (packetIndex == 0) {
+            log("First D2 packet: " + ProtocolUtils.bytesToHex(packet, 6) + " ... (" + packet.length + " bytes)", "info");
+        }
+
+        // Always a copy: the packet is the encoder's reused buffer, and nothing waits for
+        // these writes, so the transport may still hold the array when the next packet
+        // is encoded into it
+        int writeSize = Math.min(transport.getMaxWriteSize(), packet.length);
+        for (int start = 0; start < packet.length; start += writeSize) {
+            byte[] chunk = Arrays.copyOfRange(packet, start, Math.min(start + writeSize, packet.length));
+            if (!transport.writeWithoutResponse(chunk)) {
+                throw new Exception("Failed to send D2 packet " + packetIndex);
+            }
+        }
+    }
+
+    private void progress(int done, int total) {
+        if (listener != null) listener.onProgress(done, total, (done * 100) / total);
+    }
+
+    private void checkpoint(int packetsAcknowledged) {
+        if (listener != null) listener.onCheckpoint(packetsAcknowledged);
+    }
+
+    private void sendD3() throws Exception {
+        byte[] cmd = CommandEncoder.request(transport.getProtocolHeader(), CommandEncoder.CMD_COMPLETE_UPLOAD);
+
+        log("Sending D3 completion: " + ProtocolUtils.bytesToHex(cmd), "info");
+
+        boolean sent = transport.sendCommand(cmd);
+        if (!sent) throw new Exception("Failed to send D3 command");
+
+        log("D3 completion command sent - device will restart", "success");
+    }
+
+    // ==================================================================================
+    // TRANSPORT
+    // ==================================================================================
+
+    private byte[] sendCommandAndWait(byte[] command, long timeoutMs) throws Exception {
+        responses.clear();
+        boolean sent = transport.sendCommand(command);
+        if (!sent) throw new Exception("Failed to send command via BLE");
+        return awaitResponse(timeoutMs, "Timeout waiting for response after " + timeoutMs + "ms");
+    }
+
+    /**
+     * Send a D2 packet as acknowledged writes of up to {@code writeSize} bytes and
+     * wait for its response. A packet that fits in one write is sent as-is.
+     */
+    private byte[] sendCommandMultiWrite(byte[] command, int writeSize, long timeoutMs) throws Exception {
+        responses.clear();
+
+        if (writeSize >= command.length) {
+            if (!transport.writeRawBytesAndWait(command, WRITE_TIMEOUT_MS)) {
+                throw new Exception("Failed to send D2 packet");
+            }
+            return awaitResponse(timeoutMs, "D2 response timeout after " + timeoutMs + "ms");
+        }
+
+        int writesNeeded = (command.length + writeSize - 1) / writeSize;
+
+        for (int writeNo = 0; writeNo < writesNeeded; writeNo++) {
+            int startIdx = writeNo * writeSize;
+            int endIdx = Math.min(startIdx + writeSize, command.length);
+            int chunkSize = endIdx - startIdx;
+
+            byte[] chunk = new byte[chunkSize];
+            System.arraycopy(command, startIdx, chunk, 0, chunkSize);
+
+            // Each chunk must complete before the next is sent - writes fail if not
+            // properly sequenced
+            boolean sent = transport.writeRawBytesAndWait(chunk, WRITE_TIMEOUT_MS);
+            if (!sent) throw new Exception("Failed to send chunk " + (writeNo + 1) + "/" + writesNeeded);
+
+            // Small delay between writes for device processing
+            clock.sleep(10);
+        }
+
+        return awaitResponse(timeoutMs, "Multi-write timeout after " + timeoutMs + "ms");
+    }
+
+    private byte[] awaitResponse(long timeoutMs, String timeoutMessage) throws Exception {
+        byte[] response = clock.poll(responses, timeoutMs);
+        if (response == CANCELLED || cancelled) throw new Exception("Upload cancelled");
+        if (response == null) throw new Exception(timeoutMessage);
+        return response;
+    }
+
+    private void log(String message, String level) {
+        if (listener != null) listener.onLog(message, level);
+    }
+}
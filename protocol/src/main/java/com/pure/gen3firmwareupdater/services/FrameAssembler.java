@@ -0,0 +1,251 @@
+package com.pure.gen3firmwareupdater.services;
+
+import com.pure.gen3firmwareupdater.ProtocolUtils;
+
+/**
+ * Streaming frame reassembler between the GATT notification callback and {@link PacketRouter}.
+ *
+ * BLE notifications are not guaranteed to line up with protocol frames: some phones
+ * split a 25/32-byte A0/A1/B0 frame across two notifications, others merge several
+ * frames into one. Notifications are appended to a ring buffer and complete frames
+ * are cut out using the header byte (0xF0/0xAB), the length byte and the CRC.
+ *
+ * The ring is "double-mapped": every byte is written twice, at {@code i} and
+ * {@code i + CAPACITY}, so any frame starting anywhere in the ring is contiguous
+ * in the backing array and can be handed to the sink as (array, offset, length)
+ * without copying. A frame passed to the sink is only valid for the duration of
+ * the callback.
+ *
+ * Resynchronization: bytes that are not a header are skipped; a candidate frame
+ * with an impossible length byte or a bad CRC is abandoned one byte at a time, so
+ * any real frames already buffered behind a false header are still recovered. A
+ * corrupt length byte that claims more bytes than have arrived is caught the same
+ * way as soon as a complete, CRC-valid frame is buffered behind it, instead of
+ * holding everything back until up to 255 bytes have arrived.
+ *
+ * Not thread-safe: feed() must be called from a single thread (the BLE callback).
+ * Counters may be read from any thread.
+ */
+public class FrameAssembler {
+
+    /**
+     * Receives complete, CRC-checked frames.
+     */
+    public interface FrameSink {
+        /** A complete frame at {@code buf[offset .. offset+length)}. Do not keep the array. */
+        void onFrame(byte[] buf, int offset, int length);
+
+        /** A frame boundary was found but the frame failed its CRC and was dropped. */
+        default void onCorruptFrame(int packetType) {}
+    }
+
+    // Must be a power of two and larger than the biggest frame (length byte max 255)
+    // plus the biggest notification (MTU 512 - 3).
+    private static final int CAPACITY = 1024;
+    private static final int MASK = CAPACITY - 1;
+
+    private final byte[] ring = new byte[CAPACITY * 2];
+    private final FrameSink sink;
+
+    private long head;      // next unread byte (absolute position)
+    private long tail;      // next write position (absolute position)
+    private boolean inSync = true;
+    private volatile boolean crcCheckEnabled = true;
+
+    // Throughput / loss counters
+    private volatile long notificationsIn;
+    private volatile long bytesIn;
+    private volatile long framesOut;
+    private volatile long bytesDiscarded;
+    private volatile long crcFailures;
+    private volatile long reassembledFrames;
+    private volatile long coalescedNotifications;
+
+    public FrameAssembler(FrameSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * When disabled, frames are cut on header and length byte alone.
+     * Mirrors {@link PacketRouter#setCrcCheckEnabled(boolean)}.
+     */
+    public void setCrcCheckEnabled(boolean enabled) {
+        this.crcCheckEnabled = enabled;
+    }
+
+    /** Append one notification's bytes and emit every complete frame now available. */
+    public void feed(byte[] data) {
+        if (data == null) return;
+        feed(data, 0, data.length);
+    }
+
+    /** Append {@code data[offset .. offset+length)} and emit every complete frame now available. */
+    public void feed(byte[] data, int offset, int length) {
+        if (data == null || length <= 0) return;
+
+        notificationsIn++;
+        bytesIn += length;
+        long chunkStart = tail;
+        long framesBefore = framesOut;
+
+        int i = offset;
+        int end = offset + length;
+        while (i < end) {
+            int space = CAPACITY - (int) (tail - head);
+            int n = Math.min(space, end - i);
+            for (int k = 0; k < n; k++) {
+                int w = (int) (tail & MASK);
+                byte b = data[i + k];
+                ring[w] = b;
+                ring[w + CAPACITY] = b;
+                tail++;
+            }
+            i += n;
+            drain(chunkStart);
+        }
+
+        if (framesOut - framesBefore > 1) {
+            coalescedNotifications++;
+        }
+    }
+
+    /** Discard any partially received frame (call on connect/disconnect). */
+    public void reset() {
+        bytesDiscarded += tail - head;
+        head = tail;
+        inSync = true;
+    }
+
+    private void drain(long chunkStart) {
+        while (true) {
+            int available = (int) (tail - head);
+
+            // Skip to the next header byte
+            while (available > 0 && !isHeader(byteAt(0))) {
+                head++;
+                available--;
+                bytesDiscarded++;
+                inSync = false;
+            }
+            if (available < 2) return;
+
+            int packetType = byteAt(1);
+            int frameLength = fixedLength(packetType);
+            if (frameLength == 0) {
+                if (available < 3) return;
+                frameLength = byteAt(2);
+                if (frameLength < PacketRouter.MIN_FRAME_LENGTH) {
+                    skipOne();
+                    continue;
+                }
+            }
+            if (available < frameLength) {
+                // Wait for the rest of the frame - unless a whole valid frame already
+                // starts inside it, in which case this length byte is wrong
+                if (!crcCheckEnabled || !validFrameBuffered(available)) return;
+                if (inSync) {
+                    crcFailures++;
+                    sink.onCorruptFrame(packetType);
+                }
+                skipOne();
+                continue;
+            }
+
+            int start = (int) (head & MASK);
+            if (crcCheckEnabled && !ProtocolUtils.verifyCRC16(ring, start, frameLength)) {
+                // Only a failure at a real frame boundary is a corrupt frame; while
+                // resyncing it just means this header byte was part of a payload.
+                if (inSync) {
+                    crcFailures++;
+                    sink.onCorruptFrame(packetType);
+                }
+                skipOne();
+                continue;
+            }
+
+            if (head < chunkStart && head + frameLength > chunkStart) {
+                reassembledFrames++;
+            }
+            head += frameLength;
+            framesOut++;
+            inSync = true;
+            sink.onFrame(ring, start, frameLength);
+        }
+    }
+
+    /** Whether a complete, CRC-valid frame starts after the head within {@code available} bytes. */
+    private boolean validFrameBuffered(int available) {
+        for (int i = 1; i + 2 < available; i++) {
+            if (!isHeader(byteAt(i))) continue;
+            int length = fixedLength(byteAt(i + 1));
+            if (length == 0) {
+                length = byteAt(i + 2);
+                if (length < PacketRouter.MIN_FRAME_LENGTH) continue;
+            }
+            if (i + length <= available
+                    && ProtocolUtils.verifyCRC16(ring, (int) ((head + i) & MASK), length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void skipOne() {
+        head++;
+        bytesDiscarded++;
+        inSync = false;
+    }
+
+    private int byteAt(int index) {
+        return ring[(int) ((head + index) & MASK)] & 0xFF;
+    }
+
+    private static boolean isHeader(int b) {
+        return b == 0xF0 || b == 0xAB;
+    }
+
+    /**
+     * Firmware update replies have no length byte, so their sizes are fixed:
+     * D0/D1 [hdr, cmd, status, crc], D2 [hdr, cmd, idxH, idxL, status, crc], D3 [hdr, cmd, crc].
+     *
+     * @return frame length, or 0 if byte[2] holds the length
+     */
+    private static int fixedLength(int packetType) {
+        switch (packetType) {
+            case 0xD0:
+            case 0xD1: return 5;
+            case 0xD2: return 7;
+            case 0xD3: return 4;
+            default: return 0;
+        }
+    }
+
+    // ==================================================================================
+    // COUNTERS
+    // ==================================================================================
+
+    public long getNotificationsIn() { return notificationsIn; }
+    public long getBytesIn() { return bytesIn; }
+    public long getFramesOut() { return framesOut; }
+    /** Bytes thrown away while resynchronizing or on reset (loss). */
+    public long getBytesDiscarded() { return bytesDiscarded; }
+    /** Frames found at a frame boundary that failed their CRC. */
+    public long getCrcFailures() { return crcFailures; }
+    /** Frames that were split across two or more notifications. */
+    public long getReassembledFrames() { return reassembledFrames; }
+    /** Notifications that carried more than one frame. */
+    public long getCoalescedNotifications() { return coalescedNotifications; }
+
+    @Override
+    public String toString() {
+        return "FrameAssembler{" +
+                "notifications=" + notificationsIn +
+                ", bytesIn=" + bytesIn +
+                ", frames=" + framesOut +
+                ", reassembled=" + reassembledFrames +
+                ", coalesced=" + coalescedNotifications +
+                ", crcFailures=" + crcFailures +
+                ", discardedBytes=" + bytesDiscarded +
+                '}';
+    }
+}
@@ -0,0 +1,85 @@
+package com.pure.gen3firmwareupdater.services;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-packet-type counters for inbound frames seen by {@link PacketRouter}.
+ *
+ * Counters are indexed by command byte (0x00-0xFF). Updates happen on the BLE
+ * callback thread and reads can come from any thread (e.g. a debug screen),
+ * so the counters are atomic. Recording a frame never allocates.
+ *
+ * The record methods are for the receive pipeline (router, reassembler and the
+ * connection service); everything else should only read.
+ */
+public class FrameStats {
+
+    private final AtomicLongArray good = new AtomicLongArray(256);
+    private final AtomicLongArray badCrc = new AtomicLongArray(256);
+    private final AtomicLongArray truncated = new AtomicLongArray(256);
+
+    public void recordGood(int packetType) {
+        good.incrementAndGet(packetType & 0xFF);
+    }
+
+    public void recordBadCrc(int packetType) {
+        badCrc.incrementAndGet(packetType & 0xFF);
+    }
+
+    public void recordTruncated(int packetType) {
+        truncated.incrementAndGet(packetType & 0xFF);
+    }
+
+    /** Frames of this type that passed CRC and were dispatched. */
+    public long getGood(int packetType) {
+        return good.get(packetType & 0xFF);
+    }
+
+    /** Frames of this type dropped because the CRC (or length byte) did not check out. */
+    public long getBadCrc(int packetType) {
+        return badCrc.get(packetType & 0xFF);
+    }
+
+    /** Frames of this type dropped because fewer bytes arrived than the length byte declared. */
+    public long getTruncated(int packetType) {
+        return truncated.get(packetType & 0xFF);
+    }
+
+    public long getTotalGood() { return sum(good); }
+    public long getTotalBadCrc() { return sum(badCrc); }
+    public long getTotalTruncated() { return sum(truncated); }
+
+    /** Zero all counters (e.g. when a new connection starts). */
+    public void reset() {
+        for (int i = 0; i < 256; i++) {
+            good.set(i, 0);
+            badCrc.set(i, 0);
+            truncated.set(i, 0);
+        }
+    }
+
+    private static long sum(AtomicLongArray counters) {
+        long total = 0;
+        for (int i = 0; i < 256; i++) total += counters.get(i);
+        return total;
+    }
+
+    /**
+     * Summary of every packet type that has been seen, e.g.
+     * "A0 (Running Data) ok=120 crc=1 short=0; A1 (BMS Data) ok=118 crc=0 short=2".
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 256; i++) {
+            long g = good.get(i), c = badCrc.get(i), t = truncated.get(i);
+            if (g == 0 && c == 0 && t == 0) continue;
+            if (sb.length() > 0) sb.append("; ");
+            sb.append(PacketRouter.getPacketName(i))
+                    .append(" ok=").append(g)
+                    .append(" crc=").append(c)
+                    .append(" short=").append(t);
+        }
+        return sb.length() == 0 ? "no frames" : sb.toString();
+    }
+}
@@ -0,0 +1,400 @@
+package com.pure.gen3firmwareupdater.services;
+
+import com.pure.gen3firmwareupdater.BMSDataFrame;
+import com.pure.gen3firmwareupdater.BMSDataInfo;
+import com.pure.gen3firmwareupdater.ConfigFrame;
+import com.pure.gen3firmwareupdater.ConfigInfo;
+import com.pure.gen3firmwareupdater.ProtocolFrame;
+import com.pure.gen3firmwareupdater.ProtocolUtils;
+import com.pure.gen3firmwareupdater.RunningDataFrame;
+import com.pure.gen3firmwareupdater.RunningDataInfo;
+import com.pure.gen3firmwareupdater.TripDataInfo;
+import com.pure.gen3firmwareupdater.TripFrame;
+import com.pure.gen3firmwareupdater.VersionFrame;
+import com.pure.gen3firmwareupdater.VersionInfo;
+
+import java.util.Arrays;
+
+/**
+ * Platform-independent BLE packet routing.
+ * Receives raw BLE notification data and dispatches parsed results
+ * to the appropriate listener callback.
+ *
+ * Packet format: [header, command, ...data..., CRC_LSB, CRC_MSB]
+ * The command byte (index 1) determines the packet type.
+ *
+ * Every inbound frame has its trailing CRC16 checked before it is decoded.
+ * Frames that fail the check, or that arrive shorter than their length byte
+ * declares, are dropped and counted in {@link FrameStats}.
+ *
+ * Dispatch is table-driven: a 256-entry table indexed by command byte holds one
+ * route per registered {@link PacketType}, each with a reusable flyweight frame
+ * and its typed {@link PacketHandler} subscribers. A route with no subscribers
+ * is skipped without decoding, and routing itself does not allocate. New packet
+ * types are added with {@link #register(PacketType)} / {@link #subscribe}.
+ *
+ * The classic {@link PacketListener} is bridged onto the table: its frame
+ * callbacks are subscribed for B0/01/A0/A1/A2, and the default frame callbacks
+ * materialize the POJO and forward to the onXxx(Info) callbacks. Override the
+ * frame callbacks to skip that step.
+ */
+public class PacketRouter {
+
+    /**
+     * Listener interface for receiving parsed packet data.
+     * Activities or services implement this to receive structured data.
+     */
+    public interface PacketListener {
+        /** Called when a B0 version info packet is successfully parsed. */
+        void onVersionInfo(VersionInfo version);
+
+        /** Called when a 0x01 configuration/settings packet is successfully parsed. */
+        void onConfigInfo(ConfigInfo config);
+
+        /** Called when a 0xA0 running data packet is successfully parsed. */
+        void onRunningData(RunningDataInfo data);
+
+        /** Called when a 0xA1 BMS battery data packet is successfully parsed. */
+        void onBMSData(BMSDataInfo data);
+
+        /** Called when a packet with no registered decoder is received. */
+        void onUnknownPacket(int packetType, byte[] data);
+
+        /** Called when a 0xA2 trip data packet is successfully parsed (provisional layout). */
+        default void onTripData(TripDataInfo data) {}
+
+        /**
+         * Called with the reusable B0 frame. The frame is only valid for the duration
+         * of the call. Default materializes a {@link VersionInfo}.
+         */
+        default void onVersionFrame(VersionFrame frame) {
+            onVersionInfo(VersionInfo.fromFrame(frame));
+        }
+
+        /** Called with the reusable 0x01 frame. Default materializes a {@link ConfigInfo}. */
+        default void onConfigFrame(ConfigFrame frame) {
+            onConfigInfo(ConfigInfo.fromFrame(frame));
+        }
+
+        /** Called with the reusable A0 frame. Default materializes a {@link RunningDataInfo}. */
+        default void onRunningDataFrame(RunningDataFrame frame) {
+            onRunningData(RunningDataInfo.fromFrame(frame));
+        }
+
+        /** Called with the reusable A1 frame. Default materializes a {@link BMSDataInfo}. */
+        default void onBMSDataFrame(BMSDataFrame frame) {
+            onBMSData(BMSDataInfo.fromFrame(frame));
+        }
+
+        /** Called with the reusable A2 frame. Default materializes a {@link TripDataInfo}. */
+        default void onTripFrame(TripFrame frame) {
+            onTripData(TripDataInfo.fromFrame(frame));
+        }
+    }
+
+    /**
+     * Typed subscriber for one packet type. The frame is reused for the next packet
+     * of the same type, so it is only valid for the duration of the call.
+     */
+    public interface PacketHandler<F extends ProtocolFrame> {
+        void onPacket(F frame);
+    }
+
+    /** Dispatch table entry: one reusable decoder plus its subscribers. */
+    private static final class Route<F extends ProtocolFrame> {
+        final F frame;
+        // Copy-on-write so dispatch can iterate without locking or allocating
+        volatile PacketHandler<? super F>[] handlers;
+
+        @SuppressWarnings("unchecked")
+        Route(F frame) {
+            this.frame = frame;
+            this.handlers = (PacketHandler<? super F>[]) new PacketHandler<?>[0];
+        }
+
+        void dispatch(byte[] buf, int offset, int length) {
+            PacketHandler<? super F>[] current = handlers;
+            if (current.length == 0) return;            // no subscribers: don't decode
+            if (!frame.wrap(buf, offset, length)) return;
+            for (PacketHandler<? super F> handler : current) {
+                handler.onPacket(frame);
+            }
+            frame.clear();
+        }
+
+        synchronized boolean add(PacketHandler<? super F> handler) {
+            PacketHandler<? super F>[] current = handlers;
+            for (PacketHandler<? super F> h : current) {
+                if (h == handler) return false;
+            }
+            PacketHandler<? super F>[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = handler;
+            handlers = next;
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized boolean remove(PacketHandler<? super F> handler) {
+            PacketHandler<? super F>[] current = handlers;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == handler) {
+                    PacketHandler<? super F>[] next =
+                            (PacketHandler<? super F>[]) new PacketHandler<?>[current.length - 1];
+                    System.arraycopy(current, 0, next, 0, i);
+                    System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                    handlers = next;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** Smallest length-prefixed frame: header, command, length, CRC_L, CRC_H. */
+    static final int MIN_FRAME_LENGTH = 5;
+
+    private volatile PacketListener listener;
+    private final FrameStats frameStats = new FrameStats();
+    private volatile boolean crcCheckEnabled = true;
+
+    // Indexed by command byte. Routing happens on one BLE callback thread, so each
+    // route's reusable frame is never wrapped concurrently.
+    private final Route<?>[] routes = new Route<?>[256];
+
+    // Bridges from the dispatch table to the classic PacketListener
+    private final PacketHandler<VersionFrame> listenerVersionBridge = frame -> {
+        PacketListener l = listener;
+        if (l != null) l.onVersionFrame(frame);
+    };
+    private final PacketHandler<ConfigFrame> listenerConfigBridge = frame -> {
+        PacketListener l = listener;
+        if (l != null) l.onConfigFrame(frame);
+    };
+    private final PacketHandler<RunningDataFrame> listenerRunningDataBridge = frame -> {
+        PacketListener l = listener;
+        if (l != null) l.onRunningDataFrame(frame);
+    };
+    private final PacketHandler<BMSDataFrame> listenerBMSDataBridge = frame -> {
+        PacketListener l = listener;
+        if (l != null) l.onBMSDataFrame(frame);
+    };
+    private final PacketHandler<TripFrame> listenerTripBridge = frame -> {
+        PacketListener l = listener;
+        if (l != null) l.onTripFrame(frame);
+    };
+
+    public PacketRouter(PacketListener listener) {
+        register(PacketType.REALTIME);
+        register(PacketType.CONFIG);
+        register(PacketType.RUNNING_DATA);
+        register(PacketType.BMS_DATA);
+        register(PacketType.TRIP);
+        register(PacketType.VERSION);
+        setListener(listener);
+    }
+
+    /**
+     * Set the classic listener. Its frame callbacks are subscribed to B0/01/A0/A1/A2;
+     * passing null unsubscribes them so those types are no longer decoded unless
+     * something else subscribes.
+     */
+    public void setListener(PacketListener listener) {
+        this.listener = listener;
+        if (listener != null) {
+            subscribe(PacketType.VERSION, listenerVersionBridge);
+            subscribe(PacketType.CONFIG, listenerConfigBridge);
+            subscribe(PacketType.RUNNING_DATA, listenerRunningDataBridge);
+            subscribe(PacketType.BMS_DATA, listenerBMSDataBridge);
+            subscribe(PacketType.TRIP, listenerTripBridge);
+        } else {
+            unsubscribe(PacketType.VERSION, listenerVersionBridge);
+            unsubscribe(PacketType.CONFIG, listenerConfigBridge);
+            unsubscribe(PacketType.RUNNING_DATA, listenerRunningDataBridge);
+            unsubscribe(PacketType.BMS_DATA, listenerBMSDataBridge);
+            unsubscribe(PacketType.TRIP, listenerTripBridge);
+        }
+    }
+
+    // ==================================================================================
+    // DISPATCH TABLE
+    // ==================================================================================
+
+    /**
+     * Register a decoder for a packet type. Idempotent; frames of a registered type
+     * are no longer reported through {@link PacketListener#onUnknownPacket}.
+     */
+    public synchronized <F extends ProtocolFrame> void register(PacketType<F> type) {
+        int command = type.getCommand();
+        if (routes[command] == null) {
+            routes[command] = new Route<>(type.newFrame());
+        }
+    }
+
+    /**
+     * Subscribe a typed handler to a packet type, registering its decoder if needed.
+     *
+     * @return false if the handler was already subscribed
+     */
+    public <F extends ProtocolFrame> boolean subscribe(PacketType<F> type,
+                                                        PacketHandler<? super F> handler) {
+        register(type);
+        return routeFor(type).add(handler);
+    }
+
+    /** @return false if the handler was not subscribed */
+    public <F extends ProtocolFrame> boolean unsubscribe(PacketType<F> type,
+                                                          PacketHandler<? super F> handler) {
+        Route<F> route = routeFor(type);
+        return route != null && route.remove(handler);
+    }
+
+    /** Whether any handler is currently subscribed to this command byte. */
+    public boolean hasSubscribers(int packetType) {
+        Route<?> route = routes[packetType & 0xFF];
+        return route != null && route.handlers.length > 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <F extends ProtocolFrame> Route<F> routeFor(PacketType<F> type) {
+        // Safe: register() only ever stores a Route built from this type's own factory
+        return (Route<F>) routes[type.getCommand()];
+    }
+
+    /** Counters of good / bad-CRC / truncated frames per packet type. */
+    public FrameStats getFrameStats() {
+        return frameStats;
+    }
+
+    /**
+     * Enable or disable inbound CRC verification (enabled by default).
+     * Only intended as an escape hatch for firmware that sends non-standard CRCs.
+     */
+    public void setCrcCheckEnabled(boolean enabled) {
+        this.crcCheckEnabled = enabled;
+    }
+
+    public boolean isCrcCheckEnabled() {
+        return crcCheckEnabled;
+    }
+
+    /**
+     * Route a raw BLE packet to the appropriate decoder.
+     * Inspects byte[1] (command byte) and looks up the dispatch table.
+     *
+     * @param data raw bytes from BLE notification (FFF2 characteristic)
+     */
+    public void routePacket(byte[] data) {
+        if (data == null) return;
+        routePacket(data, 0, data.length);
+    }
+
+    /**
+     * Route the frame at {@code buf[offset .. offset+length)} without copying it.
+     * The length byte and CRC are checked first.
+     */
+    public void routePacket(byte[] buf, int offset, int length) {
+        if (buf == null || length < 2) return;
+
+        int packetType = buf[offset + 1] & 0xFF;
+        int frameLength = validateFrame(packetType, buf, offset, length);
+        if (frameLength < 0) return;
+
+        dispatch(packetType, buf, offset, frameLength);
+    }
+
+    /**
+     * Route a frame whose length and CRC have already been verified upstream
+     * (e.g. by {@link FrameAssembler}). Counts it as good and dispatches it.
+     */
+    public void routeVerifiedPacket(byte[] buf, int offset, int length) {
+        if (buf == null || length < 2) return;
+
+        int packetType = buf[offset + 1] & 0xFF;
+        frameStats.recordGood(packetType);
+        dispatch(packetType, buf, offset, length);
+    }
+
+    private void dispatch(int packetType, byte[] buf, int offset, int length) {
+        Route<?> route = routes[packetType];
+        if (route != null) {
+            route.dispatch(buf, offset, length);
+            return;
+        }
+
+        PacketListener l = listener;
+        if (l == null) return;
+        // Unknown packets are rare; hand the listener its own copy
+        byte[] data = buf;
+        if (offset != 0 || length != buf.length) {
+            data = new byte[length];
+            System.arraycopy(buf, offset, data, 0, length);
+        }
+        l.onUnknownPacket(packetType, data);
+    }
+
+    /**
+     * Check the frame's length byte and CRC and record the outcome in {@link #frameStats}.
+     *
+     * @return number of bytes that make up the frame, or -1 if it must be dropped
+     */
+    private int validateFrame(int packetType, byte[] buf, int offset, int length) {
+        int frameLength = length;
+
+        if (hasLengthField(packetType)) {
+            if (length < MIN_FRAME_LENGTH) {
+                frameStats.recordTruncated(packetType);
+                return -1;
+            }
+            int declared = buf[offset + 2] & 0xFF;
+            if (declared < MIN_FRAME_LENGTH) {
+                // A corrupt length byte can't be trusted any more than a bad CRC
+                frameStats.recordBadCrc(packetType);
+                return -1;
+            }
+            if (declared > length) {
+                frameStats.recordTruncated(packetType);
+                return -1;
+            }
+            frameLength = declared;
+        }
+
+        if (crcCheckEnabled && !ProtocolUtils.verifyCRC16(buf, offset, frameLength)) {
+            frameStats.recordBadCrc(packetType);
+            return -1;
+        }
+
+        frameStats.recordGood(packetType);
+        return frameLength;
+    }
+
+    /**
+     * Whether byte[2] of this packet type is the total frame length.
+     * Firmware update replies (D0-D3) are the only frames without one.
+     */
+    static boolean hasLengthField(int packetType) {
+        return packetType < 0xD0 || packetType > 0xD3;
+    }
+
+    /**
+     * Get a human-readable name for a packet type code.
+     * Useful for logging and debug displays.
+     *
+     * @param packetType the command byte value (0xB0, 0xA0, etc.)
+     * @return descriptive name string
+     */
+    public static String getPacketName(int packetType) {
+        switch (packetType) {
+            case 0x00: return "00 (Real-time Data)";
+            case 0x01: return "01 (Config/Settings)";
+            case 0xA0: return "A0 (Running Data)";
+            case 0xA1: return "A1 (BMS Data)";
+            case 0xA2: return "A2 (Trip Data)";
+            case 0xB0: return "B0 (Version Info)";
+            case 0xD0: return "D0 (FW Request)";
+            case 0xD1: return "D1 (FW Erase)";
+            case 0xD2: return "D2 (FW Data)";
+            case 0xD3: return "D3 (FW Complete)";
+            default: return String.format("0x%02X (Unknown)", packetType);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.pure.gen3firmwareupdater.services;
+
+import com.pure.gen3firmwareupdater.BMSDataFrame;
+import com.pure.gen3firmwareupdater.ConfigFrame;
+import com.pure.gen3firmwareupdater.ProtocolFrame;
+import com.pure.gen3firmwareupdater.RealtimeFrame;
+import com.pure.gen3firmwareupdater.RunningDataFrame;
+import com.pure.gen3firmwareupdater.TripFrame;
+import com.pure.gen3firmwareupdater.VersionFrame;
+
+/**
+ * Typed key for an inbound packet type: the command byte plus a factory for the
+ * flyweight frame that decodes it. Used to register decoders with, and subscribe
+ * to, a {@link PacketRouter}.
+ *
+ * Adding a packet type means adding a {@link ProtocolFrame} subclass and a
+ * constant here (or anywhere else) - the router itself does not change.
+ */
+public final class PacketType<F extends ProtocolFrame> {
+
+    /** Creates the reusable frame instance a router decodes into. */
+    public interface FrameFactory<F extends ProtocolFrame> {
+        F create();
+    }
+
+    public static final PacketType<RealtimeFrame> REALTIME =
+            new PacketType<>(RealtimeFrame.COMMAND, RealtimeFrame::new);
+    public static final PacketType<ConfigFrame> CONFIG =
+            new PacketType<>(ConfigFrame.COMMAND, ConfigFrame::new);
+    public static final PacketType<RunningDataFrame> RUNNING_DATA =
+            new PacketType<>(RunningDataFrame.COMMAND, RunningDataFrame::new);
+    public static final PacketType<BMSDataFrame> BMS_DATA =
+            new PacketType<>(BMSDataFrame.COMMAND, BMSDataFrame::new);
+    public static final PacketType<TripFrame> TRIP =
+            new PacketType<>(TripFrame.COMMAND, TripFrame::new);
+    public static final PacketType<VersionFrame> VERSION =
+            new PacketType<>(VersionFrame.COMMAND, VersionFrame::new);
+
+    private final int command;
+    private final FrameFactory<F> factory;
+
+    public PacketType(int command, FrameFactory<F> factory) {
+        if (command < 0 || command > 0xFF) {
+            throw new IllegalArgumentException("Command byte out of range: " + command);
+        }
+        this.command = command;
+        this.factory = factory;
+    }
+
+    public int getCommand() { return command; }
+
+    F newFrame() { return factory.create(); }
+
+    @Override
+    public String toString() {
+        return PacketRouter.getPacketName(command);
+    }
+}
@@ -0,0 +1,233 @@
+package com.pure.gen3firmwareupdater.services;
+
+import com.pure.gen3firmwareupdater.BMSDataFrame;
+import com.pure.gen3firmwareupdater.BMSDataInfo;
+import com.pure.gen3firmwareupdater.ProtocolFrame;
+import com.pure.gen3firmwareupdater.ProtocolLog;
+import com.pure.gen3firmwareupdater.RunningDataFrame;
+import com.pure.gen3firmwareupdater.RunningDataInfo;
+import com.pure.gen3firmwareupdater.VersionFrame;
+import com.pure.gen3firmwareupdater.VersionInfo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Matches inbound frames to outstanding scooter queries by command byte.
+ *
+ * {@link #query} writes a request (A0, A1, B0, ...) and returns a
+ * {@link ResponseFuture} that completes with the decoded response when the next
+ * frame with the same command byte passes through the {@link PacketRouter}.
+ * Queries for different commands are pipelined: each is written immediately
+ * (BLEManager's GATT queue serializes the writes) and they complete in whatever
+ * order the scooter answers. A query for a command that already has one in flight
+ * joins it instead of writing a duplicate request; every waiter completes with
+ * the same response.
+ *
+ * The scooter's responses carry no sequence number, so an unsolicited frame of
+ * the right type (e.g. from telemetry polling) also satisfies a pending query.
+ * That is fine for the snapshot-style packets this protocol uses.
+ *
+ * Thread-safe. Responses complete on the router's dispatch thread; timeouts run
+ * on whatever thread the {@link Scheduler} uses.
+ */
+public class RequestCorrelator {
+
+    private static final String TAG = "RequestCorrelator";
+
+    /** Writes the request for a command byte. Returns false if it could not be sent. */
+    public interface RequestSender {
+        boolean send(int command);
+    }
+
+    /** Delayed task runner for timeouts (a Handler on Android). */
+    public interface Scheduler {
+        void schedule(Runnable task, long delayMs);
+        void cancel(Runnable task);
+    }
+
+    /** Turns the reusable frame into a value that outlives the dispatch call. */
+    public interface ResponseDecoder<F extends ProtocolFrame, T> {
+        T decode(F frame);
+    }
+
+    /** Outstanding queries for one command byte, subscribed to the router while non-empty. */
+    private final class Channel<F extends ProtocolFrame, T> implements PacketRouter.PacketHandler<F> {
+        final PacketType<F> type;
+        final ResponseDecoder<F, T> decoder;
+        final List<ResponseFuture<T>> pending = new ArrayList<>(2);
+
+        Channel(PacketType<F> type, ResponseDecoder<F, T> decoder) {
+            this.type = type;
+            this.decoder = decoder;
+        }
+
+        @Override
+        public void onPacket(F frame) {
+            List<ResponseFuture<T>> waiting;
+            synchronized (RequestCorrelator.this) {
+                if (pending.isEmpty()) return;
+                waiting = new ArrayList<>(pending);
+                pending.clear();
+                for (ResponseFuture<T> future : waiting) cancelTimeout(future);
+                router.unsubscribe(type, this);
+            }
+            // Decode once for every waiter; the frame is only valid during this call
+            T value = decoder.decode(frame);
+            for (ResponseFuture<T> future : waiting) {
+                future.complete(value);
+            }
+        }
+    }
+
+    private final PacketRouter router;
+    private final RequestSender sender;
+    private final Scheduler scheduler;
+
+    // Indexed by command byte; created lazily on first query
+    private final Channel<?, ?>[] channels = new Channel<?, ?>[256];
+
+    public RequestCorrelator(PacketRouter router, RequestSender sender, Scheduler scheduler) {
+        this.router = router;
+        this.sender = sender;
+        this.scheduler = scheduler;
+    }
+
+    // ==================================================================================
+    // QUERIES
+    // ==================================================================================
+
+    /** Request A0 running data. */
+    public ResponseFuture<RunningDataInfo> queryRunningData(long timeoutMs) {
+        return query(PacketType.RUNNING_DATA, RunningDataInfo::fromFrame, timeoutMs);
+    }
+
+    /** Request A1 BMS data. */
+    public ResponseFuture<BMSDataInfo> queryBMSData(long timeoutMs) {
+        return query(PacketType.BMS_DATA, BMSDataInfo::fromFrame, timeoutMs);
+    }
+
+    /** Request B0 version info. */
+    public ResponseFuture<VersionInfo> queryVersion(long timeoutMs) {
+        return query(PacketType.VERSION, VersionInfo::fromFrame, timeoutMs);
+    }
+
+    /**
+     * Send the request for {@code type} and wait for the matching response.
+     * A type must always be queried with the same decoder.
+     *
+     * @param timeoutMs fail with {@link TimeoutException} if no response arrives in time
+     */
+    public <F extends ProtocolFrame, T> ResponseFuture<T> query(PacketType<F> type,
+                                                               ResponseDecoder<F, T> decoder,
+                                                               long timeoutMs) {
+        int command = type.getCommand();
+        ResponseFuture<T> future = new ResponseFuture<>(command, this);
+        boolean inFlight;
+        synchronized (this) {
+            Channel<F, T> channel = channelFor(type, decoder);
+            inFlight = !channel.pending.isEmpty();
+            channel.pending.add(future);
+            // Subscribe before writing so a fast response cannot be missed
+            if (!inFlight) router.subscribe(type, channel);
+            future.timeoutTask = () -> onTimeout(future, timeoutMs);
+            scheduler.schedule(future.timeoutTask, timeoutMs);
+        }
+
+        if (!inFlight && !sender.send(command)) {
+            remove(future);
+            future.fail(new IOException("Request " + type + " could not be sent"));
+        }
+        return future;
+    }
+
+    /** True if any query for this command byte is waiting for its response. */
+    public synchronized boolean hasPending(int command) {
+        Channel<?, ?> channel = channels[command & 0xFF];
+        return channel != null && !channel.pending.isEmpty();
+    }
+
+    /** Number of queries waiting for a response, across all commands. */
+    public synchronized int getPendingCount() {
+        int count = 0;
+        for (Channel<?, ?> channel : channels) {
+            if (channel != null) count += channel.pending.size();
+        }
+        return count;
+    }
+
+    /** Fail every outstanding query (e.g. on disconnect). */
+    public void failAll(String reason) {
+        List<ResponseFuture<?>> failed = new ArrayList<>();
+        synchronized (this) {
+            for (Channel<?, ?> channel : channels) {
+                if (channel == null || channel.pending.isEmpty()) continue;
+                for (ResponseFuture<?> future : channel.pending) {
+                    cancelTimeout(future);
+                    failed.add(future);
+                }
+                channel.pending.clear();
+                unsubscribe(channel);
+            }
+        }
+        for (ResponseFuture<?> future : failed) {
+            future.fail(new IOException(reason));
+        }
+        if (!failed.isEmpty()) {
+            ProtocolLog.d(TAG, "Failed " + failed.size() + " pending request(s): " + reason);
+        }
+    }
+
+    // ==================================================================================
+    // INTERNALS
+    // ==================================================================================
+
+    @SuppressWarnings("unchecked")
+    private <F extends ProtocolFrame, T> Channel<F, T> channelFor(PacketType<F> type,
+                                                                 ResponseDecoder<F, T> decoder) {
+        int command = type.getCommand();
+        Channel<?, ?> channel = channels[command];
+        if (channel == null) {
+            channel = new Channel<>(type, decoder);
+            channels[command] = channel;
+        }
+        // Safe as long as each type is always queried with the same decoder
+        return (Channel<F, T>) channel;
+    }
+
+    /** Drop a future from its channel (cancelled, timed out or unsendable). */
+    synchronized void remove(ResponseFuture<?> future) {
+        Channel<?, ?> channel = channels[future.getCommand()];
+        if (channel == null) return;
+        cancelTimeout(future);
+        if (channel.pending.remove(future) && channel.pending.isEmpty()) {
+            unsubscribe(channel);
+        }
+    }
+
+    private <F extends ProtocolFrame> void unsubscribe(Channel<F, ?> channel) {
+        router.unsubscribe(channel.type, channel);
+    }
+
+    // Caller holds the lock
+    private void cancelTimeout(ResponseFuture<?> future) {
+        if (future.timeoutTask != null) {
+            scheduler.cancel(future.timeoutTask);
+            future.timeoutTask = null;
+        }
+    }
+
+    private void onTimeout(ResponseFuture<?> future, long timeoutMs) {
+        synchronized (this) {
+            future.timeoutTask = null;
+        }
+        remove(future);
+        if (future.fail(new TimeoutException("No " + PacketRouter.getPacketName(future.getCommand())
+                + " response within " + timeoutMs + "ms"))) {
+            ProtocolLog.w(TAG, "Request 0x" + String.format("%02X", future.getCommand())
+                    + " timed out after " + timeoutMs + "ms");
+        }
+    }
+}
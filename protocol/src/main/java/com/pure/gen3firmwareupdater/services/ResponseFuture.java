@@ -0,0 +1,154 @@
+package com.pure.gen3firmwareupdater.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pending response to a scooter query issued through {@link RequestCorrelator}.
+ *
+ * A minimal Future: completes once with the decoded response, or fails with
+ * a {@link TimeoutException} (no matching frame in time), an
+ * {@link java.io.IOException} (request could not be sent, or the link dropped),
+ * or is cancelled. Blocking {@link #get()} must not be called on the thread
+ * that delivers BLE notifications; use {@link #whenComplete(Callback)} there.
+ *
+ * CompletableFuture needs API 24 and the app supports API 23, hence this class.
+ */
+public final class ResponseFuture<T> implements Future<T> {
+
+    /** Completion callback. Exactly one of {@code result} / {@code error} is meaningful. */
+    public interface Callback<T> {
+        void onComplete(T result, Throwable error);
+    }
+
+    private final int command;
+    private final RequestCorrelator owner;
+
+    private boolean done;
+    private boolean cancelled;
+    private T result;
+    private Throwable error;
+    private List<Callback<T>> callbacks;
+
+    // Timeout task registered with the correlator's scheduler; guarded by the correlator
+    Runnable timeoutTask;
+
+    ResponseFuture(int command, RequestCorrelator owner) {
+        this.command = command;
+        this.owner = owner;
+    }
+
+    /** Command byte of the request this future answers. */
+    public int getCommand() {
+        return command;
+    }
+
+    /**
+     * Run {@code callback} when this future completes - immediately, on the calling
+     * thread, if it already has. Otherwise it runs on the thread that completes it
+     * (the BLE notification thread for responses, the scheduler thread for timeouts).
+     */
+    public ResponseFuture<T> whenComplete(Callback<T> callback) {
+        synchronized (this) {
+            if (!done) {
+                if (callbacks == null) callbacks = new ArrayList<>(1);
+                callbacks.add(callback);
+                return this;
+            }
+        }
+        callback.onComplete(result, error);
+        return this;
+    }
+
+    boolean complete(T value) {
+        return finish(value, null, false);
+    }
+
+    boolean fail(Throwable cause) {
+        return finish(null, cause, false);
+    }
+
+    /** Cancel the query. The request already written is not recalled; its response is ignored. */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!finish(null, new CancellationException("Request 0x"
+                + String.format("%02X", command) + " cancelled"), true)) {
+            return false;
+        }
+        owner.remove(this);
+        return true;
+    }
+
+    private boolean finish(T value, Throwable cause, boolean cancel) {
+        List<Callback<T>> toRun;
+        synchronized (this) {
+            if (done) return false;
+            done = true;
+            cancelled = cancel;
+            result = value;
+            error = cause;
+            toRun = callbacks;
+            callbacks = null;
+            notifyAll();
+        }
+        if (toRun != null) {
+            for (Callback<T> callback : toRun) {
+                callback.onComplete(value, cause);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /** Failure cause, or null if pending or completed normally. */
+    public synchronized Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (!done) wait();
+        return report();
+    }
+
+    @Override
+    public synchronized T get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long remainingNanos = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remainingNanos;
+        while (!done) {
+            if (remainingNanos <= 0) throw new TimeoutException();
+            TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+            remainingNanos = deadline - System.nanoTime();
+        }
+        return report();
+    }
+
+    // Caller holds the lock and done == true
+    private T report() throws ExecutionException {
+        if (cancelled) throw (CancellationException) error;
+        if (error != null) throw new ExecutionException(error);
+        return result;
+    }
+
+    @Override
+    public synchronized String toString() {
+        String state = !done ? "pending" : cancelled ? "cancelled"
+                : error != null ? "failed: " + error.getMessage() : "done";
+        return "ResponseFuture{0x" + String.format("%02X", command) + ", " + state + '}';
+    }
+}
@@ -0,0 +1,116 @@
+package com.pure.gen3firmwareupdater.services;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Virtual time for {@link SimulatedScooter} and the code that talks to it, so runs
+ * that wait out link latencies and protocol timeouts finish in milliseconds.
+ *
+ * Nothing runs on its own: scheduled tasks run on the calling thread, in due-time
+ * order (first scheduled first for equal times), when time moves forward - through
+ * {@link #advance}, or through {@link #sleep} and {@link #poll} while a
+ * {@link FirmwareTransfer} waits. A wait that no task ends jumps straight to its
+ * deadline.
+ *
+ * As a {@link RequestCorrelator.Scheduler} it drives TelemetryPollScheduler,
+ * ControlStateWriter and RequestCorrelator timeouts the same way.
+ *
+ * Not thread-safe: schedule, wait and advance from one thread.
+ */
+public class SimulatedClock implements FirmwareTransfer.Clock, RequestCorrelator.Scheduler {
+
+    private static final class Task implements Comparable<Task> {
+        final Runnable runnable;
+        final long dueNanos;
+        final long sequence;
+
+        Task(Runnable runnable, long dueNanos, long sequence) {
+            this.runnable = runnable;
+            this.dueNanos = dueNanos;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (dueNanos != other.dueNanos) return dueNanos < other.dueNanos ? -1 : 1;
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+    private long nowNanos;
+    private long nextSequence;
+
+    public long nanoTime() { return nowNanos; }
+
+    @Override
+    public long currentTimeMillis() { return TimeUnit.NANOSECONDS.toMillis(nowNanos); }
+
+    /** Tasks scheduled and not yet run or cancelled. */
+    public int pendingTasks() { return tasks.size(); }
+
+    public void scheduleNanos(Runnable task, long delayNanos) {
+        tasks.add(new Task(task, nowNanos + Math.max(0, delayNanos), nextSequence++));
+    }
+
+    @Override
+    public void schedule(Runnable task, long delayMs) {
+        scheduleNanos(task, TimeUnit.MILLISECONDS.toNanos(delayMs));
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+        for (Iterator<Task> it = tasks.iterator(); it.hasNext(); ) {
+            if (it.next().runnable == task) it.remove();
+        }
+    }
+
+    /** Run every task due in the next {@code ms}, including ones they schedule, and move on by {@code ms}. */
+    public void advance(long ms) {
+        long deadline = nowNanos + TimeUnit.MILLISECONDS.toNanos(ms);
+        while (runNext(deadline)) {
+            // Keep going until nothing is due by the deadline
+        }
+    }
+
+    @Override
+    public void sleep(long ms) {
+        advance(ms);
+    }
+
+    @Override
+    public <T> T poll(BlockingQueue<T> queue, long timeoutMs) {
+        long deadline = nowNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (true) {
+            T item = queue.poll();
+            if (item != null) return item;
+            if (!runNext(deadline)) return queue.poll();
+        }
+    }
+
+    /** Run tasks until {@code latch} opens; false if it is still closed after {@code timeoutMs}. */
+    public boolean await(CountDownLatch latch, long timeoutMs) {
+        long deadline = nowNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (latch.getCount() > 0) {
+            if (!runNext(deadline)) return latch.getCount() == 0;
+        }
+        return true;
+    }
+
+    /** Run the earliest task if it is due by {@code deadlineNanos}, else move time to the deadline. */
+    private boolean runNext(long deadlineNanos) {
+        Task next = tasks.peek();
+        if (next == null || next.dueNanos > deadlineNanos) {
+            nowNanos = Math.max(nowNanos, deadlineNanos);
+            return false;
+        }
+        tasks.poll();
+        nowNanos = Math.max(nowNanos, next.dueNanos);
+        next.runnable.run();
+        return true;
+    }
+}
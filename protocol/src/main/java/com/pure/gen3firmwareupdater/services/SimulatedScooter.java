@@ -0,0 +1,641 @@
+package com.pure.gen3firmwareupdater.services;
+
+import com.pure.gen3firmwareupdater.CommandEncoder;
+import com.pure.gen3firmwareupdater.ProtocolLog;
+import com.pure.gen3firmwareupdater.ProtocolUtils;
+import com.pure.gen3firmwareupdater.ScooterTransport;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A scooter on the other end of a simulated BLE link, for running the protocol code
+ * on a plain JVM: throughput, latency and soak runs without hardware.
+ *
+ * Scooter side: answers A0/A1/B0/01 requests with CRC-valid frames built from its
+ * settable state, applies C0 control writes, and runs the bootloader handshake -
+ * D0 enters update mode, D1 erases (taking {@link #setEraseTimeMs}), D2 packets are
+ * written to a flash image in index order and acknowledged with their index in
+ * bytes 2-3 (status byte 4: 0 = ok, non-zero = rejected), D3 completes. A D0 while
+ * already in update mode keeps the written packets, so an interrupted upload can
+ * continue; {@link #powerCycle()} leaves update mode.
+ *
+ * Link side, as a {@link ScooterTransport}:
+ * <ul>
+ *   <li>Writes are serialized like GattOperationQueue: each takes
+ *       {@link #setWriteLatencyMs} after the previous one. Writes larger than
+ *       MTU - 3 cost one round trip per Prepare Write plus the Execute Write, as
+ *       Android's long writes do. Writes without response only take
+ *       {@link #setNoResponseWriteUs} of link time and must fit in MTU - 3.</li>
+ *   <li>Responses are notified {@link #setResponseLatencyMs} after the request
+ *       reaches the scooter, optionally split into {@link #setFragmentSize} byte
+ *       notifications. With {@link #setCoalesceMs}, frames ready within that time
+ *       of each other share notifications, so one notification can end one frame
+ *       and start the next.</li>
+ *   <li>{@link #setPacketLoss} drops that fraction of incoming writes and outgoing
+ *       notifications at the scooter's UART, after the link layer has acknowledged
+ *       them.</li>
+ *   <li>{@link #disconnect()} drops the link and everything in flight; the scooter's
+ *       state (including a half-written flash image) survives {@link #reconnect()}.</li>
+ * </ul>
+ *
+ * While a {@link FirmwareNotificationHandler} is set, notifications are cut into
+ * frames as BLEManager does: D0-D3 replies go to the handler, other frames to the
+ * {@link DataHandler}. Otherwise every notification goes to the DataHandler as sent,
+ * e.g. to a {@link FrameAssembler} in front of a {@link PacketRouter}.
+ * Both are called on the simulator's own thread, which stands in for the BLE I/O
+ * thread. Call {@link #shutdown()} when done.
+ *
+ * Built with a {@link SimulatedClock}, the simulator has no thread of its own: link
+ * events are tasks on that clock and run, in virtual time, on whichever thread
+ * advances it - normally the test thread, through a FirmwareTransfer using the same
+ * clock or {@link SimulatedClock#advance}.
+ */
+public class SimulatedScooter implements ScooterTransport {
+
+    private static final String TAG = "SimulatedScooter";
+
+    static final int STATUS_OK = 0x00;
+    static final int STATUS_REJECTED = 0x01;
+
+    private static final int FLASH_SIZE = 512 * 1024;
+    private static final int TELEMETRY_FRAME_LENGTH = 25;
+
+    /** Receives every notification that is not routed to the firmware handler. */
+    public interface DataHandler {
+        void onNotification(byte[] data);
+    }
+
+    // Exactly one of these runs the link: a thread in real time, or virtual time
+    private final ScheduledExecutorService link;
+    private final SimulatedClock clock;
+    private final Random random;
+    private volatile Thread linkThread;
+
+    // Link model
+    private volatile int protocolHeader = CommandEncoder.HEADER_STANDARD;
+    private volatile int mtu = 247;
+    private volatile long writeLatencyMs = 15;
+    private volatile long noResponseWriteUs = 2500;
+    private volatile long responseLatencyMs = 20;
+    private volatile long eraseTimeMs = 1500;
+    private volatile double packetLoss;
+    private volatile int fragmentSize;
+    private volatile long coalesceMs;
+    private volatile boolean copyWrites = true;
+    private volatile boolean writeNoResponseSupported = true;
+
+    private volatile boolean connected = true;
+    // Bumped on disconnect so writes and notifications already scheduled are dropped
+    private volatile int linkEpoch;
+    // Guarded by this: when the last queued write completes (linkNanos())
+    private long linkFreeAtNanos;
+
+    private volatile FirmwareNotificationHandler firmwareHandler;
+    private volatile DataHandler dataHandler;
+    // Simulator thread only: frames waiting to share a notification, and the
+    // firmware-mode reassembly that BLEManager does
+    private final ByteArrayOutputStream pendingTx = new ByteArrayOutputStream();
+    private final FrameAssembler firmwareFrames = new FrameAssembler(this::routeFirmwareFrame);
+
+    // Telemetry state reported in A0/A1
+    private volatile int speed;
+    private volatile int faultCode;
+    private volatile int controlFlags = 0x0001;
+    private volatile int cruiseSpeed = 15;
+    private volatile int maxSpeed = 25;
+    private volatile int batteryPercent = 80;
+    private volatile boolean charging;
+
+    // Scooter-side receive buffer and bootloader state (simulator thread only)
+    private final byte[] rx = new byte[1024];
+    private int rxLength;
+    private boolean updateMode;
+    private boolean erased;
+    private int nextPacketIndex;
+    private final byte[] flash = new byte[FLASH_SIZE];
+    private volatile int flashedLength;
+    private volatile boolean flashComplete;
+
+    // Counters
+    private long writes;
+    private long bytesWritten;
+    private volatile long framesIn;
+    private volatile long crcFailures;
+    private volatile long notifications;
+    private volatile long dropped;
+    private volatile long rejected;
+
+    public SimulatedScooter() {
+        this(System.nanoTime());
+    }
+
+    /** Loss decisions come from {@code seed}, so a run with the same settings is repeatable. */
+    public SimulatedScooter(long seed) {
+        this.random = new Random(seed);
+        this.clock = null;
+        this.link = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, TAG);
+            t.setDaemon(true);
+            linkThread = t;
+            return t;
+        });
+    }
+
+    /** Runs in {@code clock}'s virtual time instead of on a thread of its own. */
+    public SimulatedScooter(long seed, SimulatedClock clock) {
+        this.random = new Random(seed);
+        this.clock = clock;
+        this.link = null;
+    }
+
+    // ==================================================================================
+    // CONFIGURATION
+    // ==================================================================================
+
+    public void setProtocolHeader(int header) { this.protocolHeader = header; }
+    public void setMtu(int mtu) { this.mtu = mtu; }
+    /** Time for one acknowledged write to complete, back to back. */
+    public void setWriteLatencyMs(long ms) { this.writeLatencyMs = ms; }
+    /** Link time taken by one write without response (several fit in a connection event). */
+    public void setNoResponseWriteUs(long us) { this.noResponseWriteUs = us; }
+    /** Time from a request reaching the scooter to its response notification. */
+    public void setResponseLatencyMs(long ms) { this.responseLatencyMs = ms; }
+    public void setEraseTimeMs(long ms) { this.eraseTimeMs = ms; }
+    /** Fraction (0..1) of writes and notifications lost at the scooter. */
+    public void setPacketLoss(double fraction) { this.packetLoss = fraction; }
+    /** Split notifications into chunks of this many bytes; 0 sends whole frames. */
+    public void setFragmentSize(int bytes) { this.fragmentSize = bytes; }
+    /**
+     * Hold a ready frame this long so frames that follow it share its notifications,
+     * cut at {@link #setFragmentSize} (or MTU - 3). 0 notifies each frame on its own.
+     */
+    public void setCoalesceMs(long ms) { this.coalesceMs = ms; }
+    /**
+     * false: keep the caller's array until the write reaches the scooter instead of
+     * copying it, as BluetoothGattCharacteristic.setValue does. A caller that reuses
+     * the buffer before then sends whatever it holds by that time.
+     */
+    public void setCopyWrites(boolean copy) { this.copyWrites = copy; }
+    /**
+     * false: the control characteristic lacks the write-without-response property;
+     * such writes are accepted by the link and never reach the scooter.
+     */
+    public void setWriteWithoutResponseSupported(boolean supported) { this.writeNoResponseSupported = supported; }
+
+    public void setDataHandler(DataHandler handler) { this.dataHandler = handler; }
+
+    // Telemetry state
+    public void setSpeed(int kmh) { this.speed = kmh; }
+    public void setFaultCode(int faultCode) { this.faultCode = faultCode; }
+    public void setCharging(boolean charging) { this.charging = charging; }
+    public void setBatteryPercent(int percent) { this.batteryPercent = percent; }
+    public int getControlFlags() { return controlFlags; }
+
+    // ==================================================================================
+    // SCOOTER TRANSPORT
+    // ==================================================================================
+
+    @Override
+    public boolean isConnected() { return connected; }
+
+    @Override
+    public int getProtocolHeader() { return protocolHeader; }
+
+    @Override
+    public int getMaxWriteSize() { return mtu - 3; }
+
+    @Override
+    public boolean sendCommand(byte[] command) {
+        return write(command, true, null);
+    }
+
+    @Override
+    public boolean supportsWriteWithoutResponse() { return writeNoResponseSupported; }
+
+    @Override
+    public boolean writeWithoutResponse(byte[] data) {
+        if (data != null && data.length > getMaxWriteSize()) {
+            ProtocolLog.w(TAG, "Write without response of " + data.length + " bytes exceeds MTU " + mtu);
+            return false;
+        }
+        if (!writeNoResponseSupported) {
+            // The phone's stack sends it; the scooter ignores it
+            if (!connected || data == null) return false;
+            dropped++;
+            return true;
+        }
+        return write(data, false, null);
+    }
+
+    @Override
+    public boolean writeRawBytesAndWait(byte[] data, long timeoutMs) {
+        if (Thread.currentThread() == linkThread) {
+            ProtocolLog.e(TAG, "writeRawBytesAndWait called on the simulator thread");
+            return false;
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        if (!write(data, true, done)) return false;
+        if (clock != null) return clock.await(done, timeoutMs);
+        try {
+            return done.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public void setFirmwareNotificationHandler(FirmwareNotificationHandler handler) {
+        this.firmwareHandler = handler;
+        runOnLink(firmwareFrames::reset, 0);
+    }
+
+    // ==================================================================================
+    // LINK
+    // ==================================================================================
+
+    /** Drop the link. Writes and notifications in flight are lost. */
+    public void disconnect() {
+        connected = false;
+        linkEpoch++;
+        runOnLink(() -> {
+            rxLength = 0;
+            pendingTx.reset();
+            firmwareFrames.reset();
+        }, 0);
+        ProtocolLog.i(TAG, "Link dropped");
+    }
+
+    /** Bring the link back. Bootloader state and the flash image are kept. */
+    public void reconnect() {
+        synchronized (this) {
+            linkFreeAtNanos = 0;
+        }
+        connected = true;
+        ProtocolLog.i(TAG, "Link up");
+    }
+
+    /** Restart the scooter: drops the link and leaves update mode, discarding a partial upload. */
+    public void powerCycle() {
+        disconnect();
+        runOnLink(() -> {
+            updateMode = false;
+            erased = false;
+        }, 0);
+    }
+
+    public void shutdown() {
+        connected = false;
+        if (link != null) link.shutdownNow();
+    }
+
+    /** On the simulator thread, or the clock's next advance, after {@code delayNanos}. */
+    private void runOnLink(Runnable task, long delayNanos) {
+        if (clock != null) {
+            clock.scheduleNanos(task, delayNanos);
+        } else if (!link.isShutdown()) {
+            link.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private long linkNanos() {
+        return clock != null ? clock.nanoTime() : System.nanoTime();
+    }
+
+    private boolean write(byte[] data, boolean acknowledged, CountDownLatch done) {
+        if (!connected || data == null) return false;
+        byte[] value = copyWrites ? data.clone() : data;
+        int epoch = linkEpoch;
+        long costNanos;
+        if (!acknowledged) {
+            costNanos = TimeUnit.MICROSECONDS.toNanos(noResponseWriteUs);
+        } else {
+            // Longer than MTU - 3: the stack turns it into a long write, one Prepare Write
+            // per MTU - 5 bytes plus the Execute Write, each a full round trip
+            int roundTrips = value.length <= getMaxWriteSize()
+                    ? 1 : (value.length + mtu - 6) / (mtu - 5) + 1;
+            costNanos = TimeUnit.MILLISECONDS.toNanos(writeLatencyMs * roundTrips);
+        }
+        long delayNanos;
+        synchronized (this) {
+            long now = linkNanos();
+            long start = Math.max(now, linkFreeAtNanos);
+            linkFreeAtNanos = start + costNanos;
+            delayNanos = linkFreeAtNanos - now;
+            writes++;
+            bytesWritten += value.length;
+        }
+        runOnLink(() -> {
+            if (epoch != linkEpoch) return;
+            if (lost()) {
+                dropped++;
+            } else {
+                receive(value);
+            }
+            if (done != null) done.countDown();
+        }, delayNanos);
+        return true;
+    }
+
+    private void notifyFrame(byte[] frame, long delayMs) {
+        int epoch = linkEpoch;
+        runOnLink(() -> {
+            if (epoch != linkEpoch) return;
+            if (lost()) {
+                dropped++;
+                return;
+            }
+            long hold = coalesceMs;
+            if (hold <= 0) {
+                send(frame, fragmentSize > 0 ? fragmentSize : frame.length);
+                return;
+            }
+            boolean first = pendingTx.size() == 0;
+            pendingTx.write(frame, 0, frame.length);
+            if (first) {
+                runOnLink(() -> {
+                    if (epoch != linkEpoch || pendingTx.size() == 0) return;
+                    byte[] merged = pendingTx.toByteArray();
+                    pendingTx.reset();
+                    send(merged, fragmentSize > 0 ? fragmentSize : getMaxWriteSize());
+                }, TimeUnit.MILLISECONDS.toNanos(hold));
+            }
+        }, TimeUnit.MILLISECONDS.toNanos(delayMs));
+    }
+
+    private void send(byte[] bytes, int chunk) {
+        for (int start = 0; start < bytes.length; start += chunk) {
+            deliver(Arrays.copyOfRange(bytes, start, Math.min(start + chunk, bytes.length)));
+        }
+    }
+
+    /** Same routing rule as BLEManager.handleNotification. */
+    private void deliver(byte[] data) {
+        notifications++;
+        if (firmwareHandler != null) {
+            firmwareFrames.feed(data);
+            return;
+        }
+        DataHandler handler = dataHandler;
+        if (handler != null) handler.onNotification(data);
+    }
+
+    private void routeFirmwareFrame(byte[] buf, int offset, int length) {
+        byte[] frame = Arrays.copyOfRange(buf, offset, offset + length);
+        int cmd = frame[1] & 0xFF;
+        FirmwareNotificationHandler fw = firmwareHandler;
+        if (fw != null && cmd >= CommandEncoder.CMD_REQUEST_UPGRADE
+                && cmd <= CommandEncoder.CMD_COMPLETE_UPLOAD) {
+            fw.onFirmwareResponse(frame);
+            return;
+        }
+        DataHandler handler = dataHandler;
+        if (handler != null) handler.onNotification(frame);
+    }
+
+    private boolean lost() {
+        double loss = packetLoss;
+        return loss > 0 && random.nextDouble() < loss;
+    }
+
+    // ==================================================================================
+    // SCOOTER
+    // ==================================================================================
+
+    /** Bytes arriving at the scooter's UART. Frames may span several writes. */
+    private void receive(byte[] data) {
+        if (rxLength + data.length > rx.length) rxLength = 0; // overflow: resync from scratch
+        System.arraycopy(data, 0, rx, rxLength, data.length);
+        rxLength += data.length;
+
+        while (rxLength >= 2) {
+            if (!isHeader(rx[0] & 0xFF)) {
+                consume(1);
+                continue;
+            }
+            int cmd = rx[1] & 0xFF;
+            int length = frameLength(cmd);
+            if (length < 0) {
+                if (rxLength < 3) return;
+                length = rx[2] & 0xFF;
+                if (length < 5) {
+                    consume(1);
+                    continue;
+                }
+            }
+            if (rxLength < length) return;
+            if (!ProtocolUtils.verifyCRC16(rx, 0, length)) {
+                crcFailures++;
+                consume(1);
+                continue;
+            }
+            framesIn++;
+            handleFrame(cmd, length);
+            consume(length);
+        }
+    }
+
+    private void consume(int count) {
+        System.arraycopy(rx, count, rx, 0, rxLength - count);
+        rxLength -= count;
+    }
+
+    /** Fixed length for frames without a length byte, or -1 to read byte 2. */
+    private static int frameLength(int cmd) {
+        switch (cmd) {
+            case CommandEncoder.CMD_REQUEST_UPGRADE:
+            case CommandEncoder.CMD_ERASE_MEMORY:
+            case CommandEncoder.CMD_COMPLETE_UPLOAD:
+                return CommandEncoder.FIRMWARE_COMMAND_LENGTH;
+            case CommandEncoder.CMD_UPLOAD_DATA:
+                return CommandEncoder.UPLOAD_DATA_LENGTH;
+            default:
+                return -1;
+        }
+    }
+
+    private void handleFrame(int cmd, int length) {
+        switch (cmd) {
+            case CommandEncoder.CMD_RUNNING_DATA:
+                notifyFrame(runningDataFrame(), responseLatencyMs);
+                break;
+            case CommandEncoder.CMD_BMS_DATA:
+                notifyFrame(bmsDataFrame(), responseLatencyMs);
+                break;
+            case CommandEncoder.CMD_VERSION_INFO:
+                notifyFrame(versionFrame(), responseLatencyMs);
+                break;
+            case 0x01:
+                notifyFrame(configFrame(), responseLatencyMs);
+                break;
+            case CommandEncoder.CMD_CONTROL:
+                controlFlags = ((rx[3] & 0xFF) << 8) | (rx[4] & 0xFF);
+                cruiseSpeed = rx[5] & 0xFF;
+                maxSpeed = rx[6] & 0xFF;
+                break;
+            case CommandEncoder.CMD_REQUEST_UPGRADE:
+                if (!updateMode) {
+                    updateMode = true;
+                    erased = false;
+                    flashComplete = false;
+                }
+                // Already in update mode (e.g. after a dropped link): keep the erased
+                // flash and write position so the upload can continue
+                notifyFrame(firmwareResponse(cmd, STATUS_OK), responseLatencyMs);
+                break;
+            case CommandEncoder.CMD_ERASE_MEMORY:
+                if (updateMode) {
+                    Arrays.fill(flash, (byte) 0xFF);
+                    erased = true;
+                    nextPacketIndex = 0;
+                    flashedLength = 0;
+                }
+                notifyFrame(firmwareResponse(cmd, updateMode ? STATUS_OK : STATUS_REJECTED),
+                        updateMode ? eraseTimeMs : responseLatencyMs);
+                break;
+            case CommandEncoder.CMD_UPLOAD_DATA:
+                handleUploadData();
+                break;
+            case CommandEncoder.CMD_COMPLETE_UPLOAD:
+                if (updateMode && erased) {
+                    flashComplete = true;
+                    updateMode = false;
+                    ProtocolLog.i(TAG, "Flash complete: " + flashedLength + " bytes");
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void handleUploadData() {
+        int index = ((rx[2] & 0xFF) << 8) | (rx[3] & 0xFF);
+        int chunk = CommandEncoder.UPLOAD_CHUNK_SIZE;
+        int status;
+        if (!updateMode || !erased || (index + 1) * chunk > FLASH_SIZE) {
+            status = STATUS_REJECTED;
+        } else if (index == nextPacketIndex) {
+            System.arraycopy(rx, 6, flash, index * chunk, chunk);
+            nextPacketIndex++;
+            flashedLength = nextPacketIndex * chunk;
+            status = STATUS_OK;
+        } else if (index < nextPacketIndex) {
+            // Retransmission of a packet already written: acknowledge again
+            status = STATUS_OK;
+        } else {
+            // Gap: packets must be written in order
+            status = STATUS_REJECTED;
+        }
+        if (status != STATUS_OK) rejected++;
+        byte[] ack = new byte[7];
+        ack[0] = (byte) protocolHeader;
+        ack[1] = (byte) CommandEncoder.CMD_UPLOAD_DATA;
+        ack[2] = (byte) ((index >> 8) & 0xFF);
+        ack[3] = (byte) (index & 0xFF);
+        ack[4] = (byte) status;
+        putCrc(ack);
+        notifyFrame(ack, responseLatencyMs);
+    }
+
+    // ==================================================================================
+    // RESULTS
+    // ==================================================================================
+
+    public boolean isFlashComplete() { return flashComplete; }
+
+    /** Copy of the flash image written so far, in 128-byte packets (last one padded). */
+    public byte[] getFlashedImage() {
+        return Arrays.copyOf(flash, flashedLength);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SimulatedScooter{writes=" + writes + ", bytesWritten=" + bytesWritten
+                + ", framesIn=" + framesIn + ", crcFailures=" + crcFailures
+                + ", notifications=" + notifications + ", dropped=" + dropped
+                + ", rejected=" + rejected + ", flashed=" + flashedLength + '}';
+    }
+
+    // ==================================================================================
+    // FRAMES
+    // ==================================================================================
+
+    private byte[] runningDataFrame() {
+        byte[] f = frame(CommandEncoder.CMD_RUNNING_DATA, TELEMETRY_FRAME_LENGTH);
+        int fault = faultCode;
+        int flags = controlFlags;
+        f[3] = (byte) (fault >> 8); f[4] = (byte) fault;
+        f[5] = (byte) (flags >> 8); f[6] = (byte) flags;
+        f[7] = (byte) cruiseSpeed;
+        f[8] = (byte) speed;
+        f[9] = (byte) maxSpeed;
+        f[11] = 0x04; f[12] = (byte) 0xD2;         // odometer 1234 km
+        f[13] = (byte) (batteryPercent / 3);       // remaining range
+        f[16] = 30; f[17] = 32;                    // motor / controller temperature
+        return putCrc(f);
+    }
+
+    private byte[] bmsDataFrame() {
+        byte[] f = frame(CommandEncoder.CMD_BMS_DATA, TELEMETRY_FRAME_LENGTH);
+        f[4] = (byte) (charging ? 0x01 : 0x00);
+        int current = charging ? 20 : -(speed * 2);  // 0.1 A
+        f[5] = (byte) (current >> 8); f[6] = (byte) current;
+        f[7] = 0x01; f[8] = 0x6D;                  // 36.5 V
+        f[9] = (byte) batteryPercent;
+        f[11] = 42;                                // charge cycles
+        f[12] = 0x27; f[13] = 0x10;                // capacity 10000 mAh
+        int remaining = batteryPercent * 100;
+        f[14] = (byte) (remaining >> 8); f[15] = (byte) remaining;
+        f[16] = 25;
+        return putCrc(f);
+    }
+
+    private byte[] versionFrame() {
+        byte[] f = frame(CommandEncoder.CMD_VERSION_INFO, TELEMETRY_FRAME_LENGTH);
+        f[3] = 0x00; f[4] = 0x03;                  // model
+        f[5] = 0x11; f[6] = 0x24;                  // meter HW / SW
+        f[7] = 0x10; f[8] = 0x31;                  // controller HW / SW
+        f[9] = 0x10; f[10] = 0x15;                 // BMS HW / SW
+        return putCrc(f);
+    }
+
+    private byte[] configFrame() {
+        byte[] f = frame(0x01, TELEMETRY_FRAME_LENGTH);
+        f[3] = 6;                                  // min cruise speed
+        f[4] = 15; f[5] = 20; f[6] = (byte) maxSpeed;
+        return putCrc(f);
+    }
+
+    private byte[] firmwareResponse(int cmd, int status) {
+        byte[] f = new byte[5];
+        f[0] = (byte) protocolHeader;
+        f[1] = (byte) cmd;
+        f[2] = (byte) status;
+        return putCrc(f);
+    }
+
+    private byte[] frame(int command, int length) {
+        byte[] f = new byte[length];
+        f[0] = (byte) protocolHeader;
+        f[1] = (byte) command;
+        f[2] = (byte) length;
+        return f;
+    }
+
+    private static byte[] putCrc(byte[] f) {
+        int crc = ProtocolUtils.calculateCRC16(f, f.length - 2);
+        f[f.length - 2] = (byte) (crc & 0xFF);
+        f[f.length - 1] = (byte) ((crc >> 8) & 0xFF);
+        return f;
+    }
+
+    private static boolean isHeader(int b) {
+        return b == CommandEncoder.HEADER_STANDARD || b == CommandEncoder.HEADER_ALTERNATE;
+    }
+}
@@ -0,0 +1,156 @@
+package com.pure.gen3firmwareupdater.services;
+
+/**
+ * Drops telemetry frames whose payload is identical to the previous frame of the same type.
+ *
+ * The dashboard polls A0/A1 every couple of seconds; while the scooter is parked the
+ * answers are byte-for-byte the same. Checking the raw frame before it is decoded means
+ * an unchanged frame costs a few word compares instead of a parse, a UI update and a
+ * database write.
+ *
+ * The previous payload is kept packed into longs, so each comparison is one XOR per
+ * 8 bytes. The result is a mask of changed byte offsets (bit i = byte i differs),
+ * which callers can test against field offsets with {@link #isChanged(long, int, int)}.
+ * The CRC bytes are not compared - they only change when the payload does.
+ *
+ * An unchanged frame is still let through every {@link #DEFAULT_REFRESH_MS} so
+ * consumers that expect a periodic sample keep getting one.
+ *
+ * Not thread-safe: call from the BLE callback thread. Masks may be read from any thread.
+ */
+public class TelemetryChangeFilter {
+
+    /** Longest time an unchanged frame is suppressed before one is delivered anyway. */
+    public static final long DEFAULT_REFRESH_MS = 10_000;
+
+    /** Mask value for a frame with no previous frame to compare against. */
+    public static final long ALL_CHANGED = -1L;
+
+    // Frames longer than this (minus CRC) are never suppressed
+    private static final int MAX_COMPARED = 64;
+    private static final int WORDS = MAX_COMPARED / 8;
+
+    private final boolean[] tracked = new boolean[256];
+    private final long[][] previous = new long[256][];
+    private final int[] previousLength = new int[256];
+    private final long[] lastDeliveredAt = new long[256];
+    private final long[] lastChangedMask = new long[256];
+
+    private volatile boolean enabled = true;
+    private volatile long refreshMillis = DEFAULT_REFRESH_MS;
+    private volatile long suppressed;
+
+    /** Track the default telemetry types (A0 running data, A1 BMS data). */
+    public TelemetryChangeFilter() {
+        track(PacketType.RUNNING_DATA.getCommand());
+        track(PacketType.BMS_DATA.getCommand());
+        reset();
+    }
+
+    /** Start suppressing unchanged frames of this command byte. */
+    public void track(int packetType) {
+        int type = packetType & 0xFF;
+        if (previous[type] == null) previous[type] = new long[WORDS];
+        tracked[type] = true;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) reset();
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    /** 0 disables the periodic refresh (unchanged frames are always suppressed). */
+    public void setRefreshMillis(long refreshMillis) {
+        this.refreshMillis = refreshMillis;
+    }
+
+    /** Forget every previous frame (call on connect/disconnect). */
+    public void reset() {
+        for (int i = 0; i < 256; i++) {
+            previousLength[i] = 0;
+            lastDeliveredAt[i] = 0;
+            lastChangedMask[i] = ALL_CHANGED;
+        }
+    }
+
+    /**
+     * Compare a complete, CRC-checked frame with the previous one of its type.
+     *
+     * @return true if the frame should be dispatched, false if it is a repeat
+     */
+    public boolean shouldDeliver(byte[] buf, int offset, int length, long nowMillis) {
+        if (!enabled || length < 2) return true;
+        int type = buf[offset + 1] & 0xFF;
+        if (!tracked[type]) return true;
+
+        int compared = length - 2;
+        if (compared > MAX_COMPARED) {
+            lastChangedMask[type] = ALL_CHANGED;
+            return true;
+        }
+
+        long[] prev = previous[type];
+        long mask = 0;
+        for (int w = 0, pos = 0; pos < compared; w++, pos += 8) {
+            long word = pack(buf, offset + pos, Math.min(8, compared - pos));
+            long diff = word ^ prev[w];
+            if (diff != 0) {
+                mask |= byteMask(diff) << pos;
+                prev[w] = word;
+            }
+        }
+
+        boolean first = previousLength[type] != compared;
+        if (first) {
+            previousLength[type] = compared;
+            mask = ALL_CHANGED;
+        }
+
+        long refresh = refreshMillis;
+        if (mask == 0 && (refresh <= 0 || nowMillis - lastDeliveredAt[type] < refresh)) {
+            suppressed++;
+            return false;
+        }
+        lastChangedMask[type] = mask;
+        lastDeliveredAt[type] = nowMillis;
+        return true;
+    }
+
+    /**
+     * Changed-byte mask of the last delivered frame of this type (bit i = byte i changed).
+     * {@link #ALL_CHANGED} for the first frame; 0 for a periodic refresh of an unchanged frame.
+     */
+    public long getLastChangedMask(int packetType) {
+        return lastChangedMask[packetType & 0xFF];
+    }
+
+    /** True if any byte in {@code [offset, offset+length)} is set in {@code mask}. */
+    public static boolean isChanged(long mask, int offset, int length) {
+        if (offset >= 64) return mask == ALL_CHANGED;
+        long field = (length >= 64 ? -1L : (1L << length) - 1) << offset;
+        return (mask & field) != 0;
+    }
+
+    /** Frames dropped as repeats since construction. */
+    public long getSuppressedCount() { return suppressed; }
+
+    // Little-endian pack so that byte k of the word lands in bits 8k..8k+7
+    private static long pack(byte[] buf, int offset, int count) {
+        long word = 0;
+        for (int k = count - 1; k >= 0; k--) {
+            word = (word << 8) | (buf[offset + k] & 0xFF);
+        }
+        return word;
+    }
+
+    // Collapse each non-zero byte of diff to a single bit
+    private static long byteMask(long diff) {
+        long bits = 0;
+        for (int k = 0; k < 8 && diff != 0; k++, diff >>>= 8) {
+            if ((diff & 0xFF) != 0) bits |= 1L << k;
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,198 @@
+package com.pure.gen3firmwareupdater.services;
+
+import com.pure.gen3firmwareupdater.ProtocolLog;
+
+/**
+ * Decides how often to poll A0 (running data) and A1 (BMS data) from what the
+ * scooter is doing, instead of one fixed interval.
+ *
+ * <pre>
+ *   moving + recording    200 ms  (5 Hz)
+ *   moving                500 ms  (2 Hz)
+ *   recording, parked    1000 ms
+ *   parked               5000 ms  (0.2 Hz)
+ *   charging            10000 ms
+ *   new fault code       burst of 5 polls at 200 ms, starting immediately
+ * </pre>
+ *
+ * A1 changes slowly, so it is polled at most about once a second whatever the A0
+ * rate. When A0 polls go unanswered (weak link, scooter busy) the interval is
+ * doubled per missed poll, up to 4x, rather than piling requests into a link that
+ * cannot deliver them.
+ *
+ * Frames suppressed by {@link TelemetryChangeFilter} must still be reported through
+ * {@link #onRunningDataUnchanged()} so they count as answered polls.
+ *
+ * Not thread-safe: call everything on one thread (the BLE I/O thread on Android),
+ * the same one the {@link RequestCorrelator.Scheduler} runs tasks on.
+ */
+public class TelemetryPollScheduler {
+
+    private static final String TAG = "TelemetryPoll";
+
+    static final long MOVING_RECORDING_INTERVAL_MS = 200;
+    static final long MOVING_INTERVAL_MS = 500;
+    static final long RECORDING_INTERVAL_MS = 1000;
+    static final long PARKED_INTERVAL_MS = 5000;
+    static final long CHARGING_INTERVAL_MS = 10000;
+    static final long FAULT_BURST_INTERVAL_MS = 200;
+    static final int FAULT_BURST_POLLS = 5;
+    static final long BMS_MIN_INTERVAL_MS = 1000;
+    static final int MAX_BACKOFF_SHIFT = 2;
+
+    /** Writes the poll requests. */
+    public interface Poller {
+        void pollRunningData();
+        void pollBMSData();
+    }
+
+    private final Poller poller;
+    private final RequestCorrelator.Scheduler scheduler;
+    private final Runnable tick = this::tick;
+
+    private boolean running;
+    private boolean recording;
+    private boolean moving;
+    private boolean charging;
+    private int lastFaultCode;
+    private int burstRemaining;
+    private boolean awaitingRunningData;
+    private int missedPolls;
+    private long msSinceBms;
+    // Delay of the pending tick; 0 while an immediate poll is pending
+    private long scheduledIntervalMs;
+
+    public TelemetryPollScheduler(Poller poller, RequestCorrelator.Scheduler scheduler) {
+        this.poller = poller;
+        this.scheduler = scheduler;
+    }
+
+    /** Start polling now. State from a previous connection is discarded. */
+    public void start() {
+        if (running) return;
+        running = true;
+        moving = false;
+        charging = false;
+        lastFaultCode = 0;
+        burstRemaining = 0;
+        awaitingRunningData = false;
+        missedPolls = 0;
+        msSinceBms = Long.MAX_VALUE / 2; // poll A1 on the first tick
+        scheduledIntervalMs = 0;
+        scheduler.schedule(tick, 0);
+        ProtocolLog.d(TAG, "Polling started");
+    }
+
+    public void stop() {
+        if (!running) return;
+        running = false;
+        scheduler.cancel(tick);
+        ProtocolLog.d(TAG, "Polling stopped");
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** A ride recording started or stopped. */
+    public void setRecording(boolean recording) {
+        if (this.recording == recording) return;
+        this.recording = recording;
+        rescheduleIfChanged();
+    }
+
+    /** A0 arrived (changed or first of its kind). */
+    public void onRunningData(boolean moving, int faultCode) {
+        onRunningDataUnchanged();
+        this.moving = moving;
+        boolean newFault = faultCode != 0 && faultCode != lastFaultCode;
+        lastFaultCode = faultCode;
+        if (newFault) {
+            ProtocolLog.i(TAG, "New fault 0x" + Integer.toHexString(faultCode) + " - polling burst");
+            burstRemaining = FAULT_BURST_POLLS;
+            // Poll again right away; the burst continues from there
+            if (running) {
+                scheduler.cancel(tick);
+                msSinceBms -= scheduledIntervalMs;
+                scheduledIntervalMs = 0;
+                scheduler.schedule(tick, 0);
+            }
+            return;
+        }
+        rescheduleIfChanged();
+    }
+
+    /** A0 arrived but was identical to the previous one. */
+    public void onRunningDataUnchanged() {
+        awaitingRunningData = false;
+        if (missedPolls > 0) {
+            missedPolls = 0;
+            rescheduleIfChanged();
+        }
+    }
+
+    /** A1 arrived. */
+    public void onBMSData(boolean charging) {
+        this.charging = charging;
+        rescheduleIfChanged();
+    }
+
+    /** Poll interval for the current state, including link backoff. */
+    public long getIntervalMs() {
+        long interval;
+        if (burstRemaining > 0) {
+            return FAULT_BURST_INTERVAL_MS;
+        } else if (moving) {
+            interval = recording ? MOVING_RECORDING_INTERVAL_MS : MOVING_INTERVAL_MS;
+        } else if (recording) {
+            interval = RECORDING_INTERVAL_MS;
+        } else if (charging) {
+            interval = CHARGING_INTERVAL_MS;
+        } else {
+            interval = PARKED_INTERVAL_MS;
+        }
+        int shift = Math.min(missedPolls, MAX_BACKOFF_SHIFT);
+        return interval << shift;
+    }
+
+    private void tick() {
+        if (!running) return;
+        if (awaitingRunningData) {
+            missedPolls++;
+            ProtocolLog.w(TAG, "A0 poll unanswered (" + missedPolls + " in a row)");
+        }
+        awaitingRunningData = true;
+        poller.pollRunningData();
+        if (msSinceBms >= BMS_MIN_INTERVAL_MS) {
+            msSinceBms = 0;
+            poller.pollBMSData();
+        }
+        if (burstRemaining > 0) burstRemaining--;
+
+        long interval = getIntervalMs();
+        msSinceBms += interval;
+        schedule(interval);
+    }
+
+    /** Move the next poll if the state change altered the interval. */
+    private void rescheduleIfChanged() {
+        if (!running || scheduledIntervalMs == 0) return;
+        long interval = getIntervalMs();
+        if (interval == scheduledIntervalMs) return;
+        scheduler.cancel(tick);
+        // tick() already counted the old interval towards A1; count the new one instead.
+        // Time already waited is not known, so A1 errs towards later, never sooner
+        msSinceBms += interval - scheduledIntervalMs;
+        schedule(interval);
+    }
+
+    private void schedule(long interval) {
+        if (interval != scheduledIntervalMs) {
+            ProtocolLog.d(TAG, "Poll interval " + interval + "ms (moving=" + moving
+                    + " recording=" + recording + " charging=" + charging
+                    + " burst=" + burstRemaining + " missed=" + missedPolls + ")");
+        }
+        scheduledIntervalMs = interval;
+        scheduler.schedule(tick, interval);
+    }
+}
@@ -0,0 +1,115 @@
+package com.pure.gen3firmwareupdater.services;
+
+import com.pure.gen3firmwareupdater.TrafficCapture;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Plays a {@link TrafficCapture} file back, either at the original pace or as fast
+ * as possible.
+ *
+ * The file is memory-mapped read-only and records are copied into one reused buffer,
+ * so replay itself adds almost nothing to a profile of whatever consumes it:
+ * - {@link #replayInto(PacketRouter, boolean)} feeds the RX side through a fresh
+ *   FrameAssembler into a router - the decode path only.
+ * - {@link #replay(RecordHandler, boolean)} with a handler that calls
+ *   {@code ScooterConnectionService.onDataReceived(...)} drives the whole
+ *   parse -> change filter -> listener -> recorder pipeline without a scooter.
+ *
+ * Replay runs on the calling thread; {@link #stop()} may be called from any thread.
+ */
+public class TrafficReplay {
+
+    /** Receives each record in file order. The buffer is reused - copy what you keep. */
+    public interface RecordHandler {
+        void onRecord(int direction, long timeMillis, int protocolHeader,
+                      byte[] buf, int offset, int length);
+    }
+
+    private final MappedByteBuffer map;
+    private final long startMillis;
+    private final byte[] record = new byte[0xFFFF];
+    private volatile boolean stopped;
+
+    private TrafficReplay(MappedByteBuffer map) throws IOException {
+        this.map = map;
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        if (map.limit() < TrafficCapture.FILE_HEADER_SIZE || map.getInt(0) != TrafficCapture.MAGIC) {
+            throw new IOException("Not a capture file");
+        }
+        int version = map.getShort(4) & 0xFFFF;
+        if (version != TrafficCapture.VERSION) {
+            throw new IOException("Unsupported capture version " + version);
+        }
+        this.startMillis = map.getLong(8);
+    }
+
+    /** Map a capture file for replay. */
+    public static TrafficReplay open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            return new TrafficReplay(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /** Capture start, epoch millis. */
+    public long getStartMillis() { return startMillis; }
+
+    /** Abort a replay in progress. */
+    public void stop() { stopped = true; }
+
+    /**
+     * Feed every RX record through a {@link FrameAssembler} into {@code router}.
+     *
+     * @return number of frames routed
+     */
+    public long replayInto(PacketRouter router, boolean realTime) throws InterruptedException {
+        FrameAssembler assembler = new FrameAssembler(router::routeVerifiedPacket);
+        replay((direction, timeMillis, header, buf, offset, length) -> {
+            if (direction == TrafficCapture.DIRECTION_RX) assembler.feed(buf, offset, length);
+        }, realTime);
+        return assembler.getFramesOut();
+    }
+
+    /**
+     * Deliver every record to {@code handler}. With {@code realTime} the original gaps
+     * between records are reproduced; otherwise records are delivered back to back.
+     *
+     * @return number of records delivered
+     */
+    public long replay(RecordHandler handler, boolean realTime) throws InterruptedException {
+        stopped = false;
+        long wallStart = System.currentTimeMillis();
+        long count = 0;
+        int pos = TrafficCapture.FILE_HEADER_SIZE;
+        int limit = map.limit();
+
+        while (!stopped && pos + TrafficCapture.RECORD_HEADER_SIZE <= limit) {
+            long time = map.getInt(pos) & 0xFFFFFFFFL;
+            int direction = map.get(pos + 4) & 0xFF;
+            int header = map.get(pos + 5) & 0xFF;
+            int length = map.getShort(pos + 6) & 0xFFFF;
+            if (direction == TrafficCapture.DIRECTION_END) break;
+
+            int payload = pos + TrafficCapture.RECORD_HEADER_SIZE;
+            if (payload + length > limit) break;   // torn last record
+            map.position(payload);
+            map.get(record, 0, length);
+            pos = payload + length;
+
+            if (realTime) {
+                long wait = time - (System.currentTimeMillis() - wallStart);
+                if (wait > 0) Thread.sleep(wait);
+            }
+            handler.onRecord(direction, time, header, record, 0, length);
+            count++;
+        }
+        return count;
+    }
+}
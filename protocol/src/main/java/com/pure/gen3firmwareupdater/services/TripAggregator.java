@@ -0,0 +1,229 @@
+package com.pure.gen3firmwareupdater.services;
+
+import com.pure.gen3firmwareupdater.BMSDataInfo;
+import com.pure.gen3firmwareupdater.RunningDataInfo;
+import com.pure.gen3firmwareupdater.TripDataInfo;
+
+/**
+ * Incremental trip statistics for one ride, kept in constant memory.
+ *
+ * Fed with every A0/A1 (and A2, when the scooter sends it) while a ride is
+ * recorded, it maintains running totals instead of keeping samples around:
+ * - distance integrated from A0 speed (trapezoidal), cross-checked against the odometer
+ * - wall-clock and moving duration
+ * - max speed, max temperatures, OR of all fault bits seen
+ * - energy drawn from / returned to the battery, integrated from A1 voltage x current
+ *
+ * Gaps longer than {@link #MAX_GAP_MS} between samples (e.g. a dropped connection)
+ * are not integrated across, so a reconnect doesn't add phantom distance or energy.
+ *
+ * Not thread-safe: feed it from one thread. {@link #snapshot()} returns a copy.
+ */
+public class TripAggregator {
+
+    /** Longest interval between two samples that is still integrated. */
+    static final long MAX_GAP_MS = 5000;
+
+    /**
+     * Point-in-time copy of the aggregated trip statistics.
+     * Device-reported (A2) values are only meaningful when {@link #hasDeviceTripData} is true.
+     */
+    public static class TripSummary {
+        public long startedAt;                 // epoch millis of reset()
+        public long lastSampleAt;              // epoch millis of the latest A0/A1
+        public int durationSeconds;            // lastSampleAt - startedAt
+        public int movingSeconds;              // time with non-zero speed
+        public double distanceKm;              // integrated from A0 speed
+        public int odometerStartKm = -1;       // first A0 total distance (-1 if none)
+        public int odometerEndKm = -1;         // latest A0 total distance (-1 if none)
+        public int maxSpeedKmh;
+        public double avgMovingSpeedKmh;       // distanceKm / movingSeconds
+        public double energyUsedWh;            // discharge energy from A1
+        public double energyRegenWh;           // energy returned while not charging
+        public int batteryStartPercent = -1;   // first A1 SOC (-1 if none)
+        public int batteryEndPercent = -1;     // latest A1 SOC (-1 if none)
+        public int maxMotorTemp;
+        public int maxControllerTemp;
+        public int maxBatteryTemp;
+        public int faultCodeMask;              // OR of every A0 fault bitmap seen
+        public int runningSamples;             // A0 packets aggregated
+        public int bmsSamples;                 // A1 packets aggregated
+
+        public boolean hasDeviceTripData;      // at least one A2 received
+        public double deviceTripDistanceKm;
+        public int deviceRideTimeSeconds;
+        public int deviceMaxSpeedKmh;
+        public int deviceEnergyWh;
+
+        /** Odometer-based distance, or -1 if fewer than one A0 was seen. */
+        public int getOdometerDeltaKm() {
+            return (odometerStartKm < 0 || odometerEndKm < 0) ? -1 : odometerEndKm - odometerStartKm;
+        }
+
+        @Override
+        public String toString() {
+            return "TripSummary{" +
+                    "duration=" + durationSeconds + "s" +
+                    ", moving=" + movingSeconds + "s" +
+                    ", distance=" + String.format("%.2f km", distanceKm) +
+                    ", odoDelta=" + getOdometerDeltaKm() + " km" +
+                    ", maxSpeed=" + maxSpeedKmh + " km/h" +
+                    ", energy=" + String.format("%.1f Wh", energyUsedWh) +
+                    ", regen=" + String.format("%.1f Wh", energyRegenWh) +
+                    ", samples=" + runningSamples + "/" + bmsSamples +
+                    ", deviceTrip=" + hasDeviceTripData +
+                    '}';
+        }
+    }
+
+    private final TripSummary totals = new TripSummary();
+
+    // Integration state
+    private long lastRunningAt;
+    private int lastSpeedKmh;
+    private long lastBmsAt;
+    private double lastPowerW;
+    private long movingMillis;     // sub-second precision; exposed in whole seconds
+
+    public TripAggregator() {
+        reset(0);
+    }
+
+    /** Start a new trip. */
+    public void reset(long startedAtMillis) {
+        TripSummary t = totals;
+        t.startedAt = startedAtMillis;
+        t.lastSampleAt = startedAtMillis;
+        t.durationSeconds = 0;
+        t.movingSeconds = 0;
+        t.distanceKm = 0;
+        t.odometerStartKm = -1;
+        t.odometerEndKm = -1;
+        t.maxSpeedKmh = 0;
+        t.avgMovingSpeedKmh = 0;
+        t.energyUsedWh = 0;
+        t.energyRegenWh = 0;
+        t.batteryStartPercent = -1;
+        t.batteryEndPercent = -1;
+        t.maxMotorTemp = 0;
+        t.maxControllerTemp = 0;
+        t.maxBatteryTemp = 0;
+        t.faultCodeMask = 0;
+        t.runningSamples = 0;
+        t.bmsSamples = 0;
+        t.hasDeviceTripData = false;
+        t.deviceTripDistanceKm = 0;
+        t.deviceRideTimeSeconds = 0;
+        t.deviceMaxSpeedKmh = 0;
+        t.deviceEnergyWh = 0;
+
+        lastRunningAt = 0;
+        lastSpeedKmh = 0;
+        lastBmsAt = 0;
+        lastPowerW = 0;
+        movingMillis = 0;
+    }
+
+    /** Aggregate one A0 running data packet received at {@code nowMillis}. */
+    public void onRunningData(RunningDataInfo data, long nowMillis) {
+        if (data == null) return;
+        TripSummary t = totals;
+        int speed = data.currentSpeed;
+
+        if (lastRunningAt > 0) {
+            long dt = nowMillis - lastRunningAt;
+            if (dt > 0 && dt <= MAX_GAP_MS) {
+                // Trapezoidal rule: average of the two speeds over the interval
+                t.distanceKm += (lastSpeedKmh + speed) / 2.0 * dt / 3_600_000.0;
+                if (speed > 0 || lastSpeedKmh > 0) {
+                    movingMillis += dt;
+                }
+            }
+        }
+        lastRunningAt = nowMillis;
+        lastSpeedKmh = speed;
+
+        if (t.odometerStartKm < 0) t.odometerStartKm = data.totalDistance;
+        t.odometerEndKm = data.totalDistance;
+        if (speed > t.maxSpeedKmh) t.maxSpeedKmh = speed;
+        if (data.motorTemp > t.maxMotorTemp) t.maxMotorTemp = data.motorTemp;
+        if (data.controllerTemp > t.maxControllerTemp) t.maxControllerTemp = data.controllerTemp;
+        t.faultCodeMask |= data.faultCode;
+        t.runningSamples++;
+        touch(nowMillis);
+    }
+
+    /** Aggregate one A1 BMS packet received at {@code nowMillis}. */
+    public void onBMSData(BMSDataInfo data, long nowMillis) {
+        if (data == null) return;
+        TripSummary t = totals;
+        // Signed: negative current = discharging
+        double powerW = data.batteryVoltage * data.batteryCurrent;
+
+        if (lastBmsAt > 0) {
+            long dt = nowMillis - lastBmsAt;
+            if (dt > 0 && dt <= MAX_GAP_MS) {
+                double wh = (lastPowerW + powerW) / 2.0 * dt / 3_600_000.0;
+                if (wh < 0) {
+                    t.energyUsedWh += -wh;
+                } else if (!data.isCharging) {
+                    t.energyRegenWh += wh;
+                }
+            }
+        }
+        lastBmsAt = nowMillis;
+        lastPowerW = powerW;
+
+        if (t.batteryStartPercent < 0) t.batteryStartPercent = data.batteryPercent;
+        t.batteryEndPercent = data.batteryPercent;
+        if (data.batteryTemperature > t.maxBatteryTemp) t.maxBatteryTemp = data.batteryTemperature;
+        t.bmsSamples++;
+        touch(nowMillis);
+    }
+
+    /** Record the scooter's own trip counters (A2). The latest packet wins. */
+    public void onTripData(TripDataInfo data) {
+        if (data == null) return;
+        TripSummary t = totals;
+        t.hasDeviceTripData = true;
+        t.deviceTripDistanceKm = data.tripDistance;
+        t.deviceRideTimeSeconds = data.rideTimeSeconds;
+        t.deviceMaxSpeedKmh = data.maxSpeed;
+        t.deviceEnergyWh = data.energyWh;
+    }
+
+    private void touch(long nowMillis) {
+        if (nowMillis > totals.lastSampleAt) totals.lastSampleAt = nowMillis;
+    }
+
+    /** Copy of the current totals with derived fields filled in. */
+    public TripSummary snapshot() {
+        TripSummary t = totals;
+        TripSummary s = new TripSummary();
+        s.startedAt = t.startedAt;
+        s.lastSampleAt = t.lastSampleAt;
+        s.durationSeconds = (int) Math.max(0, (t.lastSampleAt - t.startedAt) / 1000);
+        s.movingSeconds = (int) (movingMillis / 1000);
+        s.distanceKm = t.distanceKm;
+        s.odometerStartKm = t.odometerStartKm;
+        s.odometerEndKm = t.odometerEndKm;
+        s.maxSpeedKmh = t.maxSpeedKmh;
+        s.avgMovingSpeedKmh = movingMillis > 0 ? t.distanceKm / (movingMillis / 3_600_000.0) : 0;
+        s.energyUsedWh = t.energyUsedWh;
+        s.energyRegenWh = t.energyRegenWh;
+        s.batteryStartPercent = t.batteryStartPercent;
+        s.batteryEndPercent = t.batteryEndPercent;
+        s.maxMotorTemp = t.maxMotorTemp;
+        s.maxControllerTemp = t.maxControllerTemp;
+        s.maxBatteryTemp = t.maxBatteryTemp;
+        s.faultCodeMask = t.faultCodeMask;
+        s.runningSamples = t.runningSamples;
+        s.bmsSamples = t.bmsSamples;
+        s.hasDeviceTripData = t.hasDeviceTripData;
+        s.deviceTripDistanceKm = t.deviceTripDistanceKm;
+        s.deviceRideTimeSeconds = t.deviceRideTimeSeconds;
+        s.deviceMaxSpeedKmh = t.deviceMaxSpeedKmh;
+        s.deviceEnergyWh = t.deviceEnergyWh;
+        return s;
+    }
+}
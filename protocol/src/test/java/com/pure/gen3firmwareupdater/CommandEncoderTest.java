@@ -0,0 +1,89 @@
+package com.pure.gen3firmwareupdater;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CommandEncoderTest {
+
+    @Test
+    public void requestFramesAreCachedPerHeader() {
+        byte[] a0 = CommandEncoder.request(CommandEncoder.HEADER_STANDARD, CommandEncoder.CMD_RUNNING_DATA);
+        byte[] ab = CommandEncoder.request(CommandEncoder.HEADER_ALTERNATE, CommandEncoder.CMD_RUNNING_DATA);
+
+        assertSame(a0, CommandEncoder.request(CommandEncoder.HEADER_STANDARD, CommandEncoder.CMD_RUNNING_DATA));
+        assertEquals(CommandEncoder.REQUEST_LENGTH, a0.length);
+        assertEquals(0xF0, a0[0] & 0xFF);
+        assertEquals(0xA0, a0[1] & 0xFF);
+        assertEquals(CommandEncoder.REQUEST_LENGTH, a0[2]);
+        assertTrue(ProtocolUtils.verifyCRC16(a0, 0, a0.length));
+
+        assertEquals(0xAB, ab[0] & 0xFF);
+        assertTrue(ProtocolUtils.verifyCRC16(ab, 0, ab.length));
+    }
+
+    @Test
+    public void uncachedHeaderIsEncodedOnEachCall() {
+        byte[] first = CommandEncoder.request(0x55, CommandEncoder.CMD_VERSION_INFO);
+
+        assertNotSame(first, CommandEncoder.request(0x55, CommandEncoder.CMD_VERSION_INFO));
+        assertEquals(0x55, first[0] & 0xFF);
+        assertTrue(ProtocolUtils.verifyCRC16(first, 0, first.length));
+    }
+
+    @Test
+    public void firmwareCommandsHaveNoLengthByte() {
+        for (int cmd : new int[] {CommandEncoder.CMD_REQUEST_UPGRADE, CommandEncoder.CMD_ERASE_MEMORY,
+                CommandEncoder.CMD_COMPLETE_UPLOAD}) {
+            byte[] frame = CommandEncoder.request(CommandEncoder.HEADER_STANDARD, cmd);
+
+            assertEquals(CommandEncoder.FIRMWARE_COMMAND_LENGTH, frame.length);
+            assertEquals(cmd, frame[1] & 0xFF);
+            assertTrue(ProtocolUtils.verifyCRC16(frame, 0, frame.length));
+        }
+    }
+
+    @Test
+    public void controlFrameLayout() {
+        CommandEncoder encoder = new CommandEncoder();
+        byte[] frame = encoder.encodeControl(CommandEncoder.HEADER_STANDARD, 0x0131, 18, 25);
+
+        assertEquals(CommandEncoder.CONTROL_LENGTH, frame.length);
+        assertEquals(0xC0, frame[1] & 0xFF);
+        assertEquals(CommandEncoder.CONTROL_LENGTH, frame[2]);
+        assertEquals(0x01, frame[3]);
+        assertEquals(0x31, frame[4]);
+        assertEquals(18, frame[5]);
+        assertEquals(25, frame[6]);
+        for (int i = 7; i < 13; i++) assertEquals(0, frame[i]);
+        assertTrue(ProtocolUtils.verifyCRC16(frame, 0, frame.length));
+
+        // The buffer is reused
+        assertSame(frame, encoder.encodeControl(CommandEncoder.HEADER_STANDARD, 0, 0, 0));
+    }
+
+    @Test
+    public void uploadDataPadsShortChunk() {
+        byte[] data = new byte[200];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) i;
+        byte[] frame = new CommandEncoder().encodeUploadData(CommandEncoder.HEADER_STANDARD, 0x0102, data, 128, 72);
+
+        assertEquals(CommandEncoder.UPLOAD_DATA_LENGTH, frame.length);
+        assertEquals(0xD2, frame[1] & 0xFF);
+        assertEquals(0x01, frame[2]);
+        assertEquals(0x02, frame[3]);
+        assertEquals(CommandEncoder.UPLOAD_CHUNK_SIZE, frame[5] & 0xFF);
+        assertEquals((byte) 128, frame[6]);
+        assertEquals((byte) 199, frame[6 + 71]);
+        for (int i = 6 + 72; i < 6 + CommandEncoder.UPLOAD_CHUNK_SIZE; i++) assertEquals((byte) 0xFF, frame[i]);
+        assertTrue(ProtocolUtils.verifyCRC16(frame, 0, frame.length));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void uploadDataRejectsOversizedChunk() {
+        new CommandEncoder().encodeUploadData(CommandEncoder.HEADER_STANDARD, 0, new byte[256], 0, 129);
+    }
+}
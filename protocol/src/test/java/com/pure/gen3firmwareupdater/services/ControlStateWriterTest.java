@@ -0,0 +1,160 @@
+package com.pure.gen3firmwareupdater.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ControlStateWriterTest {
+
+    private static final int GEAR = 0x0001;
+
+    private final SimulatedClock clock = new SimulatedClock();
+    private final List<Integer> written = new ArrayList<>();
+    private final List<Integer> confirmed = new ArrayList<>();
+    private final List<int[]> rejected = new ArrayList<>();
+    private int runningDataRequests;
+    private ControlStateWriter writer;
+
+    @Before
+    public void setUp() {
+        writer = new ControlStateWriter(new ControlStateWriter.ControlSender() {
+            @Override
+            public boolean sendControl(int controlFlags, int cruiseSpeed, int maxSpeed) {
+                assertEquals(15, cruiseSpeed);
+                assertEquals(25, maxSpeed);
+                written.add(controlFlags);
+                return true;
+            }
+
+            @Override
+            public void requestRunningData() {
+                runningDataRequests++;
+            }
+        }, clock);
+        writer.setListener(new ControlStateWriter.Listener() {
+            @Override
+            public void onControlConfirmed(int controlFlags) {
+                confirmed.add(controlFlags);
+            }
+
+            @Override
+            public void onControlRejected(int mask, int actualFlags) {
+                rejected.add(new int[] {mask, actualFlags});
+            }
+        });
+    }
+
+    @Test
+    public void togglesAreMergedIntoOneConfirmedWrite() {
+        report(GEAR);
+        writer.setFlag(ControlStateWriter.FLAG_HEADLIGHT, true);
+        writer.setFlag(ControlStateWriter.FLAG_CRUISE, true);
+        clock.advance(ControlStateWriter.COALESCE_WINDOW_MS);
+
+        int expected = GEAR | ControlStateWriter.FLAG_HEADLIGHT | ControlStateWriter.FLAG_CRUISE;
+        assertEquals(Arrays.asList(expected), written);
+        assertEquals(1, runningDataRequests);
+        assertTrue(writer.hasPendingChanges());
+
+        report(expected);
+
+        assertEquals(Arrays.asList(expected), confirmed);
+        assertFalse(writer.hasPendingChanges());
+        assertEquals(0, clock.pendingTasks());
+    }
+
+    @Test
+    public void overlayShowsUnconfirmedChanges() {
+        report(GEAR | ControlStateWriter.FLAG_LOCK);
+        writer.setFlag(ControlStateWriter.FLAG_HEADLIGHT, true);
+        writer.setFlag(ControlStateWriter.FLAG_LOCK, false);
+
+        assertEquals(GEAR | ControlStateWriter.FLAG_HEADLIGHT,
+                writer.overlay(GEAR | ControlStateWriter.FLAG_LOCK));
+
+        // Still shown while the write is in flight
+        clock.advance(ControlStateWriter.COALESCE_WINDOW_MS);
+        assertEquals(GEAR | ControlStateWriter.FLAG_HEADLIGHT,
+                writer.overlay(GEAR | ControlStateWriter.FLAG_LOCK));
+    }
+
+    @Test
+    public void toggledBackWithinTheWindowWritesNothing() {
+        report(GEAR);
+        writer.setFlag(ControlStateWriter.FLAG_HEADLIGHT, true);
+        writer.setFlag(ControlStateWriter.FLAG_HEADLIGHT, false);
+        clock.advance(ControlStateWriter.COALESCE_WINDOW_MS);
+
+        assertTrue(written.isEmpty());
+        assertFalse(writer.hasPendingChanges());
+    }
+
+    @Test
+    public void unconfirmedWriteIsRetriedThenRolledBack() {
+        report(GEAR);
+        writer.setFlag(ControlStateWriter.FLAG_HEADLIGHT, true);
+        clock.advance(ControlStateWriter.COALESCE_WINDOW_MS);
+        for (int i = 0; i < ControlStateWriter.MAX_ATTEMPTS; i++) {
+            clock.advance(ControlStateWriter.CONFIRM_TIMEOUT_MS);
+        }
+
+        assertEquals(ControlStateWriter.MAX_ATTEMPTS, written.size());
+        assertEquals(1, rejected.size());
+        assertEquals(ControlStateWriter.FLAG_HEADLIGHT, rejected.get(0)[0]);
+        assertEquals(GEAR, rejected.get(0)[1]);
+        assertFalse(writer.hasPendingChanges());
+        assertEquals(GEAR, writer.overlay(GEAR));
+    }
+
+    @Test
+    public void nothingIsWrittenBeforeTheFirstA0() {
+        writer.setFlag(ControlStateWriter.FLAG_HEADLIGHT, true);
+        clock.advance(ControlStateWriter.COALESCE_WINDOW_MS);
+
+        assertTrue(written.isEmpty());
+        assertEquals(1, runningDataRequests);
+
+        report(GEAR);
+        clock.advance(ControlStateWriter.COALESCE_WINDOW_MS);
+        assertEquals(Arrays.asList(GEAR | ControlStateWriter.FLAG_HEADLIGHT), written);
+    }
+
+    @Test
+    public void changeMadeDuringAWriteFollowsItsConfirmation() {
+        report(GEAR);
+        writer.setFlag(ControlStateWriter.FLAG_HEADLIGHT, true);
+        clock.advance(ControlStateWriter.COALESCE_WINDOW_MS);
+        writer.setFlag(ControlStateWriter.FLAG_CRUISE, true);
+        clock.advance(ControlStateWriter.COALESCE_WINDOW_MS);
+        assertEquals(1, written.size());
+
+        report(GEAR | ControlStateWriter.FLAG_HEADLIGHT);
+        clock.advance(ControlStateWriter.COALESCE_WINDOW_MS);
+
+        assertEquals(GEAR | ControlStateWriter.FLAG_HEADLIGHT | ControlStateWriter.FLAG_CRUISE,
+                (int) written.get(1));
+    }
+
+    @Test
+    public void resetDropsEverything() {
+        report(GEAR);
+        writer.setFlag(ControlStateWriter.FLAG_HEADLIGHT, true);
+        clock.advance(ControlStateWriter.COALESCE_WINDOW_MS);
+
+        writer.reset();
+
+        assertFalse(writer.hasPendingChanges());
+        assertEquals(0, clock.pendingTasks());
+    }
+
+    private void report(int controlFlags) {
+        writer.onRunningData(controlFlags, 15, 25);
+    }
+}
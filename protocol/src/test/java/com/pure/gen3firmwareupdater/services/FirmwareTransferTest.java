@@ -0,0 +1,249 @@
+package com.pure.gen3firmwareupdater.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.pure.gen3firmwareupdater.CommandEncoder;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Firmware flashes against {@link SimulatedScooter}. MTU 23 splits every 136-byte D2
+ * packet across seven writes that the scooter has to reassemble; MTU 247 sends each
+ * in one. Scooter and transfer share a {@link SimulatedClock}, so latencies and
+ * timeouts pass in virtual time.
+ */
+public class FirmwareTransferTest {
+
+    private static final int IMAGE_SIZE = 16 * 1024;
+
+    private SimulatedClock clock;
+    private SimulatedScooter scooter;
+
+    @After
+    public void tearDown() {
+        if (scooter != null) scooter.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void windowedFlashWithLossAndFragmentation() throws Exception {
+        scooter = lossyScooter(23, 0.02);
+        byte[] image = image(IMAGE_SIZE);
+
+        flashResumingOnFailure(image, true);
+
+        assertFlashed(image);
+    }
+
+    @Test(timeout = 10000)
+    public void windowedFlashAtLargeMtuWithLoss() throws Exception {
+        scooter = lossyScooter(247, 0.02);
+        byte[] image = image(IMAGE_SIZE);
+
+        flashResumingOnFailure(image, true);
+
+        assertFlashed(image);
+    }
+
+    /**
+     * Stop-and-wait does not retransmit: a lost packet or reply fails the run and the
+     * upload continues from the last checkpoint, as the app does.
+     */
+    @Test(timeout = 10000)
+    public void stopAndWaitFlashWithLossAndFragmentation() throws Exception {
+        scooter = lossyScooter(23, 0.005);
+        byte[] image = image(IMAGE_SIZE);
+
+        flashResumingOnFailure(image, false);
+
+        assertFlashed(image);
+    }
+
+    @Test(timeout = 10000)
+    public void windowedFlashWithCoalescedAndSplitAcks() throws Exception {
+        scooter = lossyScooter(247, 0);
+        // Acks ready close together share notifications cut every 5 bytes, so most
+        // notifications end one 7-byte ack and start the next
+        scooter.setCoalesceMs(5);
+        scooter.setFragmentSize(5);
+        byte[] image = image(IMAGE_SIZE);
+        RecordingListener listener = new RecordingListener();
+
+        newTransfer(listener, true).run(image);
+
+        assertFlashed(image);
+        assertTrue(listener.log.toString().contains("(0 retransmitted, 0 rejected"));
+    }
+
+    @Test(timeout = 10000)
+    public void windowedFlashWhenTransportDoesNotCopyWrites() throws Exception {
+        // A transport that queues the caller's array, as BLEManager did before it copied
+        scooter = lossyScooter(247, 0);
+        scooter.setCopyWrites(false);
+        byte[] image = image(IMAGE_SIZE);
+
+        newTransfer(new RecordingListener(), true).run(image);
+
+        assertFlashed(image);
+    }
+
+    @Test(timeout = 10000)
+    public void windowedFallsBackToStopAndWaitWithoutWriteWithoutResponse() throws Exception {
+        scooter = lossyScooter(247, 0);
+        scooter.setWriteWithoutResponseSupported(false);
+        byte[] image = image(IMAGE_SIZE);
+        RecordingListener listener = new RecordingListener();
+
+        newTransfer(listener, true).run(image);
+
+        assertFlashed(image);
+        assertTrue(listener.log.toString().contains("using stop-and-wait mode"));
+    }
+
+    @Test(timeout = 10000)
+    public void resumesAfterDisconnect() throws Exception {
+        for (boolean windowed : new boolean[] {true, false}) {
+            scooter = lossyScooter(23, 0);
+            byte[] image = image(IMAGE_SIZE);
+            RecordingListener listener = new RecordingListener();
+            listener.dropLinkAt(50, scooter::disconnect);
+
+            assertRunFails(newTransfer(listener, windowed), image);
+            assertTrue(listener.checkpoint.get() > 0);
+            scooter.reconnect();
+
+            assertTrue(newTransfer(listener, windowed).resume(image, listener.checkpoint.get()));
+            assertFlashed(image);
+            assertEquals(IMAGE_SIZE / CommandEncoder.UPLOAD_CHUNK_SIZE, listener.checkpoint.get());
+            scooter.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void resumeRefusedAfterPowerCycle() throws Exception {
+        for (boolean windowed : new boolean[] {true, false}) {
+            scooter = lossyScooter(23, 0);
+            byte[] image = image(IMAGE_SIZE);
+            RecordingListener listener = new RecordingListener();
+            listener.dropLinkAt(50, scooter::powerCycle);
+
+            assertRunFails(newTransfer(listener, windowed), image);
+            int checkpoint = listener.checkpoint.get();
+            assertTrue(checkpoint > 0);
+            scooter.reconnect();
+
+            assertFalse(newTransfer(listener, windowed).resume(image, checkpoint));
+            assertEquals(0, listener.resumedAt.get());
+            newTransfer(listener, windowed).run(image);
+            assertFlashed(image);
+            scooter.shutdown();
+        }
+    }
+
+    // ==================================================================================
+    // HELPERS
+    // ==================================================================================
+
+    private SimulatedScooter lossyScooter(int mtu, double loss) {
+        clock = new SimulatedClock();
+        SimulatedScooter s = new SimulatedScooter(42, clock);
+        s.setMtu(mtu);
+        // Notifications are capped at MTU - 3 like a real link
+        s.setFragmentSize(mtu - 3);
+        s.setWriteLatencyMs(2);
+        s.setResponseLatencyMs(2);
+        s.setEraseTimeMs(50);
+        s.setPacketLoss(loss);
+        return s;
+    }
+
+    private static byte[] image(int size) {
+        byte[] image = new byte[size];
+        new Random(7).nextBytes(image);
+        return image;
+    }
+
+    private FirmwareTransfer newTransfer(RecordingListener listener, boolean windowed) {
+        FirmwareTransfer transfer = new FirmwareTransfer(scooter, listener);
+        transfer.setWindowed(windowed);
+        transfer.setClock(clock);
+        return transfer;
+    }
+
+    /** Run, then resume from the last checkpoint (or start over) until the flash completes. */
+    private void flashResumingOnFailure(byte[] image, boolean windowed) throws Exception {
+        RecordingListener listener = new RecordingListener();
+        Exception last = null;
+        for (int attempt = 0; attempt < 20; attempt++) {
+            try {
+                int from = listener.checkpoint.get();
+                if (from == 0 || !newTransfer(listener, windowed).resume(image, from)) {
+                    newTransfer(listener, windowed).run(image);
+                }
+                return;
+            } catch (Exception e) {
+                last = e;
+            }
+        }
+        throw new AssertionError("Flash did not complete: " + last.getMessage());
+    }
+
+    private static void assertRunFails(FirmwareTransfer transfer, byte[] image) {
+        try {
+            transfer.run(image);
+            fail("Upload should fail when the link drops");
+        } catch (Exception expected) {
+            // Link dropped mid-upload
+        }
+    }
+
+    private void assertFlashed(byte[] image) {
+        // D3 is not acknowledged; give the scooter time to process it
+        clock.advance(1000);
+        assertTrue(scooter.isFlashComplete());
+        assertArrayEquals(image, Arrays.copyOf(scooter.getFlashedImage(), image.length));
+    }
+
+    private static class RecordingListener implements FirmwareTransfer.Listener {
+        final AtomicInteger checkpoint = new AtomicInteger();
+        final AtomicInteger resumedAt = new AtomicInteger();
+        final StringBuffer log = new StringBuffer();
+        private final AtomicBoolean dropped = new AtomicBoolean();
+        private volatile int dropAt = -1;
+        private volatile Runnable drop;
+
+        void dropLinkAt(int packet, Runnable action) {
+            this.dropAt = packet;
+            this.drop = action;
+        }
+
+        @Override
+        public void onProgress(int current, int total, int percentage) {
+            if (current == dropAt && dropped.compareAndSet(false, true)) drop.run();
+        }
+
+        @Override
+        public void onLog(String message, String level) {
+            log.append(level).append(": ").append(message).append('\n');
+        }
+
+        @Override
+        public void onCheckpoint(int packetsAcknowledged) {
+            checkpoint.set(packetsAcknowledged);
+        }
+
+        @Override
+        public void onResumed(int fromPacket) {
+            resumedAt.set(fromPacket);
+        }
+    }
+}
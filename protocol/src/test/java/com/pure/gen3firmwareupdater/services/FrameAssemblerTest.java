@@ -0,0 +1,192 @@
+package com.pure.gen3firmwareupdater.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.pure.gen3firmwareupdater.ProtocolUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class FrameAssemblerTest {
+
+    private final List<byte[]> frames = new ArrayList<>();
+    private final List<Integer> corrupt = new ArrayList<>();
+    private FrameAssembler assembler;
+
+    @Before
+    public void setUp() {
+        assembler = new FrameAssembler(new FrameAssembler.FrameSink() {
+            @Override
+            public void onFrame(byte[] buf, int offset, int length) {
+                // Only valid during the callback
+                frames.add(Arrays.copyOfRange(buf, offset, offset + length));
+            }
+
+            @Override
+            public void onCorruptFrame(int packetType) {
+                corrupt.add(packetType);
+            }
+        });
+    }
+
+    @Test
+    public void frameSplitAcrossNotificationsIsReassembled() {
+        byte[] a0 = frame(0xA0, 25, 1);
+
+        assembler.feed(Arrays.copyOfRange(a0, 0, 2));
+        assembler.feed(Arrays.copyOfRange(a0, 2, 20));
+        assertEquals(0, frames.size());
+        assembler.feed(Arrays.copyOfRange(a0, 20, 25));
+
+        assertEquals(1, frames.size());
+        assertArrayEquals(a0, frames.get(0));
+        assertEquals(1, assembler.getReassembledFrames());
+        assertEquals(0, assembler.getBytesDiscarded());
+    }
+
+    @Test
+    public void mergedFramesInOneNotificationAreSplit() {
+        byte[] a0 = frame(0xA0, 25, 1);
+        byte[] b0 = frame(0xB0, 32, 2);
+        byte[] d2 = d2Ack(7);
+
+        assembler.feed(concat(a0, b0, d2));
+
+        assertEquals(3, frames.size());
+        assertArrayEquals(a0, frames.get(0));
+        assertArrayEquals(b0, frames.get(1));
+        assertArrayEquals(d2, frames.get(2));
+        assertEquals(1, assembler.getCoalescedNotifications());
+        assertEquals(0, assembler.getReassembledFrames());
+    }
+
+    @Test
+    public void splitAndMergedAtOnce() {
+        byte[] a0 = frame(0xA0, 25, 1);
+        byte[] a1 = frame(0xA1, 25, 2);
+        byte[] b0 = frame(0xB0, 32, 3);
+        byte[] stream = concat(a0, a1, b0);
+
+        // The tail of one frame and the head of the next in every notification
+        for (int start = 0; start < stream.length; start += 20) {
+            assembler.feed(Arrays.copyOfRange(stream, start, Math.min(start + 20, stream.length)));
+        }
+
+        assertEquals(3, frames.size());
+        assertArrayEquals(a0, frames.get(0));
+        assertArrayEquals(a1, frames.get(1));
+        assertArrayEquals(b0, frames.get(2));
+        assertEquals(3, assembler.getReassembledFrames());
+    }
+
+    @Test
+    public void resynchronizesPastGarbageAndCorruptFrames() {
+        byte[] a0 = frame(0xA0, 25, 1);
+        byte[] bad = frame(0xA1, 25, 2);
+        bad[10] ^= 0x55;
+        byte[] b0 = frame(0xB0, 32, 3);
+
+        assembler.feed(concat(new byte[] {0x00, 0x12, 0x34}, a0, bad, b0));
+
+        assertEquals(2, frames.size());
+        assertArrayEquals(a0, frames.get(0));
+        assertArrayEquals(b0, frames.get(1));
+        assertEquals(1, assembler.getCrcFailures());
+        assertEquals(Integer.valueOf(0xA1), corrupt.get(0));
+    }
+
+    @Test
+    public void corruptLengthByteDoesNotHoldBackLaterFrames() {
+        byte[] bad = frame(0xA0, 25, 1);
+        bad[2] = (byte) 0xF0;   // claims 240 bytes
+        byte[] b0 = frame(0xB0, 32, 2);
+        byte[] a1 = frame(0xA1, 25, 3);
+
+        assembler.feed(bad);
+        assertEquals(0, frames.size());
+        assembler.feed(b0);
+
+        // Delivered as soon as it is complete, not after 240 bytes
+        assertEquals(1, frames.size());
+        assertArrayEquals(b0, frames.get(0));
+        assertEquals(1, assembler.getCrcFailures());
+        assertEquals(Integer.valueOf(0xA0), corrupt.get(0));
+
+        assembler.feed(a1);
+        assertEquals(2, frames.size());
+        assertArrayEquals(a1, frames.get(1));
+    }
+
+    @Test
+    public void longFrameSplitAcrossNotificationsIsStillAwaited() {
+        byte[] b0 = frame(0xB0, 32, 2);
+
+        for (int start = 0; start < b0.length; start += 6) {
+            assembler.feed(Arrays.copyOfRange(b0, start, Math.min(start + 6, b0.length)));
+        }
+
+        assertEquals(1, frames.size());
+        assertArrayEquals(b0, frames.get(0));
+        assertEquals(0, assembler.getCrcFailures());
+    }
+
+    @Test
+    public void resetDropsPartialFrame() {
+        byte[] a0 = frame(0xA0, 25, 1);
+
+        assembler.feed(Arrays.copyOfRange(a0, 0, 12));
+        assembler.reset();
+        assembler.feed(a0);
+
+        assertEquals(1, frames.size());
+        assertArrayEquals(a0, frames.get(0));
+        assertEquals(12, assembler.getBytesDiscarded());
+    }
+
+    /** CRC-valid frame with a length byte: [F0, type, length, payload..., crcL, crcH]. */
+    private static byte[] frame(int type, int length, int seed) {
+        byte[] f = new byte[length];
+        f[0] = (byte) 0xF0;
+        f[1] = (byte) type;
+        f[2] = (byte) length;
+        for (int i = 3; i < length - 2; i++) {
+            // Keep header bytes out of the payload so resync never locks onto one
+            f[i] = (byte) ((i * 7 + seed) & 0x7F);
+        }
+        return putCrc(f);
+    }
+
+    /** D2 acknowledgement, fixed length: [F0, D2, idxH, idxL, status, crcL, crcH]. */
+    private static byte[] d2Ack(int index) {
+        byte[] f = new byte[7];
+        f[0] = (byte) 0xF0;
+        f[1] = (byte) 0xD2;
+        f[2] = (byte) (index >> 8);
+        f[3] = (byte) index;
+        return putCrc(f);
+    }
+
+    private static byte[] putCrc(byte[] f) {
+        int crc = ProtocolUtils.calculateCRC16(f, f.length - 2);
+        f[f.length - 2] = (byte) (crc & 0xFF);
+        f[f.length - 1] = (byte) ((crc >> 8) & 0xFF);
+        return f;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] p : parts) length += p.length;
+        byte[] out = new byte[length];
+        int pos = 0;
+        for (byte[] p : parts) {
+            System.arraycopy(p, 0, out, pos, p.length);
+            pos += p.length;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,184 @@
+package com.pure.gen3firmwareupdater.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.pure.gen3firmwareupdater.BMSDataInfo;
+import com.pure.gen3firmwareupdater.ConfigInfo;
+import com.pure.gen3firmwareupdater.ProtocolUtils;
+import com.pure.gen3firmwareupdater.RunningDataFrame;
+import com.pure.gen3firmwareupdater.RunningDataInfo;
+import com.pure.gen3firmwareupdater.VersionInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PacketRouterTest {
+
+    private final RecordingListener listener = new RecordingListener();
+    private final List<Integer> speeds = new ArrayList<>();
+    private final PacketRouter.PacketHandler<RunningDataFrame> speedHandler =
+            frame -> speeds.add(frame.getCurrentSpeed());
+    private PacketRouter router;
+
+    @Before
+    public void setUp() {
+        router = new PacketRouter(listener);
+    }
+
+    @Test
+    public void validFrameIsDispatchedToSubscribersAndListener() {
+        router.subscribe(PacketType.RUNNING_DATA, speedHandler);
+
+        router.routePacket(runningData(23));
+
+        assertEquals(Arrays.asList(23), speeds);
+        assertEquals(1, listener.running.size());
+        assertEquals(23, listener.running.get(0).currentSpeed);
+        assertEquals(1, router.getFrameStats().getGood(0xA0));
+    }
+
+    @Test
+    public void badCrcIsDroppedAndCounted() {
+        router.subscribe(PacketType.RUNNING_DATA, speedHandler);
+        byte[] frame = runningData(23);
+        frame[8] = 24;
+
+        router.routePacket(frame);
+
+        assertTrue(speeds.isEmpty());
+        assertTrue(listener.running.isEmpty());
+        assertEquals(1, router.getFrameStats().getBadCrc(0xA0));
+        assertEquals(0, router.getFrameStats().getGood(0xA0));
+    }
+
+    @Test
+    public void crcCheckCanBeDisabled() {
+        byte[] frame = runningData(23);
+        frame[frame.length - 1] ^= 0x01;
+        router.setCrcCheckEnabled(false);
+
+        router.routePacket(frame);
+
+        assertEquals(1, listener.running.size());
+    }
+
+    @Test
+    public void frameShorterThanItsLengthByteIsTruncated() {
+        byte[] frame = runningData(23);
+
+        router.routePacket(Arrays.copyOf(frame, 20));
+
+        assertTrue(listener.running.isEmpty());
+        assertEquals(1, router.getFrameStats().getTruncated(0xA0));
+    }
+
+    @Test
+    public void corruptLengthByteCountsAsBadCrc() {
+        byte[] frame = runningData(23);
+        frame[2] = 3;
+
+        router.routePacket(frame);
+
+        assertTrue(listener.running.isEmpty());
+        assertEquals(1, router.getFrameStats().getBadCrc(0xA0));
+    }
+
+    @Test
+    public void trailingBytesAfterTheDeclaredLengthAreIgnored() {
+        byte[] frame = runningData(23);
+        byte[] padded = Arrays.copyOf(frame, frame.length + 3);
+
+        router.routePacket(padded);
+
+        assertEquals(1, listener.running.size());
+    }
+
+    @Test
+    public void unknownCommandGoesToListenerAsCopy() {
+        byte[] buf = new byte[12];
+        byte[] frame = frame(0x7E, 7);
+        System.arraycopy(frame, 0, buf, 3, frame.length);
+
+        router.routePacket(buf, 3, frame.length);
+
+        assertEquals(Integer.valueOf(0x7E), listener.unknownTypes.get(0));
+        assertArrayEquals(frame, listener.unknownData.get(0));
+    }
+
+    @Test
+    public void unsubscribedHandlerIsNotCalled() {
+        router.subscribe(PacketType.RUNNING_DATA, speedHandler);
+        assertFalse(router.subscribe(PacketType.RUNNING_DATA, speedHandler));
+        assertTrue(router.unsubscribe(PacketType.RUNNING_DATA, speedHandler));
+        router.setListener(null);
+
+        assertFalse(router.hasSubscribers(0xA0));
+        router.routePacket(runningData(23));
+        assertTrue(speeds.isEmpty());
+    }
+
+    @Test
+    public void verifiedFramesSkipTheChecks() {
+        byte[] frame = runningData(23);
+        frame[frame.length - 1] ^= 0x01;
+
+        router.routeVerifiedPacket(frame, 0, frame.length);
+
+        assertEquals(1, listener.running.size());
+        assertEquals(1, router.getFrameStats().getGood(0xA0));
+    }
+
+    // ==================================================================================
+    // HELPERS
+    // ==================================================================================
+
+    private static byte[] runningData(int speed) {
+        byte[] f = new byte[25];
+        f[0] = (byte) 0xF0;
+        f[1] = (byte) 0xA0;
+        f[2] = 25;
+        f[8] = (byte) speed;
+        f[11] = 0x04; f[12] = (byte) 0xD2;
+        return putCrc(f);
+    }
+
+    /** CRC-valid frame with a length byte and an empty payload. */
+    private static byte[] frame(int type, int length) {
+        byte[] f = new byte[length];
+        f[0] = (byte) 0xF0;
+        f[1] = (byte) type;
+        f[2] = (byte) length;
+        return putCrc(f);
+    }
+
+    private static byte[] putCrc(byte[] f) {
+        int crc = ProtocolUtils.calculateCRC16(f, f.length - 2);
+        f[f.length - 2] = (byte) (crc & 0xFF);
+        f[f.length - 1] = (byte) ((crc >> 8) & 0xFF);
+        return f;
+    }
+
+    private static class RecordingListener implements PacketRouter.PacketListener {
+        final List<RunningDataInfo> running = new ArrayList<>();
+        final List<Integer> unknownTypes = new ArrayList<>();
+        final List<byte[]> unknownData = new ArrayList<>();
+
+        @Override public void onVersionInfo(VersionInfo version) {}
+        @Override public void onConfigInfo(ConfigInfo config) {}
+        @Override public void onRunningData(RunningDataInfo data) { running.add(data); }
+        @Override public void onBMSData(BMSDataInfo data) {}
+
+        @Override
+        public void onUnknownPacket(int packetType, byte[] data) {
+            unknownTypes.add(packetType);
+            unknownData.add(data);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.pure.gen3firmwareupdater.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.pure.gen3firmwareupdater.BMSDataInfo;
+import com.pure.gen3firmwareupdater.ProtocolUtils;
+import com.pure.gen3firmwareupdater.RunningDataInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+public class RequestCorrelatorTest {
+
+    private final SimulatedClock clock = new SimulatedClock();
+    private final PacketRouter router = new PacketRouter(null);
+    private final List<Integer> sent = new ArrayList<>();
+    private boolean sendSucceeds = true;
+    private RequestCorrelator correlator;
+
+    @Before
+    public void setUp() {
+        correlator = new RequestCorrelator(router, command -> {
+            sent.add(command);
+            return sendSucceeds;
+        }, clock);
+    }
+
+    @Test
+    public void responseCompletesQuery() throws Exception {
+        ResponseFuture<RunningDataInfo> future = correlator.queryRunningData(1000);
+        assertEquals(Arrays.asList(0xA0), sent);
+        assertTrue(correlator.hasPending(0xA0));
+
+        router.routePacket(frame(0xA0, 12));
+
+        assertTrue(future.isDone());
+        assertEquals(12, future.get().currentSpeed);
+        assertFalse(correlator.hasPending(0xA0));
+        assertFalse(router.hasSubscribers(0xA0));
+        // The timeout was cancelled
+        assertEquals(0, clock.pendingTasks());
+    }
+
+    @Test
+    public void duplicateQueryJoinsTheOneInFlight() throws Exception {
+        ResponseFuture<RunningDataInfo> first = correlator.queryRunningData(1000);
+        ResponseFuture<RunningDataInfo> second = correlator.queryRunningData(1000);
+        assertEquals(1, sent.size());
+        assertEquals(2, correlator.getPendingCount());
+
+        router.routePacket(frame(0xA0, 7));
+
+        assertSame(first.get(), second.get());
+    }
+
+    @Test
+    public void pipelinedQueriesCompleteInAnswerOrder() throws Exception {
+        ResponseFuture<RunningDataInfo> running = correlator.queryRunningData(1000);
+        ResponseFuture<BMSDataInfo> bms = correlator.queryBMSData(1000);
+        assertEquals(Arrays.asList(0xA0, 0xA1), sent);
+
+        router.routePacket(frame(0xA1, 55));
+        assertTrue(bms.isDone());
+        assertFalse(running.isDone());
+        assertEquals(55, bms.get().batteryPercent);
+
+        router.routePacket(frame(0xA0, 3));
+        assertTrue(running.isDone());
+    }
+
+    @Test
+    public void unansweredQueryTimesOut() {
+        ResponseFuture<RunningDataInfo> future = correlator.queryRunningData(1000);
+
+        clock.advance(999);
+        assertFalse(future.isDone());
+        clock.advance(1);
+
+        assertTrue(future.getError() instanceof TimeoutException);
+        assertEquals(0, correlator.getPendingCount());
+        assertFalse(router.hasSubscribers(0xA0));
+    }
+
+    @Test
+    public void unsendableQueryFailsAtOnce() {
+        sendSucceeds = false;
+
+        ResponseFuture<RunningDataInfo> future = correlator.queryRunningData(1000);
+
+        assertTrue(future.getError() instanceof IOException);
+        assertEquals(0, correlator.getPendingCount());
+        assertEquals(0, clock.pendingTasks());
+    }
+
+    @Test
+    public void failAllFailsEveryPendingQuery() {
+        ResponseFuture<RunningDataInfo> running = correlator.queryRunningData(1000);
+        ResponseFuture<BMSDataInfo> bms = correlator.queryBMSData(1000);
+
+        correlator.failAll("Disconnected");
+
+        assertTrue(running.getError() instanceof IOException);
+        assertTrue(bms.getError() instanceof IOException);
+        assertEquals(0, clock.pendingTasks());
+        assertFalse(router.hasSubscribers(0xA0));
+        assertFalse(router.hasSubscribers(0xA1));
+    }
+
+    @Test
+    public void cancelledQueryIgnoresItsResponse() {
+        ResponseFuture<RunningDataInfo> future = correlator.queryRunningData(1000);
+
+        assertTrue(future.cancel(false));
+        router.routePacket(frame(0xA0, 12));
+
+        assertTrue(future.isCancelled());
+        assertEquals(0, correlator.getPendingCount());
+    }
+
+    /**
+     * 25-byte A0/A1 frame; {@code value} lands in A0's speed byte (8) and A1's
+     * state-of-charge byte (9).
+     */
+    private static byte[] frame(int type, int value) {
+        byte[] f = new byte[25];
+        f[0] = (byte) 0xF0;
+        f[1] = (byte) type;
+        f[2] = 25;
+        f[type == 0xA0 ? 8 : 9] = (byte) value;
+        int crc = ProtocolUtils.calculateCRC16(f, f.length - 2);
+        f[f.length - 2] = (byte) (crc & 0xFF);
+        f[f.length - 1] = (byte) ((crc >> 8) & 0xFF);
+        return f;
+    }
+}
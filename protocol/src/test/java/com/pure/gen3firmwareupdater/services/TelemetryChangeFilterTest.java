@@ -0,0 +1,122 @@
+package com.pure.gen3firmwareupdater.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.pure.gen3firmwareupdater.ProtocolUtils;
+
+import org.junit.Test;
+
+public class TelemetryChangeFilterTest {
+
+    private final TelemetryChangeFilter filter = new TelemetryChangeFilter();
+
+    @Test
+    public void firstFrameIsDeliveredAsAllChanged() {
+        assertTrue(deliver(runningData(10, 0), 1000));
+        assertEquals(TelemetryChangeFilter.ALL_CHANGED, filter.getLastChangedMask(0xA0));
+    }
+
+    @Test
+    public void repeatedFrameIsSuppressed() {
+        deliver(runningData(10, 0), 1000);
+
+        assertFalse(deliver(runningData(10, 0), 2000));
+        assertEquals(1, filter.getSuppressedCount());
+    }
+
+    @Test
+    public void changedByteIsReportedInTheMask() {
+        deliver(runningData(10, 0), 1000);
+
+        assertTrue(deliver(runningData(12, 0), 2000));
+        long mask = filter.getLastChangedMask(0xA0);
+        assertEquals(1L << 8, mask);
+        assertTrue(TelemetryChangeFilter.isChanged(mask, 8, 1));
+        assertFalse(TelemetryChangeFilter.isChanged(mask, 3, 2));
+    }
+
+    @Test
+    public void unchangedFrameIsRefreshedPeriodically() {
+        deliver(runningData(10, 0), 1000);
+        assertFalse(deliver(runningData(10, 0), 1000 + TelemetryChangeFilter.DEFAULT_REFRESH_MS - 1));
+
+        assertTrue(deliver(runningData(10, 0), 1000 + TelemetryChangeFilter.DEFAULT_REFRESH_MS));
+        assertEquals(0, filter.getLastChangedMask(0xA0));
+    }
+
+    @Test
+    public void refreshCanBeDisabled() {
+        filter.setRefreshMillis(0);
+        deliver(runningData(10, 0), 1000);
+
+        assertFalse(deliver(runningData(10, 0), 1000 + 10 * TelemetryChangeFilter.DEFAULT_REFRESH_MS));
+    }
+
+    @Test
+    public void typesAreComparedSeparately() {
+        deliver(runningData(10, 0), 1000);
+
+        assertTrue(deliver(frame(0xA1, 25, 10), 1100));
+        assertFalse(deliver(runningData(10, 0), 1200));
+    }
+
+    @Test
+    public void untrackedTypesAreAlwaysDelivered() {
+        deliver(frame(0xB0, 25, 1), 1000);
+
+        assertTrue(deliver(frame(0xB0, 25, 1), 2000));
+    }
+
+    @Test
+    public void resetAndDisableForgetThePreviousFrame() {
+        deliver(runningData(10, 0), 1000);
+        filter.reset();
+        assertTrue(deliver(runningData(10, 0), 2000));
+
+        filter.setEnabled(false);
+        assertTrue(deliver(runningData(10, 0), 3000));
+        filter.setEnabled(true);
+        assertTrue(deliver(runningData(10, 0), 4000));
+        assertEquals(TelemetryChangeFilter.ALL_CHANGED, filter.getLastChangedMask(0xA0));
+    }
+
+    @Test
+    public void isChangedOutsideTheMask() {
+        assertTrue(TelemetryChangeFilter.isChanged(TelemetryChangeFilter.ALL_CHANGED, 70, 2));
+        assertFalse(TelemetryChangeFilter.isChanged(1L << 8, 70, 2));
+    }
+
+    // ==================================================================================
+    // HELPERS
+    // ==================================================================================
+
+    private boolean deliver(byte[] frame, long nowMillis) {
+        return filter.shouldDeliver(frame, 0, frame.length, nowMillis);
+    }
+
+    private static byte[] runningData(int speed, int faultCode) {
+        byte[] f = frame(0xA0, 25, 0);
+        f[3] = (byte) (faultCode >> 8);
+        f[4] = (byte) faultCode;
+        f[8] = (byte) speed;
+        return putCrc(f);
+    }
+
+    private static byte[] frame(int type, int length, int fill) {
+        byte[] f = new byte[length];
+        f[0] = (byte) 0xF0;
+        f[1] = (byte) type;
+        f[2] = (byte) length;
+        for (int i = 3; i < length - 2; i++) f[i] = (byte) fill;
+        return putCrc(f);
+    }
+
+    private static byte[] putCrc(byte[] f) {
+        int crc = ProtocolUtils.calculateCRC16(f, f.length - 2);
+        f[f.length - 2] = (byte) (crc & 0xFF);
+        f[f.length - 1] = (byte) ((crc >> 8) & 0xFF);
+        return f;
+    }
+}
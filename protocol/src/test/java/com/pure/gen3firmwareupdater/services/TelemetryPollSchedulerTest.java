@@ -0,0 +1,118 @@
+package com.pure.gen3firmwareupdater.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Polls are answered {@link #ANSWER_MS} later in virtual time, unless {@link #silent}. */
+public class TelemetryPollSchedulerTest {
+
+    private static final long ANSWER_MS = 20;
+
+    private final SimulatedClock clock = new SimulatedClock();
+    private final List<Long> runningPolls = new ArrayList<>();
+    private final List<Long> bmsPolls = new ArrayList<>();
+    private boolean silent;
+    private boolean moving;
+    private boolean charging;
+    private int faultCode;
+
+    private TelemetryPollScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new TelemetryPollScheduler(new TelemetryPollScheduler.Poller() {
+            @Override
+            public void pollRunningData() {
+                runningPolls.add(clock.currentTimeMillis());
+                if (!silent) clock.schedule(() -> scheduler.onRunningData(moving, faultCode), ANSWER_MS);
+            }
+
+            @Override
+            public void pollBMSData() {
+                bmsPolls.add(clock.currentTimeMillis());
+                if (!silent) clock.schedule(() -> scheduler.onBMSData(charging), ANSWER_MS);
+            }
+        }, clock);
+    }
+
+    @Test
+    public void parkedPollsEveryFiveSeconds() {
+        scheduler.start();
+        clock.advance(20_000);
+
+        assertEquals(Arrays.asList(0L, 5000L, 10000L, 15000L, 20000L), runningPolls);
+        assertEquals(runningPolls, bmsPolls);
+    }
+
+    @Test
+    public void movingPollsFasterAndBmsAtMostOncePerSecond() {
+        moving = true;
+        scheduler.start();
+        clock.advance(5000);
+
+        assertEquals(TelemetryPollScheduler.MOVING_INTERVAL_MS, scheduler.getIntervalMs());
+        int last = runningPolls.size() - 1;
+        assertEquals(TelemetryPollScheduler.MOVING_INTERVAL_MS, runningPolls.get(last) - runningPolls.get(last - 1));
+        for (int i = 1; i < bmsPolls.size(); i++) {
+            assertTrue(bmsPolls.get(i) - bmsPolls.get(i - 1) >= TelemetryPollScheduler.BMS_MIN_INTERVAL_MS);
+        }
+
+        scheduler.setRecording(true);
+        assertEquals(TelemetryPollScheduler.MOVING_RECORDING_INTERVAL_MS, scheduler.getIntervalMs());
+    }
+
+    @Test
+    public void chargingPollsSlowest() {
+        charging = true;
+        scheduler.start();
+        clock.advance(ANSWER_MS);
+
+        assertEquals(TelemetryPollScheduler.CHARGING_INTERVAL_MS, scheduler.getIntervalMs());
+        // Rescheduled when the A1 answer arrived
+        clock.advance(TelemetryPollScheduler.CHARGING_INTERVAL_MS);
+        assertEquals(Arrays.asList(0L, ANSWER_MS + TelemetryPollScheduler.CHARGING_INTERVAL_MS), runningPolls);
+    }
+
+    @Test
+    public void newFaultStartsAnImmediateBurst() {
+        faultCode = 0x0004;
+        scheduler.start();
+        clock.advance(6000);
+
+        // The answer to the first poll reports the fault; the burst starts right then
+        assertEquals(Arrays.asList(0L, 20L, 220L, 420L, 620L, 820L, 5820L), runningPolls);
+    }
+
+    @Test
+    public void unansweredPollsBackOff() {
+        silent = true;
+        scheduler.start();
+        clock.advance(60_000);
+
+        // 5 s, then doubled per missed poll up to 4x
+        assertEquals(Arrays.asList(0L, 5000L, 15000L, 35000L, 55000L), runningPolls);
+
+        scheduler.onRunningDataUnchanged();
+        assertEquals(TelemetryPollScheduler.PARKED_INTERVAL_MS, scheduler.getIntervalMs());
+        clock.advance(TelemetryPollScheduler.PARKED_INTERVAL_MS);
+        assertEquals(Long.valueOf(65000L), runningPolls.get(runningPolls.size() - 1));
+    }
+
+    @Test
+    public void stopCancelsPolling() {
+        scheduler.start();
+        clock.advance(ANSWER_MS);
+        scheduler.stop();
+        clock.advance(60_000);
+
+        assertEquals(1, runningPolls.size());
+        assertEquals(0, clock.pendingTasks());
+    }
+}
@@ -0,0 +1,155 @@
+package com.pure.gen3firmwareupdater.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.pure.gen3firmwareupdater.BMSDataInfo;
+import com.pure.gen3firmwareupdater.RunningDataInfo;
+import com.pure.gen3firmwareupdater.TripDataInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TripAggregatorTest {
+
+    private static final double EPSILON = 1e-9;
+    private static final long START = 1_000_000;
+
+    private final TripAggregator trip = new TripAggregator();
+
+    @Before
+    public void setUp() {
+        trip.reset(START);
+    }
+
+    @Test
+    public void distanceIsIntegratedTrapezoidally() {
+        trip.onRunningData(running(0, 100), START + 1000);
+        trip.onRunningData(running(36, 100), START + 2000);
+        trip.onRunningData(running(36, 101), START + 3000);
+
+        TripAggregator.TripSummary s = trip.snapshot();
+        // 18 km/h for 1 s, then 36 km/h for 1 s
+        assertEquals(0.015, s.distanceKm, EPSILON);
+        assertEquals(2, s.movingSeconds);
+        assertEquals(3, s.durationSeconds);
+        assertEquals(27.0, s.avgMovingSpeedKmh, EPSILON);
+        assertEquals(36, s.maxSpeedKmh);
+        assertEquals(1, s.getOdometerDeltaKm());
+        assertEquals(3, s.runningSamples);
+    }
+
+    @Test
+    public void gapsAreNotIntegratedAcross() {
+        trip.onRunningData(running(36, 100), START + 1000);
+        trip.onRunningData(running(36, 100), START + 1000 + TripAggregator.MAX_GAP_MS + 1);
+
+        TripAggregator.TripSummary s = trip.snapshot();
+        assertEquals(0, s.distanceKm, EPSILON);
+        assertEquals(0, s.movingSeconds);
+    }
+
+    @Test
+    public void parkedTimeIsNotMoving() {
+        trip.onRunningData(running(0, 100), START + 1000);
+        trip.onRunningData(running(0, 100), START + 2000);
+
+        assertEquals(0, trip.snapshot().movingSeconds);
+        assertEquals(0, trip.snapshot().avgMovingSpeedKmh, EPSILON);
+    }
+
+    @Test
+    public void faultsAndTemperaturesKeepTheirExtremes() {
+        RunningDataInfo hot = running(10, 100);
+        hot.faultCode = 0x0004;
+        hot.motorTemp = 60;
+        RunningDataInfo cool = running(10, 100);
+        cool.faultCode = 0x0010;
+        cool.controllerTemp = 45;
+
+        trip.onRunningData(hot, START + 1000);
+        trip.onRunningData(cool, START + 2000);
+
+        TripAggregator.TripSummary s = trip.snapshot();
+        assertEquals(0x0014, s.faultCodeMask);
+        assertEquals(60, s.maxMotorTemp);
+        assertEquals(45, s.maxControllerTemp);
+    }
+
+    @Test
+    public void dischargeEnergyAndBattery() {
+        // 36 V x 10 A for one second = 0.1 Wh
+        trip.onBMSData(bms(36.0, -10.0, false, 80), START + 1000);
+        trip.onBMSData(bms(36.0, -10.0, false, 79), START + 2000);
+
+        TripAggregator.TripSummary s = trip.snapshot();
+        assertEquals(0.1, s.energyUsedWh, EPSILON);
+        assertEquals(0, s.energyRegenWh, EPSILON);
+        assertEquals(80, s.batteryStartPercent);
+        assertEquals(79, s.batteryEndPercent);
+        assertEquals(2, s.bmsSamples);
+    }
+
+    @Test
+    public void regenCountsOnlyWhenNotCharging() {
+        trip.onBMSData(bms(36.0, 5.0, false, 80), START + 1000);
+        trip.onBMSData(bms(36.0, 5.0, false, 80), START + 2000);
+        assertEquals(0.05, trip.snapshot().energyRegenWh, EPSILON);
+
+        trip.onBMSData(bms(36.0, 5.0, true, 80), START + 3000);
+        assertEquals(0.05, trip.snapshot().energyRegenWh, EPSILON);
+    }
+
+    @Test
+    public void deviceTripDataAndReset() {
+        TripDataInfo device = new TripDataInfo();
+        device.tripDistance = 3.2;
+        device.maxSpeed = 24;
+        trip.onTripData(device);
+        trip.onRunningData(running(10, 100), START + 1000);
+
+        TripAggregator.TripSummary s = trip.snapshot();
+        assertTrue(s.hasDeviceTripData);
+        assertEquals(3.2, s.deviceTripDistanceKm, EPSILON);
+        assertEquals(24, s.deviceMaxSpeedKmh);
+
+        trip.reset(START + 5000);
+        s = trip.snapshot();
+        assertFalse(s.hasDeviceTripData);
+        assertEquals(-1, s.getOdometerDeltaKm());
+        assertEquals(0, s.runningSamples);
+        assertEquals(START + 5000, s.startedAt);
+    }
+
+    @Test
+    public void snapshotIsACopy() {
+        trip.onRunningData(running(10, 100), START + 1000);
+        TripAggregator.TripSummary before = trip.snapshot();
+
+        trip.onRunningData(running(20, 100), START + 2000);
+
+        assertEquals(10, before.maxSpeedKmh);
+        assertEquals(20, trip.snapshot().maxSpeedKmh);
+    }
+
+    // ==================================================================================
+    // HELPERS
+    // ==================================================================================
+
+    private static RunningDataInfo running(int speed, int odometerKm) {
+        RunningDataInfo data = new RunningDataInfo();
+        data.currentSpeed = speed;
+        data.totalDistance = odometerKm;
+        return data;
+    }
+
+    private static BMSDataInfo bms(double volts, double amps, boolean charging, int percent) {
+        BMSDataInfo data = new BMSDataInfo();
+        data.batteryVoltage = volts;
+        data.batteryCurrent = amps;
+        data.isCharging = charging;
+        data.batteryPercent = percent;
+        return data;
+    }
+}
@@ -21,3 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "Gen3FirmwareUpdater"
 include(":app")
+include(":protocol")
+include(":benchmarks")
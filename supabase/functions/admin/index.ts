@@ -1467,6 +1467,7 @@ async function handleFirmware(supabase: any, action: string, body: any, _admin:
       .insert({
         version_label: body.version_label, file_path: body.file_path,
         file_size_bytes: body.file_size_bytes || 0,
+        sha256: body.sha256 ? String(body.sha256).toLowerCase() : null,
         target_hw_version: body.target_hw_version || null,
         min_sw_version: body.min_sw_version || null,
         release_notes: body.release_notes || null,
@@ -1496,11 +1497,15 @@ async function handleFirmware(supabase: any, action: string, body: any, _admin:
   if (action === 'update') {
     if (!body.id) return errorResponse('Firmware ID required')
     const allowed = ['version_label', 'min_sw_version', 'release_notes',
-      'access_level', 'target_hw_version']
+      'access_level', 'target_hw_version', 'sha256']
     const updates: Record<string, any> = {}
     for (const key of allowed) {
       if (body[key] !== undefined) updates[key] = body[key]
     }
+    // Same normalisation as create: the app compares hex digests case-sensitively
+    if (updates.sha256 !== undefined) {
+      updates.sha256 = updates.sha256 ? String(updates.sha256).toLowerCase() : null
+    }
     const { data, error } = await supabase.from('firmware_versions')
       .update(updates).eq('id', body.id).select().single()
     if (error) return errorResponse(error.message, 500)
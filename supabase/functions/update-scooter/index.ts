@@ -260,7 +260,7 @@ serve(async (req) => {
     // ================================================================
     if (action === 'create-telemetry') {
       const { scooter_id, distributor_id, hw_version, sw_version, scan_type,
-              record_type,
+              record_type, connect_metrics,
               // Version info for scooter update
               controller_hw_version, controller_sw_version,
               meter_hw_version, meter_sw_version, bms_hw_version, bms_sw_version,
@@ -324,6 +324,9 @@ serve(async (req) => {
       // Add record_type if provided (start/stop/riding)
       if (record_type) telemetryData.record_type = record_type
 
+      // Connect latency (path, scan/link/connect/first-telemetry ms, phone model) if provided
+      if (connect_metrics) telemetryData.connect_metrics = connect_metrics
+
       // Add telemetry fields if present
       if (voltage !== undefined) telemetryData.voltage = voltage
       if (current !== undefined) telemetryData.current = current
@@ -527,7 +530,7 @@ serve(async (req) => {
     // ================================================================
     if (action === 'create-ride-session') {
       const { scooter_id, trigger_type, started_at, ended_at,
-              sample_count, max_duration_seconds, diagnostic_config, samples } = body
+              sample_count, max_duration_seconds, diagnostic_config, trip_summary, samples } = body
 
       if (!scooter_id) {
         return errorResponse('scooter_id required')
@@ -562,6 +565,7 @@ serve(async (req) => {
         max_duration_seconds: max_duration_seconds || 300,
         status: 'uploaded',
         diagnostic_config: diagnostic_config || null,
+        trip_summary: trip_summary || null,
       }
 
       const { data: sessionRow, error: sessionError } = await supabase
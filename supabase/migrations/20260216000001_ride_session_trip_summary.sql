@@ -0,0 +1,6 @@
+-- Ride Session Trip Summary: aggregated per-ride statistics computed on the phone
+-- (distance, moving time, max speed, energy used/regen, battery and temperature
+-- extremes, OR of fault codes, plus the scooter's own A2 trip counters if sent).
+-- Stored as JSONB so new statistics don't need a schema change.
+
+ALTER TABLE ride_sessions ADD COLUMN IF NOT EXISTS trip_summary JSONB;
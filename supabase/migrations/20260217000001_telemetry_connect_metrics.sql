@@ -0,0 +1,6 @@
+-- Telemetry Connect Metrics: connect latency reported with the "start" record
+-- (connection path direct/scan/reattach, whether a direct connect fell back to a
+-- scan, scan/link/connect/first-telemetry times in ms, phone model and API level).
+-- Stored as JSONB so latency can be compared across phone models without new columns.
+
+ALTER TABLE scooter_telemetry ADD COLUMN IF NOT EXISTS connect_metrics JSONB;
@@ -0,0 +1,12 @@
+-- Firmware Upload Resume: an upload interrupted by a dropped link can continue from
+-- the last D2 packet the bootloader acknowledged instead of erasing and starting over.
+-- The continuing attempt gets its own firmware_uploads row; these columns record the
+-- packet it resumed at and the row of the attempt it continued.
+
+ALTER TABLE firmware_uploads ADD COLUMN IF NOT EXISTS resumed_from_packet INTEGER;
+ALTER TABLE firmware_uploads ADD COLUMN IF NOT EXISTS resumed_from_upload_id UUID
+  REFERENCES firmware_uploads(id) ON DELETE SET NULL;
+
+CREATE INDEX IF NOT EXISTS idx_firmware_uploads_resumed_from
+  ON firmware_uploads(resumed_from_upload_id)
+  WHERE resumed_from_upload_id IS NOT NULL;
@@ -0,0 +1,8 @@
+-- Firmware Binary SHA-256: hex digest of the binary in firmware-binaries storage.
+-- The app caches downloaded binaries on disk by content hash; when this column is
+-- set, a cached copy that matches it is used without contacting the server, and a
+-- fresh download that does not match it is rejected. NULL for older versions (the
+-- app then revalidates its cached copy with ETag / Last-Modified instead).
+
+ALTER TABLE firmware_versions ADD COLUMN IF NOT EXISTS sha256 TEXT
+  CHECK (sha256 IS NULL OR sha256 ~ '^[0-9a-f]{64}$');